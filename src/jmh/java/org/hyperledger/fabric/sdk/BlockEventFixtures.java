@@ -0,0 +1,175 @@
+package org.hyperledger.fabric.sdk;
+
+import java.util.Random;
+
+import org.hyperledger.fabric.protos.common.Common;
+import org.hyperledger.fabric.protos.ledger.rwset.Rwset;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset;
+import org.hyperledger.fabric.protos.msp.Identities;
+import org.hyperledger.fabric.protos.peer.Chaincode;
+import org.hyperledger.fabric.protos.peer.FabricProposal;
+import org.hyperledger.fabric.protos.peer.FabricProposalResponse;
+import org.hyperledger.fabric.protos.peer.FabricTransaction;
+import org.hyperledger.fabric.protos.peer.PeerEvents;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Timestamp;
+
+/**
+ * Builds synthetic, structurally valid endorser transaction blocks for the benchmarks. Lives in the SDK package as the
+ * BlockEvent and BlockInfo constructors are package private.
+ *
+ * @author tim
+ *
+ */
+public final class BlockEventFixtures
+{
+  public static final String CHAINCODE_NAME = "bench-cc";
+
+  private BlockEventFixtures()
+  {
+  }
+
+  /**
+   * @param channelId
+   * @param blockNumber
+   * @param txPerBlock   - transactions within the block
+   * @param endorsements - endorsements per transaction
+   * @param payloadBytes - size of the chaincode argument and response payload
+   * @param writesPerTx  - keys written by each transaction
+   * @return
+   */
+  public static BlockEvent createBlockEvent( String channelId, long blockNumber, int txPerBlock, int endorsements, int payloadBytes, int writesPerTx )
+  {
+    PeerEvents.DeliverResponse response = PeerEvents.DeliverResponse.newBuilder()
+                                                                     .setBlock( createBlock( channelId, blockNumber, txPerBlock, endorsements, payloadBytes, writesPerTx ))
+                                                                     .build();
+    return new BlockEvent( (Peer) null, response );
+  }
+
+  public static BlockInfo createBlockInfo( String channelId, long blockNumber, int txPerBlock, int endorsements, int payloadBytes, int writesPerTx )
+  {
+    return new BlockInfo( createBlock( channelId, blockNumber, txPerBlock, endorsements, payloadBytes, writesPerTx ));
+  }
+
+  public static Common.Block createBlock( String channelId, long blockNumber, int txPerBlock, int endorsements, int payloadBytes, int writesPerTx )
+  {
+    Random random = new Random( blockNumber );
+
+    Common.BlockData.Builder data   = Common.BlockData.newBuilder();
+    byte[]                   filter = new byte[txPerBlock];
+
+    for( int i = 0; i < txPerBlock; i++ )
+    {
+      data.addData( createEnvelope( channelId, blockNumber + "-" + i, endorsements, payloadBytes, writesPerTx, random ).toByteString() );
+      filter[i] = (byte) FabricTransaction.TxValidationCode.VALID_VALUE;
+    }
+
+    Common.BlockMetadata.Builder metadata = Common.BlockMetadata.newBuilder();
+    metadata.addMetadata( ByteString.EMPTY );             // SIGNATURES
+    metadata.addMetadata( ByteString.EMPTY );             // LAST_CONFIG
+    metadata.addMetadata( ByteString.copyFrom( filter )); // TRANSACTIONS_FILTER
+    metadata.addMetadata( ByteString.EMPTY );             // ORDERER
+
+    Common.BlockHeader header = Common.BlockHeader.newBuilder()
+                                                  .setNumber(       blockNumber )
+                                                  .setPreviousHash( randomBytes( random, 32 ))
+                                                  .setDataHash(     randomBytes( random, 32 ))
+                                                  .build();
+
+    return Common.Block.newBuilder().setHeader( header ).setData( data ).setMetadata( metadata ).build();
+  }
+
+  private static Common.Envelope createEnvelope( String channelId, String txId, int endorsements, int payloadBytes, int writesPerTx, Random random )
+  {
+    ByteString creator = Identities.SerializedIdentity.newBuilder()
+                                                      .setMspid(   "Org1MSP" )
+                                                      .setIdBytes( randomBytes( random, 700 ))
+                                                      .build().toByteString();
+
+    Common.SignatureHeader signatureHeader = Common.SignatureHeader.newBuilder()
+                                                                   .setCreator( creator )
+                                                                   .setNonce(   randomBytes( random, 24 ))
+                                                                   .build();
+
+    Common.ChannelHeader channelHeader = Common.ChannelHeader.newBuilder()
+                                                             .setType(      Common.HeaderType.ENDORSER_TRANSACTION_VALUE )
+                                                             .setChannelId( channelId )
+                                                             .setTxId(      txId )
+                                                             .setTimestamp( Timestamp.newBuilder().setSeconds( System.currentTimeMillis() / 1000 ))
+                                                             .build();
+
+    // Chaincode invocation { method, payload }
+    Chaincode.ChaincodeInvocationSpec invocation = Chaincode.ChaincodeInvocationSpec.newBuilder()
+      .setChaincodeSpec( Chaincode.ChaincodeSpec.newBuilder()
+        .setChaincodeId( Chaincode.ChaincodeID.newBuilder().setName( CHAINCODE_NAME ))
+        .setInput( Chaincode.ChaincodeInput.newBuilder()
+          .addArgs( ByteString.copyFromUtf8( "move" ))
+          .addArgs( ByteString.copyFromUtf8( randomText( random, payloadBytes )))))
+      .build();
+
+    KvRwset.KVRWSet.Builder kvRwset = KvRwset.KVRWSet.newBuilder();
+    for( int w = 0; w < writesPerTx; w++ )
+    {
+      kvRwset.addReads(  KvRwset.KVRead.newBuilder().setKey( "key" + random.nextInt( 10000 )));
+      kvRwset.addWrites( KvRwset.KVWrite.newBuilder().setKey( "key" + random.nextInt( 10000 )).setValue( randomBytes( random, 32 )));
+    }
+
+    Rwset.TxReadWriteSet rwset = Rwset.TxReadWriteSet.newBuilder()
+                                                     .setDataModel( Rwset.TxReadWriteSet.DataModel.KV )
+                                                     .addNsRwset( Rwset.NsReadWriteSet.newBuilder().setNamespace( CHAINCODE_NAME ).setRwset( kvRwset.build().toByteString() ))
+                                                     .build();
+
+    FabricProposal.ChaincodeAction chaincodeAction = FabricProposal.ChaincodeAction.newBuilder()
+      .setResults( rwset.toByteString() )
+      .setResponse( FabricProposalResponse.Response.newBuilder().setStatus( 200 ).setMessage( "OK" ).setPayload( ByteString.copyFromUtf8( randomText( random, payloadBytes ))))
+      .setChaincodeId( Chaincode.ChaincodeID.newBuilder().setName( CHAINCODE_NAME ).setVersion( "1.0" ))
+      .build();
+
+    FabricProposalResponse.ProposalResponsePayload responsePayload = FabricProposalResponse.ProposalResponsePayload.newBuilder()
+                                                                                                                   .setProposalHash( randomBytes( random, 32 ))
+                                                                                                                   .setExtension(    chaincodeAction.toByteString() )
+                                                                                                                   .build();
+
+    FabricTransaction.ChaincodeEndorsedAction.Builder endorsedAction = FabricTransaction.ChaincodeEndorsedAction.newBuilder()
+                                                                                                                .setProposalResponsePayload( responsePayload.toByteString() );
+    for( int e = 0; e < endorsements; e++ )
+    {
+      endorsedAction.addEndorsements( FabricProposalResponse.Endorsement.newBuilder()
+                                                                        .setEndorser(  randomBytes( random, 800 ))
+                                                                        .setSignature( randomBytes( random, 72  )));
+    }
+
+    FabricTransaction.ChaincodeActionPayload actionPayload = FabricTransaction.ChaincodeActionPayload.newBuilder()
+      .setChaincodeProposalPayload( FabricProposal.ChaincodeProposalPayload.newBuilder().setInput( invocation.toByteString() ).build().toByteString() )
+      .setAction( endorsedAction )
+      .build();
+
+    FabricTransaction.Transaction transaction = FabricTransaction.Transaction.newBuilder()
+      .addActions( FabricTransaction.TransactionAction.newBuilder().setHeader( signatureHeader.toByteString() ).setPayload( actionPayload.toByteString() ))
+      .build();
+
+    Common.Payload payload = Common.Payload.newBuilder()
+                                           .setHeader( Common.Header.newBuilder().setChannelHeader( channelHeader.toByteString() ).setSignatureHeader( signatureHeader.toByteString() ))
+                                           .setData(   transaction.toByteString() )
+                                           .build();
+
+    return Common.Envelope.newBuilder().setPayload( payload.toByteString() ).setSignature( randomBytes( random, 72 )).build();
+  }
+
+  private static ByteString randomBytes( Random random, int length )
+  {
+    byte[] bytes = new byte[length];
+    random.nextBytes( bytes );
+    return ByteString.copyFrom( bytes );
+  }
+
+  private static String randomText( Random random, int length )
+  {
+    StringBuilder text = new StringBuilder( length );
+    for( int i = 0; i < length; i++ )
+      text.append( (char) ( 'a' + random.nextInt( 26 )));
+
+    return text.toString();
+  }
+}
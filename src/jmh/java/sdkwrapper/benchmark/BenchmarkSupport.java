@@ -0,0 +1,44 @@
+package sdkwrapper.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import sdkwrapper.block.store.BlockEventSeqStoreIF;
+
+/**
+ * Shared helpers for the benchmarks.
+ *
+ * @author tim
+ *
+ */
+final class BenchmarkSupport
+{
+  private BenchmarkSupport()
+  {
+  }
+
+  /**
+   * The block processor prints debugging lines to stdout for every transaction. They are discarded so they do not flood
+   * the JMH console, while the cost of building them is still measured.
+   */
+  static void discardStdout()
+  {
+    System.setOut( new PrintStream( new OutputStream()
+    {
+      @Override public void write( int b ) {}
+      @Override public void write( byte[] b, int off, int len ) {}
+    }));
+  }
+
+  /**
+   * Sequence store which never reports a block as processed, so the same block can be processed repeatedly.
+   */
+  static class NoopSeqStore implements BlockEventSeqStoreIF
+  {
+    @Override
+    public long getCurrentSequenceNumber( String channelId ) { return -1L; }
+
+    @Override
+    public void putBlockSeqNumber( String channelId, long seqNumber ) {}
+  }
+}
@@ -0,0 +1,117 @@
+package sdkwrapper.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.BlockEventFixtures;
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import sdkwrapper.events.BlockEventProcessorImpl;
+import sdkwrapper.events.BlockEventProcessorImpl.MaterializationMode;
+import sdkwrapper.vo.transaction.BlockEventInfo;
+import sdkwrapper.vo.transaction.BlockTransaction;
+
+/**
+ * Per block cost of the BlockEventProcessorImpl stages for synthetic blocks of varying size, in eager and lazy
+ * materialization. Run with -prof gc for the allocation per block.
+ *
+ * @author tim
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class BlockProcessingBenchmark
+{
+  @Param( { "10", "100", "500" } )
+  public int txPerBlock;
+
+  @Param( { "1", "3" } )
+  public int endorsements;
+
+  @Param( { "64", "1024" } )
+  public int payloadBytes;
+
+  @Param( { "EAGER", "LAZY" } )
+  public MaterializationMode mode;
+
+  // 0 decodes sequentially, otherwise the minimum transactions for a block to be decoded in parallel.
+  @Param( { "0" } )
+  public int parallelThreshold;
+
+  private BlockEventProcessorImpl processor;
+  private BlockEvent              blockEvent;
+
+  @Setup
+  public void setup()
+  {
+    BenchmarkSupport.discardStdout();
+
+    processor  = new BlockEventProcessorImpl( null, new BenchmarkSupport.NoopSeqStore(), mode );
+    if( parallelThreshold > 0 )
+      processor.setParallelDecode( Runtime.getRuntime().availableProcessors(), parallelThreshold );
+
+    blockEvent = BlockEventFixtures.createBlockEvent( "bench-channel", 1, txPerBlock, endorsements, payloadBytes, 2 );
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    processor.shutdown();
+  }
+
+  /**
+   * Decode and transform stages.
+   */
+  @Benchmark
+  public BlockEventInfo transformBlock()
+    throws InvalidProtocolBufferException
+  {
+    List<? extends TransactionEnvelopeInfo> tranEvents = processor.decodeTransactions( blockEvent );
+    return processor.transformBlock( blockEvent, tranEvents );
+  }
+
+  /**
+   * Decode, transform and dispatch stages as performed for each block received by the listener.
+   */
+  @Benchmark
+  public void processBlock()
+  {
+    processor.processBlockTransactions( blockEvent );
+  }
+
+  /**
+   * Consumer which only reads the transaction id and validity of each transaction.
+   */
+  @Benchmark
+  public void scanTransactionIds( Blackhole blackhole )
+    throws InvalidProtocolBufferException
+  {
+    BlockEventInfo blockInfo = processor.transformBlock( blockEvent, processor.decodeTransactions( blockEvent ));
+
+    for( BlockTransaction tran : blockInfo.getTransactionList() )
+    {
+      blackhole.consume( tran.getTransactionId() );
+      blackhole.consume( tran.isValid() );
+    }
+  }
+}
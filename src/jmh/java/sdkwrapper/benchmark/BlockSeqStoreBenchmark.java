@@ -0,0 +1,79 @@
+package sdkwrapper.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sdkwrapper.block.store.BlockEventSeqFileStore;
+import sdkwrapper.block.store.BlockEventSeqLogStore;
+import sdkwrapper.block.store.BlockEventSeqStoreIF;
+import sdkwrapper.exceptions.BlockEventException;
+
+/**
+ * Checkpoint cost of the block sequence stores. Each store is a singleton, so every store runs in its own fork.
+ *
+ * @author tim
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class BlockSeqStoreBenchmark
+{
+  @Param( { "file", "log" } )
+  public String store;
+
+  @Param( { "1", "8" } )
+  public int channels;
+
+  private BlockEventSeqStoreIF seqStore;
+  private String[]             channelIds;
+  private long                 seqNumber = 0;
+
+  @Setup
+  public void setup()
+    throws IOException, BlockEventException
+  {
+    Path directory = Files.createTempDirectory( "block-seq-bench" );
+
+    if( "log".equals( store ))
+      seqStore = BlockEventSeqLogStore.getInstance( directory.toString(), BlockEventSeqLogStore.DEFAULT_LOG_RECORDS );
+    else
+      seqStore = BlockEventSeqFileStore.getInstance( directory.resolve( "block-pos.ser" ).toString() );
+
+    channelIds = new String[channels];
+    for( int i = 0; i < channels; i++ )
+      channelIds[i] = "channel-" + i;
+  }
+
+  @Benchmark
+  public void putBlockSeqNumber()
+    throws BlockEventException
+  {
+    seqNumber++;
+    seqStore.putBlockSeqNumber( channelIds[(int) ( seqNumber % channels )], seqNumber );
+  }
+
+  @Benchmark
+  public long getCurrentSequenceNumber()
+    throws BlockEventException
+  {
+    return seqStore.getCurrentSequenceNumber( channelIds[(int) ( ++seqNumber % channels )] );
+  }
+}
@@ -0,0 +1,125 @@
+package sdkwrapper.benchmark;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sdkwrapper.vo.codec.CompactCodec;
+import sdkwrapper.vo.codec.PayloadCodec;
+import sdkwrapper.vo.transaction.BlockTranActionEndorsement;
+import sdkwrapper.vo.transaction.BlockTransactionAction;
+import sdkwrapper.vo.transaction.FabricRequest;
+import sdkwrapper.vo.transaction.FabricResponse;
+
+/**
+ * Json and compact serialization and deserialization of the request, response and block transaction action value
+ * objects.
+ *
+ * @author tim
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class CodecBenchmark
+{
+  @Param( { "64", "1024", "16384" } )
+  public int payloadBytes;
+
+  private FabricRequest          request;
+  private FabricResponse         response;
+  private BlockTransactionAction action;
+
+  private String requestJson;
+  private String responseJson;
+  private String actionJson;
+  private byte[] requestBytes;
+  private byte[] requestCompact;
+  private byte[] responseCompact;
+
+  @Setup
+  public void setup()
+  {
+    Random random = new Random( 42 );
+
+    Properties props = new Properties();
+    props.setProperty( "origin", "benchmark" );
+
+    request = new FabricRequest();
+    request.setRequestContext( "sdkwrapper.request.context.FabricRequestPublic" );
+    request.setContextProps(   props );
+    request.setSendDateTime(   "2019-06-01T12:00:00Z" );
+    request.setTimeTolerance(  5000 );
+    request.setProps(          props );
+    request.setTranPayload(    new String[] { "a", "b", text( random, payloadBytes ) } );
+
+    response = new FabricResponse();
+    response.setResponseCode(    "200" );
+    response.setDescription(     "OK" );
+    response.setResponsePayload( text( random, payloadBytes ));
+
+    requestJson  = request.toJSON();
+    responseJson = response.toJSON();
+    requestBytes = request.toJSONBytes();
+
+    requestCompact  = CompactCodec.encodeRequest(  request  );
+    responseCompact = CompactCodec.encodeResponse( response );
+
+    action = new BlockTransactionAction();
+    action.setRequestPayload(          requestJson );
+    action.setProposalResponsePayload( responseJson );
+    action.setResponseStatus(          200 );
+    action.setProposalResponseStatus(  200 );
+    action.setDescription(             "OK" );
+
+    for( int i = 0; i < 3; i++ )
+    {
+      BlockTranActionEndorsement endorsement = new BlockTranActionEndorsement();
+      endorsement.setEndorserCert( text( random, 1100 ));
+      endorsement.setSignature(    text( random, 96   ));
+      action.getEndorsements().add( endorsement );
+    }
+
+    actionJson = action.toJSON();
+  }
+
+  @Benchmark public String                 requestToJson()    { return request.toJSON();                              }
+  @Benchmark public FabricRequest          requestFromJson()  { return FabricRequest.deserializeJSON( requestJson );   }
+  @Benchmark public String                 responseToJson()   { return response.toJSON();                             }
+  @Benchmark public FabricResponse         responseFromJson() { return FabricResponse.fromJSON( responseJson );       }
+  @Benchmark public String                 actionToJson()     { return action.toJSON();                               }
+  @Benchmark public BlockTransactionAction actionFromJson()   { return BlockTransactionAction.fromJSON( actionJson ); }
+  @Benchmark public FabricRequest          actionRequest()    { return action.obtainRequestObject();                  }
+  @Benchmark public byte[]                 requestToBytes()   { return request.toJSONBytes();                         }
+  @Benchmark public FabricRequest          requestFromBytes() { return FabricRequest.deserializeJSON( requestBytes );  }
+
+  @Benchmark public byte[]                 requestToCompact()    { return CompactCodec.encodeRequest(  request  );        }
+  @Benchmark public FabricRequest          requestFromCompact()  { return CompactCodec.decodeRequest(  requestCompact  ); }
+  @Benchmark public byte[]                 responseToCompact()   { return CompactCodec.encodeResponse( response );        }
+  @Benchmark public FabricResponse         responseFromCompact() { return CompactCodec.decodeResponse( responseCompact ); }
+  @Benchmark public String                 compactRequestText()  { return PayloadCodec.requestText(    requestCompact  ); }
+
+  private static String text( Random random, int length )
+  {
+    StringBuilder text = new StringBuilder( length );
+    for( int i = 0; i < length; i++ )
+      text.append( (char) ( 'a' + random.nextInt( 26 )));
+
+    return text.toString();
+  }
+}
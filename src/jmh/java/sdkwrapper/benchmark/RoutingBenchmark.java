@@ -0,0 +1,173 @@
+package sdkwrapper.benchmark;
+
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.sdk.ChaincodeID;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Enrollment;
+import org.hyperledger.fabric.sdk.HFClient;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.User;
+import org.hyperledger.fabric.sdk.CollectionConfigPackage.CollectionConfig;
+import org.hyperledger.fabric.sdk.security.CryptoSuite;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import sdkwrapper.service.ChannelRoutingTable;
+
+/**
+ * Per request routing overhead of FabricServices, before and after the per channel routing tables.
+ *
+ * The channels are not connected, so the discovered chaincode name is supplied as a set, as returned by
+ * Channel.getDiscoveredChaincodeNames() after service discovery.
+ *
+ * @author tim
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class RoutingBenchmark
+{
+  @Param( { "2", "8" } )
+  public int orgPeerCount;
+
+  @Param( { "4", "16" } )
+  public int channelPeerCount;
+
+  private final String channelId = "bench-channel";
+
+  private Collection<Peer>                           orgPeers;
+  private Map<String, Channel>                       channels;
+  private Set<String>                                discoveredChaincodes;
+  private Map<String, Map<String, CollectionConfig>> collections;
+  private Map<String, ChannelRoutingTable>           routes;
+
+  @Setup
+  public void setup()
+    throws Exception
+  {
+    HFClient client = HFClient.createNewInstance();
+    client.setCryptoSuite( CryptoSuite.Factory.getCryptoSuite() );
+    client.setUserContext( new BenchUser() );
+
+    Channel channel = client.newChannel( channelId );
+
+    orgPeers = new ArrayList<Peer>();
+    for( int i = 0; i < channelPeerCount; i++ )
+    {
+      Peer peer = client.newPeer( "peer" + i, "grpc://peer" + i + ".example.com:7051" );
+      channel.addPeer( peer );
+
+      if( i < orgPeerCount )
+        orgPeers.add( client.newPeer( "peer" + i, "grpc://peer" + i + ".example.com:7051" ));
+    }
+
+    channels = new ConcurrentHashMap<String, Channel>();
+    channels.put( channelId, channel );
+
+    discoveredChaincodes = Collections.singleton( "bench-cc" );
+
+    collections = new ConcurrentHashMap<String, Map<String, CollectionConfig>>();
+    collections.put( channelId, new HashMap<String, CollectionConfig>() );
+
+    routes = new ConcurrentHashMap<String, ChannelRoutingTable>();
+    routes.put( channelId, new ChannelRoutingTable( channel, null, orgPeers, collections.get( channelId )));
+  }
+
+  /**
+   * Routing as performed on every request before the routing tables.
+   */
+  @Benchmark
+  public void perRequestRouting( Blackhole blackhole )
+  {
+    Channel channel = channels.get( channelId );
+
+    String              ccId               = discoveredChaincodes.iterator().next();
+    ChaincodeID.Builder chaincodeIDBuilder = ChaincodeID.newBuilder().setName( ccId );
+    ChaincodeID         chainCodeId        = chaincodeIDBuilder.build();
+    blackhole.consume( chainCodeId );
+
+    for( Peer peer : orgPeers )
+    {
+      Collection<Peer> queryPeer    = new ArrayList<Peer>();
+      Collection<Peer> channelPeers = channel.getPeers();
+
+      channelPeers.forEach( channelPeer ->
+      {
+        if( channelPeer.getUrl().compareTo( peer.getUrl() ) == 0 )
+          queryPeer.add( channelPeer );
+      });
+      blackhole.consume( queryPeer );
+    }
+
+    boolean inChannel = false;
+    if( collections.containsKey( channelId ))
+    {
+      if( collections.get( channelId ).containsKey( "collection" ))
+        inChannel = true;
+    }
+    blackhole.consume( inChannel );
+  }
+
+  /**
+   * Routing with the precomputed routing table.
+   */
+  @Benchmark
+  public void routingTable( Blackhole blackhole )
+  {
+    ChannelRoutingTable route = routes.get( channelId );
+
+    blackhole.consume( route.getChaincodeId()              );
+    blackhole.consume( route.getQueryPeers()               );
+    blackhole.consume( route.hasCollection( "collection" ) );
+  }
+
+
+  private static class BenchUser implements User
+  {
+    private final Enrollment enrollment;
+
+    BenchUser()
+      throws Exception
+    {
+      final PrivateKey key = KeyPairGenerator.getInstance( "EC" ).generateKeyPair().getPrivate();
+
+      enrollment = new Enrollment()
+      {
+        @Override public PrivateKey getKey()  { return key;    }
+        @Override public String     getCert() { return "cert"; }
+      };
+    }
+
+    @Override public String      getName()        { return "bench";         }
+    @Override public Set<String> getRoles()       { return null;            }
+    @Override public String      getAccount()     { return null;            }
+    @Override public String      getAffiliation() { return null;            }
+    @Override public Enrollment  getEnrollment()  { return enrollment;      }
+    @Override public String      getMspId()       { return "Org1MSP";       }
+  }
+}
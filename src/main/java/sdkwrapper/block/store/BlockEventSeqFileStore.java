@@ -22,22 +22,36 @@ public class BlockEventSeqFileStore implements BlockEventSeqStoreIF
   private final  Logger logger = LogManager.getLogger( BlockEventSeqFileStore.class );
   
   // filepath within the client app kube yaml file
-  private static final String         filePath     = "/usr/src/app/block-seq/block-pos.ser";
-  private static BlockEventSeqStoreIF instance     = null;
-  private static Map<String, Long>    persistedMap = null;
+  public  static final String         DEFAULT_FILE_PATH = "/usr/src/app/block-seq/block-pos.ser";
+  private static BlockEventSeqStoreIF instance          = null;
+  private static Map<String, Long>    persistedMap      = null;
   
+  private final String filePath;
   
-  private BlockEventSeqFileStore()
+  private BlockEventSeqFileStore( String filePath )
   {
-    // Do nothing
+    this.filePath = filePath;
   }
   
   public static BlockEventSeqStoreIF getInstance()
     throws BlockEventException
+  {
+    return getInstance( DEFAULT_FILE_PATH );
+  }
+
+  /**
+   * Obtain the store persisted to the file path. The path is only used by the first call as the store is a singleton.
+   * 
+   * @param filePath
+   * @return
+   * @throws BlockEventException
+   */
+  public static BlockEventSeqStoreIF getInstance( String filePath )
+    throws BlockEventException
   {
     if( instance == null )
     {
-      BlockEventSeqFileStore fileInstance = new BlockEventSeqFileStore();
+      BlockEventSeqFileStore fileInstance = new BlockEventSeqFileStore( filePath );
       
       persistedMap = fileInstance.readFile();
 
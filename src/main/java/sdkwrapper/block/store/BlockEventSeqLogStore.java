@@ -0,0 +1,473 @@
+package sdkwrapper.block.store;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import sdkwrapper.exceptions.BlockEventException;
+
+/**
+ * Block sequence store backed by a memory mapped append log and a snapshot file.
+ *
+ * Every position update appends a fixed size record (channel hash, seq number, generation, crc) to the log instead of
+ * rewriting the whole channel map. Callers updating positions concurrently share a single force() of the mapped log
+ * (group commit). When the log is full its contents are compacted into the snapshot and the log starts a new
+ * generation, so recovery only has to replay the records written since the last snapshot.
+ *
+ * The snapshot also holds the channel names, so the first position of a new channel forces a compaction. This only
+ * happens once per channel.
+ *
+ * @author tim
+ *
+ */
+public class BlockEventSeqLogStore implements BlockEventSeqStoreIF
+{
+  private static final Logger logger = LogManager.getLogger( BlockEventSeqLogStore.class );
+
+  // directory within the client app kube yaml file
+  public  static final String DEFAULT_DIRECTORY   = "/usr/src/app/block-seq";
+  public  static final int    DEFAULT_LOG_RECORDS = 65536;
+
+          static final String LOG_FILE         = "block-pos.log";
+  private static final String SNAPSHOT_FILE    = "block-pos.snap";
+  private static final int    SNAPSHOT_MAGIC   = 0x42534e50;  // "BSNP"
+  private static final int    SNAPSHOT_VERSION = 1;
+
+  // Record layout - channel hash (8), seq number (8), generation (4), crc of the preceding 20 bytes (4)
+          static final int    RECORD_SIZE      = 24;
+  private static final int    RECORD_CRC_LEN   = 20;
+
+  private static BlockEventSeqStoreIF instance = null;
+
+  private final File logFile;
+  private final File snapshotFile;
+  private final int  logCapacity;
+
+  private final Map<String, Long> positions = new ConcurrentHashMap<String, Long>();
+  private final Map<Long, String> hashes    = new ConcurrentHashMap<Long, String>();
+
+  private RandomAccessFile logAccess   = null;
+  private FileChannel      logChannel  = null;
+  private MappedByteBuffer logBuffer   = null;
+  private final ByteBuffer recordBuf   = ByteBuffer.allocate( RECORD_SIZE );
+  private final CRC32      recordCrc   = new CRC32();
+
+  // guarded by this
+  private int writePosition = 0;
+  private int generation    = 0;
+  private int replayed      = 0;
+
+  // group commit state - guarded by forceLock
+  private final    Object forceLock          = new Object();
+  private int             committedGeneration = 0;
+  private int             committedPosition   = 0;
+  private volatile int    snapshotGeneration  = 0;
+
+
+  private BlockEventSeqLogStore( String directory, int logRecords )
+  {
+    this.logFile      = new File( directory, LOG_FILE      );
+    this.snapshotFile = new File( directory, SNAPSHOT_FILE );
+    this.logCapacity  = logRecords * RECORD_SIZE;
+  }
+
+  public static BlockEventSeqStoreIF getInstance()
+    throws BlockEventException
+  {
+    return getInstance( DEFAULT_DIRECTORY, DEFAULT_LOG_RECORDS );
+  }
+
+  public static synchronized BlockEventSeqStoreIF getInstance( String directory, int logRecords )
+    throws BlockEventException
+  {
+    if( instance == null )
+    {
+      if( directory == null )
+        throw new BlockEventException( "null directory in BlockEventSeqLogStore.getInstance" );
+
+      if( logRecords <= 0 )
+        throw new BlockEventException( "invalid logRecords in BlockEventSeqLogStore.getInstance" );
+
+      instance = open( directory, logRecords );
+    }
+
+    return instance;
+  }
+
+  /**
+   * Open and recover a store of the directory outside of the singleton, as on a restart.
+   */
+  static BlockEventSeqLogStore open( String directory, int logRecords )
+    throws BlockEventException
+  {
+    BlockEventSeqLogStore logInstance = new BlockEventSeqLogStore( directory, logRecords );
+    logInstance.recover();
+
+    return logInstance;
+  }
+
+  /**
+   * Make the log durable and close it. The singleton is released, so a later getInstance recovers the store again.
+   */
+  public void shutdown()
+  {
+    synchronized( BlockEventSeqLogStore.class )
+    {
+      if( instance == this )
+        instance = null;
+    }
+
+    try
+    {
+      synchronized( this )
+      {
+        logBuffer.force();
+        close();
+      }
+    }
+    catch( IOException e )
+    {
+      logger.error( "Error closing the block position log " + logFile + ". Error = " + e.getMessage() );
+    }
+  }
+
+  /**
+   * Close the log file. The store must not be used once closed.
+   */
+  synchronized void close()
+    throws IOException
+  {
+    logChannel.close();
+    logAccess.close();
+  }
+
+  /**
+   * @return the log records replayed on recovery
+   */
+  synchronized int getReplayedRecords()
+  {
+    return replayed;
+  }
+
+  @Override
+  public long getCurrentSequenceNumber( String channelId )
+    throws BlockEventException
+  {
+    if( channelId == null )
+      throw new BlockEventException( "Null channelId" );
+
+    Long seq = positions.get( channelId );
+    if( seq != null )
+      return seq;
+
+    putBlockSeqNumber( channelId, 0L );
+    return 0L;
+  }
+
+  @Override
+  public void putBlockSeqNumber( String channelId, long seqNumber )
+    throws BlockEventException
+  {
+    if( channelId == null )
+      throw new BlockEventException( "null channelId in BlockEventSeqLogStore.putBlockSeqNumber" );
+
+    if( seqNumber < 0 )
+      throw new BlockEventException( "invalid seqNumber in BlockEventSeqLogStore.putBlockSeqNumber" );
+
+    int recordGeneration = 0;
+    int recordEnd        = 0;
+
+    synchronized( this )
+    {
+      Long seq = positions.get( channelId );
+      if( seq != null && seqNumber <= seq )
+        return;
+
+      positions.put( channelId, seqNumber );
+
+      if( seq == null )
+      {
+        // New channels must be recorded in the snapshot so that their log records can be resolved on recovery.
+        registerChannel( channelId );
+        compact();
+        logger.info( "Channel " + channelId + " block seq number processed initialized to " + seqNumber );
+        return;
+      }
+
+      if( writePosition + RECORD_SIZE > logCapacity )
+      {
+        compact();
+        return;
+      }
+
+      appendRecord( hashChannel( channelId ), seqNumber );
+
+      recordGeneration = generation;
+      recordEnd        = writePosition;
+    }
+
+    commit( recordGeneration, recordEnd );
+    logger.debug( "Channel " + channelId + " block seq number processed updated to " + seqNumber );
+  }
+
+  /**
+   * Make the log durable up to at least the end of the caller's record. The first caller in performs the force() on
+   * behalf of every record appended so far; callers whose record was covered by that force (or by a later snapshot)
+   * return without forcing again.
+   */
+  private void commit( int recordGeneration, int recordEnd )
+  {
+    synchronized( forceLock )
+    {
+      if( recordGeneration < snapshotGeneration )
+        return;
+
+      if( recordGeneration == committedGeneration && recordEnd <= committedPosition )
+        return;
+
+      int targetGeneration = 0;
+      int targetPosition   = 0;
+      synchronized( this )
+      {
+        targetGeneration = generation;
+        targetPosition   = writePosition;
+      }
+
+      logBuffer.force();
+
+      committedGeneration = targetGeneration;
+      committedPosition   = targetPosition;
+    }
+  }
+
+  private void appendRecord( long channelHash, long seqNumber )
+  {
+    recordBuf.clear();
+    recordBuf.putLong( channelHash );
+    recordBuf.putLong( seqNumber   );
+    recordBuf.putInt(  generation  );
+
+    recordCrc.reset();
+    recordCrc.update( recordBuf.array(), 0, RECORD_CRC_LEN );
+    recordBuf.putInt( (int) recordCrc.getValue() );
+
+    logBuffer.position( writePosition );
+    logBuffer.put( recordBuf.array(), 0, RECORD_SIZE );
+    writePosition += RECORD_SIZE;
+  }
+
+  /**
+   * Write every current position into a new snapshot and start a new log generation. Records of older generations
+   * remaining in the log are ignored on recovery. Must be called holding the instance lock.
+   */
+  private void compact()
+    throws BlockEventException
+  {
+    int nextGeneration = generation + 1;
+
+    writeSnapshot( nextGeneration );
+
+    generation         = nextGeneration;
+    writePosition      = 0;
+    snapshotGeneration = nextGeneration;
+
+    logger.info( "Block seq log compacted into snapshot generation " + nextGeneration + " for " + positions.size() + " channels." );
+  }
+
+  private void registerChannel( String channelId )
+    throws BlockEventException
+  {
+    long   channelHash = hashChannel( channelId );
+    String existing    = hashes.putIfAbsent( channelHash, channelId );
+
+    if( existing != null && existing.compareTo( channelId ) != 0 )
+    {
+      positions.remove( channelId );
+      final String msg = "Channel id hash collision between " + existing + " and " + channelId + " in BlockEventSeqLogStore";
+      logger.error( msg );
+      throw new BlockEventException( msg );
+    }
+  }
+
+  private void recover()
+    throws BlockEventException
+  {
+    try
+    {
+      File directory = logFile.getParentFile();
+      if( directory != null && !directory.exists() )
+        directory.mkdirs();
+
+      readSnapshot();
+
+      logAccess  = new RandomAccessFile( logFile, "rw" );
+      logChannel = logAccess.getChannel();
+      logBuffer  = logChannel.map( FileChannel.MapMode.READ_WRITE, 0, logCapacity );
+    }
+    catch( IOException e )
+    {
+      final String msg = "Error opening BlockEventSeqLogStore. Error = " + e.getMessage();
+      logger.error( msg );
+      throw new BlockEventException( msg );
+    }
+
+    // Replay the tail of the log. Only records written since the last snapshot carry the current generation, so the
+    // scan stops at the first record which is torn, stale or was never written.
+    byte[] record = new byte[RECORD_SIZE];
+
+    while( writePosition + RECORD_SIZE <= logCapacity )
+    {
+      logBuffer.position( writePosition );
+      logBuffer.get( record );
+
+      ByteBuffer buf = ByteBuffer.wrap( record );
+      long channelHash = buf.getLong();
+      long seqNumber   = buf.getLong();
+      int  recordGen   = buf.getInt();
+      int  crc         = buf.getInt();
+
+      recordCrc.reset();
+      recordCrc.update( record, 0, RECORD_CRC_LEN );
+
+      if( crc != (int) recordCrc.getValue() || recordGen != generation )
+        break;
+
+      String channelId = hashes.get( channelHash );
+      if( channelId != null )
+      {
+        Long seq = positions.get( channelId );
+        if( seq == null || seqNumber > seq )
+          positions.put( channelId, seqNumber );
+      }
+      else
+      {
+        logger.warn( "Block seq log record for unknown channel hash " + channelHash + " ignored." );
+      }
+
+      writePosition += RECORD_SIZE;
+      replayed++;
+    }
+
+    committedGeneration = generation;
+    committedPosition   = writePosition;
+    snapshotGeneration  = generation;
+
+    logger.info( "BlockEventSeqLogStore recovered " + positions.size() + " channels from snapshot generation " + generation + " and " + replayed + " log records." );
+  }
+
+  private void readSnapshot()
+    throws BlockEventException
+  {
+    if( !snapshotFile.exists() || snapshotFile.isDirectory() )
+      return;
+
+    try( CheckedInputStream cis = new CheckedInputStream( new FileInputStream( snapshotFile ), new CRC32() );
+         DataInputStream    dis = new DataInputStream( cis ))
+    {
+      if( dis.readInt() != SNAPSHOT_MAGIC || dis.readInt() != SNAPSHOT_VERSION )
+        throw new BlockEventException( "Invalid BlockEventSeqLogStore snapshot file " + snapshotFile.getPath() );
+
+      int snapGeneration = dis.readInt();
+      int count          = dis.readInt();
+
+      for( int i = 0; i < count; i++ )
+      {
+        String channelId = dis.readUTF();
+        long   seqNumber = dis.readLong();
+
+        positions.put( channelId, seqNumber );
+        hashes.put( hashChannel( channelId ), channelId );
+      }
+
+      long expected = cis.getChecksum().getValue();
+      if( dis.readLong() != expected )
+        throw new BlockEventException( "Checksum mismatch in BlockEventSeqLogStore snapshot file " + snapshotFile.getPath() );
+
+      generation = snapGeneration;
+    }
+    catch( IOException e )
+    {
+      final String msg = "Error reading BlockEventSeqLogStore snapshot. Error = " + e.getMessage();
+      logger.error( msg );
+      throw new BlockEventException( msg );
+    }
+  }
+
+  private void writeSnapshot( int snapGeneration )
+    throws BlockEventException
+  {
+    File tmpFile = new File( snapshotFile.getPath() + ".tmp" );
+
+    try
+    {
+      try( FileOutputStream    fos = new FileOutputStream( tmpFile );
+           CheckedOutputStream cos = new CheckedOutputStream( fos, new CRC32() );
+           DataOutputStream    dos = new DataOutputStream( cos ))
+      {
+        dos.writeInt( SNAPSHOT_MAGIC   );
+        dos.writeInt( SNAPSHOT_VERSION );
+        dos.writeInt( snapGeneration   );
+        dos.writeInt( positions.size() );
+
+        for( Map.Entry<String, Long> entry : positions.entrySet() )
+        {
+          dos.writeUTF(  entry.getKey()   );
+          dos.writeLong( entry.getValue() );
+        }
+
+        dos.writeLong( cos.getChecksum().getValue() );
+        dos.flush();
+        fos.getFD().sync();
+      }
+
+      Files.move( tmpFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+      // The rename is only durable once the directory entry is. The log of the old generation is overwritten after
+      // this returns, so a crash must not be able to bring back the previous snapshot.
+      try( FileChannel dir = FileChannel.open( snapshotFile.getAbsoluteFile().getParentFile().toPath(), StandardOpenOption.READ ))
+      {
+        dir.force( true );
+      }
+    }
+    catch( IOException e )
+    {
+      final String msg = "Error writing BlockEventSeqLogStore snapshot. Error = " + e.getMessage();
+      logger.error( msg );
+      throw new BlockEventException( msg );
+    }
+  }
+
+  /**
+   * 64 bit FNV-1a hash of the channel id.
+   */
+  private static long hashChannel( String channelId )
+  {
+    long hash = 0xcbf29ce484222325L;
+    for( byte b : channelId.getBytes( StandardCharsets.UTF_8 ))
+    {
+      hash ^= ( b & 0xff );
+      hash *= 0x100000001b3L;
+    }
+
+    return hash;
+  }
+}
@@ -35,5 +35,63 @@ public interface ConfigKeysIF
   public static final String ZK_SNAPSHOT_DIR  = "zk.snapshot.dir";
   public static final String ZK_LOGFILE_DIR   = "zk.logfile.dir";
   public static final String ZK_TICK_TIME     = "zk.tick.time";
+
+  public static final String BLOCK_SEQ_STORE       = "block.seq.store";        // file (default) or log
+  public static final String BLOCK_SEQ_DIR         = "block.seq.dir";
+  public static final String BLOCK_SEQ_LOG_RECORDS = "block.seq.log.records";
+
+  public static final String BLOCK_PROCESSOR_MODE        = "block.processor.mode";   // direct (default), pipeline or channel
+  public static final String BLOCK_MATERIALIZATION       = "block.materialization";  // eager (default) or lazy
+  public static final String BLOCK_DECODE_THRESHOLD      = "block.decode.parallel.threshold";  // 0 (default) disables
+  public static final String BLOCK_DECODE_PARALLELISM    = "block.decode.parallelism";
+  public static final String PIPELINE_QUEUE_SIZE         = "block.pipeline.queue.size";
+  public static final String PIPELINE_DECODE_WORKERS     = "block.pipeline.decode.workers";
+  public static final String PIPELINE_TRANSFORM_WORKERS  = "block.pipeline.transform.workers";
+  public static final String PIPELINE_DISPATCH_WORKERS   = "block.pipeline.dispatch.workers";
+  public static final String PIPELINE_CHECKPOINT_WORKERS = "block.pipeline.checkpoint.workers";
+  public static final String BLOCK_CATCHUP               = "block.catchup";          // false (default) or true
+  public static final String BLOCK_CATCHUP_BATCH_SIZE    = "block.catchup.batch.size";
+  public static final String BLOCK_CATCHUP_THREADS       = "block.catchup.threads";
+  public static final String BLOCK_REORDER_CAPACITY      = "block.reorder.capacity";
+  public static final String BLOCK_EVENT_MODE            = "block.event.mode";       // full (default) or filtered
+  public static final String BLOCK_EVENT_SOURCES         = "block.event.sources";    // 1 (default) or more
+  public static final String BLOCK_DEDUP_WINDOW          = "block.dedup.window";
+  public static final String CHANNEL_DISPATCH_THREADS    = "block.channel.threads";
+  public static final String CHANNEL_DISPATCH_QUEUE_SIZE = "block.channel.queue.size";
+
+  // Per channel overrides, keyed by CHANNEL_PREFIX + channel id + suffix. e.g. channel.mychannel.event.mode
+  public static final String CHANNEL_PREFIX            = "channel.";
+  public static final String CHANNEL_EVENT_MODE_SUFFIX = ".event.mode";      // full or filtered, defaults to block.event.mode
+
+  public static final String SUBMIT_WINDOW_SIZE    = "submit.window.size";
+  public static final String SUBMIT_BACKPRESSURE   = "submit.backpressure";    // block (default), reject or queue
+  public static final String SUBMIT_QUEUE_SIZE     = "submit.queue.size";
+  public static final String SUBMIT_WORKERS        = "submit.workers";
+  public static final String SUBMIT_BATCH_SIZE     = "submit.batch.size";      // 1 (default) disables batching
+  public static final String SUBMIT_BATCH_DELAY_MS = "submit.batch.delay.ms";
+  public static final String COMMIT_REGISTRY       = "commit.registry";        // false (default) or true
+  public static final String COMMIT_TIMEOUT_MS     = "commit.timeout.ms";      // defaults to invoke.wait.time.ms
+  public static final String COMMIT_TICK_MS        = "commit.tick.ms";         // timing wheel resolution
+  public static final String INVOKE_WAIT_TIME_MS   = "invoke.wait.time.ms";    // proposal wait time, default 120000
+
+  public static final String CHANNEL_REFRESH_WAIT_MS = "channel.refresh.wait.ms";  // wait on a channel refresh before retrying
+  public static final String CHANNEL_DRAIN_MS        = "channel.drain.ms";         // replaced channel close timeout
+
+  public static final String QUERY_CACHE_SIZE   = "query.cache.size";          // 0 (default) disables the cache
+  public static final String QUERY_CACHE_TTL_MS = "query.cache.ttl.ms";
+  public static final String QUERY_CACHE_MODE   = "query.cache.invalidation";  // coarse (default) or fine
+
+  public static final String QUERY_MODE           = "query.mode";              // sequential (default), parallel or hedged
+  public static final String QUERY_HEDGE_DELAY_MS = "query.hedge.delay.ms";
+  public static final String QUERY_THREADS        = "query.threads";
+
+  public static final String ENDORSEMENT_MODE           = "endorsement.mode";           // all (default) or hedged
+  public static final String ENDORSEMENT_HEDGE_DELAY_MS = "endorsement.hedge.delay.ms";
+  public static final String ENDORSEMENT_SPARES         = "endorsement.spares";         // spare proposals, default 1
+  public static final String ENDORSEMENT_THREADS        = "endorsement.threads";
+  public static final String ENDORSEMENT_SELECTOR       = "endorsement.selector";       // random (default) or latency
+  public static final String ENDORSEMENT_RECOVERY_MS    = "endorsement.recovery.ms";    // age at which peer stats are retried
+
+  public static final String CODEC_LOG_MAX_LENGTH = "codec.log.max.length";    // payload chars logged at DEBUG, 0 disables
   
 }
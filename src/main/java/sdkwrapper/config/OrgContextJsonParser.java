@@ -29,6 +29,7 @@ import com.google.gson.stream.JsonReader;
 
 import sdkwrapper.exceptions.ConfigurationException;
 import sdkwrapper.fabric.policy.EndorsementPolicyIF;
+import sdkwrapper.fabric.policy.SignatureEndorsementPolicy;
 import sdkwrapper.service.FabricServices;
 import sdkwrapper.vo.config.ChainCodeInfo;
 import sdkwrapper.vo.config.ChainCodeVO;
@@ -127,14 +128,15 @@ public class OrgContextJsonParser
     // Process Chaincodes
     for( ChainCodeVO code : context.getChainCodes() )
     {
-      if( code == null || code.getEndorsementPolicyName() == null )
+      if( code == null || ( code.getEndorsementPolicyName() == null && code.getEndorsementPolicy() == null ))
       {
         final String msg = "No Endorsement Policy found for " + code.getChainCodeName() + "; Fatal Error. Stopping service.";
         logger.error( msg );
         throw new ConfigurationException( msg );
       }
       
-      ChainCodeInfo info = new ChainCodeInfo( code, instantiatePolicy( code.getEndorsementPolicyName() ));
+      EndorsementPolicyIF policy = ( code.getEndorsementPolicy() != null ) ? compilePolicy( code ) : instantiatePolicy( code.getEndorsementPolicyName() );
+      ChainCodeInfo       info   = new ChainCodeInfo( code, policy );
       
       service.getChainCodes().put( code.getChainCodeName(), info );
     }
@@ -212,6 +214,21 @@ public class OrgContextJsonParser
     return peerVO;
   }
   
+  private static EndorsementPolicyIF compilePolicy( ChainCodeVO code )
+   throws ConfigurationException
+  {
+    try
+    {
+      return SignatureEndorsementPolicy.compile( code.getEndorsementPolicy() );
+    }
+    catch( IllegalArgumentException e )
+    {
+      final String msg = "Invalid Endorsement Policy for " + code.getChainCodeName() + ". Error = " + e.getMessage();
+      logger.error( msg );
+      throw new ConfigurationException( msg );
+    }
+  }
+
   private static EndorsementPolicyIF instantiatePolicy( String className )
    throws ConfigurationException
   {
@@ -0,0 +1,334 @@
+package sdkwrapper.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import org.hyperledger.fabric.sdk.BlockInfo;
+
+import sdkwrapper.exceptions.BlockEventException;
+
+/**
+ * Sequences the live blocks of each channel for the BlockEventProcessorImpl and closes any gaps in them.
+ *
+ * A live block which is the next block of the channel is processed immediately. When a live block is ahead of the next
+ * block a gap is detected:
+ *    - the live block, and any later live blocks, are held in the channel's BlockReorderBuffer.
+ *    - a catch up task fetches the missing blocks from the BlockSourceIF in batches, with the blocks of a batch queried
+ *      in parallel, and processes them in block order.
+ *    - once the gap is closed the buffered live blocks are released in order.
+ *
+ * Live blocks beyond the reorder buffer window are spilled. They are not held in memory and are fetched again by the
+ * catch up task once the blocks before them have been processed. Blocks received from several event sources, or after
+ * a reconnect, are released to processing strictly in block order either way. If a fetch fails the catch up stops and
+ * is restarted by the next live block of the channel.
+ *
+ * Blocks of a channel are processed while holding the channel's lock, so they are never processed concurrently or out
+ * of order. Fetching is done without the lock.
+ *
+ * @author tim
+ *
+ */
+public class BlockCatchUpEngine
+{
+  private static Logger logger = LogManager.getLogger( BlockCatchUpEngine.class );
+
+  private final BlockEventProcessorImpl processor;
+  private final BlockSourceIF           source;
+  private final int                     batchSize;
+  private final int                     bufferCapacity;
+  private final ExecutorService         fetchExecutor;
+  private final ExecutorService         catchUpExecutor;
+
+  private final Map<String, ChannelSequence> channels = new ConcurrentHashMap<String, ChannelSequence>();
+
+  private final AtomicLong gapsDetected  = new AtomicLong();
+  private final AtomicLong blocksFetched = new AtomicLong();
+  private final AtomicLong blocksSpilled = new AtomicLong();
+
+  /**
+   * @param processor      - processes the blocks in order
+   * @param source         - provides the missing blocks
+   * @param batchSize      - blocks fetched in parallel per batch
+   * @param fetchThreads   - threads for querying blocks
+   * @param bufferCapacity - reorder buffer window per channel, in blocks
+   */
+  public BlockCatchUpEngine( BlockEventProcessorImpl processor, BlockSourceIF source, int batchSize, int fetchThreads, int bufferCapacity )
+  {
+    this.processor      = processor;
+    this.source         = source;
+    this.batchSize      = Math.max( 1, batchSize );
+    this.bufferCapacity = Math.max( 1, bufferCapacity );
+
+    final AtomicInteger count = new AtomicInteger();
+    this.fetchExecutor = Executors.newFixedThreadPool( Math.max( 1, fetchThreads ), r ->
+    {
+      Thread thread = new Thread( r, "block-fetch-" + count.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    });
+
+    this.catchUpExecutor = Executors.newCachedThreadPool( r ->
+    {
+      Thread thread = new Thread( r, "block-catchup" );
+      thread.setDaemon( true );
+      return thread;
+    });
+
+    logger.info( "BlockCatchUpEngine created. Batch size = " + this.batchSize + ", fetch threads = " + fetchThreads + ", buffer capacity = " + this.bufferCapacity );
+  }
+
+  public long getGapsDetected()  { return gapsDetected.get();  }
+  public long getBlocksFetched() { return blocksFetched.get(); }
+  public long getBlocksSpilled() { return blocksSpilled.get(); }
+
+  /**
+   * @param channelId
+   * @return live blocks of the channel currently held in the reorder buffer
+   */
+  public int getBufferedCount( String channelId )
+  {
+    ChannelSequence seq = channels.get( channelId );
+    if( seq == null )
+      return 0;
+
+    synchronized( seq )
+    {
+      return seq.buffer.size();
+    }
+  }
+
+  /**
+   * @param channelId
+   * @return the largest distance of a live block ahead of the next block of the channel since start up
+   */
+  public long getMaxReorderDistance( String channelId )
+  {
+    ChannelSequence seq = channels.get( channelId );
+    if( seq == null )
+      return 0;
+
+    synchronized( seq )
+    {
+      return seq.buffer.getMaxReorderDistance();
+    }
+  }
+
+  /**
+   * @param channelId
+   * @return true while a gap of the channel is being closed
+   */
+  public boolean isCatchingUp( String channelId )
+  {
+    ChannelSequence seq = channels.get( channelId );
+    if( seq == null )
+      return false;
+
+    synchronized( seq )
+    {
+      return seq.catchingUp;
+    }
+  }
+
+  /**
+   * Process the live block now if it is the next block of the channel, otherwise buffer it and close the gap.
+   *
+   * @param channelId
+   * @param block
+   */
+  public void onLiveBlock( String channelId, BlockInfo block )
+  {
+    ChannelSequence seq         = channels.computeIfAbsent( channelId, id -> new ChannelSequence( id, processor.getCheckpoint( id )));
+    long            blockNumber = block.getBlockNumber();
+
+    synchronized( seq )
+    {
+      // Nothing checkpointed for the channel. Start from the first block received.
+      if( seq.next < 0 )
+        seq.next = blockNumber;
+
+      if( blockNumber < seq.next || seq.buffer.contains( blockNumber ))
+      {
+        logger.info( "Received duplicate block which has already been processed or is buffered. Duplicate block number = " + blockNumber );
+        return;
+      }
+
+      seq.highestSeen = Math.max( seq.highestSeen, blockNumber );
+
+      if( blockNumber == seq.next && !seq.catchingUp )
+      {
+        process( seq, block );
+        releaseBuffered( seq );
+        return;
+      }
+
+      if( !seq.buffer.offer( block, seq.next ))
+      {
+        blocksSpilled.incrementAndGet();
+        if( logger.isDebugEnabled() )
+          logger.debug( "Block " + blockNumber + " of channel " + channelId + " is beyond the reorder buffer. It will be fetched by catch up." );
+      }
+
+      if( !seq.catchingUp )
+      {
+        seq.catchingUp = true;
+        gapsDetected.incrementAndGet();
+        logger.warn( "Gap detected on channel " + channelId + ". Expected block " + seq.next + ", received block " + blockNumber + ". Starting catch up." );
+
+        catchUpExecutor.execute( () -> catchUp( seq ));
+      }
+    }
+  }
+
+  public void shutdown()
+  {
+    catchUpExecutor.shutdownNow();
+    fetchExecutor.shutdownNow();
+  }
+
+  /**
+   * Fetch and process the missing blocks of the channel until the gap is closed and the buffer has been released.
+   */
+  private void catchUp( ChannelSequence seq )
+  {
+    try
+    {
+      while( true )
+      {
+        long from = 0;
+        long to   = 0;
+
+        synchronized( seq )
+        {
+          releaseBuffered( seq );
+
+          long first  = seq.buffer.firstFrom( seq.next );
+          long gapEnd = ( first < 0 ) ? seq.highestSeen : first - 1;
+          if( gapEnd < seq.next )
+          {
+            seq.catchingUp = false;
+            logger.info( "Catch up complete for channel " + seq.channelId + ". Next block = " + seq.next );
+            return;
+          }
+
+          from = seq.next;
+          to   = Math.min( gapEnd, from + batchSize - 1 );
+        }
+
+        List<BlockInfo> blocks = fetch( seq.channelId, from, to );
+
+        synchronized( seq )
+        {
+          for( BlockInfo block : blocks )
+          {
+            if( block.getBlockNumber() == seq.next )
+            {
+              process( seq, block );
+              blocksFetched.incrementAndGet();
+            }
+          }
+
+          if( seq.next == from )
+            throw new BlockEventException( "Fetched blocks " + from + " to " + to + " did not contain block " + from );
+        }
+      }
+    }
+    catch( BlockEventException | RuntimeException e )
+    {
+      logger.error( "Catch up failed for channel " + seq.channelId + ". Catch up will restart with the next live block. Error = " + e.getMessage() );
+      synchronized( seq )
+      {
+        seq.catchingUp = false;
+      }
+    }
+  }
+
+  /**
+   * Query the blocks from..to in parallel.
+   *
+   * @return the blocks in block order
+   */
+  private List<BlockInfo> fetch( String channelId, long from, long to )
+    throws BlockEventException
+  {
+    List<Future<BlockInfo>> futures = new ArrayList<Future<BlockInfo>>( (int) ( to - from + 1 ));
+    for( long blockNumber = from; blockNumber <= to; blockNumber++ )
+    {
+      final long number = blockNumber;
+      futures.add( fetchExecutor.submit( () -> source.queryBlock( channelId, number )));
+    }
+
+    List<BlockInfo> blocks = new ArrayList<BlockInfo>( futures.size() );
+    try
+    {
+      for( Future<BlockInfo> future : futures )
+        blocks.add( future.get() );
+    }
+    catch( ExecutionException e )
+    {
+      throw new BlockEventException( "Unable to fetch blocks " + from + " to " + to + " on channel " + channelId + ". Error = " + e.getCause().getMessage() );
+    }
+    catch( InterruptedException e )
+    {
+      Thread.currentThread().interrupt();
+      throw new BlockEventException( "Interrupted fetching blocks " + from + " to " + to + " on channel " + channelId );
+    }
+    finally
+    {
+      for( Future<BlockInfo> future : futures )
+        future.cancel( true );
+    }
+
+    return blocks;
+  }
+
+  /**
+   * Release the buffered blocks which follow on from the last processed block. Called holding the channel lock.
+   */
+  private void releaseBuffered( ChannelSequence seq )
+  {
+    BlockInfo block = null;
+    while(( block = seq.buffer.remove( seq.next )) != null )
+      process( seq, block );
+  }
+
+  /**
+   * Called holding the channel lock. A live copy of a fetched block buffered during the fetch is discarded.
+   */
+  private void process( ChannelSequence seq, BlockInfo block )
+  {
+    processor.processBlock( seq.channelId, block );
+    seq.next = block.getBlockNumber() + 1;
+    seq.buffer.remove( block.getBlockNumber() );
+  }
+
+
+  /**
+   * Sequencing state of a channel. Guarded by itself.
+   */
+  private class ChannelSequence
+  {
+    final String             channelId;
+    final BlockReorderBuffer buffer = new BlockReorderBuffer( bufferCapacity );
+
+    long    next;
+    long    highestSeen = -1L;
+    boolean catchingUp  = false;
+
+    ChannelSequence( String channelId, long checkpoint )
+    {
+      this.channelId = channelId;
+      this.next      = ( checkpoint < 0 ) ? -1L : checkpoint + 1;
+    }
+  }
+}
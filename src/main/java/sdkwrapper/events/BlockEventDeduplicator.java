@@ -0,0 +1,161 @@
+package sdkwrapper.events;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import org.hyperledger.fabric.sdk.BlockEvent;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import sdkwrapper.block.listener.FabricBlockListener;
+
+/**
+ * Merges the block events of a channel received from several event source peers. The first copy of each block, by
+ * channel, block number and data hash, is forwarded to the block processor and later copies are dropped.
+ *
+ * The blocks seen recently are held per channel in a window of block numbers, with the data hash of each. A copy of a
+ * block older than the window is dropped, as the block processor has already seen it. A copy whose data hash differs
+ * from the first copy is dropped and logged as an error, as the peers disagree on the block.
+ *
+ * @author tim
+ *
+ */
+public class BlockEventDeduplicator implements BlockEventProcessorIF
+{
+  private static Logger logger = LogManager.getLogger( BlockEventDeduplicator.class );
+
+  private static final long EMPTY = -1L;
+
+  private final BlockEventProcessorIF       processor;
+  private final int                         window;
+  private final Map<String, ChannelHistory> channels = new ConcurrentHashMap<String, ChannelHistory>();
+
+  private final AtomicLong forwarded  = new AtomicLong();
+  private final AtomicLong duplicates = new AtomicLong();
+  private final AtomicLong conflicts  = new AtomicLong();
+
+  /**
+   * @param processor - receives the first copy of each block
+   * @param window    - recent blocks remembered per channel
+   */
+  public BlockEventDeduplicator( BlockEventProcessorIF processor, int window )
+  {
+    this.processor = processor;
+    this.window    = Math.max( 1, window );
+
+    logger.info( "BlockEventDeduplicator created. Window = " + this.window );
+  }
+
+  public long getForwardedCount() { return forwarded.get();  }
+  public long getDuplicateCount() { return duplicates.get(); }
+  public long getConflictCount()  { return conflicts.get();  }
+
+  @Override
+  public void processBlockTransactions( BlockEvent blockEvent )
+  {
+    String channelId = null;
+    try
+    {
+      channelId = blockEvent.getChannelId();
+    }
+    catch( InvalidProtocolBufferException e )
+    {
+      logger.error( "ProtocolBufferException obtaining channel of block " + blockEvent.getBlockNumber() + ". Error = " + e.getMessage() );
+      return;
+    }
+
+    ChannelHistory history = channels.computeIfAbsent( channelId, id -> new ChannelHistory() );
+    if( !history.firstCopy( channelId, blockEvent ))
+      return;
+
+    forwarded.incrementAndGet();
+    processor.processBlockTransactions( blockEvent );
+  }
+
+  @Override
+  public void listenerError( String channelName, FabricBlockListener listener, BlockEvent blockEvent, InvalidProtocolBufferException e )
+  {
+    processor.listenerError( channelName, listener, blockEvent, e );
+  }
+
+  @Override
+  public void addBlockObserver( BlockObserverIF observer )
+  {
+    processor.addBlockObserver( observer );
+  }
+
+  @Override
+  public void shutdown()
+  {
+    processor.shutdown();
+  }
+
+  private static String peerName( BlockEvent blockEvent )
+  {
+    return ( blockEvent.getPeer() == null ) ? "unknown" : blockEvent.getPeer().getName();
+  }
+
+
+  /**
+   * The block numbers and data hashes of the recent blocks of a channel, held in slot blockNumber % window.
+   */
+  private class ChannelHistory
+  {
+    final long[]   numbers = new long[window];
+    final byte[][] hashes  = new byte[window][];
+
+    long highest = EMPTY;
+
+    ChannelHistory()
+    {
+      Arrays.fill( numbers, EMPTY );
+    }
+
+    /**
+     * @return true when this is the first copy of the block, which is then recorded
+     */
+    synchronized boolean firstCopy( String channelId, BlockEvent blockEvent )
+    {
+      long   blockNumber = blockEvent.getBlockNumber();
+      byte[] dataHash    = blockEvent.getDataHash();
+      int    slot        = (int) ( blockNumber % window );
+
+      if( numbers[slot] == blockNumber )
+      {
+        if( Arrays.equals( hashes[slot], dataHash ))
+        {
+          duplicates.incrementAndGet();
+          if( logger.isDebugEnabled() )
+            logger.debug( "Dropped duplicate block " + blockNumber + " of channel " + channelId + " from peer " + peerName( blockEvent ));
+        }
+        else
+        {
+          conflicts.incrementAndGet();
+          logger.error( "Block " + blockNumber + " of channel " + channelId + " from peer " + peerName( blockEvent ) + " has a different data hash to the copy already received. Block dropped." );
+        }
+
+        return false;
+      }
+
+      if( highest != EMPTY && blockNumber <= highest - window )
+      {
+        duplicates.incrementAndGet();
+        if( logger.isDebugEnabled() )
+          logger.debug( "Dropped block " + blockNumber + " of channel " + channelId + " from peer " + peerName( blockEvent ) + " older than the dedup window." );
+
+        return false;
+      }
+
+      numbers[slot] = blockNumber;
+      hashes[slot]  = dataHash;
+      highest       = Math.max( highest, blockNumber );
+
+      return true;
+    }
+  }
+}
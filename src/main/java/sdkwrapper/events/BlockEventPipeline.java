@@ -0,0 +1,375 @@
+package sdkwrapper.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import sdkwrapper.block.listener.FabricBlockListener;
+import sdkwrapper.vo.transaction.BlockEventInfo;
+
+/**
+ * Asynchronous block processing pipeline which is placed between the FabricBlockListener and the BlockEventProcessorImpl.
+ *
+ * Block events are handed off by the SDK event thread and then move through 4 stages:
+ *    decode     - parse the transaction envelopes within the block
+ *    transform  - build the BlockEventInfo
+ *    dispatch   - process the transactions
+ *    checkpoint - record the block as processed within the BlockEventSeqStoreIF
+ *
+ * Each stage has a configurable number of workers, each with its own bounded queue. A channel is always assigned to
+ * the same worker within a stage, so blocks of a channel are processed in order while different channels proceed in
+ * parallel. When a queue is full the submitting thread blocks, which pushes back on the peer event stream rather than
+ * buffering without limit.
+ *
+ * Since blocks of a channel reach the checkpoint stage in order, the checkpoint only advances once all earlier blocks
+ * of the channel have been processed. A stage which fails on a block retries it up to RETRY_ATTEMPTS times. If it still
+ * fails the remaining stages are skipped and the block is checkpointed, as BlockEventProcessorImpl does when processing
+ * directly, so the later blocks of the channel continue. Such blocks are counted by getFailedBlockCount.
+ *
+ * @author tim
+ *
+ */
+public class BlockEventPipeline implements BlockEventProcessorIF
+{
+  private static Logger logger = LogManager.getLogger( BlockEventPipeline.class );
+
+  private static final int  RETRY_ATTEMPTS = 3;
+  private static final long RETRY_DELAY_MS = 200;
+
+  private final BlockEventProcessorImpl processor;
+  private final Stage                   decodeStage;
+  private final Stage                   transformStage;
+  private final Stage                   dispatchStage;
+  private final Stage                   checkpointStage;
+
+  // Highest block number accepted into the pipeline per channel. Blocks in flight are not yet checkpointed so the
+  // seq store alone can not detect their duplicates.
+  private final Map<String, Long> acceptedSeqNumbers = new ConcurrentHashMap<String, Long>();
+
+  private final AtomicLong    failedBlocks = new AtomicLong();
+  private final AtomicInteger inFlight     = new AtomicInteger();
+
+  /**
+   * @param processor         - provides the stage implementations
+   * @param queueSize         - capacity of each worker queue
+   * @param decodeWorkers
+   * @param transformWorkers
+   * @param dispatchWorkers
+   * @param checkpointWorkers
+   */
+  public BlockEventPipeline( BlockEventProcessorImpl processor, int queueSize, int decodeWorkers, int transformWorkers, int dispatchWorkers, int checkpointWorkers )
+  {
+    this.processor = processor;
+
+    checkpointStage = new Stage( "checkpoint", checkpointWorkers, queueSize, null            ) { void process( BlockWork work ) { checkpoint( work ); }};
+    dispatchStage   = new Stage( "dispatch",   dispatchWorkers,   queueSize, checkpointStage ) { void process( BlockWork work ) { dispatch(   work ); }};
+    transformStage  = new Stage( "transform",  transformWorkers,  queueSize, dispatchStage   ) { void process( BlockWork work ) throws InvalidProtocolBufferException { transform( work ); }};
+    decodeStage     = new Stage( "decode",     decodeWorkers,     queueSize, transformStage  ) { void process( BlockWork work ) { decode( work ); }};
+
+    logger.info( "BlockEventPipeline created. Workers decode = " + decodeWorkers + ", transform = " + transformWorkers + ", dispatch = " + dispatchWorkers + ", checkpoint = " + checkpointWorkers + ", queue size = " + queueSize );
+  }
+
+  @Override
+  public void processBlockTransactions( BlockEvent blockEvent )
+  {
+    String channelId = null;
+    try
+    {
+      channelId = blockEvent.getChannelId();
+    }
+    catch( InvalidProtocolBufferException e )
+    {
+      logger.error( "ProtocolBufferException obtaining channel of block " + blockEvent.getBlockNumber() + ". Error = " + e.getMessage() );
+      return;
+    }
+
+    final long blockNumber = blockEvent.getBlockNumber();
+
+    if( !accept( channelId, blockNumber ))
+    {
+      logger.info( "Received duplicate block which has already been processed or is in process. Duplicate block number = " + blockNumber );
+      return;
+    }
+
+    inFlight.incrementAndGet();
+    try
+    {
+      decodeStage.submit( new BlockWork( channelId, blockEvent ));
+    }
+    catch( InterruptedException e )
+    {
+      inFlight.decrementAndGet();
+      Thread.currentThread().interrupt();
+      logger.error( "Interrupted submitting block " + blockNumber + " on channel " + channelId + " to the pipeline." );
+    }
+  }
+
+  @Override
+  public void listenerError( String channelName, FabricBlockListener listener, BlockEvent blockEvent, InvalidProtocolBufferException e )
+  {
+    processor.listenerError( channelName, listener, blockEvent, e );
+  }
+
+  @Override
+  public void addBlockObserver( BlockObserverIF observer )
+  {
+    processor.addBlockObserver( observer );
+  }
+
+  /**
+   * Number of blocks currently queued within the named stage (decode, transform, dispatch or checkpoint).
+   *
+   * @param stageName
+   * @return
+   */
+  public int getQueuedCount( String stageName )
+  {
+    for( Stage stage : new Stage[] { decodeStage, transformStage, dispatchStage, checkpointStage } )
+    {
+      if( stage.name.compareTo( stageName ) == 0 )
+        return stage.queuedCount();
+    }
+
+    return 0;
+  }
+
+  /**
+   * @return blocks which failed a stage after all retries and were skipped
+   */
+  public long getFailedBlockCount()
+  {
+    return failedBlocks.get();
+  }
+
+  /**
+   * Stop all stage workers once the blocks in the pipeline have been checkpointed, or at SHUTDOWN_WAIT_MS. Blocks still
+   * in the pipeline then are not checkpointed and will be replayed on restart.
+   */
+  @Override
+  public void shutdown()
+  {
+    long deadline = System.currentTimeMillis() + SHUTDOWN_WAIT_MS;
+    try
+    {
+      while( inFlight.get() > 0 && System.currentTimeMillis() < deadline )
+        Thread.sleep( 10 );
+    }
+    catch( InterruptedException e )
+    {
+      Thread.currentThread().interrupt();
+    }
+
+    if( inFlight.get() > 0 )
+      logger.warn( "BlockEventPipeline stopped with " + inFlight.get() + " blocks in process. They will be replayed on restart." );
+
+    decodeStage.shutdown();
+    transformStage.shutdown();
+    dispatchStage.shutdown();
+    checkpointStage.shutdown();
+
+    processor.shutdown();
+  }
+
+  private boolean accept( String channelId, long blockNumber )
+  {
+    final boolean[] accepted = new boolean[1];
+
+    acceptedSeqNumbers.compute( channelId, ( id, last ) ->
+    {
+      if( last == null && processor.isProcessed( id, blockNumber ))
+        return null;
+
+      if( last != null && last >= blockNumber )
+        return last;
+
+      accepted[0] = true;
+      return blockNumber;
+    });
+
+    return accepted[0];
+  }
+
+  private void decode( BlockWork work )
+  {
+    work.tranEvents = processor.decodeTransactions( work.blockEvent );
+  }
+
+  private void transform( BlockWork work )
+    throws InvalidProtocolBufferException
+  {
+    work.blockInfo = processor.transformBlock( work.blockEvent, work.tranEvents );
+  }
+
+  /**
+   * Skip the remaining stages of a block which failed a stage after all retries. It is still checkpointed.
+   */
+  private void fail( BlockWork work )
+  {
+    if( !work.failed )
+      failedBlocks.incrementAndGet();
+
+    work.failed = true;
+
+    logger.error( "Block " + work.blockNumber + " on channel " + work.channelId + " failed processing after " + RETRY_ATTEMPTS + " attempts. Block skipped." );
+  }
+
+  private void dispatch( BlockWork work )
+  {
+    processor.dispatchBlock( work.blockInfo );
+    processor.notifyObservers( work.channelId, work.blockEvent, work.tranEvents );
+  }
+
+  private void checkpoint( BlockWork work )
+  {
+    processor.checkpoint( work.channelId, work.blockNumber );
+  }
+
+
+  /**
+   * A block moving through the pipeline along with the results of the completed stages.
+   */
+  private static class BlockWork
+  {
+    final String                            channelId;
+    final long                              blockNumber;
+    final BlockEvent                        blockEvent;
+    List<? extends TransactionEnvelopeInfo> tranEvents = null;
+    BlockEventInfo                          blockInfo  = null;
+    boolean                                 failed     = false;
+
+    BlockWork( String channelId, BlockEvent blockEvent )
+    {
+      this.channelId   = channelId;
+      this.blockNumber = blockEvent.getBlockNumber();
+      this.blockEvent  = blockEvent;
+    }
+  }
+
+  /**
+   * A pipeline stage. Each worker thread owns a bounded queue and a channel is always routed to the same worker.
+   */
+  private abstract class Stage
+  {
+    final String                         name;
+    final Stage                          next;
+    final List<BlockingQueue<BlockWork>> queues  = new ArrayList<BlockingQueue<BlockWork>>();
+    final List<Thread>                   workers = new ArrayList<Thread>();
+
+    Stage( String name, int workerCount, int queueSize, Stage next )
+    {
+      this.name = name;
+      this.next = next;
+
+      for( int i = 0; i < Math.max( 1, workerCount ); i++ )
+      {
+        final BlockingQueue<BlockWork> queue = new ArrayBlockingQueue<BlockWork>( Math.max( 1, queueSize ));
+        queues.add( queue );
+
+        Thread worker = new Thread( () -> runWorker( queue ), "block-pipeline-" + name + "-" + i );
+        worker.setDaemon( true );
+        workers.add( worker );
+        worker.start();
+      }
+    }
+
+    abstract void process( BlockWork work ) throws Exception;
+
+    void submit( BlockWork work )
+      throws InterruptedException
+    {
+      queues.get( Math.floorMod( work.channelId.hashCode(), queues.size() )).put( work );
+    }
+
+    int queuedCount()
+    {
+      int count = 0;
+      for( BlockingQueue<BlockWork> queue : queues )
+        count += queue.size();
+
+      return count;
+    }
+
+    void shutdown()
+    {
+      for( Thread worker : workers )
+        worker.interrupt();
+    }
+
+    private void runWorker( BlockingQueue<BlockWork> queue )
+    {
+      try
+      {
+        while( !Thread.currentThread().isInterrupted() )
+        {
+          BlockWork work = queue.take();
+
+          // Any Throwable fails the block rather than silently stopping the worker and stalling its channels.
+          try
+          {
+            // A failed block skips the remaining stages apart from the checkpoint.
+            if( !work.failed || next == null )
+              processWithRetry( work );
+          }
+          catch( InterruptedException e )
+          {
+            throw e;
+          }
+          catch( Throwable e )
+          {
+            logger.error( "Pipeline stage " + name + " worker error for block " + work.blockNumber + " on channel " + work.channelId + ". Error = " + e );
+            fail( work );
+          }
+
+          if( next != null )
+            next.submit( work );
+          else
+            inFlight.decrementAndGet();
+        }
+      }
+      catch( InterruptedException e )
+      {
+        logger.info( "Pipeline stage " + name + " worker stopped." );
+      }
+    }
+
+    private void processWithRetry( BlockWork work )
+      throws InterruptedException
+    {
+      for( int attempt = 1; ; attempt++ )
+      {
+        try
+        {
+          process( work );
+          return;
+        }
+        catch( InterruptedException e )
+        {
+          throw e;
+        }
+        catch( Throwable e )
+        {
+          logger.error( "Pipeline stage " + name + " failed for block " + work.blockNumber + " on channel " + work.channelId + ", attempt " + attempt + ". Error = " + e );
+          if( attempt >= RETRY_ATTEMPTS || e instanceof VirtualMachineError )
+            break;
+        }
+
+        Thread.sleep( RETRY_DELAY_MS * attempt );
+      }
+
+      fail( work );
+    }
+  }
+}
@@ -31,4 +31,19 @@ public interface BlockEventProcessorIF
    * @param e
    */
   public void listenerError( String channelName, FabricBlockListener listener, BlockEvent blockEvent, InvalidProtocolBufferException e );
+
+  /**
+   * Register an observer to be called for each block processed.
+   * 
+   * @param observer
+   */
+  public void addBlockObserver( BlockObserverIF observer );
+
+  /**
+   * Stop processing. Blocks already queued are processed first, for up to SHUTDOWN_WAIT_MS, and any processor this one
+   * forwards to is then shut down. Blocks not processed by then are not checkpointed and are replayed on restart.
+   */
+  public void shutdown();
+
+  public static final long SHUTDOWN_WAIT_MS = 5000;
 }
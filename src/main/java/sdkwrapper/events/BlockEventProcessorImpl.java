@@ -1,9 +1,15 @@
 package sdkwrapper.events;
 
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.commons.codec.binary.Hex;
 
@@ -11,8 +17,10 @@ import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
 import org.hyperledger.fabric.sdk.BlockEvent;
-import org.hyperledger.fabric.sdk.BlockEvent.TransactionEvent;
+import org.hyperledger.fabric.sdk.BlockInfo;
 import org.hyperledger.fabric.sdk.BlockInfo.EndorserInfo;
+import org.hyperledger.fabric.sdk.BlockInfo.EnvelopeInfo;
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo;
 import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo;
 import org.hyperledger.fabric.sdk.TxReadWriteSetInfo;
 
@@ -23,18 +31,39 @@ import sdkwrapper.block.listener.FabricBlockListener;
 import sdkwrapper.block.store.BlockEventSeqStoreIF;
 import sdkwrapper.exceptions.BlockEventException;
 import sdkwrapper.runtimemgr.RuntimeMgrIF;
+import sdkwrapper.vo.codec.PayloadCodec;
 import sdkwrapper.vo.transaction.BlockEventInfo;
 import sdkwrapper.vo.transaction.BlockTranActionEndorsement;
 import sdkwrapper.vo.transaction.BlockTransaction;
 import sdkwrapper.vo.transaction.BlockTransactionAction;
+import sdkwrapper.vo.transaction.FilteredBlockEventInfo;
+import sdkwrapper.vo.transaction.LazyBlockEventInfo;
 
 
 public class BlockEventProcessorImpl implements BlockEventProcessorIF
 {
   private static Logger logger = LogManager.getLogger( BlockEventProcessorImpl.class );
 
+  /**
+   * EAGER - every transaction, action and endorsement is copied into the BlockEventInfo when the block is transformed.
+   * LAZY  - the BlockEventInfo is a view over the SDK block which decodes attributes as they are accessed.
+   */
+  public enum MaterializationMode { EAGER, LAZY }
+  
   private RuntimeMgrIF         runtimeMgr = null;
   private BlockEventSeqStoreIF seqStore   = null;
+  private MaterializationMode  mode       = MaterializationMode.EAGER;
+
+  private volatile BlockCatchUpEngine catchUp = null;
+
+  // Eager transformation of blocks with at least parallelThreshold transactions is split across the decode pool.
+  private volatile ForkJoinPool decodePool        = null;
+  private          int          parallelThreshold = Integer.MAX_VALUE;
+
+  private final List<BlockObserverIF> observers = new CopyOnWriteArrayList<BlockObserverIF>();
+
+  // Live blocks of a channel are checked and processed under the channel's lock.
+  private final Map<String, Object> channelLocks = new ConcurrentHashMap<String, Object>();
   
   /**
    * Public constructor requiring the loading of the ErrorController.
@@ -48,6 +77,20 @@ public class BlockEventProcessorImpl implements BlockEventProcessorIF
     logger.info( "BlockEventProcessorImpl created." );
   }
 
+  /**
+   * Public constructor selecting the block materialization mode.
+   * 
+   * @param runtime
+   * @param seqStore
+   * @param mode
+   */
+  public BlockEventProcessorImpl( RuntimeMgrIF runtime, BlockEventSeqStoreIF seqStore, MaterializationMode mode )
+  {
+    this( runtime, seqStore );
+    this.mode = mode;
+    logger.info( "BlockEventProcessorImpl materialization mode = " + mode );
+  }
+
   /**
    * Not allowed constructor
    */
@@ -56,128 +99,393 @@ public class BlockEventProcessorImpl implements BlockEventProcessorIF
   {
   }
   
+  public MaterializationMode getMaterializationMode() { return mode; }
+  public BlockCatchUpEngine  getCatchUp()              { return catchUp; }
+
+  /**
+   * Enable gap detection and catch up of missing blocks.
+   * 
+   * @param engine
+   */
+  public void setCatchUp( BlockCatchUpEngine engine ) { this.catchUp = engine; }
+
+  /**
+   * Decode the transactions of large blocks in parallel when the materialization mode is EAGER. The decode pool of an
+   * earlier call is shut down once replaced.
+   * 
+   * @param parallelism - threads of the decode pool
+   * @param threshold   - minimum transactions within a block for it to be decoded in parallel
+   */
+  public synchronized void setParallelDecode( int parallelism, int threshold )
+  {
+    ForkJoinPool replaced = decodePool;
+
+    this.parallelThreshold = Math.max( 2, threshold );
+    this.decodePool        = new ForkJoinPool( Math.max( 1, parallelism ));
+
+    if( replaced != null )
+      replaced.shutdown();
+
+    logger.info( "BlockEventProcessorImpl parallel decode. Parallelism = " + parallelism + ", threshold = " + this.parallelThreshold );
+  }
+
+  /**
+   * Stop the catch up engine and shut down the decode pool. Blocks being decoded in parallel complete, and later blocks
+   * are decoded serially.
+   */
   @Override
-  public void processBlockTransactions( BlockEvent blockEvent )
+  public synchronized void shutdown()
   {
-    BlockEventInfo blockInfo = new BlockEventInfo();
+    BlockCatchUpEngine engine = catchUp;
+    if( engine != null )
+      engine.shutdown();
+
+    ForkJoinPool pool = decodePool;
+    decodePool = null;
+
+    if( pool != null )
+    {
+      pool.shutdown();
+      logger.info( "BlockEventProcessorImpl decode pool shut down." );
+    }
+  }
 
+  @Override
+  public void processBlockTransactions( BlockEvent blockEvent )
+  {
+    String channelId = null;
     try
     {
-      logger.info( "Starting Block Event processing for block # " + blockEvent.getBlockNumber() + " on channel id = " + blockEvent.getChannelId() );   
+      channelId = blockEvent.getChannelId();
+    }
+    catch( InvalidProtocolBufferException e )
+    {
+      logger.error( "ProtocolBufferException obtaining channel of block " + blockEvent.getBlockNumber() + ". Error = " + e.getMessage() );
+      return;
+    }
 
-      blockInfo.setBlockSeqNum(    blockEvent.getBlockNumber()                        );
-      blockInfo.setChannelId(      blockEvent.getChannelId()                          );
-      blockInfo.setBlockDataHash(  Hex.encodeHexString( blockEvent.getDataHash()     ));
-      blockInfo.setBlockPriorHash( Hex.encodeHexString( blockEvent.getPreviousHash() ));
+    logger.info( "Starting Block Event processing for block # " + blockEvent.getBlockNumber() + " on channel id = " + channelId );   
 
-      // We need to determine if the block seq number is the next block sequence number to process. If it is not
-      // then we need to process all block events prior starting from the last block event successfully processed.
-      long lastSeqNumber = obtainLastChannelSeqNumber( blockInfo.getChannelId() );
-      if( lastSeqNumber >= blockEvent.getBlockNumber() )
+    // With catch up enabled the engine sequences the blocks of the channel. Any blocks missing prior to this one are
+    // fetched from the peers and processed first.
+    BlockCatchUpEngine engine = catchUp;
+    if( engine != null )
+    {
+      engine.onLiveBlock( channelId, blockEvent );
+      return;
+    }
+
+    // While a channel is refreshed the listeners of the channel and of its shadow deliver the same blocks on separate
+    // event threads, so a block is only claimed and processed under the channel's lock.
+    synchronized( channelLocks.computeIfAbsent( channelId, id -> new Object() ))
+    {
+      if( isProcessed( channelId, blockEvent.getBlockNumber() ))
       {
 System.out.println( "Already processed block " + blockEvent.getBlockNumber() ); 
         logger.info( "Received duplicate block which has already been processed. Duplicate block number = " + blockEvent.getBlockNumber() );
         return;
       }
+
+      processBlock( channelId, blockEvent );
+    }
+  }
+
+  /**
+   * Decode, transform, dispatch and checkpoint a block. Used for live block events and for blocks fetched by the catch
+   * up engine.
+   * 
+   * @param channelId
+   * @param block
+   */
+  public void processBlock( String channelId, BlockInfo block )
+  {
+    try
+    {
+      List<? extends TransactionEnvelopeInfo> tranEventList = decodeTransactions( block );
+      BlockEventInfo                          blockInfo     = transformBlock( block, tranEventList );
       
-      List<BlockTransaction> transactionList = new ArrayList<BlockTransaction>();
-      blockInfo.setTransactionList( transactionList );
-      
-      Iterable<TransactionEvent> blockTranIter = blockEvent.getTransactionEvents();
-      List<TransactionEvent>     tranEventList = ImmutableList.copyOf( blockTranIter );
-      
-      for( TransactionEvent tranEvent : tranEventList )
+      dispatchBlock( blockInfo );
+      notifyObservers( channelId, block, tranEventList );
+    } catch( InvalidProtocolBufferException e )
       {
-        BlockTransaction tran = new BlockTransaction();
-        blockInfo.getTransactionList().add( tran );
-        
-        tran.setBlockSeqNum(   blockInfo.getBlockSeqNum()   );
-        tran.setTranType(      tranEvent.getType().name()   );
-        tran.setTransactionId( tranEvent.getTransactionID() );
-        tran.setTranTimestamp( tranEvent.getTimestamp()     );
-        tran.setEpoch(         tranEvent.getEpoch()         );
+        // The block event did not get processed properly due to a transport exception. We need to deal with the 
+        // exception prior to attempting to process the block event again.
+        String errMsg = "ProtocolBufferException on block information. Error = " + e.getMessage();
+        logger.error( errMsg );
         
-        // If valid == false then the transaction was rejected during the commit process.
-        // validation code == 10 the rejection was due to endorsement policy failure
-        // validation code == 11 the rejection was due to read set validation errors.
-        tran.setValid(         tranEvent.isValid()          );
-        tran.setValidationCode( Byte.toString( tranEvent.getValidationCode() ));
+        // TODO: attempt tp correct problem and reprocess.
+      }
+    
+    checkpoint( channelId, block.getBlockNumber() );
+  }
+
+  /**
+   * @param channelId
+   * @return the last block processed (and checkpointed) for the channel, or -1 if none
+   */
+  public long getCheckpoint( String channelId )
+  {
+    return obtainLastChannelSeqNumber( channelId );
+  }
+
+  /**
+   * Determine whether the block has already been processed (and checkpointed) for the channel.
+   * 
+   * @param channelId
+   * @param blockNumber
+   * @return
+   */
+  public boolean isProcessed( String channelId, long blockNumber )
+  {
+    long lastSeqNumber = obtainLastChannelSeqNumber( channelId );
+    
+    return lastSeqNumber >= blockNumber;
+  }
+  
+  /**
+   * Decode stage. Parses the transaction envelopes contained within the block. Blocks queried from a peer, rather
+   * than received as events, only contain their envelope infos and the transaction envelopes are selected from them.
+   * 
+   * @param block
+   * @return
+   */
+  public List<? extends TransactionEnvelopeInfo> decodeTransactions( BlockInfo block )
+  {
+    if( block instanceof BlockEvent )
+      return ImmutableList.copyOf( ((BlockEvent) block).getTransactionEvents() );
+
+    List<TransactionEnvelopeInfo> tranEnvelopes = new ArrayList<TransactionEnvelopeInfo>( block.getEnvelopeCount() );
+    for( EnvelopeInfo envelope : block.getEnvelopeInfos() )
+    {
+      if( envelope instanceof TransactionEnvelopeInfo )
+        tranEnvelopes.add( (TransactionEnvelopeInfo) envelope );
+    }
+
+    return tranEnvelopes;
+  }
+
+  /**
+   * Transform stage. Builds the BlockEventInfo and its transaction list from the decoded transactions.
+   * 
+   * @param blockEvent
+   * @param tranEventList
+   * @return
+   * @throws InvalidProtocolBufferException
+   */
+  public BlockEventInfo transformBlock( BlockInfo blockEvent, List<? extends TransactionEnvelopeInfo> tranEventList )
+    throws InvalidProtocolBufferException
+  {
+    if( blockEvent.isFiltered() )
+    {
+      return transformFilteredBlock( blockEvent, tranEventList );
+    }
+
+    if( mode == MaterializationMode.LAZY )
+    {
+      return new LazyBlockEventInfo( blockEvent.getChannelId(), blockEvent, tranEventList );
+    }
+
+    BlockEventInfo blockInfo = new BlockEventInfo();
+
+    blockInfo.setBlockSeqNum(    blockEvent.getBlockNumber()                        );
+    blockInfo.setChannelId(      blockEvent.getChannelId()                          );
+    blockInfo.setBlockDataHash(  Hex.encodeHexString( blockEvent.getDataHash()     ));
+    blockInfo.setBlockPriorHash( Hex.encodeHexString( blockEvent.getPreviousHash() ));
+
+    BlockTransaction[] slots  = new BlockTransaction[tranEventList.size()];
+    long               seqNum = blockInfo.getBlockSeqNum();
+
+    // Large blocks are decoded in parallel. Each transaction is written to its own slot so the original order is kept.
+    // A block reaching a pool which has just been shut down is decoded serially.
+    ForkJoinPool pool     = decodePool;
+    boolean      parallel = pool != null && slots.length >= parallelThreshold;
+    if( parallel )
+    {
+      try
+      {
+        pool.invoke( new TransformTask( tranEventList, slots, seqNum, 0, slots.length ));
+      }
+      catch( RejectedExecutionException e )
+      {
+        parallel = false;
+      }
+    }
+
+    if( !parallel )
+    {
+      for( int i = 0; i < slots.length; i++ )
+        slots[i] = transformTransaction( seqNum, tranEventList.get( i ));
+    }
+
+    blockInfo.setTransactionList( new ArrayList<BlockTransaction>( Arrays.asList( slots )));
+    
+    return blockInfo;
+  }
+
+  /**
+   * Filtered blocks only carry the status of each transaction, so the transactions are built without actions and the
+   * materialization mode does not apply.
+   * 
+   * @param blockEvent
+   * @param tranEventList
+   * @return
+   * @throws InvalidProtocolBufferException
+   */
+  private BlockEventInfo transformFilteredBlock( BlockInfo blockEvent, List<? extends TransactionEnvelopeInfo> tranEventList )
+    throws InvalidProtocolBufferException
+  {
+    BlockEventInfo blockInfo = new FilteredBlockEventInfo();
+
+    blockInfo.setBlockSeqNum( blockEvent.getBlockNumber() );
+    blockInfo.setChannelId(   blockEvent.getChannelId()   );
+
+    List<BlockTransaction> trans = new ArrayList<BlockTransaction>( tranEventList.size() );
+    for( TransactionEnvelopeInfo tranEvent : tranEventList )
+    {
+      BlockTransaction tran = new BlockTransaction();
+
+      tran.setBlockSeqNum(    blockInfo.getBlockSeqNum()                 );
+      tran.setTranType(       tranEvent.getType().name()                 );
+      tran.setTransactionId(  tranEvent.getTransactionID()               );
+      tran.setValid(          tranEvent.isValid()                        );
+      tran.setValidationCode( Byte.toString( tranEvent.getValidationCode() ));
+
+      trans.add( tran );
+    }
+
+    blockInfo.setTransactionList( trans );
+
+    return blockInfo;
+  }
+
+  /**
+   * Build the BlockTransaction, with its actions and endorsements, of a transaction within the block.
+   * 
+   * @param blockSeqNum
+   * @param tranEvent
+   * @return
+   */
+  private BlockTransaction transformTransaction( long blockSeqNum, TransactionEnvelopeInfo tranEvent )
+  {
+    BlockTransaction tran = new BlockTransaction();
+    
+    tran.setBlockSeqNum(   blockSeqNum                  );
+    tran.setTranType(      tranEvent.getType().name()   );
+    tran.setTransactionId( tranEvent.getTransactionID() );
+    tran.setTranTimestamp( tranEvent.getTimestamp()     );
+    tran.setEpoch(         tranEvent.getEpoch()         );
+    
+    // If valid == false then the transaction was rejected during the commit process.
+    // validation code == 10 the rejection was due to endorsement policy failure
+    // validation code == 11 the rejection was due to read set validation errors.
+    tran.setValid(         tranEvent.isValid()          );
+    tran.setValidationCode( Byte.toString( tranEvent.getValidationCode() ));
 System.out.println( "Transaction " + tran.getTransactionId() + " in Block " + tran.getBlockSeqNum() + " isValid  = " + tran.isValid() + " validation code = " + tran.getValidationCode() );
-        
-        // We only want to process transactions which are of type transaction and not config.
-        
-        Iterable<TransactionActionInfo> blockTranInfoIter = tranEvent.getTransactionActionInfos();
-        List<TransactionActionInfo>     blockTranInfoList = ImmutableList.copyOf( blockTranInfoIter );
-        
-        for( TransactionActionInfo tranInfo : blockTranInfoList )
+    
+    // We only want to process transactions which are of type transaction and not config.
+    
+    Iterable<TransactionActionInfo> blockTranInfoIter = tranEvent.getTransactionActionInfos();
+    List<TransactionActionInfo>     blockTranInfoList = ImmutableList.copyOf( blockTranInfoIter );
+    
+    for( TransactionActionInfo tranInfo : blockTranInfoList )
+    {
+      BlockTransactionAction tranAction = new BlockTransactionAction();
+      tran.getTranActions().add( tranAction );
+      
+      tranAction.setRequestPayload( PayloadCodec.requestText( tranInfo ));
+      
+      int endorseCnt = tranInfo.getEndorsementsCount();
+      if( endorseCnt > 0 )
+      {
+        for( int i = 0; i < endorseCnt; i++ )
         {
-          BlockTransactionAction tranAction = new BlockTransactionAction();
-          tran.getTranActions().add( tranAction );
+          EndorserInfo               eInfo       = tranInfo.getEndorsementInfo( i );
+          BlockTranActionEndorsement endorsement = new BlockTranActionEndorsement();
           
-          tranAction.setRequestPayload( new String( tranInfo.getChaincodeInputArgs( 0 )));
+          endorsement.setEndorserCert( new String( Base64.getEncoder().encode( eInfo.getEndorser()  )));
+          endorsement.setSignature(    new String( Base64.getEncoder().encode( eInfo.getSignature() )));
           
-          int endorseCnt = tranInfo.getEndorsementsCount();
-          if( endorseCnt > 0 )
-          {
-            for( int i = 0; i < endorseCnt; i++ )
-            {
-              EndorserInfo               eInfo       = tranInfo.getEndorsementInfo( i );
-              BlockTranActionEndorsement endorsement = new BlockTranActionEndorsement();
-              
-              endorsement.setEndorserCert( new String( Base64.getEncoder().encode( eInfo.getEndorser()  )));
-              endorsement.setSignature(    new String( Base64.getEncoder().encode( eInfo.getSignature() )));
-              
-              tranAction.getEndorsements().add( endorsement );
-            }
-          }
-          
-          tranAction.setProposalResponseStatus(  tranInfo.getProposalResponseStatus() );
-          tranAction.setProposalResponsePayload( new String( tranInfo.getProposalResponsePayload(), StandardCharsets.UTF_8 ));
-          
-          tranAction.setDescription(    tranInfo.getResponseMessage() );
-          tranAction.setResponseStatus( tranInfo.getResponseStatus()  );
+          tranAction.getEndorsements().add( endorsement );
         }
       }
       
-      // We now have the block info and the transaction list. We need to process the transactions now. The protoobuf structures
-      // support multiple transactions within a single transaction, but in practice there is only 1.
-      if( !blockInfo.getTransactionList().isEmpty() )
+      tranAction.setProposalResponseStatus(  tranInfo.getProposalResponseStatus() );
+      tranAction.setProposalResponsePayload( PayloadCodec.responseText( tranInfo.getProposalResponsePayload() ));
+      
+      tranAction.setDescription(    tranInfo.getResponseMessage() );
+      tranAction.setResponseStatus( tranInfo.getResponseStatus()  );
+    }
+    
+    return tran;
+  }
+  
+  /**
+   * Dispatch stage. We now have the block info and the transaction list. We need to process the transactions now. 
+   * 
+   * @param blockInfo
+   */
+  public void dispatchBlock( BlockEventInfo blockInfo )
+  {
+    // The protoobuf structures support multiple transactions within a single transaction, but in practice there is only 1.
+    if( !blockInfo.getTransactionList().isEmpty() )
+    {
+      for( BlockTransaction tran : blockInfo.getTransactionList() )
       {
-        for( BlockTransaction tran : blockInfo.getTransactionList() )
+        if( !tran.getTranActions().isEmpty() )
         {
-          if( !tran.getTranActions().isEmpty() )
+          for( BlockTransactionAction action : tran.getTranActions() )
           {
-            for( BlockTransactionAction action : tran.getTranActions() )
-            {
 System.out.println( "For block " + tran.getBlockSeqNum() + " transaction " + tran.getTransactionId() + " response status = " + action.getResponseStatus() );
-              if( !tran.isValid() )
-              {
+            if( !tran.isValid() )
+            {
  //               runtimeMgr.
-              }
             }
           }
         }
       }
-    } catch( InvalidProtocolBufferException e )
+    }
+  }
+  
+  /**
+   * Inform the registered observers of the dispatched block. An observer failure is logged and does not stop the block
+   * from being checkpointed.
+   * 
+   * @param channelId
+   * @param block
+   * @param transactions
+   */
+  public void notifyObservers( String channelId, BlockInfo block, List<? extends TransactionEnvelopeInfo> transactions )
+  {
+    for( BlockObserverIF observer : observers )
+    {
+      try
       {
-        // The block event did not get processed properly due to a transport exception. We need to deal with the 
-        // exception prior to attempting to process the block event again.
-        String errMsg = "ProtocolBufferException on block information. Error = " + e.getMessage();
-        logger.error( errMsg );
-        
-        // TODO: attempt tp correct problem and reprocess.
+        observer.blockCommitted( channelId, block, transactions );
+      }
+      catch( RuntimeException e )
+      {
+        logger.error( "Block observer failed for block " + block.getBlockNumber() + " on channel " + channelId + ". Error = " + e.getMessage() );
       }
-    
-    try
-    {
-      updateLastChannelSeqNumber( blockEvent.getChannelId(), blockEvent.getBlockNumber() );
-    } catch( InvalidProtocolBufferException e )
-    {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
     }
   }
 
+  @Override
+  public void addBlockObserver( BlockObserverIF observer )
+  {
+    observers.add( observer );
+  }
+
+  /**
+   * Checkpoint stage. Records the block as the last one processed for the channel.
+   * 
+   * @param channelId
+   * @param blockNumber
+   */
+  public void checkpoint( String channelId, long blockNumber )
+  {
+    updateLastChannelSeqNumber( channelId, blockNumber );
+  }
+
   @Override
   public void listenerError( String channelName, FabricBlockListener listener, BlockEvent blockEvent, InvalidProtocolBufferException e )
   {
@@ -215,4 +523,47 @@ System.out.println( "For block " + tran.getBlockSeqNum() + " transaction " + tra
   {
     return action.toJSON();
   }
+
+
+  /**
+   * Transforms a range of the block's transactions into their slots, splitting the range until it is at most
+   * SPLIT_SIZE transactions.
+   */
+  private class TransformTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private static final int SPLIT_SIZE = 16;
+
+    private final List<? extends TransactionEnvelopeInfo> tranEvents;
+    private final BlockTransaction[]                      slots;
+    private final long                                    blockSeqNum;
+    private final int                                     from;
+    private final int                                     to;
+
+    TransformTask( List<? extends TransactionEnvelopeInfo> tranEvents, BlockTransaction[] slots, long blockSeqNum, int from, int to )
+    {
+      this.tranEvents  = tranEvents;
+      this.slots       = slots;
+      this.blockSeqNum = blockSeqNum;
+      this.from        = from;
+      this.to          = to;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if( to - from <= SPLIT_SIZE )
+      {
+        for( int i = from; i < to; i++ )
+          slots[i] = transformTransaction( blockSeqNum, tranEvents.get( i ));
+
+        return;
+      }
+
+      int mid = ( from + to ) >>> 1;
+      invokeAll( new TransformTask( tranEvents, slots, blockSeqNum, from, mid ),
+                 new TransformTask( tranEvents, slots, blockSeqNum, mid,  to  ));
+    }
+  }
 }
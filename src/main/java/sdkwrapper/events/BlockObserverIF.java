@@ -0,0 +1,26 @@
+package sdkwrapper.events;
+
+import java.util.List;
+
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo;
+
+/**
+ * Interface for components which need to be told of each committed block received by the block listeners, such as
+ * caches of world state. Observers are called after the block has been dispatched and must not block for long as they
+ * run on the block processing thread.
+ * 
+ * @author tim
+ *
+ */
+public interface BlockObserverIF
+{
+  /**
+   * Called once for each block processed for the channel.
+   * 
+   * @param channelId
+   * @param block        - the block as received from the peer
+   * @param transactions - the decoded transactions of the block
+   */
+  public void blockCommitted( String channelId, BlockInfo block, List<? extends TransactionEnvelopeInfo> transactions );
+}
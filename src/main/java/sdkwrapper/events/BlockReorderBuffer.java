@@ -0,0 +1,126 @@
+package sdkwrapper.events;
+
+import java.util.Arrays;
+
+import org.hyperledger.fabric.sdk.BlockInfo;
+
+/**
+ * Fixed capacity reorder buffer for the out of order blocks of a channel.
+ *
+ * The buffer covers a window of block numbers starting at the next block to be processed. A block is held in the slot
+ * blockNumber % capacity, with the block number kept in a parallel long array, so buffering and releasing a block does
+ * not box the block number or allocate a map entry. A block beyond the window is not held and is reported as spilled,
+ * for the caller to fetch again once the window has moved on.
+ *
+ * Not thread safe. The caller guards the buffer of a channel.
+ *
+ * @author tim
+ *
+ */
+public class BlockReorderBuffer
+{
+  private static final long EMPTY = -1L;
+
+  private final BlockInfo[] blocks;
+  private final long[]      numbers;
+  private final int         capacity;
+
+  private int  size               = 0;
+  private long maxReorderDistance = 0;
+
+  /**
+   * @param capacity - blocks ahead of the next block which can be held
+   */
+  public BlockReorderBuffer( int capacity )
+  {
+    this.capacity = Math.max( 1, capacity );
+    this.blocks   = new BlockInfo[this.capacity];
+    this.numbers  = new long[this.capacity];
+
+    Arrays.fill( numbers, EMPTY );
+  }
+
+  public int  getCapacity()           { return capacity;           }
+  public int  size()                  { return size;               }
+  public long getMaxReorderDistance() { return maxReorderDistance; }
+
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  /**
+   * Hold the block if it is within the window starting at next.
+   *
+   * @param block
+   * @param next  - the next block number to be processed
+   * @return false when the block is beyond the window and has been spilled
+   */
+  public boolean offer( BlockInfo block, long next )
+  {
+    long blockNumber = block.getBlockNumber();
+    long distance    = blockNumber - next;
+
+    maxReorderDistance = Math.max( maxReorderDistance, distance );
+
+    if( distance < 0 || distance >= capacity )
+      return false;
+
+    int slot = slot( blockNumber );
+    if( numbers[slot] == EMPTY )
+      size++;
+    else if( numbers[slot] != blockNumber )
+      return false;
+
+    numbers[slot] = blockNumber;
+    blocks[slot]  = block;
+
+    return true;
+  }
+
+  public boolean contains( long blockNumber )
+  {
+    return blockNumber >= 0 && numbers[slot( blockNumber )] == blockNumber;
+  }
+
+  /**
+   * @return the held block, removed from the buffer, or null when the block is not held
+   */
+  public BlockInfo remove( long blockNumber )
+  {
+    if( !contains( blockNumber ))
+      return null;
+
+    int       slot  = slot( blockNumber );
+    BlockInfo block = blocks[slot];
+
+    numbers[slot] = EMPTY;
+    blocks[slot]  = null;
+    size--;
+
+    return block;
+  }
+
+  /**
+   * @param next - the next block number to be processed
+   * @return the lowest held block number from next within the window, or -1 when nothing is held
+   */
+  public long firstFrom( long next )
+  {
+    if( size == 0 )
+      return EMPTY;
+
+    for( long blockNumber = next; blockNumber < next + capacity; blockNumber++ )
+    {
+      if( numbers[slot( blockNumber )] == blockNumber )
+        return blockNumber;
+    }
+
+    return EMPTY;
+  }
+
+  private int slot( long blockNumber )
+  {
+    return (int) ( blockNumber % capacity );
+  }
+}
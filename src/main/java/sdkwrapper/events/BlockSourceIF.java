@@ -0,0 +1,23 @@
+package sdkwrapper.events;
+
+import org.hyperledger.fabric.sdk.BlockInfo;
+
+import sdkwrapper.exceptions.BlockEventException;
+
+/**
+ * Source of committed blocks by block number. Used to fetch blocks missed by the channel block listener.
+ * 
+ * @author tim
+ *
+ */
+public interface BlockSourceIF
+{
+  /**
+   * @param channelId
+   * @param blockNumber
+   * @return the committed block
+   * @throws BlockEventException when the block can not be obtained
+   */
+  public BlockInfo queryBlock( String channelId, long blockNumber )
+    throws BlockEventException;
+}
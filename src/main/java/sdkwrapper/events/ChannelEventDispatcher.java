@@ -0,0 +1,242 @@
+package sdkwrapper.events;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import org.hyperledger.fabric.sdk.BlockEvent;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import sdkwrapper.block.listener.FabricBlockListener;
+
+/**
+ * Channel sharded dispatcher placed between the FabricBlockListener and the block processor.
+ *
+ * Each channel has its own serial queue. A channel's queue is drained by at most one thread of a shared pool at a time,
+ * so the blocks of a channel are processed one at a time in arrival order while different channels are processed in
+ * parallel. A busy channel only holds the pool thread for a limited number of blocks before it is rescheduled behind
+ * the other channels.
+ *
+ * Each channel queue is bounded. When a channel's queue is full the SDK event thread of that channel blocks until a
+ * block is processed, which pushes back on the channel's peer event stream only.
+ *
+ * @author tim
+ *
+ */
+public class ChannelEventDispatcher implements BlockEventProcessorIF
+{
+  private static Logger logger = LogManager.getLogger( ChannelEventDispatcher.class );
+
+  // Blocks processed for a channel before its queue is rescheduled behind other channels.
+  private static final int DRAIN_LIMIT = 16;
+
+  private final BlockEventProcessorIF     processor;
+  private final int                       queueSize;
+  private final ExecutorService           executor;
+  private final Map<String, ChannelQueue> channels = new ConcurrentHashMap<String, ChannelQueue>();
+
+  /**
+   * @param processor   - processes the blocks of a channel, one at a time
+   * @param threadCount - threads shared by all the channels
+   * @param queueSize   - blocks queued per channel before the channel's event thread blocks
+   */
+  public ChannelEventDispatcher( BlockEventProcessorIF processor, int threadCount, int queueSize )
+  {
+    this.processor = processor;
+    this.queueSize = Math.max( 1, queueSize );
+
+    final AtomicInteger count = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool( Math.max( 1, threadCount ), r ->
+    {
+      Thread thread = new Thread( r, "block-channel-" + count.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    });
+
+    logger.info( "ChannelEventDispatcher created. Threads = " + threadCount + ", channel queue size = " + this.queueSize );
+  }
+
+  @Override
+  public void processBlockTransactions( BlockEvent blockEvent )
+  {
+    String channelId = null;
+    try
+    {
+      channelId = blockEvent.getChannelId();
+    }
+    catch( InvalidProtocolBufferException e )
+    {
+      logger.error( "ProtocolBufferException obtaining channel of block " + blockEvent.getBlockNumber() + ". Error = " + e.getMessage() );
+      return;
+    }
+
+    ChannelQueue queue = channels.computeIfAbsent( channelId, ChannelQueue::new );
+    try
+    {
+      queue.enqueue( blockEvent );
+    }
+    catch( InterruptedException e )
+    {
+      Thread.currentThread().interrupt();
+      logger.error( "Interrupted queuing block " + blockEvent.getBlockNumber() + " on channel " + channelId + ". Block will be replayed on restart." );
+    }
+  }
+
+  @Override
+  public void listenerError( String channelName, FabricBlockListener listener, BlockEvent blockEvent, InvalidProtocolBufferException e )
+  {
+    processor.listenerError( channelName, listener, blockEvent, e );
+  }
+
+  @Override
+  public void addBlockObserver( BlockObserverIF observer )
+  {
+    processor.addBlockObserver( observer );
+  }
+
+  /**
+   * @param channelId
+   * @return blocks queued for the channel and not yet processed
+   */
+  public int getQueueDepth( String channelId )
+  {
+    ChannelQueue queue = channels.get( channelId );
+    return ( queue == null ) ? 0 : queue.depth.get();
+  }
+
+  /**
+   * @return the queue depth of each channel, by channel id
+   */
+  public Map<String, Integer> getQueueDepths()
+  {
+    Map<String, Integer> depths = new TreeMap<String, Integer>();
+    for( ChannelQueue queue : channels.values() )
+      depths.put( queue.channelId, queue.depth.get() );
+
+    return depths;
+  }
+
+  /**
+   * @param channelId
+   * @return blocks processed for the channel since start up
+   */
+  public long getProcessedCount( String channelId )
+  {
+    ChannelQueue queue = channels.get( channelId );
+    return ( queue == null ) ? 0 : queue.processed.get();
+  }
+
+  /**
+   * Stop the dispatch threads once the queued blocks have been processed, or at SHUTDOWN_WAIT_MS. Blocks still queued
+   * then are not checkpointed and will be replayed on restart.
+   */
+  @Override
+  public void shutdown()
+  {
+    long deadline = System.currentTimeMillis() + SHUTDOWN_WAIT_MS;
+    try
+    {
+      while( queuedCount() > 0 && System.currentTimeMillis() < deadline )
+        Thread.sleep( 10 );
+    }
+    catch( InterruptedException e )
+    {
+      Thread.currentThread().interrupt();
+    }
+
+    int queued = queuedCount();
+    if( queued > 0 )
+      logger.warn( "ChannelEventDispatcher stopped with " + queued + " blocks queued. They will be replayed on restart." );
+
+    executor.shutdownNow();
+    processor.shutdown();
+  }
+
+  private int queuedCount()
+  {
+    int queued = 0;
+    for( ChannelQueue queue : channels.values() )
+      queued += queue.depth.get();
+
+    return queued;
+  }
+
+
+  /**
+   * The serial queue of a channel. Running ensures only one pool thread drains the channel at a time.
+   */
+  private class ChannelQueue
+  {
+    final String                            channelId;
+    final ConcurrentLinkedQueue<BlockEvent> pending   = new ConcurrentLinkedQueue<BlockEvent>();
+    final Semaphore                         permits;
+    final AtomicInteger                     depth     = new AtomicInteger();
+    final AtomicLong                        processed = new AtomicLong();
+    final AtomicBoolean                     running   = new AtomicBoolean( false );
+
+    ChannelQueue( String channelId )
+    {
+      this.channelId = channelId;
+      this.permits   = new Semaphore( queueSize );
+    }
+
+    void enqueue( BlockEvent blockEvent )
+      throws InterruptedException
+    {
+      permits.acquire();
+      depth.incrementAndGet();
+      pending.add( blockEvent );
+      schedule();
+    }
+
+    private void schedule()
+    {
+      if( running.compareAndSet( false, true ))
+        executor.execute( this::drain );
+    }
+
+    private void drain()
+    {
+      try
+      {
+        BlockEvent blockEvent = null;
+        for( int i = 0; i < DRAIN_LIMIT && ( blockEvent = pending.poll() ) != null; i++ )
+        {
+          try
+          {
+            processor.processBlockTransactions( blockEvent );
+            processed.incrementAndGet();
+          }
+          catch( RuntimeException e )
+          {
+            logger.error( "Failed processing block " + blockEvent.getBlockNumber() + " on channel " + channelId + ". Error = " + e.getMessage() );
+          }
+          finally
+          {
+            depth.decrementAndGet();
+            permits.release();
+          }
+        }
+      }
+      finally
+      {
+        running.set( false );
+      }
+
+      // Blocks added while draining, or beyond the drain limit, are picked up by a new turn.
+      if( !pending.isEmpty() )
+        schedule();
+    }
+  }
+}
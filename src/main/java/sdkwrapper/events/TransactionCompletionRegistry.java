@@ -0,0 +1,325 @@
+package sdkwrapper.events;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import org.hyperledger.fabric.sdk.BlockEvent.TransactionEvent;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo;
+import org.hyperledger.fabric.sdk.exception.TransactionEventException;
+
+import sdkwrapper.vo.transaction.TransactionCommit;
+
+/**
+ * Completes the futures of submitted transactions from the blocks processed by the BlockEventProcessorImpl, so the SDK
+ * does not need to register a listener per transaction and each block is only decoded once.
+ *
+ * A transaction is registered by its transaction id before it is sent to the orderer. When a block containing the
+ * transaction, on the channel it was registered for, is processed the future is completed with a TransactionCommit, or
+ * exceptionally with a TransactionEventException if the transaction was invalidated on commit. A transaction whose future is failed by other
+ * means, such as the commit timeout of the TimingWheelService, is removed from the registry.
+ *
+ * Pending transactions are held in an open addressing table of transaction ids split into lock stripes, so registering
+ * and completing a transaction is O(1).
+ *
+ * Transactions of blocks fetched by catch up, rather than received as events, have no TransactionEvent. Their
+ * TransactionCommit carries the transaction id, block number and validation code only.
+ *
+ * @author tim
+ *
+ */
+public class TransactionCompletionRegistry implements BlockObserverIF
+{
+  private static Logger logger = LogManager.getLogger( TransactionCompletionRegistry.class );
+
+  private static final int STRIPES = 64;
+
+  private final TxIdTable table = new TxIdTable( STRIPES );
+
+  private final AtomicLong registered = new AtomicLong();
+  private final AtomicLong completed  = new AtomicLong();
+  private final AtomicLong failed     = new AtomicLong();
+
+  public TransactionCompletionRegistry()
+  {
+    logger.info( "TransactionCompletionRegistry created." );
+  }
+
+  public long getPendingCount()    { return table.size();     }
+  public long getRegisteredCount() { return registered.get(); }
+  public long getCompletedCount()  { return completed.get();  }
+  public long getFailedCount()     { return failed.get();     }
+
+  /**
+   * Register a transaction before it is sent to the orderer.
+   *
+   * @param channelId
+   * @param txId
+   * @return the future completed when the transaction is committed
+   */
+  public CompletableFuture<TransactionCommit> register( String channelId, String txId )
+  {
+    Pending pending = new Pending( channelId, txId );
+    if( !table.putIfAbsent( txId, pending ))
+    {
+      pending.future.completeExceptionally( new IllegalStateException( "Transaction " + txId + " is already registered." ));
+      return pending.future;
+    }
+
+    registered.incrementAndGet();
+
+    // A future failed elsewhere, e.g. by the commit timeout, leaves the registry.
+    pending.future.whenComplete(( commit, e ) ->
+    {
+      if( e != null )
+        table.remove( txId, pending );
+    });
+
+    return pending.future;
+  }
+
+  /**
+   * Fail a registered transaction, for example when the send to the orderer fails.
+   *
+   * @param txId
+   * @param cause
+   */
+  public void fail( String txId, Throwable cause )
+  {
+    Pending pending = table.remove( txId, null );
+    if( pending != null && pending.future.completeExceptionally( cause ))
+      failed.incrementAndGet();
+  }
+
+  @Override
+  public void blockCommitted( String channelId, BlockInfo block, List<? extends TransactionEnvelopeInfo> transactions )
+  {
+    if( table.size() == 0 )
+      return;
+
+    for( TransactionEnvelopeInfo tran : transactions )
+    {
+      // A transaction id registered for another channel is left for the block of that channel.
+      Pending pending = table.get( tran.getTransactionID() );
+      if( pending == null || !channelId.equals( pending.channelId ) || table.remove( pending.txId, pending ) == null )
+        continue;
+
+      TransactionEvent event = ( tran instanceof TransactionEvent ) ? (TransactionEvent) tran : null;
+      if( tran.isValid() )
+      {
+        TransactionCommit commit = new TransactionCommit( channelId, pending.txId, block.getBlockNumber(), tran.getValidationCode(), event );
+        if( pending.future.complete( commit ))
+          completed.incrementAndGet();
+      }
+      else
+      {
+        String msg = "Transaction " + tran.getTransactionID() + " in block " + block.getBlockNumber() + " failed commit validation. Validation code = " + tran.getValidationCode();
+        if( pending.future.completeExceptionally( new TransactionEventException( msg, event )))
+          failed.incrementAndGet();
+      }
+    }
+  }
+
+  private static class Pending
+  {
+    final String                               channelId;
+    final String                               txId;
+    final CompletableFuture<TransactionCommit> future = new CompletableFuture<TransactionCommit>();
+
+    Pending( String channelId, String txId )
+    {
+      this.channelId = channelId;
+      this.txId      = txId;
+    }
+  }
+
+
+  /**
+   * Lock striped open addressing table of the pending transactions by transaction id. Each stripe is a linear probing
+   * table which doubles when half full and removes with backward shift, so no tombstones are left behind.
+   */
+  private static class TxIdTable
+  {
+    private final Stripe[] stripes;
+    private final int      stripeMask;
+
+    TxIdTable( int stripeCount )
+    {
+      this.stripes    = new Stripe[stripeCount];
+      this.stripeMask = stripeCount - 1;
+
+      for( int i = 0; i < stripeCount; i++ )
+        stripes[i] = new Stripe();
+    }
+
+    boolean putIfAbsent( String txId, Pending pending )
+    {
+      int hash = hash( txId );
+      return stripes[( hash >>> 16 ) & stripeMask].putIfAbsent( hash, txId, pending );
+    }
+
+    Pending get( String txId )
+    {
+      if( txId == null )
+        return null;
+
+      int hash = hash( txId );
+      return stripes[( hash >>> 16 ) & stripeMask].get( hash, txId );
+    }
+
+    /**
+     * @param expected - the entry to remove, or null for any entry of the transaction id
+     */
+    Pending remove( String txId, Pending expected )
+    {
+      if( txId == null )
+        return null;
+
+      int hash = hash( txId );
+      return stripes[( hash >>> 16 ) & stripeMask].remove( hash, txId, expected );
+    }
+
+    int size()
+    {
+      int size = 0;
+      for( Stripe stripe : stripes )
+        size += stripe.size;
+
+      return size;
+    }
+
+    private static int hash( String txId )
+    {
+      int h = txId.hashCode();
+      return h ^ ( h >>> 7 ) ^ ( h << 9 );
+    }
+  }
+
+
+  private static class Stripe
+  {
+    private String[]  keys   = new String[16];
+    private Pending[] values = new Pending[16];
+
+    volatile int size = 0;
+
+    synchronized boolean putIfAbsent( int hash, String txId, Pending pending )
+    {
+      if(( size + 1 ) << 1 > keys.length )
+        resize();
+
+      int mask = keys.length - 1;
+      int i    = hash & mask;
+      while( keys[i] != null )
+      {
+        if( keys[i].equals( txId ))
+          return false;
+
+        i = ( i + 1 ) & mask;
+      }
+
+      keys[i]   = txId;
+      values[i] = pending;
+      size++;
+
+      return true;
+    }
+
+    synchronized Pending get( int hash, String txId )
+    {
+      int mask = keys.length - 1;
+      int i    = hash & mask;
+      while( keys[i] != null )
+      {
+        if( keys[i].equals( txId ))
+          return values[i];
+
+        i = ( i + 1 ) & mask;
+      }
+
+      return null;
+    }
+
+    synchronized Pending remove( int hash, String txId, Pending expected )
+    {
+      int mask = keys.length - 1;
+      int i    = hash & mask;
+      while( keys[i] != null )
+      {
+        if( keys[i].equals( txId ))
+        {
+          Pending pending = values[i];
+          if( expected != null && expected != pending )
+            return null;
+
+          shiftBack( i );
+          size--;
+
+          return pending;
+        }
+
+        i = ( i + 1 ) & mask;
+      }
+
+      return null;
+    }
+
+    /**
+     * Close the hole at slot i by moving back the following entries of the probe run which can no longer be reached.
+     */
+    private void shiftBack( int hole )
+    {
+      int mask = keys.length - 1;
+      int i    = hole;
+      while( true )
+      {
+        keys[hole]   = null;
+        values[hole] = null;
+
+        while( true )
+        {
+          i = ( i + 1 ) & mask;
+          if( keys[i] == null )
+            return;
+
+          int home = TxIdTable.hash( keys[i] ) & mask;
+
+          // Move the entry back when its home slot is not within (hole, i].
+          if( hole <= i ? ( home <= hole || home > i ) : ( home <= hole && home > i ))
+            break;
+        }
+
+        keys[hole]   = keys[i];
+        values[hole] = values[i];
+        hole         = i;
+      }
+    }
+
+    private void resize()
+    {
+      String[]  oldKeys   = keys;
+      Pending[] oldValues = values;
+
+      keys   = new String[oldKeys.length << 1];
+      values = new Pending[oldKeys.length << 1];
+
+      int mask = keys.length - 1;
+      for( int j = 0; j < oldKeys.length; j++ )
+      {
+        if( oldKeys[j] == null )
+          continue;
+
+        int i = TxIdTable.hash( oldKeys[j] ) & mask;
+        while( keys[i] != null )
+          i = ( i + 1 ) & mask;
+
+        keys[i]   = oldKeys[j];
+        values[i] = oldValues[j];
+      }
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package sdkwrapper.exceptions;
+
+/**
+ * The future of a submitted transaction fails with a CommitTimeoutException when the transaction has not been committed
+ * within the commit timeout.
+ */
+public class CommitTimeoutException extends Exception
+{
+  private static final long serialVersionUID = 3809916021567341377L;
+
+  private String channelId = null;
+  private String txId      = null;
+
+  public CommitTimeoutException( String msg, String channelId, String txId )
+  {
+    super( msg );
+    this.channelId = channelId;
+    this.txId      = txId;
+  }
+
+  public String getChannelId() { return channelId; }
+  public String getTxId()      { return txId;      }
+}
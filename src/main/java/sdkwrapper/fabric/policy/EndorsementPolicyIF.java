@@ -4,12 +4,14 @@ import java.util.Collection;
 
 import org.hyperledger.fabric.sdk.ProposalResponse;
 
+/**
+ * Endorsement policy of a chaincode. A policy instance is shared by all the requests for the chaincode, so
+ * implementations must not hold per request state. Each evaluation returns its own result.
+ * 
+ * @author tim
+ *
+ */
 public interface EndorsementPolicyIF
 {
-
-  public boolean isPolicyMet(Collection<ProposalResponse> responses);
-
-  public Collection<ProposalResponse> getFailedResponses();
-
-  public Collection<ProposalResponse> getSuccessfulResponses();
-}
\ No newline at end of file
+  public EndorsementPolicyResult evaluate( Collection<ProposalResponse> responses );
+}
@@ -0,0 +1,41 @@
+package sdkwrapper.fabric.policy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.hyperledger.fabric.sdk.ProposalResponse;
+
+/**
+ * Immutable result of evaluating an endorsement policy against the responses of one proposal. A result belongs to a
+ * single request, so a policy instance can be shared by concurrent requests.
+ * 
+ * @author tim
+ *
+ */
+public final class EndorsementPolicyResult
+{
+  private final boolean                      policyMet;
+  private final Collection<ProposalResponse> successfulResponses;
+  private final Collection<ProposalResponse> failedResponses;
+  private final String                       reason;
+
+  /**
+   * @param policyMet
+   * @param successful - copied
+   * @param failed     - copied
+   * @param reason     - why the policy was not met, or null when met
+   */
+  public EndorsementPolicyResult( boolean policyMet, Collection<ProposalResponse> successful, Collection<ProposalResponse> failed, String reason )
+  {
+    this.policyMet           = policyMet;
+    this.successfulResponses = Collections.unmodifiableList( new ArrayList<ProposalResponse>( successful ));
+    this.failedResponses     = Collections.unmodifiableList( new ArrayList<ProposalResponse>( failed     ));
+    this.reason              = reason;
+  }
+
+  public boolean                      isPolicyMet()            { return policyMet;           }
+  public Collection<ProposalResponse> getSuccessfulResponses() { return successfulResponses; }
+  public Collection<ProposalResponse> getFailedResponses()     { return failedResponses;     }
+  public String                       getReason()              { return reason;              }
+}
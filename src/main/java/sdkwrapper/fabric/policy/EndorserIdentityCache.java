@@ -0,0 +1,68 @@
+package sdkwrapper.fabric.policy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hyperledger.fabric.protos.msp.Identities.SerializedIdentity;
+import org.hyperledger.fabric.protos.peer.FabricProposalResponse;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * Resolves the MSP id of the endorser of a proposal response. The serialized endorser identity of each endorsing peer is
+ * parsed once and its MSP id cached, keyed by the identity bytes, as the same few peers endorse every request.
+ *
+ * The cache is cleared if it grows beyond MAX_ENTRIES, which only happens if endorser certificates are reissued often.
+ *
+ * @author tim
+ *
+ */
+public final class EndorserIdentityCache
+{
+  private static final int MAX_ENTRIES = 1024;
+
+  private static final EndorserIdentityCache INSTANCE = new EndorserIdentityCache();
+
+  private final Map<ByteString, String> mspIds = new ConcurrentHashMap<ByteString, String>();
+
+  public static EndorserIdentityCache getInstance() { return INSTANCE; }
+
+  /**
+   * @param response
+   * @return the MSP id of the endorser, or null when the response has no endorsement
+   */
+  public String getMspId( ProposalResponse response )
+  {
+    FabricProposalResponse.ProposalResponse proposalResponse = response.getProposalResponse();
+    if( proposalResponse == null || !proposalResponse.hasEndorsement() )
+      return null;
+
+    ByteString endorser = proposalResponse.getEndorsement().getEndorser();
+    String     mspId    = mspIds.get( endorser );
+    if( mspId != null )
+      return mspId;
+
+    try
+    {
+      mspId = SerializedIdentity.parseFrom( endorser ).getMspid();
+    }
+    catch( InvalidProtocolBufferException e )
+    {
+      return null;
+    }
+
+    if( mspIds.size() >= MAX_ENTRIES )
+      mspIds.clear();
+
+    mspIds.put( endorser, mspId );
+
+    return mspId;
+  }
+
+  public int size()
+  {
+    return mspIds.size();
+  }
+}
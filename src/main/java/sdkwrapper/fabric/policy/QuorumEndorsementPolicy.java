@@ -1,7 +1,7 @@
 package sdkwrapper.fabric.policy;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 
 import org.hyperledger.fabric.sdk.ProposalResponse;
 import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
@@ -17,14 +17,11 @@ import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
  */
 public class QuorumEndorsementPolicy implements EndorsementPolicyIF
 {
-  private Collection<ProposalResponse> failedResponses  = new HashSet<ProposalResponse>();
-  private Collection<ProposalResponse> successResponses = new HashSet<ProposalResponse>();
-  
-  
-  public boolean isPolicyMet(Collection<ProposalResponse> responses)
+  @Override
+  public EndorsementPolicyResult evaluate( Collection<ProposalResponse> responses )
   {
-    failedResponses.clear();
-    successResponses.clear();
+    Collection<ProposalResponse> failedResponses  = new ArrayList<ProposalResponse>();
+    Collection<ProposalResponse> successResponses = new ArrayList<ProposalResponse>();
     
     int totalResponses = responses.size();
     int quorum         = totalResponses/2 + 1;
@@ -51,19 +48,8 @@ public class QuorumEndorsementPolicy implements EndorsementPolicyIF
     }
 
     if( successResponses.size() >= quorum )
-      return true;
+      return new EndorsementPolicyResult( true, successResponses, failedResponses, null );
     
-    return false;
+    return new EndorsementPolicyResult( false, successResponses, failedResponses, "Quorum of " + quorum + " successful responses not received. Successful = " + successResponses.size() );
   }
-
-  public Collection<ProposalResponse> getFailedResponses()
-  {
-    return failedResponses;
-  }
-
-  public Collection<ProposalResponse> getSuccessfulResponses()
-  {
-    return successResponses;
-  }
-
 }
@@ -0,0 +1,415 @@
+package sdkwrapper.fabric.policy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
+
+/**
+ * Org aware endorsement policy compiled from a Fabric style signature policy expression, such as
+ *    AND('Org1MSP.peer', OR('Org2MSP.member', 'Org3MSP.member'))
+ *    OutOf(2, 'Org1MSP.member', 'Org2MSP.member', 'Org3MSP.member')
+ *
+ * The expression is parsed once into a flat tree of gates and principals, with each distinct MSP id of the expression
+ * given an index. A response is successful when its chaincode action status is 200 to 399, and its endorser MSP is
+ * resolved through the EndorserIdentityCache. Responses from MSPs not named by the expression are ignored.
+ *
+ * Where no MSP is named more than once the successful MSPs are held as bits of a long and the tree is evaluated against
+ * them without allocating. Where an MSP is named more than once, each principal needs its own endorsement, so the
+ * successful endorsements are counted per MSP and consumed by the principals they satisfy. This follows the greedy rule
+ * of Fabric's cauthdsl evaluation: every child of a gate is evaluated in order against a copy of the counts, and each
+ * satisfied child keeps what it consumed. No other matching is searched, so that AND(OR('Org1MSP.member',
+ * 'Org2MSP.member'), 'Org2MSP.member') is not met by one Org1MSP and one Org2MSP endorsement, as the peer's validation
+ * would reject it. The copies are made into one buffer per gate depth, allocated once per evaluating thread.
+ *
+ * The principal role (member, peer, admin or client) is validated but not enforced, as it would need the endorser's
+ * certificate to be decoded. At most 64 distinct MSP ids are supported.
+ *
+ * @author tim
+ *
+ */
+public class SignatureEndorsementPolicy implements EndorsementPolicyIF
+{
+  private static final int MAX_MSPS = 64;
+
+  private static final String[] ROLES = { "member", "peer", "admin", "client" };
+
+  private final String   expression;
+  private final String[] mspIds;         // by MSP index
+  private final int[]    threshold;      // by node. 0 for a principal
+  private final int[]    mspIndex;       // by node. -1 for a gate
+  private final int[]    firstChild;     // by node, into children
+  private final int[]    childCount;     // by node
+  private final int[]    children;
+  private final int      root;
+  private final boolean  repeatedMsp;
+
+  private final ThreadLocal<int[][]> scratch;  // by gate depth, only where an MSP is repeated
+
+  private SignatureEndorsementPolicy( String expression, Parser parser, int root )
+  {
+    this.expression  = expression;
+    this.mspIds      = parser.mspIds.keySet().toArray( new String[0] );
+    this.threshold   = toArray( parser.threshold  );
+    this.mspIndex    = toArray( parser.mspIndex   );
+    this.firstChild  = toArray( parser.firstChild );
+    this.childCount  = toArray( parser.childCount );
+    this.children    = toArray( parser.children   );
+    this.root        = root;
+    this.repeatedMsp = parser.repeatedMsp;
+
+    final int depths = depth( root ) + 1;
+    final int msps   = mspIds.length;
+    this.scratch = repeatedMsp ? ThreadLocal.withInitial( () -> new int[depths][msps] ) : null;
+  }
+
+  /**
+   * @param expression
+   * @return the compiled policy
+   * @throws IllegalArgumentException if the expression is not a valid signature policy
+   */
+  public static SignatureEndorsementPolicy compile( String expression )
+  {
+    if( expression == null || expression.trim().isEmpty() )
+      throw new IllegalArgumentException( "Empty endorsement policy expression." );
+
+    Parser parser = new Parser( expression );
+    int    root   = parser.parseExpression();
+    parser.expectEnd();
+
+    return new SignatureEndorsementPolicy( expression, parser, root );
+  }
+
+  public String getExpression() { return expression; }
+
+  @Override
+  public EndorsementPolicyResult evaluate( Collection<ProposalResponse> responses )
+  {
+    Collection<ProposalResponse> failedResponses  = new ArrayList<ProposalResponse>();
+    Collection<ProposalResponse> successResponses = new ArrayList<ProposalResponse>();
+
+    long    endorsed = 0L;
+    int[][] buffers  = repeatedMsp ? scratch.get() : null;
+    int[]   counts   = buffers != null ? buffers[0] : null;
+    if( counts != null )
+      Arrays.fill( counts, 0 );
+
+    EndorserIdentityCache identities = EndorserIdentityCache.getInstance();
+    for( ProposalResponse response : responses )
+    {
+      int returnCode = 0;
+      try
+      {
+        returnCode = response.getChaincodeActionResponseStatus();
+      }
+      catch( InvalidArgumentException e )
+      {
+        returnCode = 500;
+      }
+
+      if( returnCode < 200 || returnCode >= 400 )
+      {
+        failedResponses.add( response );
+        continue;
+      }
+
+      successResponses.add( response );
+
+      int index = indexOf( identities.getMspId( response ));
+      if( index < 0 )
+        continue;
+
+      endorsed |= 1L << index;
+      if( counts != null )
+        counts[index]++;
+    }
+
+    boolean met = repeatedMsp ? evaluate( root, counts, buffers, 0 ) : evaluate( root, endorsed );
+    if( met )
+      return new EndorsementPolicyResult( true, successResponses, failedResponses, null );
+
+    return new EndorsementPolicyResult( false, successResponses, failedResponses, "Policy " + expression + " not satisfied by " + successResponses.size() + " successful responses." );
+  }
+
+  /**
+   * Evaluate the node against the set of endorsed MSPs.
+   */
+  private boolean evaluate( int node, long endorsed )
+  {
+    if( mspIndex[node] >= 0 )
+      return ( endorsed & ( 1L << mspIndex[node] )) != 0;
+
+    int needed    = threshold[node];
+    int remaining = childCount[node];
+    for( int i = firstChild[node], end = i + childCount[node]; i < end; i++ )
+    {
+      if( evaluate( children[i], endorsed ) && --needed == 0 )
+        return true;
+
+      if( --remaining < needed )
+        return false;
+    }
+
+    return needed <= 0;
+  }
+
+  /**
+   * Evaluate the node consuming endorsements from the per MSP counts. Each child of a gate is evaluated against a copy
+   * of the counts in the buffer of the next depth, which is kept where the child is satisfied and dropped where not.
+   */
+  private boolean evaluate( int node, int[] counts, int[][] buffers, int depth )
+  {
+    int msp = mspIndex[node];
+    if( msp >= 0 )
+    {
+      if( counts[msp] == 0 )
+        return false;
+
+      counts[msp]--;
+      return true;
+    }
+
+    int[] copy      = buffers[depth + 1];
+    int   satisfied = 0;
+    for( int i = firstChild[node], end = i + childCount[node]; i < end; i++ )
+    {
+      System.arraycopy( counts, 0, copy, 0, counts.length );
+      if( evaluate( children[i], copy, buffers, depth + 1 ))
+      {
+        System.arraycopy( copy, 0, counts, 0, counts.length );
+        satisfied++;
+      }
+    }
+
+    return satisfied >= threshold[node];
+  }
+
+  /**
+   * @return the number of gates on the longest path from the node to a principal
+   */
+  private int depth( int node )
+  {
+    int depth = 0;
+    for( int i = firstChild[node], end = i + childCount[node]; i < end; i++ )
+      depth = Math.max( depth, depth( children[i] ));
+
+    return mspIndex[node] >= 0 ? 0 : depth + 1;
+  }
+
+  private int indexOf( String mspId )
+  {
+    if( mspId == null )
+      return -1;
+
+    for( int i = 0; i < mspIds.length; i++ )
+    {
+      if( mspIds[i].equals( mspId ))
+        return i;
+    }
+
+    return -1;
+  }
+
+  private static int[] toArray( List<Integer> values )
+  {
+    int[] array = new int[values.size()];
+    for( int i = 0; i < array.length; i++ )
+      array[i] = values.get( i );
+
+    return array;
+  }
+
+
+  /**
+   * Recursive descent parser of the expression into the flat node lists.
+   *    expression := gate | principal
+   *    gate       := AND( expression, ... ) | OR( expression, ... ) | OutOf( n, expression, ... )
+   *    principal  := 'mspId.role'
+   */
+  private static class Parser
+  {
+    final String text;
+    int          pos = 0;
+
+    final Map<String, Integer> mspIds      = new LinkedHashMap<String, Integer>();
+    final List<Integer>        threshold   = new ArrayList<Integer>();
+    final List<Integer>        mspIndex    = new ArrayList<Integer>();
+    final List<Integer>        firstChild  = new ArrayList<Integer>();
+    final List<Integer>        childCount  = new ArrayList<Integer>();
+    final List<Integer>        children    = new ArrayList<Integer>();
+    boolean                    repeatedMsp = false;
+
+    Parser( String text )
+    {
+      this.text = text;
+    }
+
+    /**
+     * @return the node index of the expression
+     */
+    int parseExpression()
+    {
+      skipSpace();
+      if( pos >= text.length() )
+        throw error( "Unexpected end of expression" );
+
+      char c = text.charAt( pos );
+      if( c == '\'' || c == '"' )
+        return parsePrincipal();
+
+      String keyword = parseWord();
+      expect( '(' );
+
+      int needed = -1;
+      if( "OutOf".equalsIgnoreCase( keyword ))
+      {
+        needed = parseInt();
+        expect( ',' );
+      }
+      else if( !"AND".equalsIgnoreCase( keyword ) && !"OR".equalsIgnoreCase( keyword ))
+        throw error( "Unknown policy function " + keyword );
+
+      List<Integer> nodes = new ArrayList<Integer>();
+      nodes.add( parseExpression() );
+      while( accept( ',' ))
+        nodes.add( parseExpression() );
+
+      expect( ')' );
+
+      if( "AND".equalsIgnoreCase( keyword ))
+        needed = nodes.size();
+      else if( "OR".equalsIgnoreCase( keyword ))
+        needed = 1;
+      else if( needed < 1 || needed > nodes.size() )
+        throw error( "OutOf count " + needed + " must be between 1 and " + nodes.size() );
+
+      int node = addNode( needed, -1 );
+      firstChild.set( node, children.size() );
+      childCount.set( node, nodes.size() );
+      children.addAll( nodes );
+
+      return node;
+    }
+
+    private int parsePrincipal()
+    {
+      char quote = text.charAt( pos++ );
+      int  end   = text.indexOf( quote, pos );
+      if( end < 0 )
+        throw error( "Unterminated principal" );
+
+      String principal = text.substring( pos, end ).trim();
+      pos = end + 1;
+
+      int dot = principal.lastIndexOf( '.' );
+      if( dot <= 0 || dot == principal.length() - 1 )
+        throw error( "Principal " + principal + " must be of the form mspId.role" );
+
+      String mspId = principal.substring( 0, dot );
+      String role  = principal.substring( dot + 1 );
+      if( !isRole( role ))
+        throw error( "Unknown role " + role + " of principal " + principal );
+
+      Integer index = mspIds.get( mspId );
+      if( index == null )
+      {
+        if( mspIds.size() == MAX_MSPS )
+          throw error( "More than " + MAX_MSPS + " MSP ids" );
+
+        index = mspIds.size();
+        mspIds.put( mspId, index );
+      }
+      else
+        repeatedMsp = true;
+
+      return addNode( 0, index );
+    }
+
+    private int addNode( int needed, int msp )
+    {
+      threshold.add(  needed );
+      mspIndex.add(   msp    );
+      firstChild.add( 0      );
+      childCount.add( 0      );
+
+      return threshold.size() - 1;
+    }
+
+    private static boolean isRole( String role )
+    {
+      for( String known : ROLES )
+      {
+        if( known.equalsIgnoreCase( role ))
+          return true;
+      }
+
+      return false;
+    }
+
+    private String parseWord()
+    {
+      int start = pos;
+      while( pos < text.length() && Character.isLetter( text.charAt( pos )))
+        pos++;
+
+      if( start == pos )
+        throw error( "Expected AND, OR or OutOf" );
+
+      return text.substring( start, pos );
+    }
+
+    private int parseInt()
+    {
+      skipSpace();
+      int start = pos;
+      while( pos < text.length() && Character.isDigit( text.charAt( pos )))
+        pos++;
+
+      if( start == pos )
+        throw error( "Expected OutOf count" );
+
+      return Integer.parseInt( text.substring( start, pos ));
+    }
+
+    private boolean accept( char c )
+    {
+      skipSpace();
+      if( pos < text.length() && text.charAt( pos ) == c )
+      {
+        pos++;
+        return true;
+      }
+
+      return false;
+    }
+
+    private void expect( char c )
+    {
+      if( !accept( c ))
+        throw error( "Expected '" + c + "'" );
+    }
+
+    void expectEnd()
+    {
+      skipSpace();
+      if( pos != text.length() )
+        throw error( "Unexpected text" );
+    }
+
+    private void skipSpace()
+    {
+      while( pos < text.length() && Character.isWhitespace( text.charAt( pos )))
+        pos++;
+    }
+
+    private IllegalArgumentException error( String msg )
+    {
+      return new IllegalArgumentException( msg + " at position " + pos + " of endorsement policy " + text );
+    }
+  }
+}
@@ -1,7 +1,7 @@
 package sdkwrapper.fabric.policy;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 
 import org.hyperledger.fabric.sdk.ProposalResponse;
 import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
@@ -17,14 +17,11 @@ public class StakeholderEndorsementPolicy implements EndorsementPolicyIF
 {
   private static final int MINIMUM_SUCCESS = 2;
   
-  private Collection<ProposalResponse> failedResponses  = new HashSet<ProposalResponse>();
-  private Collection<ProposalResponse> successResponses = new HashSet<ProposalResponse>();
-  
-  
-  public boolean isPolicyMet(Collection<ProposalResponse> responses)
+  @Override
+  public EndorsementPolicyResult evaluate( Collection<ProposalResponse> responses )
   {
-    failedResponses.clear();
-    successResponses.clear();
+    Collection<ProposalResponse> failedResponses  = new ArrayList<ProposalResponse>();
+    Collection<ProposalResponse> successResponses = new ArrayList<ProposalResponse>();
     
     try
     {
@@ -49,22 +46,11 @@ public class StakeholderEndorsementPolicy implements EndorsementPolicyIF
 
     // If any failed response returned endorsement fails.
     if( !failedResponses.isEmpty() )
-      return false;
+      return new EndorsementPolicyResult( false, successResponses, failedResponses, "Found " + failedResponses.size() + " failed responses." );
     
     if( successResponses.size() >= MINIMUM_SUCCESS )
-      return true;
+      return new EndorsementPolicyResult( true, successResponses, failedResponses, null );
     
-    return false;
-  }
-
-  public Collection<ProposalResponse> getFailedResponses()
-  {
-    return failedResponses;
+    return new EndorsementPolicyResult( false, successResponses, failedResponses, "Minimum of " + MINIMUM_SUCCESS + " successful responses not received. Successful = " + successResponses.size() );
   }
-
-  public Collection<ProposalResponse> getSuccessfulResponses()
-  {
-    return successResponses;
-  }
-
 }
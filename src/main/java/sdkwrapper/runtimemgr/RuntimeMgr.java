@@ -5,17 +5,31 @@ import org.apache.log4j.Logger;
 import org.hyperledger.fabric.sdk.helper.Config;
 
 import sdkwrapper.block.store.BlockEventSeqFileStore;
+import sdkwrapper.block.store.BlockEventSeqLogStore;
 import sdkwrapper.block.store.BlockEventSeqStoreIF;
+import sdkwrapper.config.ConfigKeysIF;
 import sdkwrapper.config.ConfigProperties;
 import sdkwrapper.error.ErrorCommandIF;
 import sdkwrapper.error.ErrorController;
+import sdkwrapper.events.BlockCatchUpEngine;
+import sdkwrapper.events.BlockEventDeduplicator;
+import sdkwrapper.events.BlockEventPipeline;
 import sdkwrapper.events.BlockEventProcessorIF;
 import sdkwrapper.events.BlockEventProcessorImpl;
+import sdkwrapper.events.ChannelEventDispatcher;
+import sdkwrapper.events.TransactionCompletionRegistry;
 import sdkwrapper.exceptions.BlockEventException;
 import sdkwrapper.exceptions.ConfigurationException;
 import sdkwrapper.exceptions.InfrastructureException;
 
+import sdkwrapper.service.AsyncTransactionSubmitter;
+import sdkwrapper.service.BatchingTransactionSubmitter;
+import sdkwrapper.service.EndorsementCollector;
 import sdkwrapper.service.FabricServices;
+import sdkwrapper.service.HedgedQueryExecutor;
+import sdkwrapper.service.LatencyAwareEndorsementSelector;
+import sdkwrapper.service.QueryResultCache;
+import sdkwrapper.vo.codec.JsonCodec;
 
 
 /**
@@ -28,17 +42,20 @@ public class RuntimeMgr implements RuntimeMgrIF
 {
   private static final Logger logger = LogManager.getLogger( RuntimeMgr.class );
   
-  private FabricServices        fabricServices      = null;
-  private ErrorController       errorController     = null;
-  private BlockEventProcessorIF blockEventProcessor = null;  
-  private BlockEventSeqStoreIF  blockSeqStore       = null;
-  private ConfigProperties      config              = null;
+  private FabricServices          fabricServices      = null;
+  private ErrorController         errorController     = null;
+  private BlockEventProcessorIF   blockEventProcessor = null;  
+  private BlockEventProcessorImpl blockProcessorImpl  = null;
+  private BlockEventSeqStoreIF    blockSeqStore       = null;
+  private ConfigProperties        config              = null;
+  private TimingWheelService      timingWheel         = null;
   
   public ErrorController       getErrorController()     { return errorController;     }
   public FabricServices        getFabricServices()      { return fabricServices;      }
   public BlockEventProcessorIF getBlockEventProcessor() { return blockEventProcessor; }
   public BlockEventSeqStoreIF  getBlockSeqStore()       { return blockSeqStore;       }
   public ConfigProperties      getConfig()              { return config;              }
+  public TimingWheelService    getTimingWheel()         { return timingWheel;         }
   
   
   @Override
@@ -55,16 +72,25 @@ public class RuntimeMgr implements RuntimeMgrIF
     // initialize the Block Sequence Store
     try
     {
-      this.blockSeqStore = BlockEventSeqFileStore.getInstance();
+      this.blockSeqStore = createBlockSeqStore();
     } catch( BlockEventException e )
     {
       throw new InfrastructureException( "Error initializing Block Sequence Store. Error = " + e.getMessage() );
     }
 
+    // Create the Block Event Processor used by the channel block listeners
+    this.blockEventProcessor = createBlockEventProcessor();
+
+    // Blocks from several event source peers are deduplicated before processing
+    if( parseInt( ConfigKeysIF.BLOCK_EVENT_SOURCES, 1 ) > 1 )
+      this.blockEventProcessor = new BlockEventDeduplicator( blockEventProcessor, parseInt( ConfigKeysIF.BLOCK_DEDUP_WINDOW, 256 ));
     
     // Initializing Fabric Services
     startFabricServices( sdkConfigPath );
 
+    // Missing blocks are fetched from the channel peers once Fabric Services is available as the block source
+    startBlockCatchUp();
+
 //    try
 //    {
 //      // Start Fabric Block Listeners
@@ -85,6 +111,30 @@ public class RuntimeMgr implements RuntimeMgrIF
     cmd.processError();
   }
 
+  /**
+   * Stop the components in the reverse order of their creation. Run by the shutdown hook registered in main.
+   *
+   * The submitters go first, so open batches are flushed, then the commit timeouts. The block processors then process
+   * the blocks already queued before stopping, along with the catch up engine and decode pool of the processor. The
+   * block position store is closed last, once the final checkpoints are written.
+   */
+  public void shutdown()
+  {
+    logger.info( "Shutting down the RuntimeMgr" );
+
+    if( fabricServices != null )
+      fabricServices.shutdown();
+
+    if( timingWheel != null )
+      timingWheel.shutdown();
+
+    if( blockEventProcessor != null )
+      blockEventProcessor.shutdown();
+
+    if( blockSeqStore instanceof BlockEventSeqLogStore )
+      ((BlockEventSeqLogStore) blockSeqStore).shutdown();
+  }
+
   
   private void loadOrgContextConfig( String propsPath )
    throws ConfigurationException
@@ -122,15 +172,213 @@ public class RuntimeMgr implements RuntimeMgrIF
 //    if( config.hasProperty( Config.LIFECYCLE_CHAINCODE_ENDORSEMENT_PLUGIN )) System.setProperty( Config.LIFECYCLE_CHAINCODE_ENDORSEMENT_PLUGIN, config.getProperty( Config.LIFECYCLE_CHAINCODE_ENDORSEMENT_PLUGIN ));
 //    if( config.hasProperty( Config.LIFECYCLE_CHAINCODE_VALIDATION_PLUGIN  )) System.setProperty( Config.LIFECYCLE_CHAINCODE_VALIDATION_PLUGIN,  config.getProperty( Config.LIFECYCLE_CHAINCODE_VALIDATION_PLUGIN ));
 //    if( config.hasProperty( Config.LIFECYCLE_INITREQUIREDDEFAULT          )) System.setProperty( Config.LIFECYCLE_INITREQUIREDDEFAULT,          config.getProperty( Config.LIFECYCLE_INITREQUIREDDEFAULT ));
-  
+
+    JsonCodec.setMaxLoggedLength( parseInt( ConfigKeysIF.CODEC_LOG_MAX_LENGTH, JsonCodec.DEFAULT_MAX_LOGGED_LENGTH ));
   }
   
+  /**
+   * The append log store is used when block.seq.store = log, otherwise the original serialized map file store.
+   */
+  private BlockEventSeqStoreIF createBlockSeqStore()
+   throws BlockEventException, ConfigurationException
+  {
+    if( "log".equals( config.getProperty( ConfigKeysIF.BLOCK_SEQ_STORE )))
+    {
+      String directory  = BlockEventSeqLogStore.DEFAULT_DIRECTORY;
+      int    logRecords = BlockEventSeqLogStore.DEFAULT_LOG_RECORDS;
+
+      if( config.hasProperty( ConfigKeysIF.BLOCK_SEQ_DIR ))
+        directory = config.getProperty( ConfigKeysIF.BLOCK_SEQ_DIR );
+
+      if( config.hasProperty( ConfigKeysIF.BLOCK_SEQ_LOG_RECORDS ))
+        logRecords = parseInt( ConfigKeysIF.BLOCK_SEQ_LOG_RECORDS );
+
+      logger.info( "Using append log Block Sequence Store in directory " + directory );
+      return BlockEventSeqLogStore.getInstance( directory, logRecords );
+    }
+
+    return BlockEventSeqFileStore.getInstance();
+  }
+
+  /**
+   * The staged asynchronous pipeline is used when block.processor.mode = pipeline, and the per channel serial dispatcher
+   * when block.processor.mode = channel. Otherwise blocks are processed directly on the SDK event thread. Blocks are
+   * materialized lazily when block.materialization = lazy, and the transactions of large blocks are decoded in parallel
+   * when block.decode.parallel.threshold is set.
+   */
+  private BlockEventProcessorIF createBlockEventProcessor()
+   throws ConfigurationException
+  {
+    BlockEventProcessorImpl.MaterializationMode mode = BlockEventProcessorImpl.MaterializationMode.EAGER;
+    if( "lazy".equals( config.getProperty( ConfigKeysIF.BLOCK_MATERIALIZATION )))
+      mode = BlockEventProcessorImpl.MaterializationMode.LAZY;
+
+    BlockEventProcessorImpl processor = new BlockEventProcessorImpl( this, blockSeqStore, mode );
+    this.blockProcessorImpl = processor;
+
+    int decodeThreshold = parseInt( ConfigKeysIF.BLOCK_DECODE_THRESHOLD, 0 );
+    if( decodeThreshold > 0 )
+      processor.setParallelDecode( parseInt( ConfigKeysIF.BLOCK_DECODE_PARALLELISM, Runtime.getRuntime().availableProcessors() ), decodeThreshold );
+
+    if( "pipeline".equals( config.getProperty( ConfigKeysIF.BLOCK_PROCESSOR_MODE )))
+    {
+      return new BlockEventPipeline( processor,
+                                     parseInt( ConfigKeysIF.PIPELINE_QUEUE_SIZE,         64 ),
+                                     parseInt( ConfigKeysIF.PIPELINE_DECODE_WORKERS,     2  ),
+                                     parseInt( ConfigKeysIF.PIPELINE_TRANSFORM_WORKERS,  2  ),
+                                     parseInt( ConfigKeysIF.PIPELINE_DISPATCH_WORKERS,   1  ),
+                                     parseInt( ConfigKeysIF.PIPELINE_CHECKPOINT_WORKERS, 1  ));
+    }
+
+    if( "channel".equals( config.getProperty( ConfigKeysIF.BLOCK_PROCESSOR_MODE )))
+    {
+      return new ChannelEventDispatcher( processor,
+                                         parseInt( ConfigKeysIF.CHANNEL_DISPATCH_THREADS,    Runtime.getRuntime().availableProcessors() ),
+                                         parseInt( ConfigKeysIF.CHANNEL_DISPATCH_QUEUE_SIZE, 64 ));
+    }
+
+    return processor;
+  }
+
+  /**
+   * Gap detection and catch up is enabled when block.catchup = true. It applies to the direct and channel processor
+   * modes, where blocks reach BlockEventProcessorImpl.processBlockTransactions, and not to the pipeline.
+   */
+  private void startBlockCatchUp()
+   throws ConfigurationException
+  {
+    if( !"true".equalsIgnoreCase( config.getProperty( ConfigKeysIF.BLOCK_CATCHUP )))
+      return;
+
+    if( "pipeline".equals( config.getProperty( ConfigKeysIF.BLOCK_PROCESSOR_MODE )))
+    {
+      logger.warn( "block.catchup is not supported with block.processor.mode = pipeline. Catch up disabled." );
+      return;
+    }
+
+    blockProcessorImpl.setCatchUp( new BlockCatchUpEngine( blockProcessorImpl, fabricServices,
+                                                           parseInt( ConfigKeysIF.BLOCK_CATCHUP_BATCH_SIZE, 16  ),
+                                                           parseInt( ConfigKeysIF.BLOCK_CATCHUP_THREADS,    4   ),
+                                                           parseInt( ConfigKeysIF.BLOCK_REORDER_CAPACITY,   256 )));
+  }
+
+  private int parseInt( String key, int defaultValue )
+   throws ConfigurationException
+  {
+    if( !config.hasProperty( key ))
+      return defaultValue;
+
+    return parseInt( key );
+  }
+
+  private int parseInt( String key )
+   throws ConfigurationException
+  {
+    try
+    {
+      return Integer.parseInt( config.getProperty( key ).trim() );
+    }
+    catch( NumberFormatException e )
+    {
+      throw new ConfigurationException( "Invalid integer value for property " + key + ". Error = " + e.getMessage() );
+    }
+  }
+
   private void startFabricServices( String sdkConfigPath )
    throws InfrastructureException, ConfigurationException
   {
     fabricServices = new FabricServices( this );
+
+    // Submitted transactions not committed within the commit timeout are failed by the timing wheel.
+    int invokeWaitTime = parseInt( ConfigKeysIF.INVOKE_WAIT_TIME_MS, 120000 );
+    timingWheel = new TimingWheelService( parseInt( ConfigKeysIF.COMMIT_TICK_MS, 100 ));
+    fabricServices.setInvokeWaitTime( invokeWaitTime );
+    fabricServices.setCommitTimeout(  parseInt( ConfigKeysIF.COMMIT_TIMEOUT_MS, invokeWaitTime ));
         
+    // A channel failing endorsement is refreshed in the background and the replaced channel closed once drained.
+    fabricServices.setRefreshWaitTime( parseInt( ConfigKeysIF.CHANNEL_REFRESH_WAIT_MS, 2000   ));
+    fabricServices.setDrainTime(       parseInt( ConfigKeysIF.CHANNEL_DRAIN_MS,        120000 ));
+
+    // The query cache is enabled when query.cache.size > 0 and is invalidated by the blocks processed. It observes the
+    // blocks from before initialize starts the channel listeners, so no committed block is missed.
+    int cacheSize = parseInt( ConfigKeysIF.QUERY_CACHE_SIZE, 0 );
+    if( cacheSize > 0 )
+    {
+      QueryResultCache.InvalidationMode cacheMode = QueryResultCache.InvalidationMode.COARSE;
+      if( "fine".equals( config.getProperty( ConfigKeysIF.QUERY_CACHE_MODE )))
+        cacheMode = QueryResultCache.InvalidationMode.FINE;
+
+      QueryResultCache cache = new QueryResultCache( cacheSize, parseInt( ConfigKeysIF.QUERY_CACHE_TTL_MS, 30000 ), cacheMode );
+      blockEventProcessor.addBlockObserver( cache );
+      fabricServices.setQueryCache( cache );
+    }
+
+    // Transaction futures are completed from the processed blocks, rather than by SDK listeners, when commit.registry = true.
+    // Like the query cache it observes the blocks from before the channel listeners start.
+    if( "true".equalsIgnoreCase( config.getProperty( ConfigKeysIF.COMMIT_REGISTRY )))
+    {
+      TransactionCompletionRegistry registry = new TransactionCompletionRegistry();
+      blockEventProcessor.addBlockObserver( registry );
+      fabricServices.setCompletionRegistry( registry );
+    }
+
+    fabricServices.setEventSourceCount( parseInt( ConfigKeysIF.BLOCK_EVENT_SOURCES, 1 ));
     fabricServices.initialize( sdkConfigPath );
+
+    AsyncTransactionSubmitter submitter = createTransactionSubmitter();
+    fabricServices.setTransactionSubmitter( submitter );
+
+    // Batching is enabled when submit.batch.size > 1
+    int batchSize = parseInt( ConfigKeysIF.SUBMIT_BATCH_SIZE, 1 );
+    if( batchSize > 1 )
+    {
+      fabricServices.setBatchingSubmitter( new BatchingTransactionSubmitter( fabricServices, submitter, batchSize, parseInt( ConfigKeysIF.SUBMIT_BATCH_DELAY_MS, 10 )));
+    }
+
+    // Org peers are queried concurrently when query.mode = parallel or hedged, otherwise in turn.
+    String queryMode = config.getProperty( ConfigKeysIF.QUERY_MODE );
+    if( "parallel".equals( queryMode ) || "hedged".equals( queryMode ))
+    {
+      HedgedQueryExecutor.QueryMode mode = "parallel".equals( queryMode ) ? HedgedQueryExecutor.QueryMode.PARALLEL : HedgedQueryExecutor.QueryMode.HEDGED;
+
+      fabricServices.setQueryExecutor( new HedgedQueryExecutor( mode, parseInt( ConfigKeysIF.QUERY_HEDGE_DELAY_MS, 50 ), parseInt( ConfigKeysIF.QUERY_THREADS, 16 )));
+    }
+
+    // Endorsement proceeds with the first proposal meeting the policy, sending spare proposals when slow, when
+    // endorsement.mode = hedged.
+    if( "hedged".equals( config.getProperty( ConfigKeysIF.ENDORSEMENT_MODE )))
+      fabricServices.setEndorsementCollector( new EndorsementCollector( parseInt( ConfigKeysIF.ENDORSEMENT_HEDGE_DELAY_MS, 500 ), parseInt( ConfigKeysIF.ENDORSEMENT_SPARES, 1 ), parseInt( ConfigKeysIF.ENDORSEMENT_THREADS, 16 )));
+
+    // Endorsers are picked by expected latency, rather than at random, when endorsement.selector = latency.
+    if( "latency".equals( config.getProperty( ConfigKeysIF.ENDORSEMENT_SELECTOR )))
+      fabricServices.setEndorsementSelector( new LatencyAwareEndorsementSelector( parseInt( ConfigKeysIF.ENDORSEMENT_RECOVERY_MS, 30000 )));
+  }
+
+  /**
+   * Pipelined transaction submission with a per channel in flight window. submit.backpressure selects block (default),
+   * reject or queue when the window is full.
+   */
+  private AsyncTransactionSubmitter createTransactionSubmitter()
+   throws ConfigurationException
+  {
+    AsyncTransactionSubmitter.Backpressure backpressure = AsyncTransactionSubmitter.Backpressure.BLOCK;
+    if( config.hasProperty( ConfigKeysIF.SUBMIT_BACKPRESSURE ))
+    {
+      try
+      {
+        backpressure = AsyncTransactionSubmitter.Backpressure.valueOf( config.getProperty( ConfigKeysIF.SUBMIT_BACKPRESSURE ).trim().toUpperCase() );
+      }
+      catch( IllegalArgumentException e )
+      {
+        throw new ConfigurationException( "Invalid value for property " + ConfigKeysIF.SUBMIT_BACKPRESSURE + ". Error = " + e.getMessage() );
+      }
+    }
+
+    return new AsyncTransactionSubmitter( fabricServices,
+                                          parseInt( ConfigKeysIF.SUBMIT_WINDOW_SIZE, 32   ),
+                                          backpressure,
+                                          parseInt( ConfigKeysIF.SUBMIT_QUEUE_SIZE,  1024 ),
+                                          parseInt( ConfigKeysIF.SUBMIT_WORKERS,     8    ));
   }
 
   
@@ -152,7 +400,8 @@ public class RuntimeMgr implements RuntimeMgrIF
       }
     }	
 	
-    RuntimeMgrIF runtimeMgr = new RuntimeMgr();
+    final RuntimeMgr runtimeMgr = new RuntimeMgr();
+    Runtime.getRuntime().addShutdownHook( new Thread( runtimeMgr::shutdown, "runtime-shutdown" ));
 	
     try
     {
@@ -16,6 +16,7 @@ public interface RuntimeMgrIF
   public BlockEventSeqStoreIF  getBlockSeqStore();
   public BlockEventProcessorIF getBlockEventProcessor();
   public ConfigProperties      getConfig();
+  public TimingWheelService    getTimingWheel();
   
   public void initialize( String appPropsPath, String sdkConfigPath ) 
     throws ConfigurationException, InfrastructureException;
@@ -0,0 +1,343 @@
+package sdkwrapper.runtimemgr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import sdkwrapper.exceptions.CommitTimeoutException;
+
+/**
+ * Hierarchical timing wheel for the timeouts of the runtime, principally the commit timeouts of submitted transactions.
+ *
+ * The wheel has LEVELS levels of SLOTS slots. A level 0 slot is one tick and a slot of each further level spans a full
+ * turn of the level below, so LEVELS levels cover SLOTS^LEVELS ticks. A timeout is linked into the slot of the lowest
+ * level which covers its deadline and is moved down a level each time the level below turns over into its slot, which
+ * is at most LEVELS - 1 moves. Scheduling and cancelling are O(1) and expiry is O(1) per timeout, whatever the number
+ * of timeouts pending. Timeouts beyond the span of the wheel are clamped to it.
+ *
+ * Expired tasks run on the wheel's single timer thread and must be short.
+ *
+ * @author tim
+ *
+ */
+public class TimingWheelService
+{
+  private static Logger logger = LogManager.getLogger( TimingWheelService.class );
+
+  private static final int  SLOT_BITS = 6;
+  private static final int  SLOTS     = 1 << SLOT_BITS;
+  private static final int  SLOT_MASK = SLOTS - 1;
+  private static final int  LEVELS    = 4;
+  private static final long MAX_TICKS = ( 1L << ( SLOT_BITS * LEVELS )) - 1;
+
+  private final long                     tickMs;
+  private final Timeout[][]              wheel = new Timeout[LEVELS][SLOTS];
+  private final ScheduledExecutorService ticker;
+
+  private final Map<String, CommitCounts> commits = new ConcurrentHashMap<String, CommitCounts>();
+
+  private long currentTick = 0;    // Guarded by this
+  private int  scheduled   = 0;    // Guarded by this
+
+  /**
+   * @param tickMs - resolution of the wheel in milliseconds
+   */
+  public TimingWheelService( long tickMs )
+  {
+    this.tickMs = Math.max( 1, tickMs );
+
+    this.ticker = Executors.newSingleThreadScheduledExecutor( r ->
+    {
+      Thread thread = new Thread( r, "timing-wheel" );
+      thread.setDaemon( true );
+      return thread;
+    });
+    this.ticker.scheduleAtFixedRate( this::advance, this.tickMs, this.tickMs, TimeUnit.MILLISECONDS );
+
+    logger.info( "TimingWheelService created. Tick = " + this.tickMs + " ms, span = " + ( MAX_TICKS * this.tickMs ) + " ms" );
+  }
+
+  public long getTickMs() { return tickMs; }
+
+  /**
+   * @return timeouts scheduled and neither expired nor cancelled
+   */
+  public synchronized int getScheduledCount()
+  {
+    return scheduled;
+  }
+
+  /**
+   * Run the task once the delay has passed, unless the returned timeout is cancelled first.
+   *
+   * @param delayMs
+   * @param task
+   * @return
+   */
+  public Timeout schedule( long delayMs, Runnable task )
+  {
+    Timeout timeout = new Timeout( task );
+    long    ticks   = Math.min( MAX_TICKS, Math.max( 1, ( delayMs + tickMs - 1 ) / tickMs ));
+
+    synchronized( this )
+    {
+      timeout.deadline = currentTick + ticks;
+      link( timeout );
+      scheduled++;
+    }
+
+    return timeout;
+  }
+
+  /**
+   * Fail the future of a submitted transaction with a CommitTimeoutException if it is not completed within the timeout.
+   * The pending and expired counts of the channel are maintained until the future completes either way.
+   *
+   * @param channelId
+   * @param txId
+   * @param future
+   * @param timeoutMs
+   */
+  public void trackCommit( String channelId, String txId, CompletableFuture<?> future, long timeoutMs )
+  {
+    final CommitCounts  counts  = commits.computeIfAbsent( channelId, id -> new CommitCounts() );
+    final AtomicBoolean settled = new AtomicBoolean();
+    counts.pending.incrementAndGet();
+
+    // The counts are updated before the timeout fails the future, so a caller woken by the failure sees them. Whichever
+    // of the timeout and the completion settles the transaction first takes it out of the pending count.
+    Timeout timeout = schedule( timeoutMs, () ->
+    {
+      if( future.isDone() || !settled.compareAndSet( false, true ))
+        return;
+
+      counts.pending.decrementAndGet();
+      counts.expired.incrementAndGet();
+
+      String msg = "Transaction " + txId + " on channel " + channelId + " not committed within " + timeoutMs + " ms.";
+      if( future.completeExceptionally( new CommitTimeoutException( msg, channelId, txId )))
+        logger.warn( msg );
+      else
+        counts.expired.decrementAndGet();
+    });
+
+    future.whenComplete(( result, e ) ->
+    {
+      timeout.cancel();
+      if( settled.compareAndSet( false, true ))
+        counts.pending.decrementAndGet();
+    });
+  }
+
+  /**
+   * @param channelId
+   * @return transactions of the channel tracked and not yet completed
+   */
+  public long getPendingCount( String channelId )
+  {
+    CommitCounts counts = commits.get( channelId );
+    return ( counts == null ) ? 0 : counts.pending.get();
+  }
+
+  /**
+   * @param channelId
+   * @return transactions of the channel failed by the commit timeout since start up
+   */
+  public long getExpiredCount( String channelId )
+  {
+    CommitCounts counts = commits.get( channelId );
+    return ( counts == null ) ? 0 : counts.expired.get();
+  }
+
+  /**
+   * @return the pending count of each channel, by channel id
+   */
+  public Map<String, Long> getPendingCounts()
+  {
+    Map<String, Long> pending = new TreeMap<String, Long>();
+    for( Map.Entry<String, CommitCounts> entry : commits.entrySet() )
+      pending.put( entry.getKey(), entry.getValue().pending.get() );
+
+    return pending;
+  }
+
+  /**
+   * @return the expired count of each channel, by channel id
+   */
+  public Map<String, Long> getExpiredCounts()
+  {
+    Map<String, Long> expired = new TreeMap<String, Long>();
+    for( Map.Entry<String, CommitCounts> entry : commits.entrySet() )
+      expired.put( entry.getKey(), entry.getValue().expired.get() );
+
+    return expired;
+  }
+
+  public void shutdown()
+  {
+    ticker.shutdownNow();
+  }
+
+  /**
+   * Advance the wheel one tick. The higher level slots reached are moved down and the level 0 slot is expired.
+   */
+  private void advance()
+  {
+    List<Timeout> due = new ArrayList<Timeout>();
+    synchronized( this )
+    {
+      currentTick++;
+
+      for( int level = 1; level < LEVELS; level++ )
+      {
+        if(( currentTick & (( 1L << ( SLOT_BITS * level )) - 1 )) != 0 )
+          break;
+
+        cascade( level, (int) (( currentTick >>> ( SLOT_BITS * level )) & SLOT_MASK ));
+      }
+
+      int     slot    = (int) ( currentTick & SLOT_MASK );
+      Timeout timeout = wheel[0][slot];
+      wheel[0][slot]  = null;
+
+      while( timeout != null )
+      {
+        Timeout next = timeout.next;
+        timeout.prev  = null;
+        timeout.next  = null;
+        timeout.level = -1;
+        scheduled--;
+
+        due.add( timeout );
+        timeout = next;
+      }
+    }
+
+    for( Timeout timeout : due )
+    {
+      try
+      {
+        timeout.task.run();
+      }
+      catch( RuntimeException e )
+      {
+        logger.error( "Timing wheel task failed. Error = " + e.getMessage() );
+      }
+    }
+  }
+
+  /**
+   * Relink the timeouts of a higher level slot, which now fall within a lower level. Called holding the lock.
+   */
+  private void cascade( int level, int slot )
+  {
+    Timeout timeout = wheel[level][slot];
+    wheel[level][slot] = null;
+
+    while( timeout != null )
+    {
+      Timeout next = timeout.next;
+      timeout.prev = null;
+      timeout.next = null;
+
+      link( timeout );
+      timeout = next;
+    }
+  }
+
+  /**
+   * Link the timeout into the slot of the lowest level covering its deadline. A timeout cascaded on its deadline tick
+   * goes into the current level 0 slot, which is expired next. Called holding the lock.
+   */
+  private void link( Timeout timeout )
+  {
+    long delta = timeout.deadline - currentTick;
+
+    int level = 0;
+    while( level < LEVELS - 1 && delta >= ( 1L << ( SLOT_BITS * ( level + 1 ))))
+      level++;
+
+    int slot = (int) (( timeout.deadline >>> ( SLOT_BITS * level )) & SLOT_MASK );
+
+    timeout.level = level;
+    timeout.slot  = slot;
+    timeout.next  = wheel[level][slot];
+    if( timeout.next != null )
+      timeout.next.prev = timeout;
+
+    wheel[level][slot] = timeout;
+  }
+
+  /**
+   * Unlink the timeout from its slot. Called holding the lock.
+   */
+  private void unlink( Timeout timeout )
+  {
+    if( timeout.prev != null )
+      timeout.prev.next = timeout.next;
+    else
+      wheel[timeout.level][timeout.slot] = timeout.next;
+
+    if( timeout.next != null )
+      timeout.next.prev = timeout.prev;
+
+    timeout.prev  = null;
+    timeout.next  = null;
+    timeout.level = -1;
+    scheduled--;
+  }
+
+
+  /**
+   * A scheduled task. Linked into a slot of the wheel until it expires or is cancelled.
+   */
+  public final class Timeout
+  {
+    private final Runnable task;
+
+    // Guarded by the wheel
+    private long    deadline = 0;
+    private int     level    = -1;
+    private int     slot     = 0;
+    private Timeout prev     = null;
+    private Timeout next     = null;
+
+    private Timeout( Runnable task )
+    {
+      this.task = task;
+    }
+
+    /**
+     * @return true if the timeout was cancelled, false if it had already expired or been cancelled
+     */
+    public boolean cancel()
+    {
+      synchronized( TimingWheelService.this )
+      {
+        if( level < 0 )
+          return false;
+
+        unlink( this );
+        return true;
+      }
+    }
+  }
+
+
+  private static class CommitCounts
+  {
+    final AtomicLong pending = new AtomicLong();
+    final AtomicLong expired = new AtomicLong();
+  }
+}
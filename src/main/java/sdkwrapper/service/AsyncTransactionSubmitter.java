@@ -0,0 +1,271 @@
+package sdkwrapper.service;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import sdkwrapper.exceptions.FabricRequestException;
+import sdkwrapper.vo.transaction.TransactionCommit;
+
+/**
+ * Pipelined transaction submission in front of FabricServices.requestTransaction.
+ *
+ * FabricServices.requestTransaction endorses synchronously on the calling thread, so a caller can only have a single
+ * proposal in flight. The submitter runs endorsement, the policy check and the send to the orderer on a pool of
+ * submission workers and returns immediately with a future which completes when the transaction is committed.
+ *
+ * The number of transactions in flight (submitted but not yet committed or failed) is limited per channel by the
+ * window size. When the window of a channel is full the backpressure mode determines what happens to a new request:
+ *    BLOCK  - the calling thread waits for a slot in the window.
+ *    REJECT - the returned future fails immediately with a FabricRequestException.
+ *    QUEUE  - the request is queued (up to the queue size) and submitted as slots become free, beyond which it is rejected.
+ *
+ * @author tim
+ *
+ */
+public class AsyncTransactionSubmitter
+{
+  public enum Backpressure { BLOCK, REJECT, QUEUE }
+
+  private static final Logger logger = LogManager.getLogger( AsyncTransactionSubmitter.class );
+
+  private final FabricServices  services;
+  private final int             windowSize;
+  private final int             queueSize;
+  private final Backpressure    backpressure;
+  private final ExecutorService workers;
+
+  private final Map<String, ChannelWindow> windows = new ConcurrentHashMap<String, ChannelWindow>();
+
+  /**
+   * @param services     - performs the endorsement and ordering of each transaction
+   * @param windowSize   - maximum transactions in flight per channel
+   * @param backpressure - behaviour when the window of a channel is full
+   * @param queueSize    - maximum queued transactions per channel when backpressure = QUEUE
+   * @param workerCount  - number of submission worker threads
+   */
+  public AsyncTransactionSubmitter( FabricServices services, int windowSize, Backpressure backpressure, int queueSize, int workerCount )
+  {
+    this.services     = services;
+    this.windowSize   = Math.max( 1, windowSize );
+    this.backpressure = backpressure;
+    this.queueSize    = Math.max( 0, queueSize );
+
+    final AtomicInteger threadCount = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool( Math.max( 1, workerCount ), r ->
+    {
+      Thread thread = new Thread( r, "tran-submit-" + threadCount.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    });
+
+    logger.info( "AsyncTransactionSubmitter created. Window size = " + this.windowSize + ", backpressure = " + backpressure + ", queue size = " + this.queueSize + ", workers = " + workerCount );
+  }
+
+  /**
+   * Submit a transaction. The returned future completes with the TransactionCommit once the transaction has been
+   * committed, or exceptionally with the FabricRequestException, FailedEndorsementException or InfrastructureException
+   * raised while endorsing or ordering it.
+   *
+   * @param channelId
+   * @param userId
+   * @param payload
+   * @param methodName
+   * @return
+   */
+  public CompletableFuture<TransactionCommit> submit( String channelId, String userId, String[] payload, String methodName )
+  {
+    PendingSubmit request = new PendingSubmit( channelId, userId, payload, methodName );
+    ChannelWindow window  = windows.computeIfAbsent( channelId, id -> new ChannelWindow() );
+
+    switch( backpressure )
+    {
+      case BLOCK:
+        try
+        {
+          window.permits.acquire();
+        }
+        catch( InterruptedException e )
+        {
+          Thread.currentThread().interrupt();
+          request.result.completeExceptionally( new FabricRequestException( "Interrupted waiting for a submission slot on channel " + channelId ));
+          return request.result;
+        }
+        start( window, request );
+        break;
+
+      case REJECT:
+        if( window.permits.tryAcquire() )
+          start( window, request );
+        else
+          reject( request );
+        break;
+
+      case QUEUE:
+        if( window.permits.tryAcquire() )
+        {
+          start( window, request );
+        }
+        else if( window.queued.incrementAndGet() <= queueSize )
+        {
+          window.pending.add( request );
+          drain( window );
+        }
+        else
+        {
+          window.queued.decrementAndGet();
+          reject( request );
+        }
+        break;
+    }
+
+    return request.result;
+  }
+
+  /**
+   * Number of transactions of the channel which are endorsing, ordering or awaiting commit.
+   *
+   * @param channelId
+   * @return
+   */
+  public int getInFlight( String channelId )
+  {
+    ChannelWindow window = windows.get( channelId );
+    if( window == null )
+      return 0;
+
+    return windowSize - window.permits.availablePermits();
+  }
+
+  /**
+   * Number of transactions of the channel waiting for a slot in the window.
+   *
+   * @param channelId
+   * @return
+   */
+  public int getQueued( String channelId )
+  {
+    ChannelWindow window = windows.get( channelId );
+    if( window == null )
+      return 0;
+
+    return window.queued.get();
+  }
+
+  public void shutdown()
+  {
+    workers.shutdown();
+  }
+
+  /**
+   * Start the request, holding a permit of the window. When the workers have been shut down the permit is released and
+   * the request fails, as do the queued requests drained after it.
+   */
+  private void start( ChannelWindow window, PendingSubmit request )
+  {
+    CompletableFuture<CompletableFuture<TransactionCommit>> submitted = null;
+    try
+    {
+      submitted = CompletableFuture.supplyAsync( () -> requestTransaction( request ), workers );
+    }
+    catch( RejectedExecutionException e )
+    {
+      window.permits.release();
+
+      final String msg = "Transaction submitter shut down. Transaction on channel " + request.channelId + " rejected.";
+      logger.error( msg );
+      request.result.completeExceptionally( new FabricRequestException( msg ));
+
+      drain( window );
+      return;
+    }
+
+    submitted.thenCompose( commit -> commit )
+             .whenComplete( ( event, t ) ->
+             {
+               window.permits.release();
+               drain( window );
+
+               if( t != null )
+                 request.result.completeExceptionally( t instanceof CompletionException && t.getCause() != null ? t.getCause() : t );
+               else
+                 request.result.complete( event );
+             });
+  }
+
+  /**
+   * Start queued requests while the window has free slots. Called after a request is queued and after a slot is
+   * released so that a request can not be left queued with the window empty.
+   */
+  private void drain( ChannelWindow window )
+  {
+    while( !window.pending.isEmpty() && window.permits.tryAcquire() )
+    {
+      PendingSubmit request = window.pending.poll();
+      if( request == null )
+      {
+        window.permits.release();
+        break;
+      }
+
+      window.queued.decrementAndGet();
+      start( window, request );
+    }
+  }
+
+  private CompletableFuture<TransactionCommit> requestTransaction( PendingSubmit request )
+  {
+    try
+    {
+      return services.sendTransaction( request.channelId, request.userId, request.payload, request.methodName );
+    }
+    catch( Exception e )
+    {
+      throw new CompletionException( e );
+    }
+  }
+
+  private void reject( PendingSubmit request )
+  {
+    final String msg = "Submission window full for channel " + request.channelId + ". Transaction rejected.";
+    logger.error( msg );
+    request.result.completeExceptionally( new FabricRequestException( msg ));
+  }
+
+
+  private class ChannelWindow
+  {
+    final Semaphore            permits = new Semaphore( windowSize );
+    final Queue<PendingSubmit> pending = new ConcurrentLinkedQueue<PendingSubmit>();
+    final AtomicInteger        queued  = new AtomicInteger();
+  }
+
+  private static class PendingSubmit
+  {
+    final String   channelId;
+    final String   userId;
+    final String[] payload;
+    final String   methodName;
+
+    final CompletableFuture<TransactionCommit> result = new CompletableFuture<TransactionCommit>();
+
+    PendingSubmit( String channelId, String userId, String[] payload, String methodName )
+    {
+      this.channelId  = channelId;
+      this.userId     = userId;
+      this.payload    = payload;
+      this.methodName = methodName;
+    }
+  }
+}
@@ -0,0 +1,226 @@
+package sdkwrapper.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import sdkwrapper.vo.codec.JsonCodec;
+import sdkwrapper.vo.config.ChainCodeInfo;
+import sdkwrapper.vo.transaction.TransactionCommit;
+
+/**
+ * Client side batching of small transactions in front of the AsyncTransactionSubmitter.
+ *
+ * Requests for a chaincode which declares a batchMethod are collected per channel, user and method until either the
+ * batch size is reached or the batch delay expires. The batch is then submitted as a single invocation of the batch
+ * method with the arguments:
+ *    args[0] - the original method name
+ *    args[1] - json array of the argument arrays of each request, in arrival order
+ *
+ * The single TransactionCommit (or failure) of the aggregated transaction completes the future of every request in the
+ * batch. Requests for chaincodes without a batchMethod are passed straight through to the submitter.
+ *
+ * Batches expired by the timer are submitted on a separate flush executor, as the submitter may block under
+ * submit.backpressure = block and would otherwise hold up the expiry of every other open batch.
+ *
+ * @author tim
+ *
+ */
+public class BatchingTransactionSubmitter
+{
+  private static final Logger logger = LogManager.getLogger( BatchingTransactionSubmitter.class );
+
+  private static final long SHUTDOWN_WAIT_MS = 5000;
+
+  private final FabricServices            services;
+  private final AsyncTransactionSubmitter submitter;
+  private final int                       maxBatchSize;
+  private final long                      maxDelayMs;
+  private final ScheduledExecutorService  timer;
+  private final ExecutorService           flushExecutor;
+
+  // Open batches keyed by channel, user and method. Guarded by itself.
+  private final Map<String, Batch> openBatches = new HashMap<String, Batch>();
+
+  /**
+   * @param services     - provides the chaincode of the channel
+   * @param submitter    - submits the aggregated transactions
+   * @param maxBatchSize - requests collected before the batch is submitted
+   * @param maxDelayMs   - maximum time the first request of a batch waits before the batch is submitted
+   */
+  public BatchingTransactionSubmitter( FabricServices services, AsyncTransactionSubmitter submitter, int maxBatchSize, long maxDelayMs )
+  {
+    this.services     = services;
+    this.submitter    = submitter;
+    this.maxBatchSize = Math.max( 1, maxBatchSize );
+    this.maxDelayMs   = Math.max( 0, maxDelayMs );
+
+    this.timer = Executors.newSingleThreadScheduledExecutor( r ->
+    {
+      Thread thread = new Thread( r, "tran-batch-timer" );
+      thread.setDaemon( true );
+      return thread;
+    });
+
+    final AtomicInteger count = new AtomicInteger();
+    this.flushExecutor = Executors.newCachedThreadPool( r ->
+    {
+      Thread thread = new Thread( r, "tran-batch-flush-" + count.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    });
+
+    logger.info( "BatchingTransactionSubmitter created. Batch size = " + this.maxBatchSize + ", batch delay ms = " + this.maxDelayMs );
+  }
+
+  /**
+   * Add the request to the open batch for the channel, user and method, or pass it through when the chaincode of the
+   * channel does not support batching.
+   *
+   * @param channelId
+   * @param userId
+   * @param payload
+   * @param methodName
+   * @return the future completed with the TransactionCommit of the aggregated transaction
+   */
+  public CompletableFuture<TransactionCommit> submit( String channelId, String userId, String[] payload, String methodName )
+  {
+    ChainCodeInfo ccInfo = services.getChannelChainCode( channelId );
+    if( ccInfo == null || ccInfo.getBatchMethod() == null || ccInfo.getBatchMethod().isEmpty() )
+      return submitter.submit( channelId, userId, payload, methodName );
+
+    CompletableFuture<TransactionCommit> result = new CompletableFuture<TransactionCommit>();
+    Batch                               full   = null;
+
+    final String key = channelId + "|" + userId + "|" + methodName;
+    synchronized( openBatches )
+    {
+      Batch batch = openBatches.get( key );
+      if( batch == null )
+      {
+        final Batch created = new Batch( channelId, userId, methodName, ccInfo.getBatchMethod() );
+        openBatches.put( key, created );
+        timer.schedule( () -> flush( key, created ), maxDelayMs, TimeUnit.MILLISECONDS );
+        batch = created;
+      }
+
+      batch.payloads.add( payload );
+      batch.futures.add(  result  );
+
+      if( batch.payloads.size() >= maxBatchSize )
+      {
+        openBatches.remove( key );
+        full = batch;
+      }
+    }
+
+    if( full != null )
+      submitBatch( full );
+
+    return result;
+  }
+
+  /**
+   * Submit any open batches and stop the batch timer. Waits for batches being flushed by the timer to reach the
+   * transaction submitter, so the submitter can be shut down next.
+   */
+  public void shutdown()
+  {
+    List<Batch> remaining = null;
+    synchronized( openBatches )
+    {
+      remaining = new ArrayList<Batch>( openBatches.values() );
+      openBatches.clear();
+    }
+
+    for( Batch batch : remaining )
+      submitBatch( batch );
+
+    timer.shutdown();
+    flushExecutor.shutdown();
+
+    try
+    {
+      if( !flushExecutor.awaitTermination( SHUTDOWN_WAIT_MS, TimeUnit.MILLISECONDS ))
+        logger.warn( "BatchingTransactionSubmitter stopped before the timer flushes completed." );
+    }
+    catch( InterruptedException e )
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Timer expiry for a batch. The batch may already have been submitted on reaching the batch size. The batch is
+   * handed to the flush executor so the timer thread never blocks in the submitter.
+   */
+  private void flush( String key, Batch batch )
+  {
+    synchronized( openBatches )
+    {
+      if( openBatches.get( key ) != batch )
+        return;
+
+      openBatches.remove( key );
+    }
+
+    try
+    {
+      flushExecutor.execute( () -> submitBatch( batch ));
+    }
+    catch( RejectedExecutionException e )
+    {
+      submitBatch( batch );
+    }
+  }
+
+  private void submitBatch( Batch batch )
+  {
+    final String[] args = new String[] { batch.methodName, JsonCodec.toJson( batch.payloads ) };
+
+    logger.info( "Submitting batch of " + batch.payloads.size() + " " + batch.methodName + " requests on channel " + batch.channelId );
+
+    submitter.submit( batch.channelId, batch.userId, args, batch.batchMethod )
+             .whenComplete( ( event, t ) ->
+             {
+               for( CompletableFuture<TransactionCommit> future : batch.futures )
+               {
+                 if( t != null )
+                   future.completeExceptionally( t );
+                 else
+                   future.complete( event );
+               }
+             });
+  }
+
+
+  private static class Batch
+  {
+    final String channelId;
+    final String userId;
+    final String methodName;
+    final String batchMethod;
+
+    final List<String[]>                            payloads = new ArrayList<String[]>();
+    final List<CompletableFuture<TransactionCommit>> futures  = new ArrayList<CompletableFuture<TransactionCommit>>();
+
+    Batch( String channelId, String userId, String methodName, String batchMethod )
+    {
+      this.channelId   = channelId;
+      this.userId      = userId;
+      this.methodName  = methodName;
+      this.batchMethod = batchMethod;
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package sdkwrapper.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hyperledger.fabric.sdk.ChaincodeID;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.CollectionConfigPackage.CollectionConfig;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.Peer.PeerRole;
+
+import sdkwrapper.vo.config.ChainCodeInfo;
+
+/**
+ * Immutable routing snapshot of a channel built when the channel is discovered. Requests only need a map lookup of the
+ * channel to obtain the chaincode, the peers to query and endorse with, and the private data collections.
+ *
+ * A new table is built and swapped in whenever the channel is rediscovered, so requests in progress continue to use the
+ * table they started with. Requests hold a Lease on the table while they use its channel, so a replaced channel is only
+ * closed once the requests in flight on it have drained.
+ *
+ * @author tim
+ *
+ */
+public final class ChannelRoutingTable
+{
+  private final Channel                       channel;
+  private final String                        chainCodeName;
+  private final ChaincodeID                   chaincodeId;
+  private final ChainCodeInfo                 chainCodeInfo;
+  private final List<Peer>                    queryPeers;
+  private final Collection<Peer>              endorsers;
+  private final Map<String, CollectionConfig> collections;
+  private final AtomicInteger                 inFlight = new AtomicInteger();
+
+  /**
+   * @param channel       - the discovered channel
+   * @param chainCodeInfo - configured chaincode info of the channel's chaincode, may be null
+   * @param orgPeers      - the organization's peers in order of query preference
+   * @param collections   - private data collections of the channel keyed by collection name, may be null
+   */
+  public ChannelRoutingTable( Channel channel, ChainCodeInfo chainCodeInfo, Collection<Peer> orgPeers, Map<String, CollectionConfig> collections )
+  {
+    this.channel       = channel;
+    this.chainCodeInfo = chainCodeInfo;
+
+    if( channel.getDiscoveredChaincodeNames().isEmpty() )
+    {
+      this.chainCodeName = null;
+      this.chaincodeId   = null;
+    }
+    else
+    {
+      this.chainCodeName = channel.getDiscoveredChaincodeNames().iterator().next();
+      this.chaincodeId   = ChaincodeID.newBuilder().setName( chainCodeName ).build();
+    }
+
+    // Query peers are the channel peers which are org peers, in org peer order.
+    List<Peer> peers = new ArrayList<Peer>();
+    for( Peer orgPeer : orgPeers )
+    {
+      for( Peer channelPeer : channel.getPeers() )
+      {
+        if( channelPeer.getUrl().compareTo( orgPeer.getUrl() ) == 0 )
+          peers.add( channelPeer );
+      }
+    }
+
+    this.queryPeers  = Collections.unmodifiableList( peers );
+    this.endorsers   = Collections.unmodifiableCollection( new ArrayList<Peer>( channel.getPeers( EnumSet.of( PeerRole.ENDORSING_PEER ))));
+    this.collections = ( collections == null ) ? Collections.<String, CollectionConfig>emptyMap()
+                                               : Collections.unmodifiableMap( new HashMap<String, CollectionConfig>( collections ));
+  }
+
+  public Channel                       getChannel()       { return channel;       }
+  public String                        getChannelId()     { return channel.getName(); }
+  public String                        getChainCodeName() { return chainCodeName; }
+  public ChaincodeID                   getChaincodeId()   { return chaincodeId;   }
+  public ChainCodeInfo                 getChainCodeInfo() { return chainCodeInfo; }
+  public List<Peer>                    getQueryPeers()    { return queryPeers;    }
+  public Collection<Peer>              getEndorsers()     { return endorsers;     }
+  public Map<String, CollectionConfig> getCollections()   { return collections;   }
+
+  /**
+   * @return whether a chaincode was discovered on the channel, without which no request can be sent on it
+   */
+  public boolean hasChaincode()
+  {
+    return chaincodeId != null;
+  }
+
+  public boolean hasCollection( String collectionId )
+  {
+    return collectionId != null && collections.containsKey( collectionId );
+  }
+
+  /**
+   * @return requests holding a lease on the table
+   */
+  public int getInFlight()
+  {
+    return inFlight.get();
+  }
+
+  /**
+   * @return a lease on the table, to be released when the request no longer uses the channel
+   */
+  public Lease acquire()
+  {
+    inFlight.incrementAndGet();
+    return new Lease( this );
+  }
+
+
+  /**
+   * The use of a routing table by a request. The lease moves to the new table when the request switches to a refreshed
+   * channel, and is released once.
+   */
+  public static final class Lease
+  {
+    private ChannelRoutingTable route;              // Guarded by this
+    private boolean             released = false;   // Guarded by this
+
+    private Lease( ChannelRoutingTable route )
+    {
+      this.route = route;
+    }
+
+    public synchronized ChannelRoutingTable getRoute()
+    {
+      return route;
+    }
+
+    public synchronized void moveTo( ChannelRoutingTable next )
+    {
+      if( released || next == route )
+        return;
+
+      next.inFlight.incrementAndGet();
+      route.inFlight.decrementAndGet();
+      route = next;
+    }
+
+    public synchronized void release()
+    {
+      if( released )
+        return;
+
+      released = true;
+      route.inFlight.decrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package sdkwrapper.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
+import org.hyperledger.fabric.sdk.exception.ProposalException;
+import org.hyperledger.fabric.sdk.exception.ServiceDiscoveryException;
+
+import sdkwrapper.fabric.policy.EndorsementPolicyIF;
+import sdkwrapper.fabric.policy.EndorsementPolicyResult;
+
+/**
+ * Collects the endorsement of a transaction proposal, proceeding as soon as the endorsement policy is met rather than
+ * waiting on the slowest endorser.
+ *
+ * The SDK sends a proposal to the endorsers of a discovery layout and returns once they have all responded, and the
+ * responses of separate proposals cannot be combined as each proposal is a separate transaction. So the proposal is
+ * sent to the endorsers selected by discovery and, if it has not completed within the hedge delay or has failed in
+ * transport, a spare proposal is sent to a further selection of endorsers, up to maxSpares. The responses of each
+ * proposal are evaluated against the policy as they arrive and the first proposal to meet it is returned for ordering.
+ * The outstanding proposals are cancelled and are never ordered, so their simulations have no effect on the ledger.
+ *
+ * A proposal which completes without meeting the policy is not hedged, as a spare would simulate the same transaction
+ * again. When endorsers answered it with failed responses its result is returned at once.
+ *
+ * Each spare is a new transaction with its own id, sent to further endorsers, so FabricServices does not hedge proposals
+ * carrying private data. Cancelling the outstanding proposals interrupts only the threads sending them, and their
+ * results are discarded. Only an interrupt of the calling thread fails the endorsement, with the interrupt status of the
+ * thread left set.
+ *
+ * @author tim
+ *
+ */
+public class EndorsementCollector
+{
+  private static final Logger logger = LogManager.getLogger( EndorsementCollector.class );
+
+  private final long            hedgeDelayMs;
+  private final int             maxSpares;
+  private final ExecutorService executor;
+
+  private final AtomicLong sparesSent = new AtomicLong();
+  private final AtomicLong sparesWon  = new AtomicLong();
+
+  /**
+   * @param hedgeDelayMs - delay before a spare proposal is sent
+   * @param maxSpares    - spare proposals sent per endorsement, 0 to wait on the first proposal only
+   * @param threadCount  - threads available for sending proposals
+   */
+  public EndorsementCollector( long hedgeDelayMs, int maxSpares, int threadCount )
+  {
+    this.hedgeDelayMs = Math.max( 0, hedgeDelayMs );
+    this.maxSpares    = Math.max( 0, maxSpares );
+
+    final AtomicInteger count = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool( Math.max( 1, threadCount ), r ->
+    {
+      Thread thread = new Thread( r, "endorse-" + count.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    });
+
+    logger.info( "EndorsementCollector created. Hedge delay ms = " + this.hedgeDelayMs + ", spares = " + this.maxSpares + ", threads = " + threadCount );
+  }
+
+  public long getSparesSent() { return sparesSent.get(); }
+  public long getSparesWon()  { return sparesWon.get();  }
+
+  /**
+   * @param channel
+   * @param proposal - sends a new proposal to the endorsers selected by discovery, on each call
+   * @param policy   - the endorsement policy of the chaincode
+   * @return the result of the first proposal meeting the policy or rejected by its endorsers, otherwise of the last
+   *         proposal to respond
+   * @throws ProposalException, InvalidArgumentException, ServiceDiscoveryException - of the first proposal, when no
+   *         proposal received responses
+   */
+  public EndorsementPolicyResult endorse( Channel channel, Callable<Collection<ProposalResponse>> proposal, EndorsementPolicyIF policy )
+    throws ProposalException, InvalidArgumentException, ServiceDiscoveryException
+  {
+    ExecutorCompletionService<EndorsementPolicyResult> completion = new ExecutorCompletionService<EndorsementPolicyResult>( executor );
+    List<Future<EndorsementPolicyResult>>              futures    = new ArrayList<Future<EndorsementPolicyResult>>( maxSpares + 1 );
+
+    EndorsementPolicyResult last        = null;
+    Exception               firstError  = null;
+    int                     launched    = 1;
+    int                     outstanding = 1;
+    try
+    {
+      futures.add( completion.submit( () -> policy.evaluate( proposal.call() )));
+
+      while( outstanding > 0 )
+      {
+        Future<EndorsementPolicyResult> done = null;
+        if( launched <= maxSpares && last == null )
+          done = completion.poll( hedgeDelayMs, TimeUnit.MILLISECONDS );
+        else
+          done = completion.take();
+
+        // The hedge delay expired.
+        boolean hedge = ( done == null );
+
+        if( done != null )
+        {
+          outstanding--;
+          try
+          {
+            EndorsementPolicyResult result = done.get();
+            if( result.isPolicyMet() )
+            {
+              if( done != futures.get( 0 ))
+                sparesWon.incrementAndGet();
+
+              return result;
+            }
+
+            // Endorsers rejected the proposal. A spare proposal would be rejected in the same way.
+            if( !result.getFailedResponses().isEmpty() )
+              return result;
+
+            last = result;
+          }
+          catch( ExecutionException e )
+          {
+            logger.error( "Endorsement proposal failed on channel " + channel.getName() + ". Error = " + e.getCause().getMessage() );
+            if( firstError == null && e.getCause() instanceof Exception )
+              firstError = (Exception) e.getCause();
+
+            hedge = true;
+          }
+        }
+
+        // Hedge delay expired, or a proposal failed in transport. Send a spare proposal.
+        if( hedge && last == null && launched <= maxSpares )
+        {
+          futures.add( completion.submit( () -> policy.evaluate( proposal.call() )));
+          sparesSent.incrementAndGet();
+          launched++;
+          outstanding++;
+        }
+      }
+    }
+    catch( InterruptedException e )
+    {
+      Thread.currentThread().interrupt();
+      throw new ProposalException( "Interrupted waiting for endorsement on channel " + channel.getName(), e );
+    }
+    finally
+    {
+      for( Future<EndorsementPolicyResult> future : futures )
+        future.cancel( true );
+    }
+
+    if( last != null )
+      return last;
+
+    if( firstError instanceof ProposalException )
+      throw (ProposalException) firstError;
+    if( firstError instanceof InvalidArgumentException )
+      throw (InvalidArgumentException) firstError;
+    if( firstError instanceof ServiceDiscoveryException )
+      throw (ServiceDiscoveryException) firstError;
+
+    throw new ProposalException( "No endorsement proposal completed on channel " + channel.getName() + ". Error = " + ( firstError == null ? null : firstError.getMessage() ));
+  }
+
+  public void shutdown()
+  {
+    executor.shutdownNow();
+  }
+}
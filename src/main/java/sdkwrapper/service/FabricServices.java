@@ -2,20 +2,32 @@ package sdkwrapper.service;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hyperledger.fabric.sdk.Channel.DiscoveryOptions.createDiscoveryOptions;
+import static org.hyperledger.fabric.sdk.Channel.TransactionOptions.createTransactionOptions;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import org.hyperledger.fabric.protos.ledger.rwset.Rwset.TxReadWriteSet;
+import org.hyperledger.fabric.protos.peer.FabricProposal.ChaincodeAction;
+import org.hyperledger.fabric.protos.peer.FabricProposalResponse.ProposalResponsePayload;
 import org.hyperledger.fabric.sdk.*;
 import org.hyperledger.fabric.sdk.Channel.DiscoveryOptions;
 import org.hyperledger.fabric.sdk.Channel.PeerOptions;
@@ -30,45 +42,78 @@ import org.hyperledger.fabric.sdk.exception.ServiceDiscoveryException;
 import org.hyperledger.fabric.sdk.exception.TransactionException;
 import org.hyperledger.fabric.sdk.security.CryptoSuite;
 
+import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 
 import sdkwrapper.block.event.BlockEventFileStorePlayer;
 import sdkwrapper.block.event.BlockEventsPlayerIF;
+import sdkwrapper.config.ConfigKeysIF;
+import sdkwrapper.config.ConfigProperties;
 import sdkwrapper.config.OrgContextJsonParser;
+import sdkwrapper.events.BlockSourceIF;
+import sdkwrapper.events.TransactionCompletionRegistry;
 import sdkwrapper.exceptions.BlockEventException;
 import sdkwrapper.exceptions.ConfigurationException;
 import sdkwrapper.exceptions.FabricRequestException;
 import sdkwrapper.exceptions.FailedEndorsementException;
 import sdkwrapper.exceptions.InfrastructureException;
+import sdkwrapper.fabric.policy.EndorsementPolicyResult;
 
 import sdkwrapper.runtimemgr.RuntimeMgrIF;
+import sdkwrapper.runtimemgr.TimingWheelService;
+import sdkwrapper.vo.codec.PayloadCodec;
+import sdkwrapper.vo.codec.PayloadEncoding;
 import sdkwrapper.vo.config.ChainCodeInfo;
 import sdkwrapper.vo.config.OrgContextVO;
 import sdkwrapper.vo.config.OrgUserVO;
 import sdkwrapper.vo.config.PeerVO;
+import sdkwrapper.vo.transaction.FabricRequest;
+import sdkwrapper.vo.transaction.TransactionCommit;
 
 
-public class FabricServices
+public class FabricServices implements BlockSourceIF
 {
   public static final String PORT_SEPARATOR        = ":";
   public static final int    MAX_PROPOSAL_ATTEMPTS = 3;
+  public static final long   DRAIN_POLL_MS         = 100;
   
-  private final  Logger logger         = LogManager.getLogger( FabricServices.class );
-  private static long   invokeWaitTime = 120000;
+  private final  Logger logger          = LogManager.getLogger( FabricServices.class );
+  private long         invokeWaitTime  = 120000;
+  private long         commitTimeout   = 120000;
+  private long         refreshWaitTime = 2000;
+  private long         drainTime       = 120000;
   
   private RuntimeMgrIF runtimeMgr   = null;
   private HFClient     hfClient     = null;
   private OrgContextVO orgContext   = null;
   private Peer         orgPeer      = null;
-  
-  private Map<String, OrgUserVO>           users          = new HashMap<String, OrgUserVO>();
-  private Collection<PeerVO>               discoveryPeers = new ArrayList<PeerVO>();
-  private Collection<Peer>                 orgPeers       = new ArrayList<Peer>();
-  private Map<String, Channel>             channels       = new HashMap<String, Channel>();
-  private Map<String, ChainCodeInfo>       chainCodes     = new HashMap<String, ChainCodeInfo>();
-  private Map<String, BlockEventsPlayerIF> listeners      = new HashMap<String, BlockEventsPlayerIF>();
 
-  private Map<String, Map<String, CollectionConfig>> collections = new HashMap<String, Map<String, CollectionConfig>>();
+  private AsyncTransactionSubmitter       transactionSubmitter = null;
+  private BatchingTransactionSubmitter    batchingSubmitter    = null;
+  private QueryResultCache                queryCache           = null;
+  private HedgedQueryExecutor             queryExecutor        = null;
+  private EndorsementCollector            endorsementCollector = null;
+  private LatencyAwareEndorsementSelector endorsementSelector  = null;
+  private TransactionCompletionRegistry   completionRegistry   = null;
+  private int                             eventSourceCount     = 1;
+  
+  private Map<String, OrgUserVO>           users          = new ConcurrentHashMap<String, OrgUserVO>();
+  private Collection<PeerVO>               discoveryPeers = new CopyOnWriteArrayList<PeerVO>();
+  private Collection<Peer>                 orgPeers       = new CopyOnWriteArrayList<Peer>();
+  private Map<String, Channel>             channels       = new ConcurrentHashMap<String, Channel>();
+  private Map<String, ChainCodeInfo>       chainCodes     = new ConcurrentHashMap<String, ChainCodeInfo>();
+  private Map<String, BlockEventsPlayerIF> listeners      = new ConcurrentHashMap<String, BlockEventsPlayerIF>();
+
+  private Map<String, Map<String, CollectionConfig>> collections = new ConcurrentHashMap<String, Map<String, CollectionConfig>>();
+  private Map<String, ChannelRoutingTable>           routes      = new ConcurrentHashMap<String, ChannelRoutingTable>();
+
+  private final Map<String, CompletableFuture<ChannelRoutingTable>> refreshes = new ConcurrentHashMap<String, CompletableFuture<ChannelRoutingTable>>();
+  private final ScheduledExecutorService                            refresher = Executors.newSingleThreadScheduledExecutor( r ->
+  {
+    Thread thread = new Thread( r, "channel-refresh" );
+    thread.setDaemon( true );
+    return thread;
+  });
 
   public HFClient                         getHFClient()       { return hfClient;       }
   public OrgContextVO                     getOrgContext()     { return orgContext;     }
@@ -80,6 +125,59 @@ public class FabricServices
   public Map<String, BlockEventsPlayerIF> getListeners()      { return listeners;      }
  
   public void setOrgContext( OrgContextVO context ) { this.orgContext = context; }
+  public void setTransactionSubmitter( AsyncTransactionSubmitter    submitter ) { this.transactionSubmitter = submitter; }
+  public void setBatchingSubmitter(    BatchingTransactionSubmitter submitter ) { this.batchingSubmitter    = submitter; }
+  public void setQueryCache(           QueryResultCache             cache     ) { this.queryCache           = cache;     }
+  public void setQueryExecutor(        HedgedQueryExecutor          executor  ) { this.queryExecutor        = executor;  }
+  public void setEndorsementCollector( EndorsementCollector         collector ) { this.endorsementCollector = collector; }
+
+  /**
+   * @param selector - selects the endorsers of each proposal in place of ENDORSEMENT_SELECTION_RANDOM
+   */
+  public void setEndorsementSelector( LatencyAwareEndorsementSelector selector ) { this.endorsementSelector = selector; }
+
+  /**
+   * @return the latency aware endorsement selector, whose per peer statistics show why peers are avoided, or null
+   */
+  public LatencyAwareEndorsementSelector getEndorsementSelector() { return endorsementSelector; }
+
+  /**
+   * @param registry - completes transaction futures from the processed blocks in place of the SDK's per transaction
+   *                   event listeners. Must also be added as a block observer.
+   */
+  public void setCompletionRegistry( TransactionCompletionRegistry registry ) { this.completionRegistry = registry; }
+
+  /**
+   * @param waitTime - milliseconds to wait for endorsement of a proposal
+   */
+  public void setInvokeWaitTime( long waitTime ) { this.invokeWaitTime = waitTime; }
+
+  /**
+   * @param timeout - milliseconds a transaction sent to the orderer may wait to be committed before its future fails
+   *                  with a CommitTimeoutException
+   */
+  public void setCommitTimeout( long timeout ) { this.commitTimeout = timeout; }
+
+  /**
+   * @param waitTime - milliseconds a request which failed endorsement waits for the background refresh of its channel
+   *                   before retrying on the current channel
+   */
+  public void setRefreshWaitTime( long waitTime ) { this.refreshWaitTime = waitTime; }
+
+  /**
+   * @param time - milliseconds a replaced channel is kept open for its requests in flight to drain
+   */
+  public void setDrainTime( long time ) { this.drainTime = time; }
+
+  /**
+   * @param count - org peers registered as event sources per channel. Above 1 the block events of the channel must be
+   *                deduplicated, see BlockEventDeduplicator.
+   */
+  public void setEventSourceCount( int count ) { this.eventSourceCount = Math.max( 1, count ); }
+
+  public QueryResultCache getQueryCache() { return queryCache; }
+
+  public ChannelRoutingTable getRoutingTable( String channelId ) { return routes.get( channelId ); }
  
   
   
@@ -87,6 +185,15 @@ public class FabricServices
   {
     this.runtimeMgr = runMgr;
   }
+
+  /**
+   * Services using an already configured client in place of the one created by initialize.
+   */
+  FabricServices( RuntimeMgrIF runMgr, HFClient client )
+  {
+    this.runtimeMgr = runMgr;
+    this.hfClient   = client;
+  }
   
   /**
    * Read the organization context json, parse into the domain objects (via OrgContextJsonParser), and initialize the 
@@ -121,7 +228,7 @@ public class FabricServices
     // Load Default User Context into SDK Client
     try
     {
-      hfClient.setUserContext( users.get( runtimeMgr.getConfig().getProperty( "admin.userid" )));
+      hfClient.setUserContext( getUser( runtimeMgr.getConfig().getProperty( "admin.userid" )));
     } catch( InvalidArgumentException e )
     {
       String msg = "Error initializing fabric user context for admin user. Error = " + e.getMessage() + "; Fatal Error. Stopping";
@@ -151,9 +258,9 @@ public class FabricServices
           {
             Peer channelPeer = buildDiscoveryPeer(peerVO);
             channelId = id;
-            Channel discoveredChannel = discoverChannel( id, channelPeer );
+            Channel discoveredChannel = discoverChannel( hfClient, id, channelPeer );
 
-            channels.put( id, discoveredChannel );
+            registerChannel( id, discoveredChannel );
           }
         }
 
@@ -185,6 +292,29 @@ public class FabricServices
   }
   
   
+  /**
+   * Stop the request components in the reverse order of their use: the batching submitter first, so the batches open
+   * at shutdown are flushed to the transaction submitter, then the transaction submitter, the endorsement collector, the
+   * query executor and the channel refresher.
+   */
+  public void shutdown()
+  {
+    if( batchingSubmitter != null )
+      batchingSubmitter.shutdown();
+
+    if( transactionSubmitter != null )
+      transactionSubmitter.shutdown();
+
+    if( endorsementCollector != null )
+      endorsementCollector.shutdown();
+
+    if( queryExecutor != null )
+      queryExecutor.shutdown();
+
+    refresher.shutdownNow();
+    logger.info( "FabricServices shut down." );
+  }
+
   /**
    * Initialize the BlockEvent Listeners for each channel. 
    *  
@@ -197,7 +327,7 @@ public class FabricServices
     for( Map.Entry<String, Channel> entry : channels.entrySet() )
     {
       Channel channel = entry.getValue();
-      createBlockListener( channel );
+      listeners.put( channel.getName(), createBlockListener( channel ));
     }
   }
   
@@ -241,9 +371,89 @@ public class FabricServices
     return channelHeights;
   }
 
+  /**
+   * Query a committed block of the channel from the org peers. Used by the block catch up engine to fetch blocks missed
+   * by the channel's block listener.
+   */
+  @Override
+  public BlockInfo queryBlock( String channelId, long blockNumber )
+    throws BlockEventException
+  {
+    ChannelRoutingTable route = routes.get( channelId );
+    if( route == null )
+      throw new BlockEventException( "Unable to query block " + blockNumber + ". Unknown channel " + channelId );
+
+    try
+    {
+      if( route.getQueryPeers().isEmpty() )
+        return route.getChannel().queryBlockByNumber( blockNumber );
+
+      return route.getChannel().queryBlockByNumber( route.getQueryPeers(), blockNumber );
+    }
+    catch( ProposalException | InvalidArgumentException e )
+    {
+      String msg = "Error querying block " + blockNumber + " on channel " + channelId + ". Error = " + e.getMessage();
+      logger.error( msg );
+      throw new BlockEventException( msg );
+    }
+  }
+
+  /**
+   * Submit a Fabric Transaction without waiting for endorsement. Endorsement, the policy check and the send to the orderer
+   * are performed by the AsyncTransactionSubmitter, which limits the transactions in flight per channel. When batching is
+   * enabled requests for chaincodes declaring a batchMethod are first aggregated by the BatchingTransactionSubmitter.
+   * When the completion registry is configured (commit.registry = true) the transaction is completed from the block
+   * stream. A transaction committed in a block fetched by catch up then completes with a null event, as catch up
+   * blocks carry no events. submitCommitAsync returns the commit record for those.
+   *
+   * @param channelId
+   * @param userId
+   * @param payload
+   * @param methodName
+   * @return the completable future for the transaction event, completed exceptionally if the transaction fails
+   */
+  public CompletableFuture<BlockEvent.TransactionEvent> submitAsync( String channelId, String userId, String[] payload, String methodName )
+  {
+    return submit( channelId, userId, payload, methodName ).thenApply( TransactionCommit::getTransactionEvent );
+  }
+
+  /**
+   * Submit a Fabric Transaction as submitAsync does, completing the future with the TransactionCommit record. The record
+   * also describes transactions committed in blocks fetched by catch up, which have no TransactionEvent. Without the
+   * completion registry the commit holds the SDK's event.
+   *
+   * @param channelId
+   * @param userId
+   * @param payload
+   * @param methodName
+   * @return the completable future for the transaction commit, completed exceptionally if the transaction fails
+   */
+  public CompletableFuture<TransactionCommit> submitCommitAsync( String channelId, String userId, String[] payload, String methodName )
+  {
+    return submit( channelId, userId, payload, methodName );
+  }
+
+  private CompletableFuture<TransactionCommit> submit( String channelId, String userId, String[] payload, String methodName )
+  {
+    if( transactionSubmitter == null )
+    {
+      CompletableFuture<TransactionCommit> failed = new CompletableFuture<TransactionCommit>();
+      failed.completeExceptionally( new FabricRequestException( "Transaction submitter not initialized." ));
+      return failed;
+    }
+
+    if( batchingSubmitter != null )
+      return batchingSubmitter.submit( channelId, userId, payload, methodName );
+
+    return transactionSubmitter.submit( channelId, userId, payload, methodName );
+  }
+
   /**
    * Send a Fabric Transaction to first the Endorsing Peers obtained via Service Discovery for the channel, check that the
    * endorsement policy is successful, and then send the transaction to the orderer for the channel.
+   * When the completion registry is configured (commit.registry = true) the transaction is completed from the block
+   * stream. A transaction committed in a block fetched by catch up then completes with a null event, as catch up
+   * blocks carry no events. requestTransactionCommit returns the commit record for those.
    *
    * @param channelId
    * @param userId
@@ -257,29 +467,224 @@ public class FabricServices
   public CompletableFuture<BlockEvent.TransactionEvent> requestTransaction(String channelId, String userId, String[] payload, String methodName )
           throws FabricRequestException, FailedEndorsementException, InfrastructureException
   {
-    Channel channel = validateRequestParms( channelId, userId, payload, methodName );
+    return sendTransaction( channelId, userId, payload, methodName ).thenApply( TransactionCommit::getTransactionEvent );
+  }
+
+  /**
+   * Send a Fabric Transaction as requestTransaction does, completing the future with the TransactionCommit record, which
+   * also describes transactions committed in blocks fetched by catch up.
+   *
+   * @param channelId
+   * @param userId
+   * @param payload
+   * @param methodName
+   * @throws FabricRequestException
+   * @throws FailedEndorsementException
+   * @throws InfrastructureException
+   * @return the completable future for the transaction commit
+   */
+  public CompletableFuture<TransactionCommit> requestTransactionCommit( String channelId, String userId, String[] payload, String methodName )
+          throws FabricRequestException, FailedEndorsementException, InfrastructureException
+  {
+    return sendTransaction( channelId, userId, payload, methodName );
+  }
+
+  CompletableFuture<TransactionCommit> sendTransaction( String channelId, String userId, String[] payload, String methodName )
+          throws FabricRequestException, FailedEndorsementException, InfrastructureException
+  {
+    ChannelRoutingTable route = validateRequestParms( channelId, userId, payload, methodName );
+
+    TransactionProposalRequest proposalRequest = createProposalRequest( route.getChaincodeId(), userId, methodName );
+    proposalRequest.setArgs( payload );
+
+    return endorseAndSend( route, userId, proposalRequest, payload );
+  }
+
+  /**
+   * Send a FabricRequest as the single argument of the chaincode method. The request is encoded in the payloadEncoding
+   * configured for the chaincode of the channel (json or compact).
+   * When the completion registry is configured (commit.registry = true) the transaction is completed from the block
+   * stream. A transaction committed in a block fetched by catch up then completes with a null event, as catch up
+   * blocks carry no events. requestTransactionCommit returns the commit record for those.
+   *
+   * @param channelId
+   * @param userId
+   * @param request
+   * @param methodName
+   * @throws FabricRequestException
+   * @throws FailedEndorsementException
+   * @throws InfrastructureException
+   * @return the completable future for the transaction event
+   */
+  public CompletableFuture<BlockEvent.TransactionEvent> requestTransaction( String channelId, String userId, FabricRequest request, String methodName )
+          throws FabricRequestException, FailedEndorsementException, InfrastructureException
+  {
+    return sendRequest( channelId, userId, request, methodName ).thenApply( TransactionCommit::getTransactionEvent );
+  }
+
+  /**
+   * Send a FabricRequest as requestTransaction does, completing the future with the TransactionCommit record, which also
+   * describes transactions committed in blocks fetched by catch up.
+   *
+   * @param channelId
+   * @param userId
+   * @param request
+   * @param methodName
+   * @throws FabricRequestException
+   * @throws FailedEndorsementException
+   * @throws InfrastructureException
+   * @return the completable future for the transaction commit
+   */
+  public CompletableFuture<TransactionCommit> requestTransactionCommit( String channelId, String userId, FabricRequest request, String methodName )
+          throws FabricRequestException, FailedEndorsementException, InfrastructureException
+  {
+    return sendRequest( channelId, userId, request, methodName );
+  }
+
+  private CompletableFuture<TransactionCommit> sendRequest( String channelId, String userId, FabricRequest request, String methodName )
+          throws FabricRequestException, FailedEndorsementException, InfrastructureException
+  {
+    if( request == null )
+    {
+      String errMsg = "Fabric request = null. Request is required.";
+      logger.error( errMsg );
+      throw new FabricRequestException( errMsg );
+    }
+
+    ChannelRoutingTable route    = validateRequestParms( channelId, userId, request.getTranPayload(), methodName );
+    ChainCodeInfo       ccInfo   = route.getChainCodeInfo();
+    PayloadEncoding     encoding = ( ccInfo == null ) ? PayloadEncoding.JSON : ccInfo.getPayloadEncoding();
 
-    String              ccId               = channel.getDiscoveredChaincodeNames().iterator().next();
-    ChaincodeID.Builder chaincodeIDBuilder = ChaincodeID.newBuilder().setName( ccId );
-    ChaincodeID         chainCodeId        = chaincodeIDBuilder.build();
+    TransactionProposalRequest proposalRequest = createProposalRequest( route.getChaincodeId(), userId, methodName );
+    proposalRequest.setArgBytes( new byte[][] { PayloadCodec.encodeRequest( request, encoding ) } );
+
+    return endorseAndSend( route, userId, proposalRequest, request.getTranPayload() );
+  }
 
+  TransactionProposalRequest createProposalRequest( ChaincodeID chaincodeId, String userId, String methodName )
+  {
     TransactionProposalRequest proposalRequest = hfClient.newTransactionProposalRequest();
     proposalRequest.setProposalWaitTime( invokeWaitTime );
-    proposalRequest.setChaincodeID( chainCodeId );
+    proposalRequest.setChaincodeID( chaincodeId );
     proposalRequest.setFcn(         methodName );
-    proposalRequest.setArgs( payload );
 
-    // If userId not found then we will use the User Context already set in hfClient
-    if( users.containsKey( userId ))
+    // The user context is carried on the request only. The shared hfClient context is never changed per request.
+    proposalRequest.setUserContext( users.get( userId ));
+
+    return proposalRequest;
+  }
+
+  private ServiceDiscovery.EndorsementSelector endorsementSelector()
+  {
+    return ( endorsementSelector != null ) ? endorsementSelector : ServiceDiscovery.EndorsementSelector.ENDORSEMENT_SELECTION_RANDOM;
+  }
+
+  /**
+   * Send the proposal to the endorsers selected by discovery, recording the outcome with the endorsement selector.
+   */
+  private Collection<ProposalResponse> sendProposal( Channel channel, TransactionProposalRequest request, DiscoveryOptions options )
+    throws InvalidArgumentException, ProposalException, ServiceDiscoveryException
+  {
+    if( endorsementSelector == null )
+      return channel.sendTransactionProposalToEndorsers( request, options );
+
+    try
+    {
+      Collection<ProposalResponse> responses = channel.sendTransactionProposalToEndorsers( request, options );
+      endorsementSelector.completed( responses );
+      return responses;
+    }
+    catch( InvalidArgumentException | ProposalException | ServiceDiscoveryException | RuntimeException e )
+    {
+      endorsementSelector.failed();
+      throw e;
+    }
+  }
+
+  /**
+   * A new proposal request with the chaincode, function, arguments and transient data of the request, as a request may
+   * only be submitted once.
+   */
+  TransactionProposalRequest copyProposalRequest( TransactionProposalRequest request, String userId )
+    throws InvalidArgumentException
+  {
+    TransactionProposalRequest copy = hfClient.newTransactionProposalRequest();
+    copy.setProposalWaitTime( request.getProposalWaitTime() );
+    copy.setChaincodeID( request.getChaincodeID() );
+    copy.setFcn(         request.getFcn()         );
+    copy.setUserContext( users.get( userId ));
+
+    if( request.getArgBytes() != null && !request.getArgBytes().isEmpty() )
+      copy.setArgBytes( request.getArgBytes() );
+    else
+      copy.setArgs( request.getArgs() );
+
+    if( request.getTransientMap() != null && !request.getTransientMap().isEmpty() )
+      copy.setTransientMap( request.getTransientMap() );
+
+    return copy;
+  }
+
+  /**
+   * A new query request with the chaincode, function, arguments and transient data of the request, as a request may
+   * only be submitted once.
+   */
+  QueryByChaincodeRequest copyQueryRequest( QueryByChaincodeRequest request, String userId )
+    throws InvalidArgumentException
+  {
+    QueryByChaincodeRequest copy = hfClient.newQueryProposalRequest();
+    copy.setProposalWaitTime( request.getProposalWaitTime() );
+    copy.setChaincodeID( request.getChaincodeID() );
+    copy.setFcn(         request.getFcn()         );
+    copy.setUserContext( users.get( userId ));
+
+    if( request.getArgBytes() != null && !request.getArgBytes().isEmpty() )
+      copy.setArgBytes( request.getArgBytes() );
+    else
+      copy.setArgs( request.getArgs() );
+
+    if( request.getTransientMap() != null && !request.getTransientMap().isEmpty() )
+      copy.setTransientMap( request.getTransientMap() );
+
+    return copy;
+  }
+
+  /**
+   * Endorse the proposal, check the endorsement policy and send the transaction to the orderer. The request holds a lease
+   * on the routing table until the transaction completes, so a refreshed channel's predecessor is not closed under it.
+   * The transaction is completed through the completion registry, when one is configured.
+   */
+  private CompletableFuture<TransactionCommit> endorseAndSend( ChannelRoutingTable route, String userId, TransactionProposalRequest proposalRequest, String[] payload )
+          throws FabricRequestException, FailedEndorsementException, InfrastructureException
+  {
+    ChannelRoutingTable.Lease lease = acquire( route );
+    try
+    {
+      CompletableFuture<TransactionCommit> committed = endorseAndSend( lease, userId, proposalRequest, payload );
+      committed.whenComplete(( event, e ) -> lease.release() );
+      return committed;
+    }
+    catch( FabricRequestException | FailedEndorsementException | InfrastructureException | RuntimeException e )
     {
-      proposalRequest.setUserContext( users.get( userId ));
+      lease.release();
+      throw e;
     }
+  }
+
+  private CompletableFuture<TransactionCommit> endorseAndSend( ChannelRoutingTable.Lease lease, String userId, TransactionProposalRequest proposalRequest, String[] payload )
+          throws FabricRequestException, FailedEndorsementException, InfrastructureException
+  {
+    ChannelRoutingTable route = lease.getRoute();
+
+    String  channelId = route.getChannelId();
+    Channel channel   = route.getChannel();
+    String  ccId      = route.getChainCodeName();
 
     Collection<ProposalResponse> returnedEndorsements = null;
     DiscoveryOptions options = null;
     try
     {
-      options = createDiscoveryOptions().setEndorsementSelector(ServiceDiscovery.EndorsementSelector.ENDORSEMENT_SELECTION_RANDOM );
+      options = createDiscoveryOptions().setEndorsementSelector( endorsementSelector() );
     } catch( InvalidArgumentException e )
     {
       String errMsg = "Error creating service discovery options. Exception = " + e.getMessage();
@@ -287,18 +692,44 @@ public class FabricServices
       throw new FabricRequestException( errMsg );
     }
 
+    EndorsementPolicyResult policyResult = null;
+    ChainCodeInfo           ccInfo       = route.getChainCodeInfo();
+
+    // Private data is never hedged. Each spare proposal is a new transaction, which would hand the transient data to a
+    // further selection of endorsers.
+    boolean hedged = endorsementCollector != null && ccInfo != null && ( proposalRequest.getTransientMap() == null || proposalRequest.getTransientMap().isEmpty() );
+
     int iter = 0;
     while( true )
     {
       try
       {
-        returnedEndorsements = channel.sendTransactionProposalToEndorsers( proposalRequest, options );
+        // The collector proceeds with the first proposal meeting the policy, sending spare proposals when slow.
+        if( hedged )
+        {
+          final Channel          endorsingChannel = channel;
+          final DiscoveryOptions endorsingOptions = options;
+          policyResult = endorsementCollector.endorse( channel, () -> sendProposal( endorsingChannel, copyProposalRequest( proposalRequest, userId ), endorsingOptions ), ccInfo.getPolicy() );
+          returnedEndorsements = policyResult.getSuccessfulResponses();
+        }
+        else
+          returnedEndorsements = sendProposal( channel, ( iter == 0 ) ? proposalRequest : copyProposalRequest( proposalRequest, userId ), options );
+
         logger.info( "Endorsements returned for payload = " + payload );
         break;
       }
       // Generated by invalid arguments. As we do not know the correct ones, throw an exception back to the invoking code.
       catch( InvalidArgumentException | ProposalException | ServiceDiscoveryException e )
       {
+        // The request was cancelled, for example by a shutdown. The channel has not failed so is neither refreshed nor
+        // retried.
+        if( Thread.currentThread().isInterrupted() )
+        {
+          String errMsg = "Endorsement interrupted on channel = " + channelId + ". Exception = " + e.getMessage();
+          logger.error( errMsg );
+          throw new FabricRequestException( errMsg );
+        }
+
         // Generated by system error, generally connection. Attempt to reconnect and retry a max number of times.
         if( iter >= MAX_PROPOSAL_ATTEMPTS )
         {
@@ -313,27 +744,31 @@ public class FabricServices
         e.printStackTrace();
 
         iter++;
-        // Force channel shutdown, release all channel resources and then initialize a new sdk channel.
-        restartChannel( channel );
+        // Refresh the channel in the background and retry on the refreshed channel, or on the current channel when the
+        // refresh is not ready within the refresh wait time.
+        route   = refreshRoute( lease );
+        channel = route.getChannel();
       }
     }
 
     logger.info( "Returned Endorsements = " + returnedEndorsements.size() + " for payload = " + payload );
     // Determine whether the endorsement policy has been met via the policy associated with the chaincode.
-    ChainCodeInfo ccInfo = getChainCode( ccId );
     if( ccInfo != null )
     {
-      if( !ccInfo.getPolicy().isPolicyMet( returnedEndorsements ))
+      if( policyResult == null )
+        policyResult = ccInfo.getPolicy().evaluate( returnedEndorsements );
+
+      if( !policyResult.isPolicyMet() )
       {
-        if( ccInfo.getPolicy().getFailedResponses() != null )
+        if( !policyResult.getFailedResponses().isEmpty() )
         {
-          String errMsg = "Endorsement Failed. Found Failed Responses.";
+          String errMsg = "Endorsement Failed. Found Failed Responses. " + policyResult.getReason();
           logger.error( errMsg );
-          throw new FailedEndorsementException( ccInfo.getPolicy().getFailedResponses() );
+          throw new FailedEndorsementException( policyResult.getFailedResponses() );
         }
         else
         {
-          String errMsg = "Endorsement Failed. Minimum responses not received.";
+          String errMsg = "Endorsement Failed. Minimum responses not received. " + policyResult.getReason();
           logger.error( errMsg );
           throw new FailedEndorsementException( errMsg );
         }
@@ -348,19 +783,7 @@ public class FabricServices
     }
 
     logger.info( "Sending ledger transaction to orderer." );
-    try
-    {
-      // Note we are not capturing the CompleteableFuture returned here as it is only Completed for the transaction after.
-      // the BlockEvent is returned from the Peer. Instead we are listening for and processing the Block Events.
-      return channel.sendTransaction( ccInfo.getPolicy().getSuccessfulResponses(), channel.getOrderers() );
-    }
-    catch( Exception e )
-    {
-      // All purpose catch for transport errors which are passed thru.
-      String errMsg = "Error sending transaction to orderer. Error = " + e.getMessage();
-      logger.error( errMsg );
-      throw new FabricRequestException( errMsg );
-    }
+    return sendToOrderer( channel, channelId, policyResult.getSuccessfulResponses(), userId );
   }
   
   
@@ -485,9 +908,66 @@ public class FabricServices
 //    }
 //  }
 
+  /**
+   * Send the endorsed transaction to the orderer. When the completion registry is set (commit.registry = true) the
+   * transaction is registered by its id and its future is completed from the block stream, so the SDK is not asked to wait for
+   * the transaction event. Otherwise the future completes with the SDK's transaction event.
+   * The future is tracked by the runtime's timing wheel, which fails it if it is not committed within the commit timeout.
+   *
+   * @return the completable future for the transaction commit
+   */
+  private CompletableFuture<TransactionCommit> sendToOrderer( Channel channel, String channelId, Collection<ProposalResponse> responses, String userId )
+          throws FabricRequestException
+  {
+    Channel.TransactionOptions    options  = createTransactionOptions().orderers( channel.getOrderers() ).userContext( users.get( userId ));
+    TransactionCompletionRegistry registry = completionRegistry;
+    TimingWheelService            wheel    = runtimeMgr.getTimingWheel();
+    String                        txId     = responses.isEmpty() ? null : responses.iterator().next().getTransactionID();
+    boolean                       tracked  = false;
+    try
+    {
+      CompletableFuture<TransactionCommit> committed = null;
+      if( registry == null )
+        committed = channel.sendTransaction( responses, options ).thenApply( TransactionCommit::of );
+      else
+      {
+        final String registeredId = txId;
+
+        committed = registry.register( channelId, txId );
+        tracked   = true;
+
+        channel.sendTransaction( responses, options.nOfEvents( Channel.NOfEvents.createNoEvents() ))
+               .whenComplete(( event, e ) ->
+               {
+                 if( e != null )
+                   registry.fail( registeredId, e );
+               });
+      }
+
+      if( wheel != null )
+        wheel.trackCommit( channelId, txId, committed, commitTimeout );
+
+      return committed;
+    }
+    catch( Exception e )
+    {
+      // All purpose catch for transport errors which are passed thru.
+      String errMsg = "Error sending transaction to orderer. Error = " + e.getMessage();
+      logger.error( errMsg );
+
+      if( tracked )
+        registry.fail( txId, new FabricRequestException( errMsg ));
+
+      throw new FabricRequestException( errMsg );
+    }
+  }
+
   /**
    * Send a Fabric Transaction with private Data to first the Endorsing Peers obtained via Service Discovery for the channel, check that the
    * endorsement policy is successful, and then send the transaction to the orderer for the channel.
+   * When the completion registry is configured (commit.registry = true) the transaction is completed from the block
+   * stream. A transaction committed in a block fetched by catch up then completes with a null event, as catch up
+   * blocks carry no events. requestTransactionCommitWithPrivateData returns the commit record for those.
    * 
    * @param channelId
    * @param userId
@@ -501,11 +981,33 @@ public class FabricServices
   public CompletableFuture<BlockEvent.TransactionEvent> requestTransactionWithPrivateData(String channelId, String userId, String[] payload, Map<String, byte[]> privateDataMap, String collectionId, String methodName )
     throws FabricRequestException, FailedEndorsementException, InfrastructureException
   {
-    Channel channel = validateRequestParms( channelId, userId, payload, methodName );
+    return sendPrivateData( channelId, userId, payload, privateDataMap, collectionId, methodName ).thenApply( TransactionCommit::getTransactionEvent );
+  }
+
+  /**
+   * Send a Fabric Transaction with private Data as requestTransactionWithPrivateData does, completing the future with the
+   * TransactionCommit record, which also describes transactions committed in blocks fetched by catch up.
+   *
+   * @param channelId
+   * @param userId
+   * @param payload
+   * @param methodName
+   * @throws FabricRequestException
+   * @throws FailedEndorsementException
+   * @throws InfrastructureException
+   * @return the completable future for the transaction commit
+   */
+  public CompletableFuture<TransactionCommit> requestTransactionCommitWithPrivateData( String channelId, String userId, String[] payload, Map<String, byte[]> privateDataMap, String collectionId, String methodName )
+    throws FabricRequestException, FailedEndorsementException, InfrastructureException
+  {
+    return sendPrivateData( channelId, userId, payload, privateDataMap, collectionId, methodName );
+  }
 
-    String              ccId               = channel.getDiscoveredChaincodeNames().iterator().next();
-    ChaincodeID.Builder chaincodeIDBuilder = ChaincodeID.newBuilder().setName( ccId );
-    ChaincodeID         chainCodeId        = chaincodeIDBuilder.build();
+  private CompletableFuture<TransactionCommit> sendPrivateData( String channelId, String userId, String[] payload, Map<String, byte[]> privateDataMap, String collectionId, String methodName )
+    throws FabricRequestException, FailedEndorsementException, InfrastructureException
+  {
+    ChannelRoutingTable route       = validateRequestParms( channelId, userId, payload, methodName );
+    ChaincodeID         chainCodeId = route.getChaincodeId();
 
     TransactionProposalRequest proposalRequest = hfClient.newTransactionProposalRequest();
     proposalRequest.setProposalWaitTime( invokeWaitTime );
@@ -524,117 +1026,17 @@ public class FabricServices
     }
 
     // Validate private collection on channel
-    boolean inChannel = false;
-    if( collections.containsKey( channelId ))
-    {
-      Map<String, CollectionConfig> collectionConfigs = collections.get( channelId );
-      if( collectionConfigs.containsKey( collectionId ))
-      {
-        inChannel = true;
-      }
-    }
-
-    if( !inChannel )
+    if( !route.hasCollection( collectionId ))
     {
       String errMsg = "Requested private Data collection not in requested channel.";
       logger.error( errMsg );
       throw new FabricRequestException( errMsg );
     }
 
-    // If userId not found then we will use the User Context already set in hfClient
-    if( users.containsKey( userId ))
-    {
-      proposalRequest.setUserContext( users.get( userId ));
-    }
-
-    Collection<ProposalResponse> returnedEndorsements = null;
-    DiscoveryOptions options = null;
-    try
-    {
-      options = createDiscoveryOptions().setEndorsementSelector( ServiceDiscovery.EndorsementSelector.ENDORSEMENT_SELECTION_RANDOM );
-    } catch( InvalidArgumentException e )
-    {
-      String errMsg = "Error creating service discovery options. Exception = " + e.getMessage();
-      logger.error( errMsg );
-      throw new FabricRequestException( errMsg );
-    }
-
-    int iter = 0;
-    while( true )
-    {
-      try
-      {
-        returnedEndorsements = channel.sendTransactionProposalToEndorsers( proposalRequest, options );
-        logger.info( "Endorsements returned for payload = " + payload );
-        break;
-      }
-      // Generated by invalid arguments. As we do not know the correct ones, throw an exception back to the invoking code.
-      catch( InvalidArgumentException | ProposalException | ServiceDiscoveryException e )
-      {
-        // Generated by system error, generally connection. Attempt to reconnect and retry a max number of times.
-        if( iter >= MAX_PROPOSAL_ATTEMPTS )
-        {
-          String errMsg = "MAX_PROPOSAL_ATTEMPTS for endorsement failed with exception = " + e.getMessage();
-          logger.error( errMsg );
-          throw new FabricRequestException( errMsg );
-        }
-
-        String errMsg = "Endorsement Exception. Exception = " + e.getMessage();
-        logger.error( errMsg );
-
-        e.printStackTrace();
-
-        iter++;
-        // Force channel shutdown, release all channel resources and then initialize a new sdk channel.
-        restartChannel( channel );
-      }
-    }
-
-    logger.info( "Returned Endorsements = " + returnedEndorsements.size() + " for payload = " + payload );
-    // Determine whether the endorsement policy has been met via the policy associated with the chaincode.
-    ChainCodeInfo ccInfo = getChainCode( ccId );
-    if( ccInfo != null )
-    {
-      if( !ccInfo.getPolicy().isPolicyMet( returnedEndorsements ))
-      {
-        if( ccInfo.getPolicy().getFailedResponses() != null )
-        {
-          String errMsg = "Endorsement Failed. Found Failed Responses.";
-          logger.error( errMsg );
-          throw new FailedEndorsementException( ccInfo.getPolicy().getFailedResponses() );
-        }
-        else
-        {
-          String errMsg = "Endorsement Failed. Minimum responses not received.";
-          logger.error( errMsg );
-          throw new FailedEndorsementException( errMsg );
-        }
-      }
-    }
-    else
-    {
-      String msg = "Chaincode info = null. Not found for chaincode " + ccId;
-      System.out.println( msg );
-      logger.error( msg );
-      throw new FabricRequestException( msg );
-    }
-
-    logger.info( "Sending ledger transaction to orderer." );
-    try
-    {
-      // Note we are not capturing the CompleteableFuture returned here as it is only Completed for the transaction after.
-      // the BlockEvent is returned from the Peer. Instead we are listening for and processing the Block Events.
-      return channel.sendTransaction( ccInfo.getPolicy().getSuccessfulResponses(), channel.getOrderers() );
-    }
-    catch( Exception e )
-    {
-      // All purpose catch for transport errors which are passed thru.
-      String errMsg = "Error sending transaction to orderer. Error = " + e.getMessage();
-      logger.error( errMsg );
-      throw new FabricRequestException( errMsg );
-    }
-
+    // The user context is carried on the request only. The shared hfClient context is never changed per request.
+    proposalRequest.setUserContext( users.get( userId ));
 
+    return endorseAndSend( route, userId, proposalRequest, payload );
   }
 
   /**
@@ -787,7 +1189,8 @@ public class FabricServices
 //  }
 
   /**
-   * Query channel world state.
+   * Query channel world state. When the query cache is enabled an identical query is answered from the cache until a
+   * committed block invalidates it.
    * 
    * @param channelId
    * @param userId
@@ -799,63 +1202,39 @@ public class FabricServices
   public String query( String channelId, String userId, String[] args, String method )
     throws FabricRequestException
   {
-    Channel channel = validateRequestParms( channelId, userId, args, method );
+    ChannelRoutingTable route   = validateRequestParms( channelId, userId, args, method );
+    Channel             channel = route.getChannel();
     
-    String              ccId               = channel.getDiscoveredChaincodeNames().iterator().next();
-    ChaincodeID.Builder chaincodeIDBuilder = ChaincodeID.newBuilder().setName( ccId );
-    ChaincodeID         chainCodeId        = chaincodeIDBuilder.build();
+    String      ccId        = route.getChainCodeName();
+    ChaincodeID chainCodeId = route.getChaincodeId();
+
+    String cacheKey   = null;
+    long   generation = 0;
+    if( queryCache != null )
+    {
+      cacheKey   = QueryResultCache.buildKey( channelId, ccId, method, args, userId );
+      generation = queryCache.getGeneration( channelId );
+
+      String cached = queryCache.get( cacheKey );
+      if( cached != null )
+        return cached;
+    }
     
     QueryByChaincodeRequest queryByChaincodeRequest = hfClient.newQueryProposalRequest();
     queryByChaincodeRequest.setArgs( args ); // test using bytes as args. End2end uses Strings.
     queryByChaincodeRequest.setFcn( method );
     queryByChaincodeRequest.setChaincodeID( chainCodeId );
+    queryByChaincodeRequest.setUserContext( users.get( userId ));
 
-    Collection<ProposalResponse> queryProposals;
-    
-    for( Peer peer : orgPeers )
-    {
-      try
-      {
-        Collection<Peer> queryPeer = new ArrayList<Peer>();
-        Collection<Peer> channelPeers = channel.getPeers();
-
-        channelPeers.forEach(channelPeer -> {
-          if (channelPeer.getUrl().compareTo(peer.getUrl()) == 0) {
-            queryPeer.add(channelPeer);
-          }
-        });
-
-        if (!queryPeer.isEmpty()) {
-          queryProposals = channel.queryByChaincode( queryByChaincodeRequest, queryPeer );
+    ProposalResponse proposalResponse = sendQuery( route, queryByChaincodeRequest, userId, args );
 
-          for( ProposalResponse proposalResponse : queryProposals )
-          {
-            if (!proposalResponse.isVerified() || proposalResponse.getStatus() != Status.SUCCESS)
-            {
-              String msg = "Failed query proposal from peer " + proposalResponse.getPeer().getName() + " status: " + proposalResponse.getStatus() +
-                      ". Messages: " + proposalResponse.getMessage()
-                      + ". Was verified : " + proposalResponse.isVerified();
-              logger.error( msg );
-            }
-            else
-            {
-              return proposalResponse.getProposalResponse().getResponse().getPayload().toStringUtf8();
-            }
-          }
-        } else {
-          String msg = "Peer with URL " + peer.getUrl() + " not on channel " + channelId;
-          logger.error(msg);
-        }
-      }
-      catch( Exception e )
-      {
-        throw new FabricRequestException( e.getMessage() );
-      }
+    String result = proposalResponse.getProposalResponse().getResponse().getPayload().toStringUtf8();
+    if( queryCache != null )
+    {
+      String peerName = ( proposalResponse.getPeer() == null ) ? null : proposalResponse.getPeer().getName();
+      queryCache.put( cacheKey, channelId, generation, peerName, result, obtainReadSet( proposalResponse ));
     }
-    
-    final String msg = "No Org Peer provided a valid query response for query params " + args;
-    logger.error( msg );
-    throw new FabricRequestException( msg );
+    return result;
   }
  
   /**
@@ -873,16 +1252,17 @@ public class FabricServices
   public String queryWithPrivateData( String channelId, String userId, String collectionId, String[] args, Map<String, byte[]> privateDataMap, String method )
     throws FabricRequestException
   {
-    Channel channel = validateRequestParms( channelId, userId, args, method );
+    ChannelRoutingTable route   = validateRequestParms( channelId, userId, args, method );
+    Channel             channel = route.getChannel();
     
-    String              ccId               = channel.getDiscoveredChaincodeNames().iterator().next();
-    ChaincodeID.Builder chaincodeIDBuilder = ChaincodeID.newBuilder().setName( ccId );
-    ChaincodeID         chainCodeId        = chaincodeIDBuilder.build();
+    String      ccId        = route.getChainCodeName();
+    ChaincodeID chainCodeId = route.getChaincodeId();
     
     QueryByChaincodeRequest queryByChaincodeRequest = hfClient.newQueryProposalRequest();
     queryByChaincodeRequest.setArgs( args ); // test using bytes as args. End2end uses Strings.
     queryByChaincodeRequest.setFcn( method );
     queryByChaincodeRequest.setChaincodeID( chainCodeId );
+    queryByChaincodeRequest.setUserContext( users.get( userId ));
 
     // Private data needs to be sent via Transient field to prevent identifiable information being sent to the orderer.
     try
@@ -895,58 +1275,99 @@ public class FabricServices
     }
 
     // Validate private collection on channel
-    boolean inChannel = false;
-    if( collections.containsKey( channelId ))
-    {
-      Map<String, CollectionConfig> collectionConfigs = collections.get( channelId );
-      if( collectionConfigs.containsKey( collectionId ))
-      {
-        inChannel = true;
-      }
-    }
-
-    if( !inChannel )
+    if( !route.hasCollection( collectionId ))
     {
       String errMsg = "Requested private Data collection not in requested channel.";
       logger.error( errMsg );
       throw new FabricRequestException( errMsg );
     }
 
-    Collection<ProposalResponse> queryProposals;
+    return sendQuery( route, queryByChaincodeRequest, userId, args ).getProposalResponse().getResponse().getPayload().toStringUtf8();
+  }
 
-    for( Peer peer : orgPeers )
+  /**
+   * Send the query proposal holding a lease on the routing table, so a refreshed channel's predecessor is not closed under
+   * the query. A query which fails because its channel was closed at the end of the drain time is retried once on the
+   * current channel.
+   *
+   * @param route
+   * @param queryByChaincodeRequest
+   * @param userId
+   * @param args
+   * @return the verified SUCCESS response
+   * @throws FabricRequestException
+   */
+  private ProposalResponse sendQuery( ChannelRoutingTable route, QueryByChaincodeRequest queryByChaincodeRequest, String userId, String[] args )
+    throws FabricRequestException
+  {
+    ChannelRoutingTable.Lease lease = acquire( route );
+    try
     {
       try
       {
-        Collection<Peer> queryPeer = new ArrayList<Peer>();
-        Collection<Peer> channelPeers = channel.getPeers();
+        return sendQuery( lease.getRoute(), queryByChaincodeRequest, true, userId, args );
+      }
+      catch( FabricRequestException e )
+      {
+        ChannelRoutingTable current = routes.get( route.getChannelId() );
+        if( !lease.getRoute().getChannel().isShutdown() || current == null || current == lease.getRoute() )
+          throw e;
 
-        channelPeers.forEach(channelPeer -> {
-          if (channelPeer.getUrl().compareTo(peer.getUrl()) == 0) {
-            queryPeer.add(channelPeer);
-          }
-        });
+        logger.warn( "Query failed on the replaced channel = " + route.getChannelId() + ". Retrying on the current channel." );
+        lease.moveTo( current );
+        return sendQuery( lease.getRoute(), queryByChaincodeRequest, false, userId, args );
+      }
+    }
+    finally
+    {
+      lease.release();
+    }
+  }
 
-        if (!queryPeer.isEmpty()) {
-          queryProposals = channel.queryByChaincode( queryByChaincodeRequest, queryPeer );
+  /**
+   * Send the query proposal to the org peers of the channel. The peers are tried in turn unless a hedged query executor
+   * is configured, in which case they are queried concurrently. Each peer is sent its own copy of the request, as a
+   * request may only be submitted once.
+   * 
+   * @param route
+   * @param queryByChaincodeRequest
+   * @param unsent - the request has not been submitted, so may be sent to the first peer
+   * @param userId
+   * @param args
+   * @return the verified SUCCESS response
+   * @throws FabricRequestException
+   */
+  private ProposalResponse sendQuery( ChannelRoutingTable route, QueryByChaincodeRequest queryByChaincodeRequest, boolean unsent, String userId, String[] args )
+    throws FabricRequestException
+  {
+    if( queryExecutor != null )
+    {
+      return queryExecutor.execute( route.getChannel(), () -> copyQueryRequest( queryByChaincodeRequest, userId ), route.getQueryPeers() );
+    }
 
-          for( ProposalResponse proposalResponse : queryProposals )
+    boolean first = unsent;
+    for( Peer queryPeer : route.getQueryPeers() )
+    {
+      try
+      {
+        QueryByChaincodeRequest request = first ? queryByChaincodeRequest : copyQueryRequest( queryByChaincodeRequest, userId );
+        first = false;
+
+        Collection<ProposalResponse> queryProposals = route.getChannel().queryByChaincode( request, Collections.singletonList( queryPeer ));
+
+        for( ProposalResponse proposalResponse : queryProposals )
+        {
+          if (!proposalResponse.isVerified() || proposalResponse.getStatus() != Status.SUCCESS)
           {
-            if (!proposalResponse.isVerified() || proposalResponse.getStatus() != Status.SUCCESS)
-            {
-              String msg = "Failed query proposal from peer " + proposalResponse.getPeer().getName() + " status: " + proposalResponse.getStatus() +
-                      ". Messages: " + proposalResponse.getMessage()
-                      + ". Was verified : " + proposalResponse.isVerified();
-              logger.error( msg );
-            }
-            else
-            {
-              return proposalResponse.getProposalResponse().getResponse().getPayload().toStringUtf8();
-            }
+            String msg = "Failed query proposal from peer " + proposalResponse.getPeer().getName() + " status: " + proposalResponse.getStatus() +
+                    ". Messages: " + proposalResponse.getMessage()
+                    + ". Was verified : " + proposalResponse.isVerified();
+            logger.error( msg );
+          }
+          else
+          {
+            return proposalResponse;
           }
-        } else {
-          String msg = "Peer with URL " + peer.getUrl() + " not on channel " + channelId;
-          logger.error(msg);
         }
       }
       catch( Exception e )
@@ -961,7 +1382,7 @@ public class FabricServices
   }
 
   
-  private Channel validateRequestParms( String channelId, String userId, String[] payload, String methodName )
+  private ChannelRoutingTable validateRequestParms( String channelId, String userId, String[] payload, String methodName )
     throws FabricRequestException
   {
     if( payload == null )
@@ -985,40 +1406,55 @@ public class FabricServices
       throw new FabricRequestException( errMsg );
     }
 
-    Channel channel = channels.get( channelId );
-    if( channel == null )
+    ChannelRoutingTable route = routes.get( channelId );
+    if( route == null )
     {
       String errMsg = "Proposal request channelId is invalid.";
       logger.error( errMsg );
       throw new FabricRequestException( errMsg );
     }
-    
-    if( users.containsKey( userId ))
+
+    if( !route.hasChaincode() )
     {
-      User user = users.get( userId );
-      try
-      {
-        hfClient.setUserContext( user );
-      } catch( InvalidArgumentException e )
-      {
-        String errMsg = "Transaction request setting userId error. Error = " + e.getMessage();
-        logger.error( errMsg );
-        throw new FabricRequestException( errMsg );
-      }
+      String errMsg = "No chaincode discovered on channel " + channelId + ".";
+      logger.error( errMsg );
+      throw new FabricRequestException( errMsg );
     }
-    else
+    
+    if( !users.containsKey( userId ))
     {
       String errMsg = "Transaction request userId not found.";
       logger.error( errMsg );
       throw new FabricRequestException( errMsg );
     }
     
-    return channel;
+    return route;
   }
   
+  /**
+   * The read set of a query response, or null if it can not be obtained in which case the cached result is invalidated
+   * by any block on the channel.
+   */
+  private TxReadWriteSet obtainReadSet( ProposalResponse response )
+  {
+    // Parsed from the response, as the SDK's TxReadWriteSetInfo does not expose the collection hashed reads.
+    try
+    {
+      ByteString payload = response.getProposalResponse().getPayload();
+      ByteString results = ChaincodeAction.parseFrom( ProposalResponsePayload.parseFrom( payload ).getExtension() ).getResults();
+
+      return TxReadWriteSet.parseFrom( results );
+    }
+    catch( InvalidProtocolBufferException e )
+    {
+      logger.error( "Unable to obtain query read set. Error = " + e.getMessage() );
+      return null;
+    }
+  }
+
   public OrgUserVO getUser( String id )
   {
-    if( users.containsKey( id ))
+    if( id != null && users.containsKey( id ))
       return users.get( id );
     
     return null;
@@ -1032,12 +1468,27 @@ public class FabricServices
    */
   public ChainCodeInfo getChainCode( String id )
   {
-    if( chainCodes.containsKey( id ))
+    if( id != null && chainCodes.containsKey( id ))
       return chainCodes.get( id );
     
     return null;
   }
 
+  /**
+   * Obtain the chaincode discovered on the channel, which is the chaincode transactions on the channel are sent to.
+   * 
+   * @param channelId
+   * @return
+   */
+  public ChainCodeInfo getChannelChainCode( String channelId )
+  {
+    ChannelRoutingTable route = ( channelId == null ) ? null : routes.get( channelId );
+    if( route == null )
+      return null;
+
+    return route.getChainCodeInfo();
+  }
+
   
   /**
    * Set a Block Event Listener on the channel for receiving Block Events.
@@ -1053,18 +1504,117 @@ public class FabricServices
   }
 
 
-  private void createBlockListener( Channel channel )
+  private BlockEventsPlayerIF createBlockListener( Channel channel )
+    throws BlockEventException
+  {
+    return createBlockListener( channel, orgPeer );
+  }
+
+  /**
+   * Register a block listener on the channel. The caller registers the returned listener in listeners.
+   *
+   * @param eventPeer - the peer the channel receives its block events from
+   * @return the listener, shut down again if the channel's further event sources could not be added
+   */
+  private BlockEventsPlayerIF createBlockListener( Channel channel, Peer eventPeer )
     throws BlockEventException
   {
     if( channel == null )
       throw new BlockEventException( "Error null channel." );
 
     BlockEventsPlayerIF eventsPlayer = new BlockEventFileStorePlayer();
-    eventsPlayer.initializeEventing( runtimeMgr, channel, orgPeer );
-    listeners.put( channel.getName(), eventsPlayer );
+    eventsPlayer.initializeEventing( runtimeMgr, channel, eventPeer );
+
+    if( eventSourceCount > 1 )
+    {
+      try
+      {
+        addEventSources( channel );
+      }
+      catch( BlockEventException e )
+      {
+        eventsPlayer.shutdown();
+        throw e;
+      }
+    }
+
+    return eventsPlayer;
   }
 
 
+  /**
+   * Register further org peers as event sources of the channel, so the channel's block events continue from the other
+   * peers when one stalls. The peers are added with the EVENT_SOURCE role only and start from the block after the last
+   * processed block. A peer already on the channel, in any role, cannot be added again and is skipped, as is a peer
+   * which cannot be added. Fewer event sources than configured is logged as an error.
+   */
+  private void addEventSources( Channel channel )
+    throws BlockEventException
+  {
+    long        startSeq  = runtimeMgr.getBlockSeqStore().getCurrentSequenceNumber( channel.getName() ) + 1;
+    Set<String> endpoints = new HashSet<String>();
+
+    for( Peer peer : channel.getPeers() )
+    {
+      endpoints.add( peer.getName() );
+      endpoints.add( peer.getUrl()  );
+    }
+
+    int sources = channel.getPeers( EnumSet.of( PeerRole.EVENT_SOURCE )).size();
+    for( PeerVO peerVO : discoveryPeers )
+    {
+      if( sources >= eventSourceCount )
+        break;
+
+      if( endpoints.contains( peerVO.getIpAddress() + ":" + peerVO.getEndorsePort() ))
+        continue;
+
+      try
+      {
+        if( endpoints.contains( peerVO.getEndorseUrl() ))
+          continue;
+
+        Peer        peer    = buildDiscoveryPeer( peerVO );
+        PeerOptions options = Channel.PeerOptions.createPeerOptions().setPeerRoles( EnumSet.of( PeerRole.EVENT_SOURCE )).startEvents( startSeq );
+        if( isFilteredEvents( channel.getName() ))
+          options = options.registerEventsForFilteredBlocks();
+
+        channel.addPeer( peer, options );
+        sources++;
+
+        logger.info( "Added event source peer " + peer.getName() + " to channel = " + channel.getName() );
+      }
+      catch( InvalidArgumentException | ConfigurationException e )
+      {
+        logger.warn( "Unable to add event source peer " + peerVO.getPeerId() + " to channel = " + channel.getName() + ". Error = " + e.getMessage() );
+      }
+    }
+
+    if( sources < eventSourceCount )
+      logger.error( "Channel = " + channel.getName() + " has " + sources + " of the " + eventSourceCount + " configured event source peers." );
+    else
+      logger.info( "Channel = " + channel.getName() + " has " + sources + " event source peers." );
+  }
+
+
+  /**
+   * Channels whose event mode is filtered receive filtered blocks, which carry only the transaction ids and validation
+   * codes, instead of full blocks. The mode is channel.<channel id>.event.mode, defaulting to block.event.mode.
+   * 
+   * @param channelId
+   * @return
+   */
+  private boolean isFilteredEvents( String channelId )
+  {
+    ConfigProperties config = runtimeMgr.getConfig();
+
+    String mode = config.getProperty( ConfigKeysIF.CHANNEL_PREFIX + channelId + ConfigKeysIF.CHANNEL_EVENT_MODE_SUFFIX );
+    if( mode == null )
+      mode = config.getProperty( ConfigKeysIF.BLOCK_EVENT_MODE );
+
+    return mode != null && "filtered".equalsIgnoreCase( mode.trim() );
+  }
+
   private boolean isValidDiscovery( Channel channel )
   {
     EnumSet<PeerRole> endorserSet = EnumSet.of( PeerRole.ENDORSING_PEER );
@@ -1101,14 +1651,36 @@ public class FabricServices
     return hfClient.newPeer( peerId, peerVO.getEndorseUrl(), props );
   }
 
-  
-  private Channel discoverChannel( String channelId, Peer peer )
+  /**
+   * A client for a shadow channel, with the crypto suite and user context of the SDK client. The SDK holds a single
+   * channel of a name per client, so a channel cannot be discovered again on the client it was first created on.
+   */
+  HFClient newChannelClient()
+    throws InfrastructureException
+  {
+    HFClient client = HFClient.createNewInstance();
+    try
+    {
+      client.setCryptoSuite( hfClient.getCryptoSuite() );
+      client.setUserContext( hfClient.getUserContext() );
+    }
+    catch( CryptoException | InvalidArgumentException e )
+    {
+      String errMsg = "Error creating client for shadow channel. Error = " + e.getMessage();
+      logger.error( errMsg );
+      throw new InfrastructureException( errMsg );
+    }
+
+    return client;
+  }
+
+  private Channel discoverChannel( HFClient client, String channelId, Peer peer )
     throws InfrastructureException
   {
     Channel discoveredChannel = null;
     try
     {
-      discoveredChannel = hfClient.newChannel( channelId );
+      discoveredChannel = client.newChannel( channelId );
     } 
     catch( InvalidArgumentException e )
     {
@@ -1141,6 +1713,8 @@ public class FabricServices
     {
       PeerOptions options = Channel.PeerOptions.createPeerOptions().setPeerRoles(EnumSet.of( PeerRole.SERVICE_DISCOVERY, PeerRole.LEDGER_QUERY, PeerRole.EVENT_SOURCE, PeerRole.CHAINCODE_QUERY, PeerRole.ENDORSING_PEER ));
       options = options.startEvents( seqStart );
+      if( isFilteredEvents( channelId ))
+        options = options.registerEventsForFilteredBlocks();
       discoveredChannel.addPeer( peer, options );
     } 
     catch( InvalidArgumentException e )
@@ -1185,6 +1759,9 @@ public class FabricServices
         }
 
 
+          // Collections are held per channel as requests validate the collection against the requested channel.
+          Map<String, CollectionConfig> channelCollections = new HashMap<String, CollectionConfig>();
+
           for( String ccId : discoveredChannel.getDiscoveredChaincodeNames() )
           {
             try
@@ -1193,14 +1770,10 @@ public class FabricServices
 
               if( queryCollections != null && !queryCollections.getCollectionConfigs().isEmpty() )
               {
-                Map<String, CollectionConfig> ccCollections = new HashMap<String, CollectionConfig>();
-
                 for( CollectionConfig collectionConfig : queryCollections.getCollectionConfigs() )
                 {
-                  ccCollections.put( collectionConfig.getName(), collectionConfig );
+                  channelCollections.put( collectionConfig.getName(), collectionConfig );
                 }
-
-                collections.put( ccId, ccCollections );
               }
             }
             catch( ProposalException | InvalidProtocolBufferException e )
@@ -1212,6 +1785,8 @@ public class FabricServices
               }
             }
           } //endfor
+
+          collections.put( channelId, channelCollections );
         
         logger.info( "Channel = " + channelId + " successfully initialized via Service Discovery." );
         return discoveredChannel;
@@ -1232,60 +1807,209 @@ public class FabricServices
   }
   
   
-  private void restartChannel( Channel channel )
-   throws InfrastructureException
+  /**
+   * Make the discovered channel available to requests by building its routing table and swapping it in.
+   * 
+   * @param channelId
+   * @param channel
+   */
+  void registerChannel( String channelId, Channel channel )
   {
-    channel.shutdown( true );
-    
-    // Stop current block event listener on the channel
-    if( listeners.containsKey( channel.getName() ))
+    String              ccId  = channel.getDiscoveredChaincodeNames().isEmpty() ? null : channel.getDiscoveredChaincodeNames().iterator().next();
+    ChannelRoutingTable route = new ChannelRoutingTable( channel, getChainCode( ccId ), orgPeers, collections.get( channelId ));
+
+    channels.put( channelId, channel );
+    routes.put(   channelId, route   );
+  }
+
+  /**
+   * Refresh the channel in the background. A shadow channel is discovered and initialized, on a client of its own, and
+   * its block listener registered while the current channel continues to serve requests and deliver blocks, so no block
+   * is missed. The block processor claims each block of a channel once, so a block delivered by both listeners is only
+   * processed by the first. The shadow channel is then swapped in, the current listener unregistered and the replaced
+   * channel closed once its requests in flight have drained, or after the drain time. A refresh already in progress for
+   * the channel is shared.
+   *
+   * @param channelId
+   * @return completed with the routing table of the refreshed channel, or exceptionally if no discovery peer could
+   *         refresh it
+   */
+  public CompletableFuture<ChannelRoutingTable> refreshChannel( String channelId )
+  {
+    CompletableFuture<ChannelRoutingTable> refresh = new CompletableFuture<ChannelRoutingTable>();
+    CompletableFuture<ChannelRoutingTable> running = refreshes.putIfAbsent( channelId, refresh );
+    if( running != null )
+      return running;
+
+    refresher.execute( () ->
     {
-      BlockEventsPlayerIF eventer = listeners.get( channel.getName() );
-      
+      ChannelRoutingTable route = null;
+      Exception           error = null;
       try
       {
-        eventer.shutdown();
-      } 
-      catch( BlockEventException e )
+        route = swapChannel( channelId );
+      }
+      catch( InfrastructureException | RuntimeException e )
       {
-        String msg = "Error encountered shutting down Block Events. Error = " + e.getMessage();
-        logger.error( msg );
-        throw new InfrastructureException( msg );
+        logger.error( "Error refreshing channel = " + channelId + "; Error = " + e.getMessage() );
+        error = e;
       }
- 
-      listeners.remove( channel.getName() );
+
+      // A refresh requested once this one has completed starts a new refresh.
+      refreshes.remove( channelId, refresh );
+      if( error == null )
+        refresh.complete( route );
+      else
+        refresh.completeExceptionally( error );
+    });
+
+    return refresh;
+  }
+
+  /**
+   * Acquire a lease on the routing table a request obtained. The table may have been replaced, and its channel drained,
+   * before the lease was taken, in which case the lease moves to the current table.
+   */
+  private ChannelRoutingTable.Lease acquire( ChannelRoutingTable route )
+  {
+    ChannelRoutingTable.Lease lease   = route.acquire();
+    ChannelRoutingTable       current = routes.get( route.getChannelId() );
+    while( current != null && current != lease.getRoute() )
+    {
+      lease.moveTo( current );
+      current = routes.get( route.getChannelId() );
     }
-    
-    // Service Discovery
-    Channel newChannel = null;
-    String  msg        = null;
-    
-    for( PeerVO discoveryPeer : discoveryPeers )
+
+    return lease;
+  }
+
+  /**
+   * Refresh the channel of a request which failed on it, and move the request's lease to the refreshed channel if it is
+   * ready within the refresh wait time. If the channel has already been refreshed since the request obtained it, the
+   * lease moves to the current channel without a further refresh.
+   *
+   * @return the routing table to retry the request on
+   */
+  private ChannelRoutingTable refreshRoute( ChannelRoutingTable.Lease lease )
+  {
+    String              channelId = lease.getRoute().getChannelId();
+    ChannelRoutingTable current   = routes.get( channelId );
+
+    if( current == lease.getRoute() )
     {
       try
       {
-        Peer peer = buildDiscoveryPeer(discoveryPeer);
-        newChannel = discoverChannel( channel.getName(), peer );
-        channels.put( channel.getName(), newChannel );
+        current = refreshChannel( channelId ).get( refreshWaitTime, TimeUnit.MILLISECONDS );
+      }
+      catch( TimeoutException e )
+      {
+        logger.warn( "Refresh of channel = " + channelId + " still in progress. Retrying on the current channel." );
+      }
+      catch( ExecutionException e )
+      {
+        logger.error( "Refresh of channel = " + channelId + " failed. Retrying on the current channel. Error = " + e.getCause().getMessage() );
+      }
+      catch( InterruptedException e )
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    if( current != null )
+      lease.moveTo( current );
 
-        createBlockListener( newChannel );
+    return lease.getRoute();
+  }
+
+  /**
+   * Discover and initialize a shadow of the channel, register its block listener and swap it in. Runs on the refresh
+   * thread.
+   */
+  private ChannelRoutingTable swapChannel( String channelId )
+    throws InfrastructureException
+  {
+    ChannelRoutingTable oldRoute    = routes.get( channelId );
+    BlockEventsPlayerIF oldListener = listeners.get( channelId );
+
+    ShadowChannel shadow = null;
+    String        msg    = "No discovery peers.";
+    for( PeerVO discoveryPeer : discoveryPeers )
+    {
+      try
+      {
+        shadow = openShadowChannel( channelId, discoveryPeer );
+        break;
       }
       catch( InfrastructureException | BlockEventException | InvalidArgumentException | ConfigurationException e )
       {
-        msg = "Error restarting channel = " + newChannel.getName() + "; Error = " + e.getMessage();
+        msg = "Error refreshing channel = " + channelId + " from peer " + discoveryPeer.getPeerId() + "; Error = " + e.getMessage();
         logger.error( msg );
       }
-      
-      if( newChannel != null && listeners.containsKey( newChannel.getName() ))
+    }
+
+    if( shadow == null )
+      throw new InfrastructureException( msg );
+
+    // The current channel and listener stay registered until the shadow is fully set up.
+    registerChannel( channelId, shadow.channel );
+    listeners.put(   channelId, shadow.listener );
+
+    if( oldListener != null )
+    {
+      try
       {
-        break; // Dont need to go to the next peer.  
+        oldListener.shutdown();
+      }
+      catch( BlockEventException e )
+      {
+        logger.error( "Error unregistering the block listener of the replaced channel = " + channelId + ". Error = " + e.getMessage() );
       }
     }
-    
-    if( msg != null )
+
+    if( oldRoute != null )
+      drain( oldRoute, System.currentTimeMillis() + drainTime );
+
+    logger.info( "Channel = " + channelId + " refreshed." );
+    return routes.get( channelId );
+  }
+
+  /**
+   * Discover a shadow of the channel from the discovery peer, on a client of its own, and register its block listener
+   * while the current listener is still registered. The shadow channel is shut down again if its listener fails.
+   */
+  ShadowChannel openShadowChannel( String channelId, PeerVO discoveryPeer )
+    throws InfrastructureException, BlockEventException, InvalidArgumentException, ConfigurationException
+  {
+    Peer    peer   = buildDiscoveryPeer( discoveryPeer );
+    Channel shadow = discoverChannel( newChannelClient(), channelId, peer );
+    try
     {
-      throw new InfrastructureException( msg );
+      return new ShadowChannel( shadow, createBlockListener( shadow, peer ));
+    }
+    catch( BlockEventException | RuntimeException e )
+    {
+      shadow.shutdown( true );
+      throw e;
+    }
+  }
+
+  /**
+   * Close the channel of a replaced routing table once its requests in flight have drained, or at the deadline.
+   */
+  private void drain( ChannelRoutingTable route, long deadline )
+  {
+    int inFlight = route.getInFlight();
+    if( inFlight > 0 && System.currentTimeMillis() < deadline )
+    {
+      refresher.schedule( () -> drain( route, deadline ), DRAIN_POLL_MS, TimeUnit.MILLISECONDS );
+      return;
     }
+
+    if( inFlight > 0 )
+      logger.warn( "Closing replaced channel = " + route.getChannelId() + " with " + inFlight + " requests in flight after the drain time." );
+
+    route.getChannel().shutdown( false );
+    logger.info( "Closed replaced channel = " + route.getChannelId() );
   }
   
   private PeerVO getPeerVO( String id )
@@ -1298,4 +2022,20 @@ public class FabricServices
     
     return null;
   }
+
+
+  /**
+   * A discovered shadow channel and the block listener registered on it, not yet swapped in.
+   */
+  static class ShadowChannel
+  {
+    final Channel             channel;
+    final BlockEventsPlayerIF listener;
+
+    ShadowChannel( Channel channel, BlockEventsPlayerIF listener )
+    {
+      this.channel  = channel;
+      this.listener = listener;
+    }
+  }
 }
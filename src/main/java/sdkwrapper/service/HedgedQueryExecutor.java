@@ -0,0 +1,180 @@
+package sdkwrapper.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.hyperledger.fabric.sdk.ChaincodeResponse.Status;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.QueryByChaincodeRequest;
+
+import sdkwrapper.exceptions.FabricRequestException;
+
+/**
+ * Sends a query proposal to the org peers of a channel concurrently and completes with the first verified SUCCESS
+ * response, cancelling the outstanding proposals.
+ *    PARALLEL - the proposal is sent to all the query peers at once.
+ *    HEDGED   - the proposal is sent to the first peer, and to each following peer when no valid response has been
+ *               received within the hedge delay or the prior peers have failed.
+ *
+ * Each peer is sent a new request, as the SDK rejects a request which has already been submitted.
+ *
+ * @author tim
+ *
+ */
+public class HedgedQueryExecutor
+{
+  public enum QueryMode { PARALLEL, HEDGED }
+
+  private static final Logger logger = LogManager.getLogger( HedgedQueryExecutor.class );
+
+  private final QueryMode       mode;
+  private final long            hedgeDelayMs;
+  private final ExecutorService executor;
+
+  /**
+   * @param mode
+   * @param hedgeDelayMs - delay before the next peer is tried when mode = HEDGED
+   * @param threadCount  - threads available for sending proposals
+   */
+  public HedgedQueryExecutor( QueryMode mode, long hedgeDelayMs, int threadCount )
+  {
+    this.mode         = mode;
+    this.hedgeDelayMs = Math.max( 0, hedgeDelayMs );
+
+    final AtomicInteger count = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool( Math.max( 1, threadCount ), r ->
+    {
+      Thread thread = new Thread( r, "query-" + count.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    });
+
+    logger.info( "HedgedQueryExecutor created. Mode = " + mode + ", hedge delay ms = " + this.hedgeDelayMs + ", threads = " + threadCount );
+  }
+
+  /**
+   * @param channel
+   * @param requests   - builds a new request on each call
+   * @param queryPeers - the channel peers to query, in order of preference
+   * @return the first verified SUCCESS response
+   * @throws FabricRequestException when no peer provides a valid response
+   */
+  public ProposalResponse execute( Channel channel, Callable<QueryByChaincodeRequest> requests, List<Peer> queryPeers )
+    throws FabricRequestException
+  {
+    if( queryPeers.isEmpty() )
+      throw new FabricRequestException( "No query peers on channel " + channel.getName() );
+
+    ExecutorCompletionService<ProposalResponse> completion = new ExecutorCompletionService<ProposalResponse>( executor );
+    List<Future<ProposalResponse>>              futures    = new ArrayList<Future<ProposalResponse>>( queryPeers.size() );
+
+    int launched    = 0;
+    int outstanding = 0;
+    try
+    {
+      int initial = ( mode == QueryMode.PARALLEL ) ? queryPeers.size() : 1;
+      for( ; launched < initial; launched++, outstanding++ )
+      {
+        final Peer peer = queryPeers.get( launched );
+        futures.add( completion.submit( () -> queryPeer( channel, requests, peer )));
+      }
+
+      while( outstanding > 0 )
+      {
+        Future<ProposalResponse> done = null;
+        if( launched < queryPeers.size() )
+          done = completion.poll( hedgeDelayMs, TimeUnit.MILLISECONDS );
+        else
+          done = completion.take();
+
+        if( done != null )
+        {
+          outstanding--;
+          ProposalResponse response = obtain( done );
+          if( response != null )
+            return response;
+        }
+
+        // Hedge delay expired, or a peer failed. Try the next peer.
+        if( launched < queryPeers.size() )
+        {
+          final Peer next = queryPeers.get( launched );
+          futures.add( completion.submit( () -> queryPeer( channel, requests, next )));
+          launched++;
+          outstanding++;
+        }
+      }
+    }
+    catch( InterruptedException e )
+    {
+      Thread.currentThread().interrupt();
+      throw new FabricRequestException( "Interrupted waiting for query response on channel " + channel.getName() );
+    }
+    finally
+    {
+      for( Future<ProposalResponse> future : futures )
+        future.cancel( true );
+    }
+
+    final String msg = "No Org Peer provided a valid query response on channel " + channel.getName();
+    logger.error( msg );
+    throw new FabricRequestException( msg );
+  }
+
+  public void shutdown()
+  {
+    executor.shutdownNow();
+  }
+
+  private ProposalResponse obtain( Future<ProposalResponse> done )
+  {
+    try
+    {
+      return done.get();
+    }
+    catch( ExecutionException e )
+    {
+      logger.error( "Query proposal failed. Error = " + e.getCause().getMessage() );
+    }
+    catch( InterruptedException e )
+    {
+      Thread.currentThread().interrupt();
+    }
+
+    return null;
+  }
+
+  /**
+   * @return the verified SUCCESS response of the peer, or null
+   */
+  private ProposalResponse queryPeer( Channel channel, Callable<QueryByChaincodeRequest> requests, Peer peer )
+    throws Exception
+  {
+    Collection<ProposalResponse> responses = channel.queryByChaincode( requests.call(), Collections.singletonList( peer ));
+
+    for( ProposalResponse response : responses )
+    {
+      if( response.isVerified() && response.getStatus() == Status.SUCCESS )
+        return response;
+
+      logger.error( "Failed query proposal from peer " + peer.getName() + " status: " + response.getStatus() + ". Messages: " + response.getMessage() + ". Was verified : " + response.isVerified() );
+    }
+
+    return null;
+  }
+}
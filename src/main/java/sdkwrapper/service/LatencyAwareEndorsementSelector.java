@@ -0,0 +1,360 @@
+package sdkwrapper.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.hyperledger.fabric.sdk.ChaincodeResponse.Status;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.ServiceDiscovery;
+import org.hyperledger.fabric.sdk.ServiceDiscovery.SDChaindcode;
+import org.hyperledger.fabric.sdk.ServiceDiscovery.SDEndorser;
+import org.hyperledger.fabric.sdk.ServiceDiscovery.SDEndorserState;
+import org.hyperledger.fabric.sdk.ServiceDiscovery.SDLayout;
+
+/**
+ * Service discovery endorsement selector preferring the endorsers with the lowest expected latency, in place of
+ * ENDORSEMENT_SELECTION_RANDOM.
+ *
+ * Each endorser, by endpoint, has an EWMA of its endorsement latency and error rate and a count of its proposals in
+ * flight. The expected latency of an endorser is its EWMA latency scaled by its in flight proposals plus one and by its
+ * expected attempts, 1 / (1 - error rate). Within each group of a layout the required endorsers with the lowest expected
+ * latency are picked, and the expected latency of the layout is that of its slowest pick. Two of the eligible layouts
+ * are chosen at random and the one with the lower expected latency is used, so load still spreads across layouts.
+ *
+ * The SDK waits on all the picked endorsers together, so the latency of a proposal is recorded against each endorser
+ * which responded successfully and a missing or failed response as an error against the endorser. An endorser without
+ * samples for recoveryMs is treated as new, with an expected latency of 0, so avoided endorsers are tried again.
+ *
+ * The selector is called on the thread sending the proposal. The sender must call completed or failed once the send
+ * returns, on the same thread, to record the outcome against the endorsers picked.
+ *
+ * @author tim
+ *
+ */
+public class LatencyAwareEndorsementSelector implements ServiceDiscovery.EndorsementSelector
+{
+  private static final Logger logger = LogManager.getLogger( LatencyAwareEndorsementSelector.class );
+
+  private static final double ALPHA       = 0.2;
+  private static final double MIN_SUCCESS = 0.05;
+
+  private final long                       recoveryNanos;
+  private final Map<String, EndorserStats> stats  = new ConcurrentHashMap<String, EndorserStats>();
+  private final ThreadLocal<Round>         rounds = new ThreadLocal<Round>();
+
+  /**
+   * @param recoveryMs - age of the last sample after which an endorser is treated as new
+   */
+  public LatencyAwareEndorsementSelector( long recoveryMs )
+  {
+    this.recoveryNanos = Math.max( 0, recoveryMs ) * 1000000L;
+
+    logger.info( "LatencyAwareEndorsementSelector created. Recovery ms = " + recoveryMs );
+  }
+
+  @Override
+  public SDEndorserState endorserSelector( SDChaindcode sdChaindcode )
+  {
+    List<SDLayout> eligible = new ArrayList<SDLayout>();
+    for( SDLayout layout : sdChaindcode.getLayouts() )
+    {
+      if( isSatisfiable( layout ))
+        eligible.add( layout );
+    }
+
+    if( eligible.isEmpty() )
+      eligible.addAll( sdChaindcode.getLayouts() );
+
+    long now = System.nanoTime();
+
+    // Power of two choices among the eligible layouts.
+    SDLayout         layout = eligible.get( ThreadLocalRandom.current().nextInt( eligible.size() ));
+    List<SDEndorser> picked = pick( layout, now );
+    if( eligible.size() > 1 )
+    {
+      int      other       = ThreadLocalRandom.current().nextInt( eligible.size() - 1 );
+      SDLayout otherLayout = eligible.get( other >= eligible.indexOf( layout ) ? other + 1 : other );
+      List<SDEndorser> otherPicked = pick( otherLayout, now );
+
+      if( cost( otherPicked, now ) < cost( picked, now ))
+      {
+        layout = otherLayout;
+        picked = otherPicked;
+      }
+    }
+
+    Round round = rounds.get();
+    if( round == null )
+    {
+      round = new Round( now );
+      rounds.set( round );
+    }
+
+    for( SDEndorser endorser : picked )
+    {
+      if( round.endpoints.add( endorser.getEndpoint() ))
+        statsOf( endorser.getEndpoint() ).started();
+    }
+
+    SDEndorserState state = new SDEndorserState();
+    state.setPickedEndorsers( picked );
+    state.setPickedLayout( layout );
+
+    return state;
+  }
+
+  /**
+   * Record the responses of the proposal sent by this thread against the endorsers picked for it.
+   *
+   * @param responses
+   */
+  public void completed( Collection<ProposalResponse> responses )
+  {
+    Round round = rounds.get();
+    if( round == null )
+      return;
+
+    rounds.remove();
+
+    long        latency    = System.nanoTime() - round.start;
+    Set<String> successful = new HashSet<String>();
+    for( ProposalResponse response : responses )
+    {
+      if( response.getPeer() != null && response.isVerified() && response.getStatus() == Status.SUCCESS )
+        successful.add( endpointOf( response.getPeer().getUrl() ));
+    }
+
+    for( String endpoint : round.endpoints )
+      statsOf( endpoint ).finished( successful.contains( endpoint ), latency );
+  }
+
+  /**
+   * Record the proposal sent by this thread as failed against the endorsers picked for it.
+   */
+  public void failed()
+  {
+    Round round = rounds.get();
+    if( round == null )
+      return;
+
+    rounds.remove();
+
+    long latency = System.nanoTime() - round.start;
+    for( String endpoint : round.endpoints )
+      statsOf( endpoint ).finished( false, latency );
+  }
+
+  /**
+   * @return a snapshot of the statistics of each endorser, by endpoint
+   */
+  public Map<String, PeerStats> getPeerStats()
+  {
+    Map<String, PeerStats> snapshot = new TreeMap<String, PeerStats>();
+    for( Map.Entry<String, EndorserStats> entry : stats.entrySet() )
+      snapshot.put( entry.getKey(), entry.getValue().snapshot( entry.getKey() ));
+
+    return snapshot;
+  }
+
+  /**
+   * @return the required endorsers of each group of the layout with the lowest expected latency
+   */
+  private List<SDEndorser> pick( SDLayout layout, long now )
+  {
+    List<SDEndorser> picked = new ArrayList<SDEndorser>();
+    for( SDLayout.SDGroup group : layout.getSDLGroups() )
+    {
+      List<SDEndorser> endorsers = new ArrayList<SDEndorser>( group.getEndorsers() );
+      int              required  = Math.min( group.getStillRequired(), endorsers.size() );
+      if( required <= 0 )
+        continue;
+
+      double[] costs = new double[endorsers.size()];
+      for( int i = 0; i < costs.length; i++ )
+        costs[i] = expectedLatency( endorsers.get( i ).getEndpoint(), now );
+
+      // Selection of the required lowest costs. Groups hold a handful of endorsers.
+      for( int n = 0; n < required; n++ )
+      {
+        int best = n;
+        for( int i = n + 1; i < costs.length; i++ )
+        {
+          if( costs[i] < costs[best] )
+            best = i;
+        }
+
+        double cost = costs[best];
+        costs[best] = costs[n];
+        costs[n]    = cost;
+
+        SDEndorser endorser = endorsers.get( best );
+        endorsers.set( best, endorsers.get( n ));
+        endorsers.set( n, endorser );
+
+        picked.add( endorser );
+      }
+    }
+
+    return picked;
+  }
+
+  private double cost( List<SDEndorser> picked, long now )
+  {
+    double cost = 0;
+    for( SDEndorser endorser : picked )
+      cost = Math.max( cost, expectedLatency( endorser.getEndpoint(), now ));
+
+    return cost;
+  }
+
+  private double expectedLatency( String endpoint, long now )
+  {
+    EndorserStats endorser = stats.get( endpoint );
+    return ( endorser == null ) ? 0 : endorser.expectedLatency( now, recoveryNanos );
+  }
+
+  private static boolean isSatisfiable( SDLayout layout )
+  {
+    for( SDLayout.SDGroup group : layout.getSDLGroups() )
+    {
+      if( group.getEndorsers().size() < group.getStillRequired() )
+        return false;
+    }
+
+    return true;
+  }
+
+  private EndorserStats statsOf( String endpoint )
+  {
+    return stats.computeIfAbsent( endpoint, e -> new EndorserStats() );
+  }
+
+  /**
+   * @return the host:port of a peer url such as grpcs://host:port
+   */
+  private static String endpointOf( String url )
+  {
+    int scheme = url.indexOf( "://" );
+    return ( scheme < 0 ) ? url : url.substring( scheme + 3 );
+  }
+
+
+  /**
+   * The endorsers picked for the proposal in progress on a thread. The SDK may select again within a send to replace
+   * endorsers which failed.
+   */
+  private static class Round
+  {
+    final long        start;
+    final Set<String> endpoints = new HashSet<String>();
+
+    Round( long start )
+    {
+      this.start = start;
+    }
+  }
+
+
+  private static class EndorserStats
+  {
+    private double latencyMs  = 0;    // Guarded by this
+    private double errorRate  = 0;    // Guarded by this
+    private long   samples    = 0;    // Guarded by this
+    private long   errors     = 0;    // Guarded by this
+    private long   lastSample = 0;    // Guarded by this
+    private int    inFlight   = 0;    // Guarded by this
+
+    synchronized void started()
+    {
+      inFlight++;
+    }
+
+    synchronized void finished( boolean success, long latencyNanos )
+    {
+      inFlight = Math.max( 0, inFlight - 1 );
+
+      double ms = latencyNanos / 1000000.0;
+      if( samples == 0 )
+      {
+        latencyMs = ms;
+        errorRate = success ? 0 : 1;
+      }
+      else
+      {
+        if( success )
+          latencyMs += ALPHA * ( ms - latencyMs );
+
+        errorRate += ALPHA * (( success ? 0 : 1 ) - errorRate );
+      }
+
+      samples++;
+      if( !success )
+        errors++;
+
+      lastSample = System.nanoTime();
+    }
+
+    synchronized double expectedLatency( long now, long recoveryNanos )
+    {
+      if( samples == 0 || now - lastSample > recoveryNanos )
+        return 0;
+
+      return latencyMs * ( inFlight + 1 ) / Math.max( MIN_SUCCESS, 1 - errorRate );
+    }
+
+    synchronized PeerStats snapshot( String endpoint )
+    {
+      return new PeerStats( endpoint, latencyMs, errorRate, inFlight, samples, errors, expectedLatency( System.nanoTime(), Long.MAX_VALUE ));
+    }
+  }
+
+
+  /**
+   * Immutable statistics of an endorser, showing why it is preferred or avoided.
+   */
+  public static final class PeerStats
+  {
+    private final String endpoint;
+    private final double latencyMs;
+    private final double errorRate;
+    private final int    inFlight;
+    private final long   samples;
+    private final long   errors;
+    private final double expectedLatencyMs;
+
+    PeerStats( String endpoint, double latencyMs, double errorRate, int inFlight, long samples, long errors, double expectedLatencyMs )
+    {
+      this.endpoint          = endpoint;
+      this.latencyMs         = latencyMs;
+      this.errorRate         = errorRate;
+      this.inFlight          = inFlight;
+      this.samples           = samples;
+      this.errors            = errors;
+      this.expectedLatencyMs = expectedLatencyMs;
+    }
+
+    public String getEndpoint()          { return endpoint;          }
+    public double getLatencyMs()         { return latencyMs;         }
+    public double getErrorRate()         { return errorRate;         }
+    public int    getInFlight()          { return inFlight;          }
+    public long   getSamples()           { return samples;           }
+    public long   getErrors()            { return errors;            }
+    public double getExpectedLatencyMs() { return expectedLatencyMs; }
+
+    @Override
+    public String toString()
+    {
+      return String.format( "%s latency = %.1f ms, error rate = %.3f, in flight = %d, samples = %d, errors = %d, expected = %.1f ms", endpoint, latencyMs, errorRate, inFlight, samples, errors, expectedLatencyMs );
+    }
+  }
+}
@@ -0,0 +1,379 @@
+package sdkwrapper.service;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.hyperledger.fabric.protos.ledger.rwset.Rwset.NsReadWriteSet;
+import org.hyperledger.fabric.protos.ledger.rwset.Rwset.TxReadWriteSet;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset.KVRWSet;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset.KVRead;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset.KVWrite;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo;
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo;
+import org.hyperledger.fabric.sdk.TxReadWriteSetInfo;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import sdkwrapper.events.BlockObserverIF;
+
+/**
+ * Read cache for FabricServices.query results keyed by channel, chaincode, method, args and user.
+ *
+ * Entries are held per channel, each channel with its own lock and least recently used order, so a block only visits
+ * the entries of its own channel. Entries are bounded by a time to live and by a maximum entry count. When the count is
+ * exceeded the least recently used entries of the channel being added to are evicted, so a channel may exceed its share
+ * by its newest entry. Entries are invalidated from committed blocks observed by the block processor:
+ *    COARSE - any committed block on the channel invalidates all entries of the channel.
+ *    FINE   - an entry is invalidated only when a valid transaction writes a key the query read. Entries whose read
+ *             set is unknown, contains range queries or reads private data (collection hashed reads) are invalidated by
+ *             any block on the channel.
+ *
+ * A query which is in progress while a block commits on its channel is not cached, as its result may predate the block.
+ * Nor is the result of a peer other than the one which delivered the channel's last block event, as that peer may lag
+ * behind the blocks already processed and its result would never be invalidated.
+ *
+ * @author tim
+ *
+ */
+public class QueryResultCache implements BlockObserverIF
+{
+  public enum InvalidationMode { COARSE, FINE }
+
+  private static final Logger logger = LogManager.getLogger( QueryResultCache.class );
+
+  private static final char SEPARATOR = '\u0000';
+
+  private final int              maxEntries;
+  private final long             ttlMs;
+  private final InvalidationMode mode;
+
+  private final AtomicLong hits          = new AtomicLong();
+  private final AtomicLong misses        = new AtomicLong();
+  private final AtomicLong evictions     = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+  private final AtomicLong lagging       = new AtomicLong();
+
+  private final AtomicInteger               count    = new AtomicInteger();
+  private final Map<String, ChannelEntries> channels = new ConcurrentHashMap<String, ChannelEntries>();
+
+  /**
+   * @param maxEntries - maximum cached results
+   * @param ttlMs      - time a cached result remains valid when not invalidated by a block
+   * @param mode       - block invalidation mode
+   */
+  public QueryResultCache( int maxEntries, long ttlMs, InvalidationMode mode )
+  {
+    this.maxEntries = Math.max( 1, maxEntries );
+    this.ttlMs      = ttlMs;
+    this.mode       = mode;
+
+    logger.info( "QueryResultCache created. Max entries = " + this.maxEntries + ", ttl ms = " + ttlMs + ", invalidation mode = " + mode );
+  }
+
+  public InvalidationMode getMode()          { return mode;                }
+  public long             getHits()          { return hits.get();          }
+  public long             getMisses()        { return misses.get();        }
+  public long             getEvictions()     { return evictions.get();     }
+  public long             getInvalidations() { return invalidations.get(); }
+  public long             getLaggingSkips()  { return lagging.get();       }
+
+  public int size()
+  {
+    return count.get();
+  }
+
+  /**
+   * Build the cache key of a query.
+   */
+  public static String buildKey( String channelId, String chainCodeId, String method, String[] args, String userId )
+  {
+    StringBuilder key = new StringBuilder( 64 );
+    key.append( channelId ).append( SEPARATOR ).append( chainCodeId ).append( SEPARATOR ).append( method ).append( SEPARATOR ).append( userId );
+
+    for( String arg : args )
+      key.append( SEPARATOR ).append( arg );
+
+    return key.toString();
+  }
+
+  /**
+   * The current generation of the channel. Obtain before sending the query and pass to put so that a result which may
+   * predate a block committed during the query is not cached.
+   *
+   * @param channelId
+   * @return
+   */
+  public long getGeneration( String channelId )
+  {
+    return channel( channelId ).generation;
+  }
+
+  /**
+   * @param key
+   * @return the cached result or null
+   */
+  public String get( String key )
+  {
+    ChannelEntries channel = channels.get( key.substring( 0, key.indexOf( SEPARATOR )));
+    if( channel == null )
+    {
+      misses.incrementAndGet();
+      return null;
+    }
+
+    synchronized( channel )
+    {
+      Entry entry = channel.entries.get( key );
+      if( entry != null && System.currentTimeMillis() - entry.created > ttlMs )
+      {
+        channel.remove( key );
+        evictions.incrementAndGet();
+        entry = null;
+      }
+
+      if( entry == null )
+      {
+        misses.incrementAndGet();
+        return null;
+      }
+
+      hits.incrementAndGet();
+      return entry.result;
+    }
+  }
+
+  /**
+   * Cache a query result.
+   *
+   * @param key
+   * @param channelId
+   * @param generation - channel generation obtained before the query was sent
+   * @param peerName   - the peer which answered the query
+   * @param result
+   * @param readSet    - the query's read set obtained from the proposal response, or null when unknown
+   */
+  public void put( String key, String channelId, long generation, String peerName, String result, TxReadWriteSet readSet )
+  {
+    Set<String>    readKeys = ( mode == InvalidationMode.FINE ) ? extractReadKeys( readSet ) : null;
+    ChannelEntries channel  = channel( channelId );
+
+    synchronized( channel )
+    {
+      if( channel.generation != generation )
+        return;
+
+      // Until a block event is seen any peer's result is accepted. It is invalidated by the first block.
+      if( channel.sourcePeer != null && !channel.sourcePeer.equals( peerName ))
+      {
+        lagging.incrementAndGet();
+        return;
+      }
+
+      channel.put( key, new Entry( result, readKeys ));
+    }
+  }
+
+  /**
+   * Remove all cached results of the channel.
+   *
+   * @param channelId
+   */
+  public void invalidateChannel( String channelId )
+  {
+    invalidate( channel( channelId ), null, null );
+  }
+
+  @Override
+  public void blockCommitted( String channelId, BlockInfo block, List<? extends TransactionEnvelopeInfo> transactions )
+  {
+    // Blocks fetched by catch up have no peer and leave the source unchanged.
+    String sourcePeer = null;
+    if( block instanceof BlockEvent && (( BlockEvent ) block ).getPeer() != null )
+      sourcePeer = (( BlockEvent ) block ).getPeer().getName();
+
+    // Filtered blocks have no write sets.
+    Set<String> writeKeys = null;
+    if( mode == InvalidationMode.FINE && !block.isFiltered() )
+      writeKeys = extractWriteKeys( transactions );
+
+    invalidate( channel( channelId ), writeKeys, sourcePeer );
+  }
+
+  /**
+   * Advance the generation of the channel and remove its entries which read a written key.
+   *
+   * @param writeKeys  - the keys written, or null to remove all entries of the channel
+   * @param sourcePeer - the peer which delivered the block, or null when not known
+   */
+  private void invalidate( ChannelEntries channel, Set<String> writeKeys, String sourcePeer )
+  {
+    synchronized( channel )
+    {
+      channel.generation++;
+      if( sourcePeer != null )
+        channel.sourcePeer = sourcePeer;
+
+      Iterator<Entry> iter = channel.entries.values().iterator();
+      while( iter.hasNext() )
+      {
+        Entry entry = iter.next();
+        if( writeKeys == null || entry.readKeys == null || intersects( entry.readKeys, writeKeys ))
+        {
+          iter.remove();
+          count.decrementAndGet();
+          invalidations.incrementAndGet();
+        }
+      }
+    }
+  }
+
+  private ChannelEntries channel( String channelId )
+  {
+    return channels.computeIfAbsent( channelId, id -> new ChannelEntries() );
+  }
+
+  /**
+   * @return the namespace qualified keys read by the query, or null when the read set is unknown, has range queries or
+   *         reads private data. Private reads are only present as hashes, which cannot be matched to written keys.
+   */
+  private Set<String> extractReadKeys( TxReadWriteSet readSet )
+  {
+    if( readSet == null )
+      return null;
+
+    Set<String> keys = new HashSet<String>();
+    try
+    {
+      for( NsReadWriteSet nsRwset : readSet.getNsRwsetList() )
+      {
+        if( nsRwset.getCollectionHashedRwsetCount() > 0 )
+          return null;
+
+        KVRWSet rwset = KVRWSet.parseFrom( nsRwset.getRwset() );
+        if( rwset.getRangeQueriesInfoCount() > 0 )
+          return null;
+
+        for( KVRead read : rwset.getReadsList() )
+          keys.add( nsRwset.getNamespace() + SEPARATOR + read.getKey() );
+      }
+    }
+    catch( InvalidProtocolBufferException e )
+    {
+      logger.error( "Unable to parse query read set. Entry will be invalidated by any block. Error = " + e.getMessage() );
+      return null;
+    }
+
+    return keys;
+  }
+
+  /**
+   * @return the namespace qualified keys written by the valid transactions of the block, or null when a write set could
+   *         not be parsed.
+   */
+  private Set<String> extractWriteKeys( List<? extends TransactionEnvelopeInfo> transactions )
+  {
+    Set<String> keys = new HashSet<String>();
+    try
+    {
+      for( TransactionEnvelopeInfo tran : transactions )
+      {
+        if( !tran.isValid() )
+          continue;
+
+        for( TransactionActionInfo action : tran.getTransactionActionInfos() )
+        {
+          TxReadWriteSetInfo rwsetInfo = action.getTxReadWriteSet();
+          if( rwsetInfo == null )
+            continue;
+
+          for( TxReadWriteSetInfo.NsRwsetInfo nsInfo : rwsetInfo.getNsRwsetInfos() )
+          {
+            for( KVWrite write : nsInfo.getRwset().getWritesList() )
+              keys.add( nsInfo.getNamespace() + SEPARATOR + write.getKey() );
+          }
+        }
+      }
+    }
+    catch( InvalidProtocolBufferException e )
+    {
+      logger.error( "Unable to parse block write set. Invalidating channel cache. Error = " + e.getMessage() );
+      return null;
+    }
+
+    return keys;
+  }
+
+  private static boolean intersects( Set<String> readKeys, Set<String> writeKeys )
+  {
+    Set<String> smaller = readKeys.size() < writeKeys.size() ? readKeys  : writeKeys;
+    Set<String> larger  = readKeys.size() < writeKeys.size() ? writeKeys : readKeys;
+
+    for( String key : smaller )
+    {
+      if( larger.contains( key ))
+        return true;
+    }
+
+    return false;
+  }
+
+
+  /**
+   * The entries of a channel in least recently used order, the channel's generation, incremented for each block
+   * observed, and the peer which delivered its last block event. Guarded by itself.
+   */
+  private class ChannelEntries
+  {
+    final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true );
+
+    volatile long generation = 0;
+    String        sourcePeer = null;
+
+    void put( String key, Entry entry )
+    {
+      if( entries.put( key, entry ) == null )
+        count.incrementAndGet();
+
+      // Evict from this channel only, keeping the entry just added.
+      Iterator<String> eldest = entries.keySet().iterator();
+      while( count.get() > maxEntries && entries.size() > 1 )
+      {
+        eldest.next();
+        eldest.remove();
+        count.decrementAndGet();
+        evictions.incrementAndGet();
+      }
+    }
+
+    void remove( String key )
+    {
+      if( entries.remove( key ) != null )
+        count.decrementAndGet();
+    }
+  }
+
+  private static class Entry
+  {
+    final String      result;
+    final Set<String> readKeys;
+    final long        created = System.currentTimeMillis();
+
+    Entry( String result, Set<String> readKeys )
+    {
+      this.result   = result;
+      this.readKeys = readKeys;
+    }
+  }
+}
@@ -0,0 +1,292 @@
+package sdkwrapper.vo.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+
+import sdkwrapper.vo.transaction.FabricRequest;
+import sdkwrapper.vo.transaction.FabricResponse;
+
+/**
+ * Compact binary encoding of FabricRequest and FabricResponse.
+ *
+ * Layout:
+ *    byte 0 - MARKER (0x00). Json text can never start with 0x00, so a decoder can tell the two formats apart.
+ *    byte 1 - message type and version (REQUEST_V1 or RESPONSE_V1).
+ *    fields - in declaration order of the value object:
+ *       String     - varint (utf-8 length + 1), then the utf-8 bytes. 0 = null.
+ *       String[]   - varint (count + 1), then each String. 0 = null.
+ *       Properties - varint (count + 1), then each key and value String. 0 = null.
+ *       int        - zigzag varint.
+ *
+ * Fields are only ever appended to a message type. A change to an existing field requires a new version byte.
+ *
+ * @author tim
+ *
+ */
+public final class CompactCodec
+{
+  public static final byte MARKER      = 0x00;
+  public static final byte REQUEST_V1  = 0x01;
+  public static final byte RESPONSE_V1 = 0x02;
+
+  private CompactCodec()
+  {
+  }
+
+  /**
+   * @return true when the payload starts with the compact marker
+   */
+  public static boolean isCompact( byte[] payload )
+  {
+    return payload != null && payload.length > 1 && payload[0] == MARKER;
+  }
+
+  public static byte[] encodeRequest( FabricRequest request )
+  {
+    Writer out = new Writer( 128 );
+    out.writeByte( MARKER );
+    out.writeByte( REQUEST_V1 );
+
+    out.writeString(     request.getRequestContext() );
+    out.writeProperties( request.getContextProps()   );
+    out.writeString(     request.getSendDateTime()   );
+    out.writeInt(        request.getTimeTolerance()  );
+    out.writeProperties( request.getProps()          );
+    out.writeStrings(    request.getTranPayload()    );
+
+    return out.toByteArray();
+  }
+
+  public static FabricRequest decodeRequest( byte[] payload )
+  {
+    Reader in = new Reader( payload, REQUEST_V1 );
+
+    FabricRequest request = new FabricRequest();
+    request.setRequestContext( in.readString()     );
+    request.setContextProps(   in.readProperties() );
+    request.setSendDateTime(   in.readString()     );
+    request.setTimeTolerance(  in.readInt()        );
+    request.setProps(          in.readProperties() );
+    request.setTranPayload(    in.readStrings()    );
+
+    return request;
+  }
+
+  public static byte[] encodeResponse( FabricResponse response )
+  {
+    Writer out = new Writer( 64 );
+    out.writeByte( MARKER );
+    out.writeByte( RESPONSE_V1 );
+
+    out.writeString( response.getResponseCode()    );
+    out.writeString( response.getDescription()     );
+    out.writeString( response.getResponsePayload() );
+
+    return out.toByteArray();
+  }
+
+  public static FabricResponse decodeResponse( byte[] payload )
+  {
+    Reader in = new Reader( payload, RESPONSE_V1 );
+
+    FabricResponse response = new FabricResponse();
+    response.setResponseCode(    in.readString() );
+    response.setDescription(     in.readString() );
+    response.setResponsePayload( in.readString() );
+
+    return response;
+  }
+
+
+  private static final class Writer
+  {
+    private byte[] buf;
+    private int    count = 0;
+
+    Writer( int size )
+    {
+      buf = new byte[size];
+    }
+
+    byte[] toByteArray()
+    {
+      return Arrays.copyOf( buf, count );
+    }
+
+    void writeByte( int b )
+    {
+      ensure( 1 );
+      buf[count++] = (byte) b;
+    }
+
+    void writeVarint( int value )
+    {
+      ensure( 5 );
+      while(( value & ~0x7F ) != 0 )
+      {
+        buf[count++] = (byte) (( value & 0x7F ) | 0x80 );
+        value >>>= 7;
+      }
+      buf[count++] = (byte) value;
+    }
+
+    void writeInt( int value )
+    {
+      writeVarint(( value << 1 ) ^ ( value >> 31 ));
+    }
+
+    void writeString( String value )
+    {
+      if( value == null )
+      {
+        writeVarint( 0 );
+        return;
+      }
+
+      byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+      writeVarint( bytes.length + 1 );
+      ensure( bytes.length );
+      System.arraycopy( bytes, 0, buf, count, bytes.length );
+      count += bytes.length;
+    }
+
+    void writeStrings( String[] values )
+    {
+      if( values == null )
+      {
+        writeVarint( 0 );
+        return;
+      }
+
+      writeVarint( values.length + 1 );
+      for( String value : values )
+        writeString( value );
+    }
+
+    void writeProperties( Properties props )
+    {
+      if( props == null )
+      {
+        writeVarint( 0 );
+        return;
+      }
+
+      writeVarint( props.size() + 1 );
+      for( Map.Entry<Object, Object> entry : props.entrySet() )
+      {
+        writeString( String.valueOf( entry.getKey()   ));
+        writeString( String.valueOf( entry.getValue() ));
+      }
+    }
+
+    private void ensure( int needed )
+    {
+      if( count + needed > buf.length )
+        buf = Arrays.copyOf( buf, Math.max( buf.length << 1, count + needed ));
+    }
+  }
+
+
+  private static final class Reader
+  {
+    private final byte[] buf;
+    private int          pos = 2;
+
+    Reader( byte[] buf, byte type )
+    {
+      if( !isCompact( buf ))
+        throw new IllegalArgumentException( "Payload is not compact encoded." );
+
+      if( buf[1] != type )
+        throw new IllegalArgumentException( "Unsupported compact message type " + buf[1] + ". Expected " + type );
+
+      this.buf = buf;
+    }
+
+    int readVarint()
+    {
+      int value = 0;
+      for( int shift = 0; shift < 32; shift += 7 )
+      {
+        if( pos >= buf.length )
+          throw new IllegalArgumentException( "Truncated compact payload." );
+
+        byte b = buf[pos++];
+        value |= ( b & 0x7F ) << shift;
+        if(( b & 0x80 ) == 0 )
+          return value;
+      }
+
+      throw new IllegalArgumentException( "Malformed varint in compact payload." );
+    }
+
+    int readInt()
+    {
+      int raw = readVarint();
+      return ( raw >>> 1 ) ^ -( raw & 1 );
+    }
+
+    String readString()
+    {
+      int length = readVarint() - 1;
+      if( length < 0 )
+        return null;
+
+      if( length > buf.length - pos )
+        throw new IllegalArgumentException( "Truncated compact payload." );
+
+      String value = new String( buf, pos, length, StandardCharsets.UTF_8 );
+      pos += length;
+
+      return value;
+    }
+
+    String[] readStrings()
+    {
+      int count = readVarint() - 1;
+      if( count < 0 )
+        return null;
+
+      checkCount( count );
+
+      String[] values = new String[count];
+      for( int i = 0; i < count; i++ )
+        values[i] = readString();
+
+      return values;
+    }
+
+    Properties readProperties()
+    {
+      int count = readVarint() - 1;
+      if( count < 0 )
+        return null;
+
+      checkCount( count );
+
+      Properties props = new Properties();
+      for( int i = 0; i < count; i++ )
+      {
+        String key   = readString();
+        String value = readString();
+        if( key == null || value == null )
+          throw new IllegalArgumentException( "Null property in compact payload." );
+
+        props.setProperty( key, value );
+      }
+
+      return props;
+    }
+
+    /**
+     * Each element takes at least one byte, which bounds a corrupt count before it is allocated.
+     */
+    private void checkCount( int count )
+    {
+      if( count > buf.length - pos )
+        throw new IllegalArgumentException( "Truncated compact payload." );
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package sdkwrapper.vo.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Shared json codec for the transaction value objects (FabricRequest, FabricResponse, BlockTransactionAction).
+ *
+ * A single Gson instance is built once and shared, as Gson and the type adapters it creates are thread safe. The type
+ * adapters are resolved on first use of a class and cached by Gson, so encoding and decoding does not build a Gson,
+ * TypeToken or reflective adapter per message.
+ *
+ * Decoding is lenient, as Gson.fromJson( JsonReader, Type ) always was for these messages: unquoted names, single quoted
+ * strings and trailing content are accepted, and an empty payload decodes to null.
+ *
+ * Payloads are only logged at DEBUG and are truncated to the max logged length (codec.log.max.length, default 256).
+ *
+ * @author tim
+ *
+ */
+public final class JsonCodec
+{
+  private static final Logger logger = LogManager.getLogger( JsonCodec.class );
+
+  public static final int DEFAULT_MAX_LOGGED_LENGTH = 256;
+
+  private static final Gson GSON = new Gson();
+
+  private static volatile int maxLoggedLength = DEFAULT_MAX_LOGGED_LENGTH;
+
+  private JsonCodec()
+  {
+  }
+
+  public static Gson getGson() { return GSON; }
+
+  /**
+   * @param length - maximum characters of a payload written to the log. 0 disables payload logging.
+   */
+  public static void setMaxLoggedLength( int length ) { maxLoggedLength = Math.max( 0, length ); }
+  public static int  getMaxLoggedLength()             { return maxLoggedLength; }
+
+  public static String toJson( Object value )
+  {
+    if( value == null )
+      return null;
+
+    return GSON.toJson( value );
+  }
+
+  /**
+   * Encode the value as UTF-8 json. For messages of a few KB encoding to a String and then to bytes allocates less than
+   * streaming through an OutputStreamWriter, whose encoder buffer alone is 8KB. Use writeJson for large values.
+   */
+  public static byte[] toJsonBytes( Object value )
+  {
+    if( value == null )
+      return null;
+
+    return GSON.toJson( value ).getBytes( StandardCharsets.UTF_8 );
+  }
+
+  public static ByteBuffer toJsonBuffer( Object value )
+  {
+    byte[] bytes = toJsonBytes( value );
+    return ( bytes == null ) ? null : ByteBuffer.wrap( bytes );
+  }
+
+  /**
+   * Stream the value as UTF-8 json to the output stream. The stream is flushed but not closed.
+   */
+  @SuppressWarnings( "unchecked" )
+  public static void writeJson( Object value, OutputStream out )
+  {
+    try
+    {
+      JsonWriter writer = new JsonWriter( new OutputStreamWriter( out, StandardCharsets.UTF_8 ));
+      ((TypeAdapter<Object>) GSON.getAdapter( value.getClass() )).write( writer, value );
+      writer.flush();
+    }
+    catch( IOException e )
+    {
+      throw new JsonParseException( "Unable to encode " + value.getClass().getSimpleName() + ". Error = " + e.getMessage(), e );
+    }
+  }
+
+  /**
+   * @return the decoded value, or null when the json is null or empty
+   */
+  public static <T> T fromJson( String json, Class<T> type )
+  {
+    if( json == null )
+      return null;
+
+    if( logger.isDebugEnabled() )
+      logPayload( "Decoding " + type.getSimpleName(), json );
+
+    return GSON.fromJson( new JsonReader( new StringReader( json )), type );
+  }
+
+  /**
+   * Decode UTF-8 json bytes.
+   *
+   * @return the decoded value, or null when the bytes are null
+   */
+  public static <T> T fromJson( byte[] json, Class<T> type )
+  {
+    if( json == null )
+      return null;
+
+    return fromJson( new String( json, StandardCharsets.UTF_8 ), type );
+  }
+
+  public static <T> T fromJson( ByteBuffer json, Class<T> type )
+  {
+    if( json == null )
+      return null;
+
+    return fromJson( StandardCharsets.UTF_8.decode( json.duplicate() ).toString(), type );
+  }
+
+  /**
+   * Decode UTF-8 json streamed from the input stream. The stream is not closed.
+   */
+  public static <T> T readJson( InputStream in, Class<T> type )
+  {
+    return GSON.fromJson( new JsonReader( new InputStreamReader( in, StandardCharsets.UTF_8 )), type );
+  }
+
+  /**
+   * Log the payload at DEBUG, truncated to the max logged length.
+   */
+  public static void logPayload( String label, String payload )
+  {
+    if( !logger.isDebugEnabled() || maxLoggedLength == 0 )
+      return;
+
+    if( payload != null && payload.length() > maxLoggedLength )
+      logger.debug( label + ". Msg (" + payload.length() + " chars) = " + payload.substring( 0, maxLoggedLength ) + "..." );
+    else
+      logger.debug( label + ". Msg = " + payload );
+  }
+}
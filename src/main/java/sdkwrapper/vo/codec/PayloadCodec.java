@@ -0,0 +1,156 @@
+package sdkwrapper.vo.codec;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo;
+
+import sdkwrapper.vo.transaction.FabricRequest;
+import sdkwrapper.vo.transaction.FabricResponse;
+
+/**
+ * Encodes the FabricRequest for a chaincode in the chaincode's PayloadEncoding, and decodes request and response
+ * payloads of either encoding, as found in blocks, by the leading CompactCodec marker. A block payload which has the
+ * marker but does not decode is passed through as raw text rather than failing the block.
+ *
+ * @author tim
+ *
+ */
+public final class PayloadCodec
+{
+  private static final Logger logger = LogManager.getLogger( PayloadCodec.class );
+
+  // The SDK places the function name in chaincode input argument 0, followed by the args and then the argBytes. The
+  // FabricRequest of requestTransaction is the single argument after the function name.
+  public static final int REQUEST_ARG = 1;
+
+  private PayloadCodec()
+  {
+  }
+
+  public static byte[] encodeRequest( FabricRequest request, PayloadEncoding encoding )
+  {
+    if( encoding == PayloadEncoding.COMPACT )
+      return CompactCodec.encodeRequest( request );
+
+    return request.toJSONBytes();
+  }
+
+  public static byte[] encodeResponse( FabricResponse response, PayloadEncoding encoding )
+  {
+    if( encoding == PayloadEncoding.COMPACT )
+      return CompactCodec.encodeResponse( response );
+
+    return response.toJSONBytes();
+  }
+
+  public static FabricRequest decodeRequest( byte[] payload )
+  {
+    if( CompactCodec.isCompact( payload ))
+      return CompactCodec.decodeRequest( payload );
+
+    return FabricRequest.deserializeJSON( payload );
+  }
+
+  public static FabricResponse decodeResponse( byte[] payload )
+  {
+    if( CompactCodec.isCompact( payload ))
+      return CompactCodec.decodeResponse( payload );
+
+    return FabricResponse.fromJSON( payload );
+  }
+
+  /**
+   * The request payload of a block transaction action as text. Compact requests are converted to json so the block
+   * value objects carry json whichever encoding the chaincode uses.
+   */
+  public static String requestText( byte[] payload )
+  {
+    if( CompactCodec.isCompact( payload ))
+    {
+      try
+      {
+        return CompactCodec.decodeRequest( payload ).toJSON();
+      }
+      catch( IllegalArgumentException e )
+      {
+        logger.error( "Unable to decode compact request payload. Using raw payload. Error = " + e.getMessage() );
+      }
+    }
+
+    return ( payload == null ) ? null : new String( payload, StandardCharsets.UTF_8 );
+  }
+
+  /**
+   * The request payload of the transaction action as text. A FabricRequest sent by requestTransaction is the single
+   * argument after the function name, and is recognised by the compact marker or by decoding as a json FabricRequest.
+   * For any other transaction the payload is chaincode input argument 0, the function name, as it always was.
+   */
+  public static String requestText( TransactionActionInfo tranInfo )
+  {
+    int count = tranInfo.getChaincodeInputArgsCount();
+    if( count == 0 )
+      return null;
+
+    if( count == REQUEST_ARG + 1 )
+    {
+      byte[] request = tranInfo.getChaincodeInputArgs( REQUEST_ARG );
+      if( isRequest( request ))
+        return requestText( request );
+    }
+
+    return requestText( tranInfo.getChaincodeInputArgs( 0 ));
+  }
+
+  /**
+   * @return true if the payload is a FabricRequest in either encoding. A json request must be an object carrying a
+   * tranPayload, as every request sent by requestTransaction does.
+   */
+  static boolean isRequest( byte[] payload )
+  {
+    if( payload == null || payload.length == 0 )
+      return false;
+
+    if( CompactCodec.isCompact( payload ))
+      return true;
+
+    int i = 0;
+    while( i < payload.length && Character.isWhitespace( payload[i] ))
+      i++;
+
+    if( i == payload.length || payload[i] != '{' )
+      return false;
+
+    try
+    {
+      FabricRequest request = FabricRequest.deserializeJSON( payload );
+      return request != null && request.getTranPayload() != null;
+    }
+    catch( RuntimeException e )
+    {
+      return false;
+    }
+  }
+
+  /**
+   * The proposal response payload of a block transaction action as text. Compact responses are converted to json.
+   */
+  public static String responseText( byte[] payload )
+  {
+    if( CompactCodec.isCompact( payload ))
+    {
+      try
+      {
+        return CompactCodec.decodeResponse( payload ).toJSON();
+      }
+      catch( IllegalArgumentException e )
+      {
+        logger.error( "Unable to decode compact response payload. Using raw payload. Error = " + e.getMessage() );
+      }
+    }
+
+    return ( payload == null ) ? null : new String( payload, StandardCharsets.UTF_8 );
+  }
+}
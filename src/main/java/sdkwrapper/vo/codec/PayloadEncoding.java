@@ -0,0 +1,27 @@
+package sdkwrapper.vo.codec;
+
+/**
+ * Encoding of the FabricRequest sent to a chaincode and the FabricResponse returned by it. Configured per chaincode via
+ * the payloadEncoding attribute of the chaincode.
+ *    JSON    - json text (default).
+ *    COMPACT - varint length prefixed binary, see CompactCodec. The chaincode must support decoding it.
+ *
+ * @author tim
+ *
+ */
+public enum PayloadEncoding
+{
+  JSON, COMPACT;
+
+  /**
+   * @param name - json or compact, case insensitive. Null or empty defaults to JSON.
+   * @return
+   */
+  public static PayloadEncoding fromName( String name )
+  {
+    if( name == null || name.trim().isEmpty() )
+      return JSON;
+
+    return PayloadEncoding.valueOf( name.trim().toUpperCase() );
+  }
+}
@@ -4,6 +4,7 @@ import java.io.Serializable;
 
 import sdkwrapper.exceptions.ConfigurationException;
 import sdkwrapper.fabric.policy.EndorsementPolicyIF;
+import sdkwrapper.vo.codec.PayloadEncoding;
 
 public class ChainCodeInfo implements Serializable
 {
@@ -12,6 +13,7 @@ public class ChainCodeInfo implements Serializable
   private ChainCodeVO         chainCodeVO = null;
   private EndorsementPolicyIF policy      = null;
   private String              functName   = null;
+  private PayloadEncoding     encoding    = null;
   
   public ChainCodeInfo( ChainCodeVO chainCode, EndorsementPolicyIF policy )
    throws ConfigurationException
@@ -19,6 +21,15 @@ public class ChainCodeInfo implements Serializable
     if( chainCode == null ) throw new ConfigurationException( "Chain attribute is required" );
     if( policy    == null ) throw new ConfigurationException( "Endorsement Policy is required" );
     
+    try
+    {
+      this.encoding = PayloadEncoding.fromName( chainCode.getPayloadEncoding() );
+    }
+    catch( IllegalArgumentException e )
+    {
+      throw new ConfigurationException( "Invalid payloadEncoding " + chainCode.getPayloadEncoding() + " for chaincode " + chainCode.getChainCodeName() );
+    }
+
     this.chainCodeVO = chainCode;
     this.policy      = policy;
   }
@@ -35,9 +46,11 @@ public class ChainCodeInfo implements Serializable
   public String getChainCodeVersion()      { return chainCodeVO.getChainCodeVersion();      }
   public String getChainCodePath()         { return chainCodeVO.getChainCodePath();         }
   public String getEndorsementPolicyName() { return chainCodeVO.getEndorsementPolicyName(); }
+  public String getBatchMethod()           { return chainCodeVO.getBatchMethod();           }
   
-  public EndorsementPolicyIF getPolicy()    { return policy;    }
-  public String              getFunctName() { return functName; }
+  public EndorsementPolicyIF getPolicy()          { return policy;    }
+  public String              getFunctName()       { return functName; }
+  public PayloadEncoding     getPayloadEncoding() { return encoding;  }
   
   public void setFunctName( String name ) { this.functName = name; }
 }
@@ -12,6 +12,9 @@ public class ChainCodeVO implements Serializable
   private String chainCodeVersion = null;
   private String chainCodePath    = null;
   private String endorsementPolicyName = null;
+  private String endorsementPolicy     = null;   // Optional signature policy expression, e.g. AND('Org1MSP.peer','Org2MSP.peer')
+  private String batchMethod           = null;   // Optional chaincode function accepting a batch of requests
+  private String payloadEncoding       = null;   // json (default) or compact FabricRequest encoding
   
   // Transient
   private EndorsementPolicyIF policy = null;
@@ -20,11 +23,17 @@ public class ChainCodeVO implements Serializable
   public String getChainCodeVersion()      { return chainCodeVersion;      }
   public String getChainCodePath()         { return chainCodePath;         }
   public String getEndorsementPolicyName() { return endorsementPolicyName; }
+  public String getEndorsementPolicy()     { return endorsementPolicy;     }
+  public String getBatchMethod()           { return batchMethod;           }
+  public String getPayloadEncoding()       { return payloadEncoding;       }
 
   public void setChainCodeName(         String chainCodeName         ) { this.chainCodeName         = chainCodeName;         }
   public void setChainCodeVersion(      String chainCodeVersion      ) { this.chainCodeVersion      = chainCodeVersion;      }
   public void setChainCodePath(         String chainCodePath         ) { this.chainCodePath         = chainCodePath;         }
   public void setEndorsementPolicyName( String endorsementPolicyName ) { this.endorsementPolicyName = endorsementPolicyName; }
+  public void setEndorsementPolicy(     String endorsementPolicy     ) { this.endorsementPolicy     = endorsementPolicy;     }
+  public void setBatchMethod(           String batchMethod           ) { this.batchMethod           = batchMethod;           }
+  public void setPayloadEncoding(       String payloadEncoding       ) { this.payloadEncoding       = payloadEncoding;       }
   
   public EndorsementPolicyIF getPolicy()   
   { 
@@ -1,23 +1,14 @@
 package sdkwrapper.vo.transaction;
 
-import java.io.IOException;
-import java.io.StringReader;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
 import org.hyperledger.fabric.sdk.TxReadWriteSetInfo.NsRwsetInfo;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import com.google.gson.stream.JsonReader;
+import sdkwrapper.vo.codec.JsonCodec;
 
 public class BlockTransactionAction
 {
-  private static final Logger logger = LogManager.getLogger( BlockTransactionAction.class );
-
   private String requestPayload          = null;
   private String description             = null;
   private String responseMsg             = null;
@@ -53,30 +44,7 @@ public class BlockTransactionAction
    */
   public FabricRequest obtainRequestObject()
   {
-    logger.info( "BlockTransactionAction.obtainRequest marshalling json = " + requestPayload );
-    
-    Gson gson         = new Gson();
-    Type REQUEST_TYPE = new TypeToken<FabricRequest>() {}.getType();
-
-    FabricRequest request = null;
-    StringReader  in      = new StringReader( requestPayload );
-    JsonReader    reader  = new JsonReader(   in );
-      
-    //convert the json to OrgContext
-    request = gson.fromJson( reader, REQUEST_TYPE );
-    in.close();
-
-    try
-    {
-      reader.close();
-    } catch( IOException e )
-      {
-        // TODO Auto-generated catch block
-        e.printStackTrace();
-      }
-
-    logger.info( "BlockTransactionAction.obtainRequest marshalled json = " + requestPayload  );
-    return request;
+    return JsonCodec.fromJson( getRequestPayload(), FabricRequest.class );
   }
 
   /**
@@ -86,67 +54,17 @@ public class BlockTransactionAction
    */
   public FabricResponse obtainResponseObject()
   {
-    logger.info( "BlockTransactionAction.obtainResponse marshalling json = " + proposalResponsePayload );
-    
-    Gson gson         = new Gson();
-    Type RESPONSE_TYPE = new TypeToken<FabricResponse>() {}.getType();
-
-    FabricResponse response = null;
-    StringReader   in       = new StringReader( new String( proposalResponsePayload ));
-    JsonReader     reader   = new JsonReader(   in );
-      
-    //convert the json to OrgContext
-    response = gson.fromJson( reader, RESPONSE_TYPE );
-    in.close();
-
-    try
-    {
-      reader.close();
-    } catch( IOException e )
-      {
-        // TODO Auto-generated catch block
-        e.printStackTrace();
-      }
-
-    logger.info( "BlockTransactionAction.obtainRequest marshalled json = " + requestPayload  );
-    return response;
+    return JsonCodec.fromJson( getProposalResponsePayload(), FabricResponse.class );
   }
 
   public String toJSON()
   {
-    Gson gson = new Gson();    
-    return gson.toJson( this );
+    return JsonCodec.toJson( this );
   }
 
   public static BlockTransactionAction fromJSON( String msg )
   {
-    logger.info( "Received blocktransactionaction msg to parse. Msg = " + msg );
-
-    if( msg == null )
-      return null;
-    
-    Gson gson     = new Gson();
-    Type MSG_TYPE = new TypeToken<BlockTransactionAction>() {}.getType();
-
-    BlockTransactionAction response = null;
-    StringReader           in      = new StringReader( msg );
-    JsonReader             reader  = new JsonReader( in );
-      
-    response = gson.fromJson(  reader, MSG_TYPE );
-    in.close();
-
-    try
-    {
-      reader.close();
-    } catch( IOException e )
-      {
-        // TODO Auto-generated catch block
-        e.printStackTrace();
-      }
-
-    logger.info( "Parsed BlockTransactionAction msg. Msg = " + response.toString() );
-
-    return response;
+    return JsonCodec.fromJson( msg, BlockTransactionAction.class );
   }
   
 }
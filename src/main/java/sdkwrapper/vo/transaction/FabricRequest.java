@@ -1,16 +1,8 @@
 package sdkwrapper.vo.transaction;
 
-import java.io.IOException;
-import java.io.StringReader;
-import java.lang.reflect.Type;
 import java.util.Properties;
 
-import org.apache.log4j.LogManager;
-import org.apache.log4j.Logger;
-
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import com.google.gson.stream.JsonReader;
+import sdkwrapper.vo.codec.JsonCodec;
 
 /**
  * This represents the Endorsement Request Payload. This is the object which is passed to the SDK Wrapper (in json format) to 
@@ -42,8 +34,6 @@ import com.google.gson.stream.JsonReader;
  */
 public class FabricRequest
 {
-  private static final Logger logger = LogManager.getLogger( FabricRequest.class );
-
   private String     requestContext  = null;
   private Properties contextProps    = null;
   private String     sendDateTime    = null;
@@ -67,38 +57,21 @@ public class FabricRequest
  
   public String toJSON()
   {
-    Gson gson = new Gson();    
-    return gson.toJson( this );
+    return JsonCodec.toJson( this );
   }
-  
-  public static FabricRequest deserializeJSON( String msg )
-  {
-    logger.info( "Received fabric request msg to parse. Msg = " + msg );
-
-    if( msg == null )
-      return null;
-    
-    Gson gson     = new Gson();
-    Type MSG_TYPE = new TypeToken<FabricRequest>() {}.getType();
-
-    FabricRequest request = null;
-    StringReader  in      = new StringReader( msg );
-    JsonReader    reader  = new JsonReader( in );
-      
-    request = gson.fromJson(  reader, MSG_TYPE );
-    in.close();
 
-    try
-    {
-      reader.close();
-    } catch( IOException e )
-      {
-        // TODO Auto-generated catch block
-        e.printStackTrace();
-      }
+  public byte[] toJSONBytes()
+  {
+    return JsonCodec.toJsonBytes( this );
+  }
 
-    logger.info( "Parsed fabric request msg. Msg = " + request.toString() );
+  public static FabricRequest deserializeJSON( String msg )
+  {
+    return JsonCodec.fromJson( msg, FabricRequest.class );
+  }
 
-    return request;
+  public static FabricRequest deserializeJSON( byte[] msg )
+  {
+    return JsonCodec.fromJson( msg, FabricRequest.class );
   }
 }
@@ -1,15 +1,6 @@
 package sdkwrapper.vo.transaction;
 
-import java.io.IOException;
-import java.io.StringReader;
-import java.lang.reflect.Type;
-
-import org.apache.log4j.LogManager;
-import org.apache.log4j.Logger;
-
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import com.google.gson.stream.JsonReader;
+import sdkwrapper.vo.codec.JsonCodec;
 
 /**
  * This represents the Response portion of a Fabric Transaction Endorsement Request. This is also sent along with the 
@@ -20,8 +11,6 @@ import com.google.gson.stream.JsonReader;
  */
 public class FabricResponse
 {
-  private static final Logger logger = LogManager.getLogger( FabricResponse.class );
-
   private String responseCode    = null;
   private String description     = null;
   private String responsePayload = null;
@@ -36,39 +25,21 @@ public class FabricResponse
   
   public String toJSON()
   {
-    Gson gson = new Gson();    
-    return gson.toJson( this );
+    return JsonCodec.toJson( this );
   }
 
-  public static FabricResponse fromJSON( String msg )
+  public byte[] toJSONBytes()
   {
-    logger.info( "Received fabric request msg to parse. Msg = " + msg );
-
-    if( msg == null )
-      return null;
-    
-    Gson gson     = new Gson();
-    Type MSG_TYPE = new TypeToken<FabricResponse>() {}.getType();
-
-    FabricResponse response = null;
-    StringReader   in      = new StringReader( msg );
-    JsonReader     reader  = new JsonReader( in );
-      
-    response = gson.fromJson(  reader, MSG_TYPE );
-    in.close();
+    return JsonCodec.toJsonBytes( this );
+  }
 
-    try
-    {
-      reader.close();
-    } catch( IOException e )
-      {
-        // TODO Auto-generated catch block
-        e.printStackTrace();
-      }
- 
-    logger.info( "Parsed fabric response msg. Msg = " + response.toString() );
+  public static FabricResponse fromJSON( String msg )
+  {
+    return JsonCodec.fromJson( msg, FabricResponse.class );
+  }
 
-    return response;
+  public static FabricResponse fromJSON( byte[] msg )
+  {
+    return JsonCodec.fromJson( msg, FabricResponse.class );
   }
-  
 }
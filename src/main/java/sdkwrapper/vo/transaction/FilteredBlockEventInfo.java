@@ -0,0 +1,13 @@
+package sdkwrapper.vo.transaction;
+
+/**
+ * Block received from a channel registered for filtered block events. Filtered blocks only carry the block number and
+ * the type, transaction id and validation code of each transaction. The block hashes are null and the transactions have
+ * no actions, payloads or endorsements.
+ * 
+ * @author tim
+ *
+ */
+public class FilteredBlockEventInfo extends BlockEventInfo
+{
+}
@@ -0,0 +1,72 @@
+package sdkwrapper.vo.transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Hex;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo;
+
+/**
+ * Read only view of a block which wraps the SDK block and only decodes the attributes when they are accessed. Used by
+ * the BlockEventProcessorImpl in lazy materialization mode in place of an eagerly populated BlockEventInfo.
+ * 
+ * The block hashes are hex encoded on first access and the transaction views are created on first access of the
+ * transaction list.
+ * 
+ * @author tim
+ *
+ */
+public class LazyBlockEventInfo extends BlockEventInfo
+{
+  private transient BlockInfo                               block         = null;
+  private transient List<? extends TransactionEnvelopeInfo> tranEnvelopes = null;
+  private transient List<BlockTransaction>                  transactions  = null;
+
+  public LazyBlockEventInfo( String channelId, BlockInfo block, List<? extends TransactionEnvelopeInfo> tranEnvelopes )
+  {
+    this.block         = block;
+    this.tranEnvelopes = tranEnvelopes;
+
+    setBlockSeqNum( block.getBlockNumber() );
+    setChannelId(   channelId              );
+  }
+
+  public BlockInfo getBlock() { return block; }
+
+  @Override
+  public String getBlockDataHash()
+  {
+    if( super.getBlockDataHash() == null )
+      setBlockDataHash( Hex.encodeHexString( block.getDataHash() ));
+
+    return super.getBlockDataHash();
+  }
+
+  @Override
+  public String getBlockPriorHash()
+  {
+    if( super.getBlockPriorHash() == null )
+      setBlockPriorHash( Hex.encodeHexString( block.getPreviousHash() ));
+
+    return super.getBlockPriorHash();
+  }
+
+  @Override
+  public synchronized List<BlockTransaction> getTransactionList()
+  {
+    if( transactions == null )
+    {
+      List<BlockTransaction> views = new ArrayList<BlockTransaction>( tranEnvelopes.size() );
+      for( TransactionEnvelopeInfo tranEnvelope : tranEnvelopes )
+      {
+        views.add( new LazyBlockTransaction( getBlockSeqNum(), tranEnvelope ));
+      }
+
+      transactions = Collections.unmodifiableList( views );
+    }
+
+    return transactions;
+  }
+}
@@ -0,0 +1,38 @@
+package sdkwrapper.vo.transaction;
+
+import java.util.Base64;
+
+import org.hyperledger.fabric.sdk.BlockInfo.EndorserInfo;
+
+/**
+ * Read only view of an endorsement which Base64 encodes the endorser certificate and signature on first access.
+ */
+public class LazyBlockTranActionEndorsement extends BlockTranActionEndorsement
+{
+  private transient EndorserInfo endorserInfo = null;
+
+  public LazyBlockTranActionEndorsement( EndorserInfo endorserInfo )
+  {
+    this.endorserInfo = endorserInfo;
+  }
+
+  public EndorserInfo getEndorserInfo() { return endorserInfo; }
+
+  @Override
+  public String getEndorserCert()
+  {
+    if( super.getEndorserCert() == null )
+      setEndorserCert( new String( Base64.getEncoder().encode( endorserInfo.getEndorser() )));
+
+    return super.getEndorserCert();
+  }
+
+  @Override
+  public String getSignature()
+  {
+    if( super.getSignature() == null )
+      setSignature( new String( Base64.getEncoder().encode( endorserInfo.getSignature() )));
+
+    return super.getSignature();
+  }
+}
@@ -0,0 +1,63 @@
+package sdkwrapper.vo.transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo;
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo;
+
+/**
+ * Read only view of a block transaction which wraps the SDK transaction envelope. The transaction id, validity and
+ * validation code are read from the envelope as requested and the action views are only created on first access.
+ * 
+ * @author tim
+ *
+ */
+public class LazyBlockTransaction extends BlockTransaction
+{
+  private transient TransactionEnvelopeInfo      tranEnvelope = null;
+  private transient List<BlockTransactionAction> actions      = null;
+
+  public LazyBlockTransaction( long blockSeqNum, TransactionEnvelopeInfo tranEnvelope )
+  {
+    this.tranEnvelope = tranEnvelope;
+
+    setBlockSeqNum( blockSeqNum );
+  }
+
+  public TransactionEnvelopeInfo getTranEnvelope() { return tranEnvelope; }
+
+  @Override public String  getTranType()      { return tranEnvelope.getType().name();   }
+  @Override public String  getTransactionId() { return tranEnvelope.getTransactionID(); }
+  @Override public Date    getTranTimestamp() { return tranEnvelope.getTimestamp();     }
+  @Override public long    getEpoch()         { return tranEnvelope.getEpoch();         }
+  @Override public boolean isValid()          { return tranEnvelope.isValid();          }
+
+  @Override
+  public String getValidationCode()
+  {
+    if( super.getValidationCode() == null )
+      setValidationCode( Byte.toString( tranEnvelope.getValidationCode() ));
+
+    return super.getValidationCode();
+  }
+
+  @Override
+  public synchronized List<BlockTransactionAction> getTranActions()
+  {
+    if( actions == null )
+    {
+      List<BlockTransactionAction> views = new ArrayList<BlockTransactionAction>( tranEnvelope.getTransactionActionInfoCount() );
+      for( TransactionActionInfo tranInfo : tranEnvelope.getTransactionActionInfos() )
+      {
+        views.add( new LazyBlockTransactionAction( tranInfo ));
+      }
+
+      actions = Collections.unmodifiableList( views );
+    }
+
+    return actions;
+  }
+}
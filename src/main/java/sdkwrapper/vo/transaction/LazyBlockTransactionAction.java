@@ -0,0 +1,104 @@
+package sdkwrapper.vo.transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo;
+
+import sdkwrapper.vo.codec.PayloadCodec;
+
+/**
+ * Read only view of a transaction action which wraps the SDK transaction action. The request and proposal response
+ * payloads are converted to Strings (json or compact encoded) on first access and the endorsements are only Base64 encoded when read.
+ * 
+ * toJSON() materializes all the attributes prior to serializing.
+ * 
+ * @author tim
+ *
+ */
+public class LazyBlockTransactionAction extends BlockTransactionAction
+{
+  private transient TransactionActionInfo            tranInfo     = null;
+  private transient List<BlockTranActionEndorsement> endorsements = null;
+
+  public LazyBlockTransactionAction( TransactionActionInfo tranInfo )
+  {
+    this.tranInfo = tranInfo;
+  }
+
+  public TransactionActionInfo getTranInfo() { return tranInfo; }
+
+  @Override public String getDescription()            { return tranInfo.getResponseMessage();        }
+  @Override public int    getResponseStatus()         { return tranInfo.getResponseStatus();         }
+  @Override public int    getProposalResponseStatus() { return tranInfo.getProposalResponseStatus(); }
+
+  @Override
+  public String getRequestPayload()
+  {
+    if( super.getRequestPayload() == null )
+      setRequestPayload( PayloadCodec.requestText( tranInfo ));
+
+    return super.getRequestPayload();
+  }
+
+  @Override
+  public String getProposalResponsePayload()
+  {
+    if( super.getProposalResponsePayload() == null )
+      setProposalResponsePayload( PayloadCodec.responseText( tranInfo.getProposalResponsePayload() ));
+
+    return super.getProposalResponsePayload();
+  }
+
+  @Override
+  public synchronized List<BlockTranActionEndorsement> getEndorsements()
+  {
+    if( endorsements == null )
+    {
+      int                              endorseCnt = tranInfo.getEndorsementsCount();
+      List<BlockTranActionEndorsement> views      = new ArrayList<BlockTranActionEndorsement>( endorseCnt );
+
+      for( int i = 0; i < endorseCnt; i++ )
+      {
+        views.add( new LazyBlockTranActionEndorsement( tranInfo.getEndorsementInfo( i )));
+      }
+
+      endorsements = Collections.unmodifiableList( views );
+    }
+
+    return endorsements;
+  }
+
+  @Override
+  public String toJSON()
+  {
+    materialize();
+    return super.toJSON();
+  }
+
+  /**
+   * Copy the decoded attributes into the serializable fields.
+   */
+  private void materialize()
+  {
+    getRequestPayload();
+    getProposalResponsePayload();
+
+    setDescription(            getDescription()            );
+    setResponseStatus(         getResponseStatus()         );
+    setProposalResponseStatus( getProposalResponseStatus() );
+
+    if( super.getEndorsements().isEmpty() )
+    {
+      for( BlockTranActionEndorsement endorsement : getEndorsements() )
+      {
+        BlockTranActionEndorsement copy = new BlockTranActionEndorsement();
+        copy.setEndorserCert( endorsement.getEndorserCert() );
+        copy.setSignature(    endorsement.getSignature()    );
+
+        super.getEndorsements().add( copy );
+      }
+    }
+  }
+}
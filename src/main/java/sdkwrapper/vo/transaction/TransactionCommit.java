@@ -0,0 +1,59 @@
+package sdkwrapper.vo.transaction;
+
+import org.hyperledger.fabric.sdk.BlockEvent.TransactionEvent;
+
+/**
+ * Immutable record of a committed transaction, completing the futures of submitted transactions.
+ *
+ * The TransactionEvent is only present when the block holding the transaction was received as an event. Blocks fetched
+ * by catch up have no events, so their transactions are only described by the record.
+ *
+ * @author tim
+ *
+ */
+public final class TransactionCommit
+{
+  private final String           channelId;
+  private final String           txId;
+  private final long             blockNumber;
+  private final byte             validationCode;
+  private final TransactionEvent transactionEvent;
+
+  public TransactionCommit( String channelId, String txId, long blockNumber, byte validationCode, TransactionEvent transactionEvent )
+  {
+    this.channelId        = channelId;
+    this.txId             = txId;
+    this.blockNumber      = blockNumber;
+    this.validationCode   = validationCode;
+    this.transactionEvent = transactionEvent;
+  }
+
+  /**
+   * @param event - the transaction event delivered by the SDK
+   * @return the record of the transaction of the event
+   */
+  public static TransactionCommit of( TransactionEvent event )
+  {
+    return new TransactionCommit( event.getChannelId(), event.getTransactionID(), event.getBlockEvent().getBlockNumber(), event.getValidationCode(), event );
+  }
+
+  public String           getChannelId()        { return channelId;        }
+  public String           getTransactionID()    { return txId;             }
+  public long             getBlockNumber()      { return blockNumber;      }
+  public byte             getValidationCode()   { return validationCode;   }
+  public TransactionEvent getTransactionEvent() { return transactionEvent; }
+
+  /**
+   * @return true if the transaction passed commit validation
+   */
+  public boolean isValid()
+  {
+    return validationCode == 0;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "Transaction " + txId + " on channel " + channelId + " in block " + blockNumber + ". Validation code = " + validationCode;
+  }
+}
@@ -0,0 +1,149 @@
+package org.hyperledger.fabric.sdk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.hyperledger.fabric.protos.msp.Identities.SerializedIdentity;
+import org.hyperledger.fabric.protos.peer.FabricProposal;
+import org.hyperledger.fabric.protos.peer.FabricProposalResponse;
+import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
+import org.hyperledger.fabric.sdk.transaction.TransactionContext;
+
+/**
+ * An offline channel which records the user each request is sent as, in place of sending it. Queries and proposals are
+ * answered with a verified SUCCESS response endorsed by the MSP, and transactions sent to the orderer never complete.
+ * Lives in the SDK package as the user context of a request and of the transaction options, the channel constructor
+ * and the verified state of a response are package private.
+ *
+ * @author tim
+ *
+ */
+public class RecordingChannel extends Channel
+{
+  private static final long serialVersionUID = 1L;
+
+  public enum Kind { QUERY, PROPOSAL, ORDERER }
+
+  private final HFClient    client;
+  private final String      mspId;
+  private final Set<String> chaincodeNames;
+
+  private final List<Sent>                          sent     = new CopyOnWriteArrayList<Sent>();
+  private final Map<ProposalResponse, List<String>> endorsed = new ConcurrentHashMap<ProposalResponse, List<String>>();
+
+  /**
+   * @param name
+   * @param client
+   * @param mspId         - MSP of the endorser of the responses
+   * @param chaincodeName - the discovered chaincode of the channel
+   */
+  public RecordingChannel( String name, HFClient client, String mspId, String chaincodeName )
+    throws InvalidArgumentException
+  {
+    super( name, client );
+    this.client         = client;
+    this.mspId          = mspId;
+    this.chaincodeNames = Collections.singleton( chaincodeName );
+  }
+
+  /**
+   * @return the requests sent, in the order sent
+   */
+  public List<Sent> getSent()
+  {
+    return sent;
+  }
+
+  @Override
+  public Set<String> getDiscoveredChaincodeNames()
+  {
+    return chaincodeNames;
+  }
+
+  @Override
+  public Collection<ProposalResponse> queryByChaincode( QueryByChaincodeRequest request, Collection<Peer> peers )
+    throws InvalidArgumentException
+  {
+    sent.add( new Sent( Kind.QUERY, request.getArgs(), request.getUserContext() ));
+    return Collections.singletonList( respond( request.getUserContext() ));
+  }
+
+  @Override
+  public Collection<ProposalResponse> sendTransactionProposalToEndorsers( TransactionProposalRequest request, DiscoveryOptions options )
+    throws InvalidArgumentException
+  {
+    sent.add( new Sent( Kind.PROPOSAL, request.getArgs(), request.getUserContext() ));
+
+    ProposalResponse response = respond( request.getUserContext() );
+    endorsed.put( response, request.getArgs() );
+
+    return Collections.singletonList( response );
+  }
+
+  @Override
+  public CompletableFuture<BlockEvent.TransactionEvent> sendTransaction( Collection<ProposalResponse> responses, TransactionOptions options )
+  {
+    // The arguments of the proposal the responses endorse.
+    List<String> args = responses.isEmpty() ? Collections.<String>emptyList() : endorsed.remove( responses.iterator().next() );
+
+    sent.add( new Sent( Kind.ORDERER, args, options.userContext ));
+    return new CompletableFuture<BlockEvent.TransactionEvent>();
+  }
+
+  private ProposalResponse respond( User user )
+    throws InvalidArgumentException
+  {
+    ProposalResponse response = new ProposalResponse( new TransactionContext( this, user, client.getCryptoSuite() ), 200, "" )
+    {
+      @Override
+      public boolean isVerified()
+      {
+        return true;
+      }
+    };
+
+    FabricProposalResponse.ProposalResponsePayload payload = FabricProposalResponse.ProposalResponsePayload.newBuilder()
+             .setExtension( FabricProposal.ChaincodeAction.newBuilder()
+                              .setResponse( FabricProposalResponse.Response.newBuilder().setStatus( 200 ))
+                              .build().toByteString() )
+             .build();
+
+    response.setProposalResponse( FabricProposalResponse.ProposalResponse.newBuilder()
+             .setPayload(     payload.toByteString() )
+             .setResponse(    FabricProposalResponse.Response.newBuilder().setStatus( 200 ))
+             .setEndorsement( FabricProposalResponse.Endorsement.newBuilder()
+                                .setEndorser( SerializedIdentity.newBuilder().setMspid( mspId ).build().toByteString() ))
+             .build() );
+
+    return response;
+  }
+
+
+  /**
+   * A request sent on the channel, with the arguments of the request and the user it was sent as.
+   */
+  public static final class Sent
+  {
+    private final Kind         kind;
+    private final List<String> args;
+    private final User         user;
+
+    Sent( Kind kind, List<String> args, User user )
+    {
+      this.kind = kind;
+      this.args = ( args == null ) ? Collections.<String>emptyList() : new ArrayList<String>( args );
+      this.user = user;
+    }
+
+    public Kind         getKind() { return kind; }
+    public List<String> getArgs() { return args; }
+    public User         getUser() { return user; }
+  }
+}
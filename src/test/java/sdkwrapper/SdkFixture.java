@@ -0,0 +1,118 @@
+package sdkwrapper;
+
+import java.lang.reflect.Constructor;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.spec.ECGenParameterSpec;
+
+import org.hyperledger.fabric.protos.msp.Identities.SerializedIdentity;
+import org.hyperledger.fabric.protos.peer.FabricProposal;
+import org.hyperledger.fabric.protos.peer.FabricProposalResponse;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.HFClient;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.security.CryptoSuite;
+import org.hyperledger.fabric.sdk.transaction.TransactionContext;
+
+import sdkwrapper.vo.config.OrgUserVO;
+
+/**
+ * Users and an offline SDK client for tests. Channels created on the client can build and sign proposals without a
+ * network.
+ *
+ * @author tim
+ *
+ */
+public final class SdkFixture
+{
+  public static final String MSP_ID = "Org1MSP";
+
+  private SdkFixture()
+  {
+  }
+
+  /**
+   * @return a new EC private key for enrolling test users
+   */
+  public static PrivateKey newKey()
+    throws GeneralSecurityException
+  {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance( "EC" );
+    generator.initialize( new ECGenParameterSpec( "secp256r1" ));
+
+    return generator.generateKeyPair().getPrivate();
+  }
+
+  /**
+   * @param name
+   * @param key
+   * @return a user of the org MSP enrolled with the key
+   */
+  public static OrgUserVO newUser( String name, PrivateKey key )
+  {
+    OrgUserVO user = new OrgUserVO();
+    user.setName(          name           );
+    user.setMspId(         MSP_ID         );
+    user.setEnrollPrivKey( key            );
+    user.setEnrollCert(    "cert-" + name );
+
+    return user;
+  }
+
+  /**
+   * @param name
+   * @return a user of the org MSP enrolled with a new key
+   */
+  public static OrgUserVO newUser( String name )
+    throws GeneralSecurityException
+  {
+    return newUser( name, newKey() );
+  }
+
+  /**
+   * @param user - the client's user context
+   * @return a client with the default crypto suite
+   */
+  public static HFClient newClient( OrgUserVO user )
+    throws Exception
+  {
+    HFClient client = HFClient.createNewInstance();
+    client.setCryptoSuite( CryptoSuite.Factory.getCryptoSuite() );
+    client.setUserContext( user );
+
+    return client;
+  }
+
+  /**
+   * A response endorsed by the MSP with the chaincode action status, which the SDK only builds within its own package.
+   *
+   * @param client  - client of the channel, whose user context makes the proposal
+   * @param channel
+   * @param mspId   - MSP of the endorser
+   * @param status  - chaincode action status
+   * @return the proposal response
+   */
+  public static ProposalResponse newResponse( HFClient client, Channel channel, String mspId, int status )
+    throws Exception
+  {
+    Constructor<ProposalResponse> constructor = ProposalResponse.class.getDeclaredConstructor( TransactionContext.class, int.class, String.class );
+    constructor.setAccessible( true );
+
+    ProposalResponse response = constructor.newInstance( new TransactionContext( channel, client.getUserContext(), client.getCryptoSuite() ), status, "" );
+
+    FabricProposalResponse.ProposalResponsePayload payload = FabricProposalResponse.ProposalResponsePayload.newBuilder()
+             .setExtension( FabricProposal.ChaincodeAction.newBuilder()
+                              .setResponse( FabricProposalResponse.Response.newBuilder().setStatus( status ))
+                              .build().toByteString() )
+             .build();
+
+    response.setProposalResponse( FabricProposalResponse.ProposalResponse.newBuilder()
+             .setPayload(     payload.toByteString() )
+             .setEndorsement( FabricProposalResponse.Endorsement.newBuilder()
+                                .setEndorser( SerializedIdentity.newBuilder().setMspid( mspId ).build().toByteString() ))
+             .build() );
+
+    return response;
+  }
+}
@@ -0,0 +1,185 @@
+package sdkwrapper.block.store;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Recovery of the block positions from the snapshot and the tail of the log, after the store is closed as on a crash
+ * and the log damaged as a crash may leave it.
+ *
+ * @author tim
+ *
+ */
+public class BlockEventSeqLogStoreTest
+{
+  private static final int LOG_RECORDS = 4;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private String                directory = null;
+  private BlockEventSeqLogStore store     = null;
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    directory = folder.getRoot().getPath();
+    store     = BlockEventSeqLogStore.open( directory, LOG_RECORDS );
+  }
+
+  @After
+  public void tearDown()
+    throws Exception
+  {
+    store.close();
+  }
+
+  @Test
+  public void positionsAreRecoveredFromSnapshotAndLog()
+    throws Exception
+  {
+    // The first position of a channel is written to the snapshot, the following ones to the log.
+    store.putBlockSeqNumber( "channel1", 1 );
+    store.putBlockSeqNumber( "channel1", 2 );
+    store.putBlockSeqNumber( "channel1", 3 );
+
+    reopen();
+    assertEquals( 3, store.getCurrentSequenceNumber( "channel1" ));
+    assertEquals( 2, store.getReplayedRecords() );
+
+    // Appends continue after the replayed records.
+    store.putBlockSeqNumber( "channel1", 4 );
+
+    reopen();
+    assertEquals( 4, store.getCurrentSequenceNumber( "channel1" ));
+    assertEquals( 3, store.getReplayedRecords() );
+  }
+
+  @Test
+  public void tornTailRecordIsIgnored()
+    throws Exception
+  {
+    store.putBlockSeqNumber( "channel1", 1 );
+    store.putBlockSeqNumber( "channel1", 2 );
+    store.putBlockSeqNumber( "channel1", 3 );
+
+    // Only the first half of the last record reached the disk.
+    store.close();
+    writeLog( BlockEventSeqLogStore.RECORD_SIZE + BlockEventSeqLogStore.RECORD_SIZE / 2, new byte[BlockEventSeqLogStore.RECORD_SIZE / 2] );
+
+    reopen();
+    assertEquals( 2, store.getCurrentSequenceNumber( "channel1" ));
+    assertEquals( 1, store.getReplayedRecords() );
+
+    // The torn record is overwritten by the next append.
+    store.putBlockSeqNumber( "channel1", 5 );
+
+    reopen();
+    assertEquals( 5, store.getCurrentSequenceNumber( "channel1" ));
+    assertEquals( 2, store.getReplayedRecords() );
+  }
+
+  @Test
+  public void recordWithCrcMismatchEndsReplay()
+    throws Exception
+  {
+    store.putBlockSeqNumber( "channel1", 1 );
+    store.putBlockSeqNumber( "channel1", 2 );
+    store.putBlockSeqNumber( "channel1", 3 );
+    store.putBlockSeqNumber( "channel1", 4 );
+
+    // The seq number of the second record is corrupted. Replay stops there, although the third record is intact.
+    store.close();
+    writeLog( BlockEventSeqLogStore.RECORD_SIZE + 15, new byte[] { 0x7f } );
+
+    reopen();
+    assertEquals( 2, store.getCurrentSequenceNumber( "channel1" ));
+    assertEquals( 1, store.getReplayedRecords() );
+  }
+
+  @Test
+  public void staleGenerationRecordsAreNotReplayedAfterCompaction()
+    throws Exception
+  {
+    store.putBlockSeqNumber( "channel1", 1 );
+    for( long seq = 2; seq <= 1 + LOG_RECORDS; seq++ )
+      store.putBlockSeqNumber( "channel1", seq );
+
+    // The log is full, so the next position compacts it into the snapshot. The record appended after it overwrites
+    // the first record of the previous generation only.
+    store.putBlockSeqNumber( "channel1", 10 );
+    store.putBlockSeqNumber( "channel1", 11 );
+
+    reopen();
+    assertEquals( 11, store.getCurrentSequenceNumber( "channel1" ));
+    assertEquals( 1,  store.getReplayedRecords() );
+  }
+
+  @Test
+  public void newChannelAfterCompactionIsRecovered()
+    throws Exception
+  {
+    store.putBlockSeqNumber( "channel1", 1 );
+    store.putBlockSeqNumber( "channel1", 2 );
+    store.putBlockSeqNumber( "channel1", 3 );
+
+    // A new channel compacts the log into a snapshot holding both channels.
+    store.putBlockSeqNumber( "channel2", 20 );
+    store.putBlockSeqNumber( "channel2", 21 );
+
+    reopen();
+    assertEquals( 3,  store.getCurrentSequenceNumber( "channel1" ));
+    assertEquals( 21, store.getCurrentSequenceNumber( "channel2" ));
+    assertEquals( 1,  store.getReplayedRecords() );
+
+    store.putBlockSeqNumber( "channel1", 4 );
+
+    reopen();
+    assertEquals( 4,  store.getCurrentSequenceNumber( "channel1" ));
+    assertEquals( 21, store.getCurrentSequenceNumber( "channel2" ));
+    assertEquals( 2,  store.getReplayedRecords() );
+  }
+
+  @Test
+  public void positionsOnlyMoveForward()
+    throws Exception
+  {
+    store.putBlockSeqNumber( "channel1", 5 );
+    store.putBlockSeqNumber( "channel1", 3 );
+    assertEquals( 5, store.getCurrentSequenceNumber( "channel1" ));
+
+    reopen();
+    assertEquals( 5, store.getCurrentSequenceNumber( "channel1" ));
+    assertEquals( 0, store.getReplayedRecords() );
+  }
+
+  /**
+   * Close the store, if still open, and recover a new store from its files.
+   */
+  private void reopen()
+    throws Exception
+  {
+    store.close();
+    store = BlockEventSeqLogStore.open( directory, LOG_RECORDS );
+  }
+
+  private void writeLog( int position, byte[] bytes )
+    throws IOException
+  {
+    try( RandomAccessFile log = new RandomAccessFile( new File( directory, BlockEventSeqLogStore.LOG_FILE ), "rw" ))
+    {
+      log.seek( position );
+      log.write( bytes );
+    }
+  }
+}
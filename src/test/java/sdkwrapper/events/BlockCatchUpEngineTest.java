@@ -0,0 +1,263 @@
+package sdkwrapper.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.junit.After;
+import org.junit.Test;
+
+import sdkwrapper.exceptions.BlockEventException;
+
+/**
+ * Sequencing of live blocks by the catch up engine. The processor records the blocks it is given, and the source serves
+ * empty blocks, optionally held until released or failing once.
+ *
+ * @author tim
+ *
+ */
+public class BlockCatchUpEngineTest
+{
+  private static final String CHANNEL = "channel1";
+  private static final long   WAIT_MS = 5000;
+
+  private final List<String> events = new CopyOnWriteArrayList<String>();
+
+  private RecordingProcessor processor = null;
+  private StubSource         source    = null;
+  private BlockCatchUpEngine engine    = null;
+
+  @After
+  public void tearDown()
+  {
+    if( source != null )
+      source.release.countDown();
+
+    if( engine != null )
+      engine.shutdown();
+  }
+
+  @Test
+  public void gapIsFetchedInBatchesAndProcessedInOrder()
+    throws Exception
+  {
+    start( 9, 3, 16 );
+
+    engine.onLiveBlock( CHANNEL, TestBlocks.empty( 20 ));
+    awaitProcessed( 20 );
+
+    assertEquals( range( 10, 20 ), processor.blocks );
+    assertEquals( 1,  engine.getGapsDetected()  );
+    assertEquals( 10, engine.getBlocksFetched() );
+
+    // Each batch is only fetched once the blocks of the batch before it have been processed.
+    for( long batchStart : new long[] { 13, 16, 19 } )
+      assertTrue( "Block " + batchStart + " fetched early", events.indexOf( "fetch " + batchStart ) > events.indexOf( "process " + ( batchStart - 1 )));
+
+    assertFalse( engine.isCatchingUp( CHANNEL ));
+    assertEquals( 0, engine.getBufferedCount( CHANNEL ));
+  }
+
+  @Test
+  public void liveBlocksBeyondTheWindowAreFetchedAgain()
+    throws Exception
+  {
+    start( 9, 8, 4 );
+    source.hold = true;
+
+    // 12 opens the gap 10..11, which is held while the later blocks arrive. The window is 10..13.
+    engine.onLiveBlock( CHANNEL, TestBlocks.empty( 12 ));
+    awaitFetching();
+
+    engine.onLiveBlock( CHANNEL, TestBlocks.empty( 13 ));
+    engine.onLiveBlock( CHANNEL, TestBlocks.empty( 14 ));
+    engine.onLiveBlock( CHANNEL, TestBlocks.empty( 15 ));
+
+    assertEquals( 2, engine.getBufferedCount( CHANNEL ));
+    assertEquals( 2, engine.getBlocksSpilled() );
+
+    source.release.countDown();
+    awaitProcessed( 15 );
+
+    assertEquals( range( 10, 15 ), processor.blocks );
+    assertEquals( Arrays.asList( 10L, 11L, 14L, 15L ), source.sortedFetched() );
+    assertEquals( 4, engine.getBlocksFetched() );
+  }
+
+  @Test
+  public void failedFetchRestartsOnNextLiveBlock()
+    throws Exception
+  {
+    start( 9, 8, 16 );
+    source.failing.add( 11L );
+
+    engine.onLiveBlock( CHANNEL, TestBlocks.empty( 13 ));
+    awaitCatchUpStopped();
+
+    // No block of the failed batch is processed, and the live block stays buffered.
+    assertTrue( processor.blocks.isEmpty() );
+    assertEquals( 1, engine.getBufferedCount( CHANNEL ));
+
+    engine.onLiveBlock( CHANNEL, TestBlocks.empty( 14 ));
+    awaitProcessed( 14 );
+
+    assertEquals( range( 10, 14 ), processor.blocks );
+    assertEquals( 2, engine.getGapsDetected() );
+  }
+
+  @Test
+  public void liveCopyOfFetchedBlockIsProcessedOnce()
+    throws Exception
+  {
+    start( 9, 8, 16 );
+    source.hold = true;
+
+    // The gap 10..11 is fetched while live copies of both blocks arrive.
+    engine.onLiveBlock( CHANNEL, TestBlocks.empty( 12 ));
+    awaitFetching();
+
+    engine.onLiveBlock( CHANNEL, TestBlocks.empty( 10 ));
+    engine.onLiveBlock( CHANNEL, TestBlocks.empty( 11 ));
+    assertEquals( 3, engine.getBufferedCount( CHANNEL ));
+
+    source.release.countDown();
+    awaitProcessed( 12 );
+
+    // A copy delivered after the catch up is a duplicate.
+    engine.onLiveBlock( CHANNEL, TestBlocks.empty( 11 ));
+
+    assertEquals( range( 10, 12 ), processor.blocks );
+    assertEquals( 0, engine.getBufferedCount( CHANNEL ));
+  }
+
+  private void start( long checkpoint, int batchSize, int bufferCapacity )
+  {
+    processor = new RecordingProcessor( checkpoint );
+    source    = new StubSource();
+    engine    = new BlockCatchUpEngine( processor, source, batchSize, 4, bufferCapacity );
+  }
+
+  private void awaitProcessed( long blockNumber )
+    throws InterruptedException
+  {
+    long deadline = System.currentTimeMillis() + WAIT_MS;
+    while( !processor.blocks.contains( blockNumber ) && System.currentTimeMillis() < deadline )
+      Thread.sleep( 10 );
+
+    assertTrue( "Block " + blockNumber + " not processed. Processed = " + processor.blocks, processor.blocks.contains( blockNumber ));
+  }
+
+  private void awaitFetching()
+    throws InterruptedException
+  {
+    assertTrue( "Catch up did not fetch.", source.fetching.await( WAIT_MS, TimeUnit.MILLISECONDS ));
+  }
+
+  private void awaitCatchUpStopped()
+    throws InterruptedException
+  {
+    long deadline = System.currentTimeMillis() + WAIT_MS;
+    while( engine.isCatchingUp( CHANNEL ) && System.currentTimeMillis() < deadline )
+      Thread.sleep( 10 );
+
+    assertFalse( "Catch up did not stop.", engine.isCatchingUp( CHANNEL ));
+  }
+
+  private static List<Long> range( long from, long to )
+  {
+    List<Long> numbers = new ArrayList<Long>();
+    for( long number = from; number <= to; number++ )
+      numbers.add( number );
+
+    return numbers;
+  }
+
+
+  /**
+   * Records the blocks processed, in place of decoding and dispatching them.
+   */
+  private class RecordingProcessor extends BlockEventProcessorImpl
+  {
+    final List<Long> blocks = new CopyOnWriteArrayList<Long>();
+
+    private final long checkpoint;
+
+    RecordingProcessor( long checkpoint )
+    {
+      super( null, null );
+      this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public long getCheckpoint( String channelId )
+    {
+      return checkpoint;
+    }
+
+    @Override
+    public void processBlock( String channelId, BlockInfo block )
+    {
+      events.add( "process " + block.getBlockNumber() );
+      blocks.add( block.getBlockNumber() );
+    }
+  }
+
+
+  /**
+   * Serves empty blocks. While hold is set each fetch waits for release, and a failing block fails its first fetch.
+   */
+  private class StubSource implements BlockSourceIF
+  {
+    final CountDownLatch fetching = new CountDownLatch( 1 );
+    final CountDownLatch release  = new CountDownLatch( 1 );
+    final Set<Long>      failing  = ConcurrentHashMap.newKeySet();
+    final List<Long>     fetched  = new CopyOnWriteArrayList<Long>();
+
+    volatile boolean hold = false;
+
+    @Override
+    public BlockInfo queryBlock( String channelId, long blockNumber )
+      throws BlockEventException
+    {
+      events.add( "fetch " + blockNumber );
+      fetched.add( blockNumber );
+      fetching.countDown();
+
+      try
+      {
+        if( hold && !release.await( WAIT_MS, TimeUnit.MILLISECONDS ))
+          throw new BlockEventException( "Block " + blockNumber + " not released." );
+
+        if( failing.remove( blockNumber ))
+          throw new BlockEventException( "Block " + blockNumber + " unavailable." );
+
+        return TestBlocks.empty( blockNumber );
+      }
+      catch( BlockEventException e )
+      {
+        throw e;
+      }
+      catch( Exception e )
+      {
+        throw new BlockEventException( e.getMessage() );
+      }
+    }
+
+    List<Long> sortedFetched()
+    {
+      List<Long> sorted = new ArrayList<Long>( fetched );
+      sorted.sort( null );
+      return sorted;
+    }
+  }
+}
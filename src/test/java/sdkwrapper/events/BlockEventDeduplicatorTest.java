@@ -0,0 +1,125 @@
+package sdkwrapper.events;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import sdkwrapper.block.listener.FabricBlockListener;
+
+/**
+ * Copies of a block received from several event source peers are forwarded once. A copy with a different data hash is
+ * dropped as a conflict, a copy older than the window is dropped, and the blocks of each channel are tracked apart.
+ *
+ * @author tim
+ *
+ */
+public class BlockEventDeduplicatorTest
+{
+  private static final int    WINDOW = 4;
+  private static final byte[] HASH_A = new byte[] { 1, 2, 3 };
+  private static final byte[] HASH_B = new byte[] { 4, 5, 6 };
+
+  private TestBlocks             blocks       = null;
+  private RecordingProcessor     processor    = null;
+  private BlockEventDeduplicator deduplicator = null;
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    blocks       = new TestBlocks( "channel1" );
+    processor    = new RecordingProcessor();
+    deduplicator = new BlockEventDeduplicator( processor, WINDOW );
+  }
+
+  @Test
+  public void duplicateCopyIsDropped()
+    throws Exception
+  {
+    deduplicator.processBlockTransactions( blocks.event( 5, HASH_A, "peer0" ));
+    deduplicator.processBlockTransactions( blocks.event( 5, HASH_A, "peer1" ));
+
+    assertEquals( Arrays.asList( 5L ), processor.blockNumbers );
+    assertEquals( 1, deduplicator.getForwardedCount() );
+    assertEquals( 1, deduplicator.getDuplicateCount() );
+    assertEquals( 0, deduplicator.getConflictCount()  );
+  }
+
+  @Test
+  public void conflictingCopyIsDropped()
+    throws Exception
+  {
+    deduplicator.processBlockTransactions( blocks.event( 5, HASH_A, "peer0" ));
+    deduplicator.processBlockTransactions( blocks.event( 5, HASH_B, "peer1" ));
+
+    assertEquals( Arrays.asList( 5L ), processor.blockNumbers );
+    assertEquals( 0, deduplicator.getDuplicateCount() );
+    assertEquals( 1, deduplicator.getConflictCount()  );
+  }
+
+  @Test
+  public void copyOlderThanTheWindowIsDropped()
+    throws Exception
+  {
+    for( long blockNumber : new long[] { 1, 2, 3, 4, 5, 6, 8 } )
+      deduplicator.processBlockTransactions( blocks.event( blockNumber, HASH_A, "peer0" ));
+
+    // Block 7 is late but within the window of block 8. Block 2 has left the window.
+    deduplicator.processBlockTransactions( blocks.event( 7, HASH_A, "peer1" ));
+    deduplicator.processBlockTransactions( blocks.event( 2, HASH_A, "peer1" ));
+
+    assertEquals( Arrays.asList( 1L, 2L, 3L, 4L, 5L, 6L, 8L, 7L ), processor.blockNumbers );
+    assertEquals( 1, deduplicator.getDuplicateCount() );
+  }
+
+  @Test
+  public void channelsAreTrackedApart()
+    throws Exception
+  {
+    TestBlocks other = new TestBlocks( "channel2" );
+
+    deduplicator.processBlockTransactions( blocks.event( 5, HASH_A, "peer0" ));
+    deduplicator.processBlockTransactions( other.event(  5, HASH_B, "peer0" ));
+
+    assertEquals( Arrays.asList( 5L, 5L ), processor.blockNumbers );
+    assertEquals( 0, deduplicator.getConflictCount() );
+  }
+
+
+  /**
+   * Records the numbers of the blocks forwarded to it.
+   */
+  private static class RecordingProcessor implements BlockEventProcessorIF
+  {
+    final List<Long> blockNumbers = new ArrayList<Long>();
+
+    @Override
+    public void processBlockTransactions( BlockEvent blockEvent )
+    {
+      blockNumbers.add( blockEvent.getBlockNumber() );
+    }
+
+    @Override
+    public void listenerError( String channelName, FabricBlockListener listener, BlockEvent blockEvent, InvalidProtocolBufferException e )
+    {
+    }
+
+    @Override
+    public void addBlockObserver( BlockObserverIF observer )
+    {
+    }
+
+    @Override
+    public void shutdown()
+    {
+    }
+  }
+}
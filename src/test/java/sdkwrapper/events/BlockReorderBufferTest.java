@@ -0,0 +1,103 @@
+package sdkwrapper.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Out of order blocks within the window from the next block are held and released by number, and blocks behind or
+ * beyond the window are spilled.
+ *
+ * @author tim
+ *
+ */
+public class BlockReorderBufferTest
+{
+  private static final int CAPACITY = 4;
+
+  private BlockReorderBuffer buffer = null;
+
+  @Before
+  public void setUp()
+  {
+    buffer = new BlockReorderBuffer( CAPACITY );
+  }
+
+  @Test
+  public void blocksAreReleasedInOrder()
+    throws Exception
+  {
+    BlockInfo block12 = block( 12 );
+    BlockInfo block11 = block( 11 );
+
+    assertTrue( buffer.offer( block12, 10 ));
+    assertTrue( buffer.offer( block11, 10 ));
+    assertEquals( 2, buffer.size() );
+
+    assertEquals( 11, buffer.firstFrom( 10 ));
+    assertSame( block11, buffer.remove( 11 ));
+    assertEquals( 12, buffer.firstFrom( 12 ));
+    assertSame( block12, buffer.remove( 12 ));
+
+    assertTrue( buffer.isEmpty() );
+    assertEquals( -1, buffer.firstFrom( 13 ));
+    assertNull( buffer.remove( 12 ));
+  }
+
+  @Test
+  public void blocksOutsideWindowAreSpilled()
+    throws Exception
+  {
+    assertTrue(  buffer.offer( block( 13 ), 10 ));
+    assertFalse( buffer.offer( block( 14 ), 10 ));
+    assertFalse( buffer.offer( block( 9 ),  10 ));
+
+    assertEquals( 1, buffer.size() );
+    assertFalse( buffer.contains( 14 ));
+    assertEquals( 4, buffer.getMaxReorderDistance() );
+  }
+
+  @Test
+  public void slotHeldByAnotherBlockIsNotOverwritten()
+    throws Exception
+  {
+    BlockInfo block13 = block( 13 );
+    assertTrue( buffer.offer( block13, 10 ));
+
+    // 17 shares the slot of 13 and is within the window once it has moved on to 14, while 13 is still held.
+    assertFalse( buffer.offer( block( 17 ), 14 ));
+    assertTrue( buffer.contains( 13 ));
+    assertFalse( buffer.contains( 17 ));
+    assertSame( block13, buffer.remove( 13 ));
+
+    assertTrue( buffer.offer( block( 17 ), 14 ));
+    assertTrue( buffer.contains( 17 ));
+    assertEquals( 17, buffer.firstFrom( 14 ));
+  }
+
+  @Test
+  public void redeliveredBlockIsHeldOnce()
+    throws Exception
+  {
+    BlockInfo redelivered = block( 11 );
+
+    assertTrue( buffer.offer( block( 11 ), 10 ));
+    assertTrue( buffer.offer( redelivered, 10 ));
+
+    assertEquals( 1, buffer.size() );
+    assertSame( redelivered, buffer.remove( 11 ));
+    assertTrue( buffer.isEmpty() );
+  }
+
+  private static BlockInfo block( long blockNumber )
+    throws Exception
+  {
+    return TestBlocks.empty( blockNumber );
+  }
+}
@@ -0,0 +1,117 @@
+package sdkwrapper.events;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Properties;
+
+import org.hyperledger.fabric.protos.peer.FabricTransaction;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+import sdkwrapper.events.BlockEventProcessorImpl.MaterializationMode;
+import sdkwrapper.vo.codec.PayloadCodec;
+import sdkwrapper.vo.codec.PayloadEncoding;
+import sdkwrapper.vo.transaction.BlockEventInfo;
+import sdkwrapper.vo.transaction.BlockTransactionAction;
+import sdkwrapper.vo.transaction.FabricRequest;
+
+/**
+ * A FabricRequest sent as requestTransaction does, in json or compact encoding, is decoded from a block built from the
+ * proposal the SDK creates for it. The request payload of a transaction sent with a String[] payload is the function
+ * name.
+ *
+ * @author tim
+ *
+ */
+public class BlockRequestPayloadTest
+{
+  private static final String CHANNEL = "channel1";
+
+  private TestBlocks blocks = null;
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    blocks = new TestBlocks( CHANNEL );
+  }
+
+  @Test
+  public void jsonRequestIsDecodedFromBlock()
+    throws Exception
+  {
+    assertDecoded( PayloadEncoding.JSON, MaterializationMode.EAGER );
+    assertDecoded( PayloadEncoding.JSON, MaterializationMode.LAZY  );
+  }
+
+  @Test
+  public void compactRequestIsDecodedFromBlock()
+    throws Exception
+  {
+    assertDecoded( PayloadEncoding.COMPACT, MaterializationMode.EAGER );
+    assertDecoded( PayloadEncoding.COMPACT, MaterializationMode.LAZY  );
+  }
+
+  @Test
+  public void stringPayloadKeepsTheFunctionName()
+    throws Exception
+  {
+    // A single json argument which is not a FabricRequest, and several arguments.
+    for( String[] args : new String[][] { { "{\"account\":\"a1\",\"amount\":10}" }, { "a1", "10" } } )
+    {
+      BlockInfo block = blocks.block( 6, args, FabricTransaction.TxValidationCode.VALID );
+
+      assertEquals( "invoke", requestPayload( block, MaterializationMode.EAGER ));
+      assertEquals( "invoke", requestPayload( block, MaterializationMode.LAZY  ));
+    }
+  }
+
+  private static String requestPayload( BlockInfo block, MaterializationMode mode )
+    throws Exception
+  {
+    BlockEventProcessorImpl                 processor    = new BlockEventProcessorImpl( null, null, mode );
+    List<? extends TransactionEnvelopeInfo> transactions = processor.decodeTransactions( block );
+
+    return processor.transformBlock( block, transactions ).getTransactionList().get( 0 ).getTranActions().get( 0 ).getRequestPayload();
+  }
+
+  private void assertDecoded( PayloadEncoding encoding, MaterializationMode mode )
+    throws Exception
+  {
+    FabricRequest request = new FabricRequest();
+    request.setRequestContext( "public" );
+    request.setSendDateTime(   "2026-10-18T10:00:00Z" );
+    request.setTimeTolerance(  30 );
+    request.setTranPayload(    new String[] { "{\"account\":\"a1\",\"amount\":10}", "second" } );
+
+    Properties props = new Properties();
+    props.setProperty( "source", "test" );
+    request.setProps( props );
+
+    byte[] payload = PayloadCodec.encodeRequest( request, encoding );
+    if( encoding == PayloadEncoding.COMPACT )
+      assertEquals( 0x00, payload[0] );
+
+    BlockInfo block = blocks.block( 5, payload, FabricTransaction.TxValidationCode.VALID );
+
+    BlockEventProcessorImpl                 processor    = new BlockEventProcessorImpl( null, null, mode );
+    List<? extends TransactionEnvelopeInfo> transactions = processor.decodeTransactions( block );
+    BlockEventInfo                          blockInfo    = processor.transformBlock( block, transactions );
+
+    assertEquals( 1, blockInfo.getTransactionList().size() );
+    BlockTransactionAction action = blockInfo.getTransactionList().get( 0 ).getTranActions().get( 0 );
+
+    FabricRequest decoded = action.obtainRequestObject();
+    assertEquals(      request.getRequestContext(), decoded.getRequestContext() );
+    assertEquals(      request.getSendDateTime(),   decoded.getSendDateTime()   );
+    assertEquals(      request.getTimeTolerance(),  decoded.getTimeTolerance()  );
+    assertArrayEquals( request.getTranPayload(),    decoded.getTranPayload()    );
+    assertEquals(      "test",                      decoded.getProps().getProperty( "source" ));
+    assertTrue( action.getRequestPayload().startsWith( "{" ));
+  }
+}
@@ -0,0 +1,176 @@
+package sdkwrapper.events;
+
+import java.lang.reflect.Constructor;
+
+import org.hyperledger.fabric.protos.common.Common;
+import org.hyperledger.fabric.protos.peer.FabricProposal;
+import org.hyperledger.fabric.protos.peer.FabricProposalResponse;
+import org.hyperledger.fabric.protos.peer.FabricTransaction;
+import org.hyperledger.fabric.protos.peer.PeerEvents;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.ChaincodeID;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.HFClient;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.TransactionProposalRequest;
+import org.hyperledger.fabric.sdk.transaction.ProposalBuilder;
+import org.hyperledger.fabric.sdk.transaction.TransactionContext;
+
+import com.google.protobuf.ByteString;
+
+import sdkwrapper.SdkFixture;
+import sdkwrapper.vo.config.OrgUserVO;
+
+/**
+ * Builds blocks holding a transaction built from the proposal the SDK creates for a request, as sent by
+ * FabricServices.requestTransaction. The SDK and its channel are only used offline.
+ *
+ * @author tim
+ *
+ */
+public class TestBlocks
+{
+  private final HFClient  client;
+  private final OrgUserVO user;
+  private final Channel   channel;
+
+  public TestBlocks( String channelId )
+    throws Exception
+  {
+    user    = SdkFixture.newUser( "user1" );
+    client  = SdkFixture.newClient( user );
+    channel = client.newChannel( channelId );
+  }
+
+  /**
+   * @param blockNumber
+   * @return a block of the number without transactions
+   */
+  static BlockInfo empty( long blockNumber )
+    throws Exception
+  {
+    return toBlockInfo( Common.Block.newBuilder().setHeader( Common.BlockHeader.newBuilder().setNumber( blockNumber )).build() );
+  }
+
+  /**
+   * @param blockNumber
+   * @param requestPayload - the argument after the function name
+   * @param validationCode - the commit validation code of the transaction
+   * @return a block holding a single transaction, with a new transaction id
+   */
+  BlockInfo block( long blockNumber, byte[] requestPayload, FabricTransaction.TxValidationCode validationCode )
+    throws Exception
+  {
+    TransactionProposalRequest proposalRequest = newProposalRequest();
+    proposalRequest.setArgBytes( new byte[][] { requestPayload } );
+
+    return block( blockNumber, proposalRequest, validationCode );
+  }
+
+  /**
+   * @param blockNumber
+   * @param args - the arguments after the function name, as sent by requestTransaction with a String[] payload
+   * @param validationCode - the commit validation code of the transaction
+   * @return a block holding a single transaction, with a new transaction id
+   */
+  BlockInfo block( long blockNumber, String[] args, FabricTransaction.TxValidationCode validationCode )
+    throws Exception
+  {
+    TransactionProposalRequest proposalRequest = newProposalRequest();
+    proposalRequest.setArgs( args );
+
+    return block( blockNumber, proposalRequest, validationCode );
+  }
+
+  private TransactionProposalRequest newProposalRequest()
+  {
+    TransactionProposalRequest proposalRequest = client.newTransactionProposalRequest();
+    proposalRequest.setChaincodeID( ChaincodeID.newBuilder().setName( "chaincode1" ).build() );
+    proposalRequest.setFcn(         "invoke" );
+    proposalRequest.setUserContext( user );
+
+    return proposalRequest;
+  }
+
+  /**
+   * @param blockNumber
+   * @param dataHash - the data hash of the block header
+   * @param peerName - the event source peer the block is received from
+   * @return a block event holding a single valid transaction, with a new transaction id
+   */
+  public BlockEvent event( long blockNumber, byte[] dataHash, String peerName )
+    throws Exception
+  {
+    Common.Block block = newBlock( blockNumber, newProposalRequest(), FabricTransaction.TxValidationCode.VALID ).toBuilder()
+                           .setHeader( Common.BlockHeader.newBuilder().setNumber( blockNumber ).setDataHash( ByteString.copyFrom( dataHash )))
+                           .build();
+
+    Constructor<BlockEvent> constructor = BlockEvent.class.getDeclaredConstructor( Peer.class, PeerEvents.DeliverResponse.class );
+    constructor.setAccessible( true );
+
+    return constructor.newInstance( client.newPeer( peerName, "grpc://localhost:7051" ), PeerEvents.DeliverResponse.newBuilder().setBlock( block ).build() );
+  }
+
+  private BlockInfo block( long blockNumber, TransactionProposalRequest proposalRequest, FabricTransaction.TxValidationCode validationCode )
+    throws Exception
+  {
+    return toBlockInfo( newBlock( blockNumber, proposalRequest, validationCode ));
+  }
+
+  private Common.Block newBlock( long blockNumber, TransactionProposalRequest proposalRequest, FabricTransaction.TxValidationCode validationCode )
+    throws Exception
+  {
+    TransactionContext      context  = new TransactionContext( channel, user, client.getCryptoSuite() );
+    FabricProposal.Proposal proposal = ProposalBuilder.newBuilder().context( context ).request( proposalRequest ).build();
+
+    FabricProposalResponse.Response response = FabricProposalResponse.Response.newBuilder()
+                                                 .setStatus( 200 )
+                                                 .setPayload( ByteString.copyFromUtf8( "{}" ))
+                                                 .build();
+
+    FabricProposalResponse.ProposalResponsePayload responsePayload = FabricProposalResponse.ProposalResponsePayload.newBuilder()
+                                                 .setExtension( FabricProposal.ChaincodeAction.newBuilder().setResponse( response ).build().toByteString() )
+                                                 .build();
+
+    FabricTransaction.ChaincodeActionPayload actionPayload = FabricTransaction.ChaincodeActionPayload.newBuilder()
+                                                 .setChaincodeProposalPayload( proposal.getPayload() )
+                                                 .setAction( FabricTransaction.ChaincodeEndorsedAction.newBuilder().setProposalResponsePayload( responsePayload.toByteString() ))
+                                                 .build();
+
+    Common.Header header = Common.Header.parseFrom( proposal.getHeader() );
+
+    FabricTransaction.Transaction transaction = FabricTransaction.Transaction.newBuilder()
+                                                 .addActions( FabricTransaction.TransactionAction.newBuilder()
+                                                                .setHeader(  header.getSignatureHeader() )
+                                                                .setPayload( actionPayload.toByteString() ))
+                                                 .build();
+
+    Common.Envelope envelope = Common.Envelope.newBuilder()
+                                 .setPayload( Common.Payload.newBuilder().setHeader( header ).setData( transaction.toByteString() ).build().toByteString() )
+                                 .build();
+
+    Common.BlockMetadata.Builder metadata = Common.BlockMetadata.newBuilder();
+    for( int i = 0; i < Common.BlockMetadataIndex.values().length - 1; i++ )
+      metadata.addMetadata( ByteString.EMPTY );
+    metadata.setMetadata( Common.BlockMetadataIndex.TRANSACTIONS_FILTER_VALUE, ByteString.copyFrom( new byte[] { (byte) validationCode.getNumber() } ));
+
+    return Common.Block.newBuilder()
+             .setHeader(   Common.BlockHeader.newBuilder().setNumber( blockNumber ))
+             .setData(     Common.BlockData.newBuilder().addData( envelope.toByteString() ))
+             .setMetadata( metadata )
+             .build();
+  }
+
+  /**
+   * The SDK only builds a BlockInfo or BlockEvent from a block within its own package.
+   */
+  private static BlockInfo toBlockInfo( Common.Block block )
+    throws Exception
+  {
+    Constructor<BlockInfo> constructor = BlockInfo.class.getDeclaredConstructor( Common.Block.class );
+    constructor.setAccessible( true );
+
+    return constructor.newInstance( block );
+  }
+}
@@ -0,0 +1,125 @@
+package sdkwrapper.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.hyperledger.fabric.protos.peer.FabricTransaction.TxValidationCode;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo;
+import org.hyperledger.fabric.sdk.exception.TransactionEventException;
+import org.junit.Before;
+import org.junit.Test;
+
+import sdkwrapper.events.BlockEventProcessorImpl.MaterializationMode;
+import sdkwrapper.vo.transaction.TransactionCommit;
+
+/**
+ * Transactions of blocks fetched by catch up, which have no TransactionEvent, complete their futures with a commit
+ * record, and only blocks of the channel a transaction was registered for complete it.
+ *
+ * @author tim
+ *
+ */
+public class TransactionCompletionRegistryTest
+{
+  private static final String CHANNEL = "channel1";
+
+  private TestBlocks                    blocks   = null;
+  private TransactionCompletionRegistry registry = null;
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    blocks   = new TestBlocks( CHANNEL );
+    registry = new TransactionCompletionRegistry();
+  }
+
+  @Test
+  public void catchUpBlockCompletesWithCommit()
+    throws Exception
+  {
+    BlockInfo block = blocks.block( 7, payload(), TxValidationCode.VALID );
+    String    txId  = txIdOf( block );
+
+    CompletableFuture<TransactionCommit> future = registry.register( CHANNEL, txId );
+    commit( CHANNEL, block );
+
+    TransactionCommit commit = future.getNow( null );
+    assertEquals( CHANNEL, commit.getChannelId() );
+    assertEquals( txId, commit.getTransactionID() );
+    assertEquals( 7, commit.getBlockNumber() );
+    assertEquals( TxValidationCode.VALID_VALUE, commit.getValidationCode() );
+    assertTrue( commit.isValid() );
+    assertNull( commit.getTransactionEvent() );
+
+    assertEquals( 0, registry.getPendingCount() );
+    assertEquals( 1, registry.getCompletedCount() );
+  }
+
+  @Test
+  public void invalidTransactionFails()
+    throws Exception
+  {
+    BlockInfo block = blocks.block( 8, payload(), TxValidationCode.MVCC_READ_CONFLICT );
+
+    CompletableFuture<TransactionCommit> future = registry.register( CHANNEL, txIdOf( block ));
+    commit( CHANNEL, block );
+
+    try
+    {
+      future.get();
+      fail( "Invalid transaction completed." );
+    }
+    catch( ExecutionException e )
+    {
+      assertTrue( e.getCause() instanceof TransactionEventException );
+    }
+
+    assertEquals( 1, registry.getFailedCount() );
+  }
+
+  @Test
+  public void blockOfAnotherChannelIsIgnored()
+    throws Exception
+  {
+    BlockInfo block = blocks.block( 9, payload(), TxValidationCode.VALID );
+
+    CompletableFuture<TransactionCommit> future = registry.register( CHANNEL, txIdOf( block ));
+    commit( "channel2", block );
+
+    assertFalse( future.isDone() );
+    assertEquals( 1, registry.getPendingCount() );
+
+    commit( CHANNEL, block );
+
+    assertEquals( 9, future.getNow( null ).getBlockNumber() );
+    assertEquals( 0, registry.getPendingCount() );
+  }
+
+  private void commit( String channelId, BlockInfo block )
+    throws Exception
+  {
+    registry.blockCommitted( channelId, block, new BlockEventProcessorImpl( null, null, MaterializationMode.EAGER ).decodeTransactions( block ));
+  }
+
+  private static String txIdOf( BlockInfo block )
+    throws Exception
+  {
+    List<? extends TransactionEnvelopeInfo> transactions = new BlockEventProcessorImpl( null, null, MaterializationMode.EAGER ).decodeTransactions( block );
+    return transactions.get( 0 ).getTransactionID();
+  }
+
+  private static byte[] payload()
+  {
+    return "{}".getBytes( StandardCharsets.UTF_8 );
+  }
+}
@@ -0,0 +1,174 @@
+package sdkwrapper.fabric.policy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.HFClient;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sdkwrapper.SdkFixture;
+import sdkwrapper.vo.config.OrgUserVO;
+
+/**
+ * One instance of each endorsement policy, as held by a chaincode, evaluated by many threads at once against different
+ * responses. Each evaluation sees only its own responses in its result.
+ *
+ * @author tim
+ *
+ */
+public class EndorsementPolicyConcurrencyTest
+{
+  private static final int THREADS    = 16;
+  private static final int ITERATIONS = 5000;
+
+  private final EndorsementPolicyIF quorum      = new QuorumEndorsementPolicy();
+  private final EndorsementPolicyIF stakeholder = new StakeholderEndorsementPolicy();
+  private final EndorsementPolicyIF signature   = SignatureEndorsementPolicy.compile( "AND('Org1MSP.member', 'Org2MSP.member')" );
+
+  private HFClient        client   = null;
+  private OrgUserVO       user     = null;
+  private Channel         channel  = null;
+  private ExecutorService executor = null;
+
+  private List<Case> cases = new ArrayList<Case>();
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    user    = SdkFixture.newUser( "user1" );
+    client  = SdkFixture.newClient( user );
+    channel = client.newChannel( "channel1" );
+
+    // Responses                                                                                                            quorum stakeholder signature
+    cases.add( new Case( Arrays.asList( response( "Org1MSP", 200 ), response( "Org2MSP", 200 )),                            true,  true,  true  ));
+    cases.add( new Case( Arrays.asList( response( "Org1MSP", 200 ), response( "Org2MSP", 500 )),                            false, false, false ));
+    cases.add( new Case( Arrays.asList( response( "Org1MSP", 200 ), response( "Org2MSP", 200 ), response( "Org3MSP", 500 )), true,  false, true  ));
+    cases.add( new Case( Arrays.asList( response( "Org1MSP", 200 ), response( "Org3MSP", 200 )),                            true,  true,  false ));
+    cases.add( new Case( Arrays.asList( response( "Org2MSP", 500 )),                                                        false, false, false ));
+
+    executor = Executors.newFixedThreadPool( THREADS );
+  }
+
+  @After
+  public void tearDown()
+  {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void sharedPoliciesEvaluateConcurrently()
+    throws Exception
+  {
+    final CountDownLatch start = new CountDownLatch( 1 );
+
+    List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+    for( int t = 0; t < THREADS; t++ )
+    {
+      results.add( executor.submit( new Callable<Integer>()
+      {
+        @Override
+        public Integer call()
+          throws Exception
+        {
+          start.await();
+
+          int checked = 0;
+          for( int i = 0; i < ITERATIONS; i++ )
+          {
+            Case c = cases.get( ThreadLocalRandom.current().nextInt( cases.size() ));
+
+            assertResult( c, quorum.evaluate( c.responses ),      c.quorumMet      );
+            assertResult( c, stakeholder.evaluate( c.responses ), c.stakeholderMet );
+            assertResult( c, signature.evaluate( c.responses ),   c.signatureMet   );
+            checked++;
+          }
+
+          return checked;
+        }
+      }));
+    }
+
+    start.countDown();
+
+    int checked = 0;
+    for( Future<Integer> result : results )
+      checked += result.get( 60, TimeUnit.SECONDS );
+
+    assertEquals( THREADS * ITERATIONS, checked );
+  }
+
+  @Test
+  public void resultIsImmutable()
+  {
+    EndorsementPolicyResult result = quorum.evaluate( cases.get( 0 ).responses );
+    try
+    {
+      result.getSuccessfulResponses().clear();
+      fail( "Result responses modified." );
+    }
+    catch( UnsupportedOperationException e )
+    {
+      assertEquals( 2, result.getSuccessfulResponses().size() );
+    }
+  }
+
+  private static void assertResult( Case c, EndorsementPolicyResult result, boolean met )
+  {
+    assertEquals( met, result.isPolicyMet() );
+    assertEquals( c.successful, new ArrayList<ProposalResponse>( result.getSuccessfulResponses() ));
+    assertEquals( c.failed,     new ArrayList<ProposalResponse>( result.getFailedResponses()     ));
+    assertTrue( met == ( result.getReason() == null ));
+  }
+
+  private ProposalResponse response( String mspId, int status )
+    throws Exception
+  {
+    return SdkFixture.newResponse( client, channel, mspId, status );
+  }
+
+
+  private static class Case
+  {
+    final Collection<ProposalResponse> responses;
+    final List<ProposalResponse>       successful = new ArrayList<ProposalResponse>();
+    final List<ProposalResponse>       failed     = new ArrayList<ProposalResponse>();
+    final boolean                      quorumMet;
+    final boolean                      stakeholderMet;
+    final boolean                      signatureMet;
+
+    Case( Collection<ProposalResponse> responses, boolean quorumMet, boolean stakeholderMet, boolean signatureMet )
+      throws Exception
+    {
+      this.responses      = responses;
+      this.quorumMet      = quorumMet;
+      this.stakeholderMet = stakeholderMet;
+      this.signatureMet   = signatureMet;
+
+      for( ProposalResponse response : responses )
+      {
+        if( response.getChaincodeActionResponseStatus() < 400 )
+          successful.add( response );
+        else
+          failed.add( response );
+      }
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package sdkwrapper.fabric.policy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.HFClient;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+import sdkwrapper.SdkFixture;
+
+/**
+ * Compilation of signature policy expressions, and their evaluation against the MSPs of successful responses both as a
+ * set of endorsed MSPs and, where an MSP is named more than once, as endorsements consumed per principal.
+ *
+ * @author tim
+ *
+ */
+public class SignatureEndorsementPolicyTest
+{
+  private HFClient client  = null;
+  private Channel  channel = null;
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    client  = SdkFixture.newClient( SdkFixture.newUser( "user1" ));
+    channel = client.newChannel( "channel1" );
+  }
+
+  @Test
+  public void invalidExpressionsAreRejected()
+  {
+    assertInvalid( null );
+    assertInvalid( "  " );
+    assertInvalid( "AND('Org1MSP.member'" );
+    assertInvalid( "AND('Org1MSP.member')  'Org2MSP.member'" );
+    assertInvalid( "NOT('Org1MSP.member')" );
+    assertInvalid( "AND('Org1MSP.member', 'Org2MSP.member" );
+    assertInvalid( "AND('Org1MSP')" );
+    assertInvalid( "AND('Org1MSP.')" );
+    assertInvalid( "AND('Org1MSP.orderer')" );
+    assertInvalid( "OutOf('Org1MSP.member')" );
+  }
+
+  @Test
+  public void outOfCountIsBounded()
+  {
+    assertInvalid( "OutOf(0, 'Org1MSP.member', 'Org2MSP.member')" );
+    assertInvalid( "OutOf(3, 'Org1MSP.member', 'Org2MSP.member')" );
+
+    SignatureEndorsementPolicy.compile( "OutOf(1, 'Org1MSP.member', 'Org2MSP.member')" );
+    SignatureEndorsementPolicy.compile( "OutOf(2, 'Org1MSP.member', 'Org2MSP.member')" );
+  }
+
+  @Test
+  public void tooManyMspsAreRejected()
+  {
+    StringBuilder expression = new StringBuilder( "OR(" );
+    for( int i = 0; i < 65; i++ )
+      expression.append( i == 0 ? "" : ", " ).append( "'Org" ).append( i ).append( "MSP.member'" );
+
+    assertInvalid( expression.append( ")" ).toString() );
+  }
+
+  @Test
+  public void outOfStopsOnceDecided()
+    throws Exception
+  {
+    SignatureEndorsementPolicy policy = SignatureEndorsementPolicy.compile( "OutOf(2, 'Org1MSP.member', 'Org2MSP.member', 'Org3MSP.member')" );
+
+    // Met by the first two children, or decided unmet once too few children remain.
+    assertMet(    policy, "Org1MSP", "Org2MSP" );
+    assertNotMet( policy, "Org3MSP" );
+    assertNotMet( policy, "Org1MSP" );
+
+    // Still decidable by the remaining children after a miss.
+    assertMet( policy, "Org2MSP", "Org3MSP" );
+    assertMet( policy, "Org1MSP", "Org3MSP" );
+  }
+
+  @Test
+  public void nestedGatesEvaluateAgainstEndorsedMsps()
+    throws Exception
+  {
+    SignatureEndorsementPolicy policy = SignatureEndorsementPolicy.compile( "AND('Org1MSP.peer', OR('Org2MSP.member', 'Org3MSP.member'))" );
+
+    assertMet(    policy, "Org1MSP", "Org3MSP" );
+    assertMet(    policy, "Org2MSP", "Org1MSP" );
+    assertNotMet( policy, "Org2MSP", "Org3MSP" );
+    assertNotMet( policy, "Org1MSP", "Org4MSP" );
+  }
+
+  @Test
+  public void failedResponsesDoNotEndorse()
+    throws Exception
+  {
+    SignatureEndorsementPolicy policy = SignatureEndorsementPolicy.compile( "AND('Org1MSP.member', 'Org2MSP.member')" );
+
+    List<ProposalResponse> responses = new ArrayList<ProposalResponse>();
+    responses.add( SdkFixture.newResponse( client, channel, "Org1MSP", 200 ));
+    responses.add( SdkFixture.newResponse( client, channel, "Org2MSP", 500 ));
+
+    EndorsementPolicyResult result = policy.evaluate( responses );
+    assertFalse( result.isPolicyMet() );
+    assertEquals( 1, result.getSuccessfulResponses().size() );
+    assertEquals( 1, result.getFailedResponses().size() );
+  }
+
+  @Test
+  public void repeatedMspNeedsAnEndorsementPerPrincipal()
+    throws Exception
+  {
+    SignatureEndorsementPolicy policy = SignatureEndorsementPolicy.compile( "AND('Org1MSP.peer', 'Org1MSP.member')" );
+
+    assertNotMet( policy, "Org1MSP" );
+    assertMet(    policy, "Org1MSP", "Org1MSP" );
+  }
+
+  @Test
+  public void unmetGateGivesBackConsumedEndorsements()
+    throws Exception
+  {
+    // The inner AND consumes the Org1MSP endorsement before failing on Org2MSP. It must be given back for the last
+    // principal to be satisfied.
+    SignatureEndorsementPolicy policy = SignatureEndorsementPolicy.compile( "AND(OR(AND('Org1MSP.member', 'Org2MSP.member'), 'Org3MSP.member'), 'Org1MSP.member')" );
+
+    assertMet(    policy, "Org1MSP", "Org3MSP" );
+    assertMet(    policy, "Org1MSP", "Org2MSP", "Org1MSP" );
+    assertNotMet( policy, "Org1MSP", "Org2MSP" );
+  }
+
+  @Test
+  public void satisfiedChildrenConsumeAsFabricDoes()
+    throws Exception
+  {
+    // Both children of the OR are evaluated and each keeps the endorsement it consumed, leaving none for the last
+    // principal, as the peer's validation would.
+    SignatureEndorsementPolicy policy = SignatureEndorsementPolicy.compile( "AND(OR('Org1MSP.member', 'Org2MSP.member'), 'Org2MSP.member')" );
+
+    assertNotMet( policy, "Org1MSP", "Org2MSP" );
+    assertMet(    policy, "Org1MSP", "Org2MSP", "Org2MSP" );
+
+    policy = SignatureEndorsementPolicy.compile( "AND(OR('Org1MSP.member', 'Org2MSP.member'), 'Org1MSP.member')" );
+
+    assertNotMet( policy, "Org1MSP", "Org2MSP" );
+    assertMet(    policy, "Org1MSP", "Org1MSP" );
+    assertMet(    policy, "Org1MSP", "Org2MSP", "Org1MSP" );
+  }
+
+  private void assertMet( SignatureEndorsementPolicy policy, String... mspIds )
+    throws Exception
+  {
+    EndorsementPolicyResult result = policy.evaluate( responses( mspIds ));
+    assertTrue( policy.getExpression() + " not met", result.isPolicyMet() );
+    assertNull( result.getReason() );
+  }
+
+  private void assertNotMet( SignatureEndorsementPolicy policy, String... mspIds )
+    throws Exception
+  {
+    EndorsementPolicyResult result = policy.evaluate( responses( mspIds ));
+    assertFalse( policy.getExpression() + " met", result.isPolicyMet() );
+    assertTrue( result.getReason().contains( policy.getExpression() ));
+  }
+
+  private List<ProposalResponse> responses( String... mspIds )
+    throws Exception
+  {
+    List<ProposalResponse> responses = new ArrayList<ProposalResponse>();
+    for( String mspId : mspIds )
+      responses.add( SdkFixture.newResponse( client, channel, mspId, 200 ));
+
+    return responses;
+  }
+
+  private static void assertInvalid( String expression )
+  {
+    try
+    {
+      SignatureEndorsementPolicy.compile( expression );
+      fail( "Compiled invalid expression " + expression );
+    }
+    catch( IllegalArgumentException e )
+    {
+      // Expected.
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package sdkwrapper.runtimemgr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sdkwrapper.exceptions.CommitTimeoutException;
+
+/**
+ * Timeouts expire in deadline order once their delay has passed, including those linked into a higher level and
+ * cascaded down, and cancelled timeouts never run. Tracked commits fail with a CommitTimeoutException only when they
+ * are not completed in time.
+ *
+ * @author tim
+ *
+ */
+public class TimingWheelServiceTest
+{
+  private static final long TICK_MS = 1;
+  private static final long WAIT_MS = 5000;
+
+  private TimingWheelService wheel = null;
+
+  @Before
+  public void setUp()
+  {
+    wheel = new TimingWheelService( TICK_MS );
+  }
+
+  @After
+  public void tearDown()
+  {
+    wheel.shutdown();
+  }
+
+  @Test
+  public void timeoutsExpireInDeadlineOrder()
+    throws Exception
+  {
+    // 20 ticks is within level 0. 150 and 300 ticks are linked into level 1 and cascaded down.
+    long[]               delays  = { 300, 20, 150 };
+    final List<Long>     expired = Collections.synchronizedList( new ArrayList<Long>() );
+    final CountDownLatch done    = new CountDownLatch( delays.length );
+    final long           start   = System.nanoTime();
+
+    for( final long delay : delays )
+    {
+      wheel.schedule( delay, () ->
+      {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+        assertTrue( "Timeout of " + delay + " ms expired after " + elapsed + " ms", elapsed >= delay - TICK_MS );
+
+        expired.add( delay );
+        done.countDown();
+      });
+    }
+
+    assertEquals( delays.length, wheel.getScheduledCount() );
+    assertTrue( done.await( WAIT_MS, TimeUnit.MILLISECONDS ));
+
+    assertEquals( 20L,  (long) expired.get( 0 ));
+    assertEquals( 150L, (long) expired.get( 1 ));
+    assertEquals( 300L, (long) expired.get( 2 ));
+    assertEquals( 0, wheel.getScheduledCount() );
+  }
+
+  @Test
+  public void cancelledTimeoutDoesNotRun()
+    throws Exception
+  {
+    final CountDownLatch ran   = new CountDownLatch( 1 );
+    final CountDownLatch after = new CountDownLatch( 1 );
+
+    TimingWheelService.Timeout cancelled = wheel.schedule( 100, ran::countDown );
+    wheel.schedule( 200, after::countDown );
+
+    assertTrue(  cancelled.cancel() );
+    assertFalse( cancelled.cancel() );
+    assertEquals( 1, wheel.getScheduledCount() );
+
+    assertTrue( after.await( WAIT_MS, TimeUnit.MILLISECONDS ));
+    assertEquals( 1, ran.getCount() );
+  }
+
+  @Test
+  public void expiredTimeoutCannotBeCancelled()
+    throws Exception
+  {
+    final CountDownLatch ran = new CountDownLatch( 1 );
+
+    TimingWheelService.Timeout timeout = wheel.schedule( 10, ran::countDown );
+    assertTrue( ran.await( WAIT_MS, TimeUnit.MILLISECONDS ));
+
+    assertFalse( timeout.cancel() );
+    assertEquals( 0, wheel.getScheduledCount() );
+  }
+
+  @Test
+  public void uncommittedTransactionTimesOut()
+    throws Exception
+  {
+    CompletableFuture<Object> future = new CompletableFuture<Object>();
+    wheel.trackCommit( "channel1", "tx1", future, 50 );
+
+    assertEquals( 1, wheel.getPendingCount( "channel1" ));
+
+    try
+    {
+      future.get( WAIT_MS, TimeUnit.MILLISECONDS );
+      fail( "Uncommitted transaction completed." );
+    }
+    catch( ExecutionException e )
+    {
+      CommitTimeoutException timeout = (CommitTimeoutException) e.getCause();
+      assertEquals( "channel1", timeout.getChannelId() );
+      assertEquals( "tx1",      timeout.getTxId()      );
+    }
+
+    assertEquals( 0, wheel.getPendingCount( "channel1" ));
+    assertEquals( 1, wheel.getExpiredCount( "channel1" ));
+    assertEquals( 0, wheel.getScheduledCount() );
+  }
+
+  @Test
+  public void committedTransactionCancelsItsTimeout()
+    throws Exception
+  {
+    CompletableFuture<Object> future = new CompletableFuture<Object>();
+    wheel.trackCommit( "channel1", "tx1", future, 50 );
+
+    assertEquals( 1, wheel.getScheduledCount() );
+    future.complete( "committed" );
+
+    assertEquals( 0, wheel.getScheduledCount() );
+    assertEquals( 0, wheel.getPendingCount( "channel1" ));
+
+    Thread.sleep( 100 );
+    assertEquals( "committed", future.get() );
+    assertEquals( 0, wheel.getExpiredCount( "channel1" ));
+  }
+}
@@ -0,0 +1,300 @@
+package sdkwrapper.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import sdkwrapper.exceptions.FabricRequestException;
+import sdkwrapper.service.AsyncTransactionSubmitter.Backpressure;
+import sdkwrapper.vo.transaction.TransactionCommit;
+
+/**
+ * The submission window of a channel under each backpressure mode, and the return of window permits as transactions
+ * complete, fail and are rejected after shutdown.
+ *
+ * FabricServices.sendTransaction is stubbed to hand each transaction to the test, which completes or fails it.
+ *
+ * @author tim
+ *
+ */
+public class AsyncTransactionSubmitterTest
+{
+  private static final String CHANNEL = "channel1";
+  private static final long   WAIT_MS = 5000;
+
+  private StubServices              services  = null;
+  private AsyncTransactionSubmitter submitter = null;
+
+  @After
+  public void tearDown()
+  {
+    if( submitter != null )
+      submitter.shutdown();
+  }
+
+  @Test
+  public void fullWindowIsRejected()
+    throws Exception
+  {
+    start( 2, Backpressure.REJECT, 0 );
+
+    CompletableFuture<TransactionCommit> first  = submit( "t1" );
+    CompletableFuture<TransactionCommit> second = submit( "t2" );
+    Sent sent1 = services.next();
+    services.next();
+
+    assertTrue( awaitFailure( submit( "t3" )) instanceof FabricRequestException );
+    assertEquals( 2, submitter.getInFlight( CHANNEL ));
+
+    // Completing a transaction frees its slot for the next one.
+    sent1.commit.complete( null );
+    assertNull( first.get( WAIT_MS, TimeUnit.MILLISECONDS ));
+    awaitInFlight( 1 );
+
+    submit( "t4" );
+    assertEquals( "t4", services.next().name );
+    assertFalse( second.isDone() );
+  }
+
+  @Test
+  public void queueOverflowIsRejected()
+    throws Exception
+  {
+    start( 1, Backpressure.QUEUE, 2 );
+
+    submit( "t1" );
+    services.next();
+
+    CompletableFuture<TransactionCommit> second = submit( "t2" );
+    CompletableFuture<TransactionCommit> third  = submit( "t3" );
+    assertEquals( 2, submitter.getQueued( CHANNEL ));
+
+    assertTrue( awaitFailure( submit( "t4" )) instanceof FabricRequestException );
+    assertEquals( 2, submitter.getQueued( CHANNEL ));
+    assertEquals( 1, submitter.getInFlight( CHANNEL ));
+
+    assertFalse( second.isDone() );
+    assertFalse( third.isDone() );
+    services.assertNothingSent();
+  }
+
+  @Test
+  public void queuedRequestsDrainOnCompletion()
+    throws Exception
+  {
+    start( 1, Backpressure.QUEUE, 2 );
+
+    CompletableFuture<TransactionCommit> first  = submit( "t1" );
+    CompletableFuture<TransactionCommit> second = submit( "t2" );
+    CompletableFuture<TransactionCommit> third  = submit( "t3" );
+
+    Sent sent = services.next();
+    assertEquals( "t1", sent.name );
+    services.assertNothingSent();
+
+    // Each completion submits the next queued request, in the order queued.
+    sent.commit.complete( null );
+    assertNull( first.get( WAIT_MS, TimeUnit.MILLISECONDS ));
+
+    sent = services.next();
+    assertEquals( "t2", sent.name );
+    assertEquals( 1, submitter.getQueued( CHANNEL ));
+
+    sent.commit.complete( null );
+    assertNull( second.get( WAIT_MS, TimeUnit.MILLISECONDS ));
+
+    sent = services.next();
+    assertEquals( "t3", sent.name );
+    assertEquals( 0, submitter.getQueued( CHANNEL ));
+
+    sent.commit.complete( null );
+    assertNull( third.get( WAIT_MS, TimeUnit.MILLISECONDS ));
+    awaitInFlight( 0 );
+  }
+
+  @Test
+  public void queuedRequestsDrainOnFailure()
+    throws Exception
+  {
+    start( 1, Backpressure.QUEUE, 2 );
+
+    // The first transaction fails at the orderer, the second while endorsing.
+    services.failing.add( "t2" );
+
+    CompletableFuture<TransactionCommit> first  = submit( "t1" );
+    CompletableFuture<TransactionCommit> second = submit( "t2" );
+    CompletableFuture<TransactionCommit> third  = submit( "t3" );
+
+    Sent sent = services.next();
+    FabricRequestException ordering = new FabricRequestException( "Ordering of t1 failed." );
+    sent.commit.completeExceptionally( ordering );
+
+    assertSame( ordering, awaitFailure( first ));
+    assertTrue( awaitFailure( second ) instanceof FabricRequestException );
+
+    sent = services.next();
+    assertEquals( "t3", sent.name );
+
+    sent.commit.complete( null );
+    assertNull( third.get( WAIT_MS, TimeUnit.MILLISECONDS ));
+    awaitInFlight( 0 );
+    assertEquals( 0, submitter.getQueued( CHANNEL ));
+  }
+
+  @Test
+  public void fullWindowBlocksTheCaller()
+    throws Exception
+  {
+    start( 1, Backpressure.BLOCK, 0 );
+
+    submit( "t1" );
+    Sent sent = services.next();
+
+    CompletableFuture<CompletableFuture<TransactionCommit>> blocked = CompletableFuture.supplyAsync( () -> submit( "t2" ));
+    services.assertNothingSent();
+    assertFalse( blocked.isDone() );
+
+    sent.commit.complete( null );
+    assertEquals( "t2", services.next().name );
+    blocked.get( WAIT_MS, TimeUnit.MILLISECONDS );
+  }
+
+  @Test
+  public void shutdownReleasesPermits()
+    throws Exception
+  {
+    start( 1, Backpressure.QUEUE, 2 );
+
+    CompletableFuture<TransactionCommit> first  = submit( "t1" );
+    CompletableFuture<TransactionCommit> second = submit( "t2" );
+    CompletableFuture<TransactionCommit> third  = submit( "t3" );
+    Sent sent = services.next();
+
+    submitter.shutdown();
+
+    // The transaction in flight still completes. The queued ones are rejected as they are drained, each giving back
+    // the permit it took.
+    sent.commit.complete( null );
+    assertNull( first.get( WAIT_MS, TimeUnit.MILLISECONDS ));
+    assertTrue( awaitFailure( second ) instanceof FabricRequestException );
+    assertTrue( awaitFailure( third )  instanceof FabricRequestException );
+
+    awaitInFlight( 0 );
+    assertEquals( 0, submitter.getQueued( CHANNEL ));
+
+    assertTrue( awaitFailure( submit( "t4" )) instanceof FabricRequestException );
+    assertEquals( 0, submitter.getInFlight( CHANNEL ));
+    services.assertNothingSent();
+  }
+
+  private void start( int windowSize, Backpressure backpressure, int queueSize )
+  {
+    services  = new StubServices();
+    submitter = new AsyncTransactionSubmitter( services, windowSize, backpressure, queueSize, 2 );
+  }
+
+  private CompletableFuture<TransactionCommit> submit( String name )
+  {
+    return submitter.submit( CHANNEL, "user1", new String[] { name }, "invoke" );
+  }
+
+  private void awaitInFlight( int expected )
+    throws InterruptedException
+  {
+    long deadline = System.currentTimeMillis() + WAIT_MS;
+    while( submitter.getInFlight( CHANNEL ) != expected && System.currentTimeMillis() < deadline )
+      Thread.sleep( 10 );
+
+    assertEquals( expected, submitter.getInFlight( CHANNEL ));
+  }
+
+  private static Throwable awaitFailure( CompletableFuture<TransactionCommit> result )
+    throws Exception
+  {
+    try
+    {
+      result.get( WAIT_MS, TimeUnit.MILLISECONDS );
+    }
+    catch( ExecutionException e )
+    {
+      return e.getCause();
+    }
+
+    fail( "Transaction did not fail." );
+    return null;
+  }
+
+
+  /**
+   * A transaction handed to the stub, named by the first argument of its payload.
+   */
+  private static class Sent
+  {
+    final String                               name;
+    final CompletableFuture<TransactionCommit> commit = new CompletableFuture<TransactionCommit>();
+
+    Sent( String name )
+    {
+      this.name = name;
+    }
+  }
+
+  /**
+   * Hands each transaction to the test in place of endorsing and ordering it. A failing transaction fails while
+   * endorsing.
+   */
+  private static class StubServices extends FabricServices
+  {
+    final BlockingQueue<Sent> sent    = new LinkedBlockingQueue<Sent>();
+    final Set<String>         failing = ConcurrentHashMap.newKeySet();
+
+    StubServices()
+    {
+      super( null );
+    }
+
+    @Override
+    CompletableFuture<TransactionCommit> sendTransaction( String channelId, String userId, String[] payload, String methodName )
+      throws FabricRequestException
+    {
+      if( failing.contains( payload[0] ))
+        throw new FabricRequestException( "Endorsement of " + payload[0] + " failed." );
+
+      Sent transaction = new Sent( payload[0] );
+      sent.add( transaction );
+      return transaction.commit;
+    }
+
+    Sent next()
+      throws InterruptedException
+    {
+      Sent transaction = sent.poll( WAIT_MS, TimeUnit.MILLISECONDS );
+      if( transaction == null )
+        fail( "No transaction sent." );
+
+      return transaction;
+    }
+
+    void assertNothingSent()
+      throws InterruptedException
+    {
+      Sent transaction = sent.poll( 100, TimeUnit.MILLISECONDS );
+      if( transaction != null )
+        fail( "Transaction " + transaction.name + " sent." );
+    }
+  }
+}
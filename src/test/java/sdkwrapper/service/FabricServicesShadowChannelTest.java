@@ -0,0 +1,338 @@
+package sdkwrapper.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.HFClient;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+import org.hyperledger.fabric.sdk.QueryByChaincodeRequest;
+import org.hyperledger.fabric.sdk.RecordingChannel;
+import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sdkwrapper.SdkFixture;
+import sdkwrapper.block.event.BlockEventsPlayerIF;
+import sdkwrapper.exceptions.FabricRequestException;
+import sdkwrapper.exceptions.InfrastructureException;
+import sdkwrapper.runtimemgr.RuntimeMgrIF;
+import sdkwrapper.vo.config.OrgUserVO;
+import sdkwrapper.vo.config.PeerVO;
+
+/**
+ * A refreshed channel is created on a client of its own, as the SDK client already holds the channel being replaced, and
+ * is swapped in once its listener is registered. The replaced channel is closed once its leases are released, including
+ * those of queries in flight on it.
+ *
+ * Discovery is stubbed, so the channels are offline channels of the SDK.
+ *
+ * @author tim
+ *
+ */
+public class FabricServicesShadowChannelTest
+{
+  private static final String CHANNEL   = "channel1";
+  private static final String CHAINCODE = "chaincode1";
+  private static final long   WAIT_MS   = 5000;
+
+  private HFClient          client   = null;
+  private OrgUserVO         admin    = null;
+  private StubServices      services = null;
+  private Channel           current  = null;
+  private StubListener      listener = null;
+  private StubQueryExecutor queries  = null;
+  private ExecutorService   executor = null;
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    admin    = SdkFixture.newUser( "admin" );
+    client   = SdkFixture.newClient( admin );
+    services = new StubServices( client );
+
+    PeerVO peer = new PeerVO();
+    peer.setPeerId( "peer0" );
+    services.getDiscoveryPeers().add( peer );
+
+    // The channels discover the chaincode the queries are sent to.
+    current  = new RecordingChannel( CHANNEL, client, SdkFixture.MSP_ID, CHAINCODE );
+    listener = new StubListener();
+    services.registerChannel( CHANNEL, current );
+    services.getListeners().put( CHANNEL, listener );
+    services.getUsers().put( admin.getName(), admin );
+
+    queries  = new StubQueryExecutor( SdkFixture.newResponse( client, current, SdkFixture.MSP_ID, 200 ));
+    executor = Executors.newSingleThreadExecutor();
+    services.setQueryExecutor( queries );
+  }
+
+  @After
+  public void tearDown()
+  {
+    queries.proceed.countDown();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shadowChannelIsCreatedAlongsideCurrentChannel()
+    throws Exception
+  {
+    // The current channel is created on the SDK client, as initialize does.
+    client.newChannel( CHANNEL );
+    try
+    {
+      client.newChannel( CHANNEL );
+      fail( "SDK client created a second channel of the same name." );
+    }
+    catch( InvalidArgumentException e )
+    {
+      // Expected. The current channel is still registered with the client.
+    }
+
+    HFClient shadowClient = services.newChannelClient();
+    assertSame( client.getCryptoSuite(), shadowClient.getCryptoSuite() );
+    assertSame( admin, shadowClient.getUserContext() );
+    assertNotSame( current, shadowClient.newChannel( CHANNEL ));
+  }
+
+  @Test
+  public void refreshSwapsRouteAndDrainsReplacedChannel()
+    throws Exception
+  {
+    services.setDrainTime( WAIT_MS * 4 );
+
+    ChannelRoutingTable       oldRoute = services.getRoutingTable( CHANNEL );
+    ChannelRoutingTable.Lease lease    = oldRoute.acquire();
+
+    ChannelRoutingTable newRoute = services.refreshChannel( CHANNEL ).get( WAIT_MS, TimeUnit.MILLISECONDS );
+
+    // Swapped in, with the listener of the shadow channel replacing the current listener.
+    assertNotSame( oldRoute, newRoute );
+    assertSame( newRoute, services.getRoutingTable( CHANNEL ));
+    assertSame( newRoute.getChannel(), services.getChannels().get( CHANNEL ));
+    assertSame( services.shadowListener, services.getListeners().get( CHANNEL ));
+    assertTrue( listener.shutdown );
+
+    // The replaced channel stays open while a request holds a lease on it.
+    Thread.sleep( FabricServices.DRAIN_POLL_MS * 3 );
+    assertFalse( current.isShutdown() );
+
+    lease.release();
+    assertTrue( "Replaced channel not closed after its lease was released.", awaitShutdown( current ));
+    assertFalse( newRoute.getChannel().isShutdown() );
+  }
+
+  @Test
+  public void inFlightQueryHoldsReplacedChannel()
+    throws Exception
+  {
+    services.setDrainTime( WAIT_MS * 4 );
+
+    ChannelRoutingTable oldRoute = services.getRoutingTable( CHANNEL );
+    Future<String>      query    = startQuery();
+
+    ChannelRoutingTable newRoute = services.refreshChannel( CHANNEL ).get( WAIT_MS, TimeUnit.MILLISECONDS );
+
+    // The replaced channel stays open while the query is sent on it.
+    Thread.sleep( FabricServices.DRAIN_POLL_MS * 3 );
+    assertFalse( current.isShutdown() );
+    assertEquals( 1, oldRoute.getInFlight() );
+
+    queries.proceed.countDown();
+    query.get( WAIT_MS, TimeUnit.MILLISECONDS );
+
+    assertTrue( "Replaced channel not closed after the query completed.", awaitShutdown( current ));
+    assertEquals( Arrays.asList( current ), queries.channels );
+    assertEquals( 0, oldRoute.getInFlight() );
+    assertEquals( 0, newRoute.getInFlight() );
+  }
+
+  @Test
+  public void queryOnClosedChannelIsRetriedOnCurrentChannel()
+    throws Exception
+  {
+    // No drain time, so the replaced channel is closed under the query in flight on it.
+    services.setDrainTime( 0 );
+
+    ChannelRoutingTable oldRoute = services.getRoutingTable( CHANNEL );
+    Future<String>      query    = startQuery();
+
+    ChannelRoutingTable newRoute = services.refreshChannel( CHANNEL ).get( WAIT_MS, TimeUnit.MILLISECONDS );
+    assertTrue( "Replaced channel not closed at the end of the drain time.", awaitShutdown( current ));
+
+    queries.proceed.countDown();
+    query.get( WAIT_MS, TimeUnit.MILLISECONDS );
+
+    assertEquals( Arrays.asList( current, newRoute.getChannel() ), queries.channels );
+    assertEquals( 0, oldRoute.getInFlight() );
+    assertEquals( 0, newRoute.getInFlight() );
+  }
+
+  @Test
+  public void failedRefreshKeepsCurrentChannel()
+    throws Exception
+  {
+    ChannelRoutingTable oldRoute = services.getRoutingTable( CHANNEL );
+    services.fail = true;
+
+    CompletableFuture<ChannelRoutingTable> refresh = services.refreshChannel( CHANNEL );
+    try
+    {
+      refresh.get( WAIT_MS, TimeUnit.MILLISECONDS );
+      fail( "Refresh completed without a discovery peer." );
+    }
+    catch( ExecutionException e )
+    {
+      assertTrue( e.getCause() instanceof InfrastructureException );
+    }
+
+    assertSame( oldRoute, services.getRoutingTable( CHANNEL ));
+    assertSame( listener, services.getListeners().get( CHANNEL ));
+    assertFalse( listener.shutdown );
+    assertFalse( current.isShutdown() );
+
+    // The next refresh unregisters the listener of the current channel.
+    services.fail = false;
+    services.refreshChannel( CHANNEL ).get( WAIT_MS, TimeUnit.MILLISECONDS );
+    assertTrue( listener.shutdown );
+  }
+
+  /**
+   * Start a query and wait for it to be sent on the current channel, where it is held until the executor proceeds.
+   */
+  private Future<String> startQuery()
+    throws InterruptedException
+  {
+    Future<String> query = executor.submit( () -> services.query( CHANNEL, admin.getName(), new String[] { "key1" }, "query" ));
+    assertTrue( "Query not sent.", queries.sent.await( WAIT_MS, TimeUnit.MILLISECONDS ));
+
+    return query;
+  }
+
+  private static boolean awaitShutdown( Channel channel )
+    throws InterruptedException
+  {
+    long deadline = System.currentTimeMillis() + WAIT_MS;
+    while( !channel.isShutdown() && System.currentTimeMillis() < deadline )
+      Thread.sleep( 10 );
+
+    return channel.isShutdown();
+  }
+
+
+  /**
+   * Services whose shadow channels are offline channels on a client of their own, in place of discovered channels.
+   */
+  private static class StubServices extends FabricServices
+  {
+    volatile boolean      fail           = false;
+    volatile StubListener shadowListener = null;
+
+    StubServices( HFClient client )
+    {
+      super( (RuntimeMgrIF) null, client );
+    }
+
+    @Override
+    ShadowChannel openShadowChannel( String channelId, PeerVO discoveryPeer )
+      throws InfrastructureException
+    {
+      if( fail )
+        throw new InfrastructureException( "Discovery failed from peer " + discoveryPeer.getPeerId() );
+
+      try
+      {
+        shadowListener = new StubListener();
+        return new ShadowChannel( new RecordingChannel( channelId, newChannelClient(), SdkFixture.MSP_ID, CHAINCODE ), shadowListener );
+      }
+      catch( InvalidArgumentException e )
+      {
+        throw new InfrastructureException( e.getMessage() );
+      }
+    }
+  }
+
+
+  /**
+   * Holds the first query until released, and fails a query whose channel has been closed, as the SDK does.
+   */
+  private static class StubQueryExecutor extends HedgedQueryExecutor
+  {
+    final CountDownLatch sent     = new CountDownLatch( 1 );
+    final CountDownLatch proceed  = new CountDownLatch( 1 );
+    final List<Channel>  channels = new CopyOnWriteArrayList<Channel>();
+
+    private final ProposalResponse response;
+
+    StubQueryExecutor( ProposalResponse response )
+    {
+      super( QueryMode.PARALLEL, 0, 1 );
+      this.response = response;
+    }
+
+    @Override
+    public ProposalResponse execute( Channel channel, Callable<QueryByChaincodeRequest> requests, List<Peer> queryPeers )
+      throws FabricRequestException
+    {
+      channels.add( channel );
+      try
+      {
+        requests.call();
+
+        sent.countDown();
+        proceed.await( WAIT_MS, TimeUnit.MILLISECONDS );
+      }
+      catch( Exception e )
+      {
+        throw new FabricRequestException( e.getMessage() );
+      }
+
+      if( channel.isShutdown() )
+        throw new FabricRequestException( "Channel " + channel.getName() + " has been shutdown." );
+
+      return response;
+    }
+  }
+
+  private static class StubListener implements BlockEventsPlayerIF
+  {
+    volatile boolean shutdown = false;
+
+    @Override
+    public void initializeEventing( RuntimeMgrIF runtimeMgr, Channel channel, Peer peer )
+    {
+    }
+
+    @Override
+    public void shutdown()
+    {
+      shutdown = true;
+    }
+
+    @Override
+    public long getCurrentSeqNumber()
+    {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,275 @@
+package sdkwrapper.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.HFClient;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.RecordingChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import sdkwrapper.SdkFixture;
+import sdkwrapper.block.store.BlockEventSeqStoreIF;
+import sdkwrapper.config.ConfigProperties;
+import sdkwrapper.error.ErrorCommandIF;
+import sdkwrapper.error.ErrorController;
+import sdkwrapper.exceptions.FabricRequestException;
+import sdkwrapper.events.BlockEventProcessorIF;
+import sdkwrapper.events.TransactionCompletionRegistry;
+import sdkwrapper.fabric.policy.SignatureEndorsementPolicy;
+import sdkwrapper.runtimemgr.RuntimeMgrIF;
+import sdkwrapper.runtimemgr.TimingWheelService;
+import sdkwrapper.vo.config.ChainCodeInfo;
+import sdkwrapper.vo.config.ChainCodeVO;
+import sdkwrapper.vo.config.OrgUserVO;
+
+/**
+ * Queries and transactions of many users sent concurrently are each sent as their own user, to the query peer, to the
+ * endorsers and to the orderer, and the shared HFClient user context is never changed by a request.
+ *
+ * The channel records the user of each request it is sent in place of sending it.
+ *
+ * @author tim
+ *
+ */
+public class FabricServicesUserContextTest
+{
+  private static final String CHANNEL    = "channel1";
+  private static final String CHAINCODE  = "chaincode1";
+  private static final int    USERS      = 8;
+  private static final int    THREADS    = 16;
+  private static final int    ITERATIONS = 2000;
+
+  private HFClient         client   = null;
+  private OrgUserVO        admin    = null;
+  private FabricServices   services = null;
+  private RecordingChannel channel  = null;
+  private ExecutorService  executor = null;
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    PrivateKey key = SdkFixture.newKey();
+
+    admin  = SdkFixture.newUser( "admin", key );
+    client = SdkFixture.newClient( admin );
+
+    services = new FabricServices( new StubRuntimeMgr(), client );
+    services.getUsers().put( admin.getName(), admin );
+    for( int i = 0; i < USERS; i++ )
+    {
+      OrgUserVO user = SdkFixture.newUser( "user" + i, key );
+      services.getUsers().put( user.getName(), user );
+    }
+
+    ChainCodeVO chainCode = new ChainCodeVO();
+    chainCode.setChainCodeName( CHAINCODE );
+    services.getChainCodes().put( CHAINCODE, new ChainCodeInfo( chainCode, SignatureEndorsementPolicy.compile( "'" + SdkFixture.MSP_ID + ".member'" )));
+
+    // The org peer is the channel's query peer.
+    Peer peer = client.newPeer( "peer0", "grpc://localhost:7051" );
+    channel = new RecordingChannel( CHANNEL, client, SdkFixture.MSP_ID, CHAINCODE );
+    channel.addPeer( peer );
+    services.getOrgPeers().add( peer );
+    services.registerChannel( CHANNEL, channel );
+
+    executor = Executors.newFixedThreadPool( THREADS );
+  }
+
+  @After
+  public void tearDown()
+  {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void requestsAreSentAsTheirOwnUser()
+    throws Exception
+  {
+    final CountDownLatch start        = new CountDownLatch( 1 );
+    final AtomicInteger  queries      = new AtomicInteger();
+    final AtomicInteger  transactions = new AtomicInteger();
+
+    List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+    for( int t = 0; t < THREADS; t++ )
+    {
+      results.add( executor.submit( new Callable<Integer>()
+      {
+        @Override
+        public Integer call()
+          throws Exception
+        {
+          start.await();
+
+          int sent = 0;
+          for( int i = 0; i < ITERATIONS; i++ )
+          {
+            // The first argument names the user each request is sent as.
+            String   userId = "user" + ThreadLocalRandom.current().nextInt( USERS );
+            String[] args   = new String[] { userId, Integer.toString( i ) };
+
+            if( ThreadLocalRandom.current().nextBoolean() )
+            {
+              services.query( CHANNEL, userId, args, "query" );
+              queries.incrementAndGet();
+            }
+            else
+            {
+              assertNotNull( services.sendTransaction( CHANNEL, userId, args, "invoke" ));
+              transactions.incrementAndGet();
+            }
+
+            assertSame( "Shared client user context changed", admin, client.getUserContext() );
+            sent++;
+          }
+
+          return sent;
+        }
+      }));
+    }
+
+    start.countDown();
+
+    int sent = 0;
+    for( Future<Integer> result : results )
+      sent += result.get( 60, TimeUnit.SECONDS );
+
+    assertEquals( THREADS * ITERATIONS, sent );
+    assertSame( admin, client.getUserContext() );
+
+    int[] counts = new int[RecordingChannel.Kind.values().length];
+    for( RecordingChannel.Sent request : channel.getSent() )
+    {
+      String userId = request.getArgs().get( 0 );
+      assertSame( request.getKind() + " of " + userId + " sent as " + request.getUser().getName(), services.getUser( userId ), request.getUser() );
+      counts[request.getKind().ordinal()]++;
+    }
+
+    assertEquals( queries.get(),      counts[RecordingChannel.Kind.QUERY.ordinal()]    );
+    assertEquals( transactions.get(), counts[RecordingChannel.Kind.PROPOSAL.ordinal()] );
+    assertEquals( transactions.get(), counts[RecordingChannel.Kind.ORDERER.ordinal()]  );
+  }
+
+  @Test
+  public void channelWithoutChaincodeIsRejected()
+    throws Exception
+  {
+    services.registerChannel( "channel2", client.newChannel( "channel2" ));
+    String[] args = new String[] { "user0" };
+
+    try
+    {
+      services.query( "channel2", "user0", args, "query" );
+      fail( "Query sent on a channel without a chaincode." );
+    }
+    catch( FabricRequestException e )
+    {
+      // Expected.
+    }
+
+    try
+    {
+      services.sendTransaction( "channel2", "user0", args, "invoke" );
+      fail( "Transaction sent on a channel without a chaincode." );
+    }
+    catch( FabricRequestException e )
+    {
+      // Expected.
+    }
+
+    assertTrue( channel.getSent().isEmpty() );
+  }
+
+  @Test
+  public void transactionEventIsCompletedThroughTheRegistry()
+    throws Exception
+  {
+    TransactionCompletionRegistry registry = new TransactionCompletionRegistry();
+    services.setCompletionRegistry( registry );
+
+    CompletableFuture<BlockEvent.TransactionEvent> event = services.requestTransaction( CHANNEL, "user0", new String[] { "user0" }, "invoke" );
+
+    assertFalse( event.isDone() );
+    assertEquals( 1, registry.getRegisteredCount() );
+    assertEquals( 1, registry.getPendingCount() );
+    assertEquals( RecordingChannel.Kind.ORDERER, channel.getSent().get( channel.getSent().size() - 1 ).getKind() );
+  }
+
+  @Test
+  public void interruptedEndorsementIsNotRetried()
+    throws Exception
+  {
+    EndorsementCollector collector = new EndorsementCollector( 1000, 1, 2 );
+    services.setEndorsementCollector( collector );
+
+    Thread.currentThread().interrupt();
+    try
+    {
+      services.sendTransaction( CHANNEL, "user0", new String[] { "user0" }, "invoke" );
+      fail( "Interrupted transaction sent." );
+    }
+    catch( FabricRequestException e )
+    {
+      // The channel is not refreshed and the proposal not retried.
+      assertTrue( e.getMessage(), e.getMessage().startsWith( "Endorsement interrupted" ));
+    }
+    finally
+    {
+      assertTrue( Thread.interrupted() );
+      collector.shutdown();
+    }
+  }
+
+  @Test
+  public void unknownUserIsNotResolved()
+  {
+    assertNull( services.getUser( "unknown" ));
+    assertNull( services.getUser( null ));
+  }
+
+
+  /**
+   * A runtime without a timing wheel, so commits are not tracked.
+   */
+  private static class StubRuntimeMgr implements RuntimeMgrIF
+  {
+    @Override public ErrorController       getErrorController()      { return null; }
+    @Override public FabricServices        getFabricServices()       { return null; }
+    @Override public BlockEventSeqStoreIF  getBlockSeqStore()        { return null; }
+    @Override public BlockEventProcessorIF getBlockEventProcessor()  { return null; }
+    @Override public ConfigProperties      getConfig()               { return null; }
+    @Override public TimingWheelService    getTimingWheel()          { return null; }
+
+    @Override
+    public void initialize( String appPropsPath, String sdkConfigPath )
+    {
+    }
+
+    @Override
+    public void runErrorCmd( ErrorCommandIF cmd )
+    {
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package sdkwrapper.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+
+import org.hyperledger.fabric.protos.ledger.rwset.Rwset.CollectionHashedReadWriteSet;
+import org.hyperledger.fabric.protos.ledger.rwset.Rwset.NsReadWriteSet;
+import org.hyperledger.fabric.protos.ledger.rwset.Rwset.TxReadWriteSet;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset.KVRWSet;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset.KVRead;
+import org.junit.Before;
+import org.junit.Test;
+
+import sdkwrapper.events.TestBlocks;
+import sdkwrapper.service.QueryResultCache.InvalidationMode;
+
+/**
+ * Entries of a query result cache are invalidated by the blocks of their own channel only, a read set with private reads
+ * is treated as unknown, and the result of a peer other than the one delivering block events is not cached.
+ *
+ * @author tim
+ *
+ */
+public class QueryResultCacheTest
+{
+  private static final String CHANNEL   = "channel1";
+  private static final String CHAINCODE = "chaincode1";
+  private static final byte[] HASH      = new byte[] { 1, 2, 3 };
+
+  private TestBlocks blocks = null;
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    blocks = new TestBlocks( CHANNEL );
+  }
+
+  @Test
+  public void privateReadIsInvalidatedByAnyBlock()
+    throws Exception
+  {
+    QueryResultCache cache = new QueryResultCache( 10, 60000, InvalidationMode.FINE );
+
+    String publicKey  = put( cache, CHANNEL, "a", "peer0", readSet( "a", false ));
+    String privateKey = put( cache, CHANNEL, "b", "peer0", readSet( "b", true  ));
+
+    // The block writes nothing, so only the entry whose reads are unknown is invalidated.
+    cache.blockCommitted( CHANNEL, blocks.event( 5, HASH, "peer0" ), Collections.emptyList() );
+
+    assertEquals( "a", cache.get( publicKey ));
+    assertNull( cache.get( privateKey ));
+    assertEquals( 1, cache.getInvalidations() );
+  }
+
+  @Test
+  public void resultOfALaggingPeerIsNotCached()
+    throws Exception
+  {
+    QueryResultCache cache = new QueryResultCache( 10, 60000, InvalidationMode.COARSE );
+    cache.blockCommitted( CHANNEL, blocks.event( 5, HASH, "peer0" ), Collections.emptyList() );
+
+    String lagging = put( cache, CHANNEL, "a", "peer1", null );
+    String current = put( cache, CHANNEL, "b", "peer0", null );
+
+    assertNull( cache.get( lagging ));
+    assertEquals( "b", cache.get( current ));
+    assertEquals( 1, cache.getLaggingSkips() );
+  }
+
+  @Test
+  public void blockOnlyInvalidatesItsChannel()
+    throws Exception
+  {
+    QueryResultCache cache = new QueryResultCache( 10, 60000, InvalidationMode.COARSE );
+
+    String first  = put( cache, CHANNEL,    "a", "peer0", null );
+    String second = put( cache, "channel2", "b", "peer0", null );
+
+    cache.blockCommitted( CHANNEL, blocks.event( 5, HASH, "peer0" ), Collections.emptyList() );
+
+    assertNull( cache.get( first ));
+    assertEquals( "b", cache.get( second ));
+    assertEquals( 1, cache.size() );
+  }
+
+  @Test
+  public void leastRecentlyUsedEntryIsEvicted()
+  {
+    QueryResultCache cache = new QueryResultCache( 2, 60000, InvalidationMode.COARSE );
+
+    String first  = put( cache, CHANNEL, "a", "peer0", null );
+    String second = put( cache, CHANNEL, "b", "peer0", null );
+    cache.get( first );
+    String third  = put( cache, CHANNEL, "c", "peer0", null );
+
+    assertEquals( 2, cache.size() );
+    assertEquals( "a", cache.get( first ));
+    assertNull( cache.get( second ));
+    assertEquals( "c", cache.get( third ));
+    assertEquals( 1, cache.getEvictions() );
+  }
+
+  /**
+   * Cache the result of a query of the key.
+   *
+   * @return the cache key of the query
+   */
+  private static String put( QueryResultCache cache, String channelId, String key, String peerName, TxReadWriteSet readSet )
+  {
+    String cacheKey = QueryResultCache.buildKey( channelId, CHAINCODE, "query", new String[] { key }, "user1" );
+    cache.put( cacheKey, channelId, cache.getGeneration( channelId ), peerName, key, readSet );
+
+    return cacheKey;
+  }
+
+  private static TxReadWriteSet readSet( String key, boolean privateRead )
+  {
+    NsReadWriteSet.Builder nsRwset = NsReadWriteSet.newBuilder()
+                                       .setNamespace( CHAINCODE )
+                                       .setRwset( KVRWSet.newBuilder().addReads( KVRead.newBuilder().setKey( key )).build().toByteString() );
+    if( privateRead )
+      nsRwset.addCollectionHashedRwset( CollectionHashedReadWriteSet.newBuilder().setCollectionName( "collection1" ));
+
+    return TxReadWriteSet.newBuilder().addNsRwset( nsRwset ).build();
+  }
+}
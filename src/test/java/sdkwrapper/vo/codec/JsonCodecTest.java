@@ -0,0 +1,53 @@
+package sdkwrapper.vo.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import sdkwrapper.vo.transaction.FabricRequest;
+import sdkwrapper.vo.transaction.FabricResponse;
+
+/**
+ * The shared codec decodes the messages the per message Gson decoding accepted.
+ *
+ * @author tim
+ *
+ */
+public class JsonCodecTest
+{
+  @Test
+  public void lenientJsonIsAccepted()
+  {
+    FabricRequest request = FabricRequest.deserializeJSON( "{requestContext:'public', timeTolerance:5, tranPayload:['a','b']}" );
+
+    assertEquals( "public", request.getRequestContext() );
+    assertEquals( 5, request.getTimeTolerance() );
+    assertArrayEquals( new String[] { "a", "b" }, request.getTranPayload() );
+  }
+
+  @Test
+  public void emptyPayloadDecodesToNull()
+  {
+    assertNull( FabricRequest.deserializeJSON( "" ));
+    assertNull( FabricRequest.deserializeJSON( new byte[0] ));
+    assertNull( FabricResponse.fromJSON( "" ));
+    assertNull( FabricRequest.deserializeJSON( (String) null ));
+  }
+
+  @Test
+  public void roundTrip()
+  {
+    FabricRequest request = new FabricRequest();
+    request.setRequestContext( "command" );
+    request.setTranPayload( new String[] { "{\"id\":1}", "x" } );
+
+    FabricRequest decoded = FabricRequest.deserializeJSON( new String( request.toJSONBytes(), StandardCharsets.UTF_8 ));
+
+    assertEquals( request.getRequestContext(), decoded.getRequestContext() );
+    assertArrayEquals( request.getTranPayload(), decoded.getTranPayload() );
+  }
+}